@@ -0,0 +1,358 @@
+/*
+ *   Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package com.amazon.pocketEtl.extractor;
+
+import static org.apache.logging.log4j.LogManager.getLogger;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import javax.annotation.Nullable;
+
+import org.apache.logging.log4j.Logger;
+
+import com.amazon.pocketEtl.EtlMetrics;
+import com.amazon.pocketEtl.EtlProfilingScope;
+import com.amazon.pocketEtl.Extractor;
+import com.amazon.pocketEtl.exception.UnrecoverableStreamFailureException;
+import com.amazon.pocketEtl.integration.DynamoDbItemMapper;
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDBClientBuilder;
+import com.amazonaws.services.dynamodbv2.document.Item;
+import com.amazonaws.services.dynamodbv2.document.ItemUtils;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.ReturnConsumedCapacity;
+import com.amazonaws.services.dynamodbv2.model.ScanRequest;
+import com.amazonaws.services.dynamodbv2.model.ScanResult;
+import com.google.common.util.concurrent.RateLimiter;
+
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * An implementation of Extractor that reads every item in a DynamoDB table using a parallel scan. The table is divided
+ * into a number of segments and each segment is scanned concurrently by its own thread, one page at a time.
+ *
+ * Items are mapped back to objects the same way DynamoDbLoader stores them: the object is read from the JSON held in
+ * the 'document' attribute of the item, or from an attribute per property if native attributes are enabled. An item
+ * that cannot be mapped is reported as an error and the extraction carries on, but a scan request that fails (after
+ * the retries made by the DynamoDB client) will abort the stream.
+ *
+ * A parallel scan can use up the read capacity of a table very quickly. To leave capacity for other users of the table
+ * the rate that capacity is consumed can be capped, in which case every segment will wait before requesting another
+ * page until the capacity consumed by previous pages is within the limit.
+ *
+ * Objects extracted from the same segment are returned in the order they were scanned, but objects from different
+ * segments will be interleaved in no particular order.
+ *
+ * Example usage:
+ * DynamoDbScanExtractor.of("myTable", MyDTO.class).withClient(myDynamoDbClient).withSegments(8)
+ *     .withReadCapacityLimit(100);
+ *
+ * @param <T> Type of object that is extracted from the table.
+ */
+@SuppressWarnings("WeakerAccess")
+@RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+public class DynamoDbScanExtractor<T> implements Extractor<T> {
+    private final static Logger logger = getLogger(DynamoDbScanExtractor.class);
+    private final static String DEFAULT_DOCUMENT_ATTRIBUTE = "document";
+    private final static int DEFAULT_NUMBER_OF_SEGMENTS = 4;
+    private final static int DEFAULT_BUFFER_SIZE = 1000;
+    // Eventually consistent reads are charged in half units, so the rate limiter counts half units
+    private final static int PERMITS_PER_CAPACITY_UNIT = 2;
+
+    private final AmazonDynamoDB ddbClient;
+    private final String tableName;
+    private final Class<T> extractClass;
+    private final String documentAttribute;
+    private final boolean isNativeAttributes;
+    private final Integer numberOfSegments;
+    private final Integer pageSize;
+    private final Double readCapacityLimit;
+    private final Integer bufferSize;
+
+    private ReadAheadBuffer<T> buffer = null;
+    private ExecutorService executorService = null;
+    private RateLimiter rateLimiter = null;
+    private Function<Item, T> itemMapper = null;
+    private EtlMetrics parentMetrics = null;
+    private volatile boolean isClosed = false;
+
+    /**
+     * Static constructor method to build a functioning extractor that scans a DynamoDB table in us-east-1 using the
+     * default credentials. Use withClient() to scan a table in another region or with different credentials.
+     * @param tableName The name of the DynamoDB table to scan.
+     * @param extractClass The class of object to map the 'document' attribute of each item to.
+     * @param <T> The type of object being extracted.
+     * @return A functioning extractor.
+     */
+    public static <T> DynamoDbScanExtractor<T> of(String tableName, Class<T> extractClass) {
+        return new DynamoDbScanExtractor<>(AmazonDynamoDBClientBuilder.standard().withRegion("us-east-1").build(),
+                tableName, extractClass, DEFAULT_DOCUMENT_ATTRIBUTE, false, null, null, null, null);
+    }
+
+    /**
+     * Optional: The DynamoDB client to scan the table with.
+     * @param ddbClient A DynamoDB client.
+     * @return A copy of this extractor with this property modified.
+     */
+    public DynamoDbScanExtractor<T> withClient(AmazonDynamoDB ddbClient) {
+        return new DynamoDbScanExtractor<>(ddbClient, tableName, extractClass, documentAttribute, isNativeAttributes,
+                numberOfSegments, pageSize, readCapacityLimit, bufferSize);
+    }
+
+    /**
+     * Optional: The name of the attribute that holds the JSON document for each item. The default is 'document', which
+     * is where DynamoDbLoader stores it.
+     * @param documentAttribute Name of the document attribute.
+     * @return A copy of this extractor with this property modified.
+     */
+    public DynamoDbScanExtractor<T> withDocumentAttribute(String documentAttribute) {
+        return new DynamoDbScanExtractor<>(ddbClient, tableName, extractClass, documentAttribute, isNativeAttributes,
+                numberOfSegments, pageSize, readCapacityLimit, bufferSize);
+    }
+
+    /**
+     * Optional: Map each item from attributes that hold the properties of the object, as stored by DynamoDbLoader
+     * when native attributes are enabled, instead of from a JSON document attribute. See DynamoDbItemMapper.
+     * @return A copy of this extractor with this property modified.
+     */
+    public DynamoDbScanExtractor<T> withNativeAttributes() {
+        return new DynamoDbScanExtractor<>(ddbClient, tableName, extractClass, documentAttribute, true,
+                numberOfSegments, pageSize, readCapacityLimit, bufferSize);
+    }
+
+    /**
+     * Optional: The number of segments to divide the table into, which is also the number of scans that will be run
+     * concurrently. The default is 4.
+     * @param numberOfSegments Number of segments.
+     * @return A copy of this extractor with this property modified.
+     */
+    public DynamoDbScanExtractor<T> withSegments(int numberOfSegments) {
+        return new DynamoDbScanExtractor<>(ddbClient, tableName, extractClass, documentAttribute, isNativeAttributes,
+                numberOfSegments, pageSize, readCapacityLimit, bufferSize);
+    }
+
+    /**
+     * Optional: The maximum number of items to read in each scan request. If not set, each request reads as many items
+     * as DynamoDB will return in a single page (up to 1MB of data). Smaller pages smooth out the consumption of read
+     * capacity when it is being limited.
+     * @param pageSize Maximum number of items per page.
+     * @return A copy of this extractor with this property modified.
+     */
+    public DynamoDbScanExtractor<T> withPageSize(int pageSize) {
+        return new DynamoDbScanExtractor<>(ddbClient, tableName, extractClass, documentAttribute, isNativeAttributes,
+                numberOfSegments, pageSize, readCapacityLimit, bufferSize);
+    }
+
+    /**
+     * Optional: The maximum rate, in read capacity units per second, that the scan may consume across all of its
+     * segments. If not set, the scan will read as fast as the table allows.
+     * @param readCapacityUnitsPerSecond Maximum read capacity units consumed per second.
+     * @return A copy of this extractor with this property modified.
+     */
+    public DynamoDbScanExtractor<T> withReadCapacityLimit(double readCapacityUnitsPerSecond) {
+        if (readCapacityUnitsPerSecond <= 0) {
+            throw new IllegalArgumentException("Read capacity limit must be greater than zero");
+        }
+
+        return new DynamoDbScanExtractor<>(ddbClient, tableName, extractClass, documentAttribute, isNativeAttributes,
+                numberOfSegments, pageSize, readCapacityUnitsPerSecond, bufferSize);
+    }
+
+    /**
+     * Optional: The maximum number of extracted objects that will be held waiting for next() to be called before the
+     * segment scans stop reading pages. The default is 1000.
+     * @param bufferSize Maximum number of buffered objects.
+     * @return A copy of this extractor with this property modified.
+     */
+    public DynamoDbScanExtractor<T> withBufferSize(int bufferSize) {
+        return new DynamoDbScanExtractor<>(ddbClient, tableName, extractClass, documentAttribute, isNativeAttributes,
+                numberOfSegments, pageSize, readCapacityLimit, bufferSize);
+    }
+
+    /**
+     * Starts scanning every segment of the table in the background.
+     * @param parentMetrics A parent EtlMetrics object to record all timers and counters into, will be null if
+     *                      profiling is not required.
+     */
+    @Override
+    public void open(@Nullable EtlMetrics parentMetrics) {
+        this.parentMetrics = parentMetrics;
+
+        int segments = numberOfSegments == null ? DEFAULT_NUMBER_OF_SEGMENTS : numberOfSegments;
+        buffer = new ReadAheadBuffer<>(bufferSize == null ? DEFAULT_BUFFER_SIZE : bufferSize, parentMetrics,
+                "DynamoDbScanExtractor.bufferOccupancy");
+        rateLimiter = readCapacityLimit == null ? null :
+                RateLimiter.create(readCapacityLimit * PERMITS_PER_CAPACITY_UNIT);
+        itemMapper = isNativeAttributes ? DynamoDbItemMapper.of(extractClass)::fromItem :
+                mapDocumentAttribute(JSONStringMapper.of(extractClass));
+        executorService = Executors.newFixedThreadPool(segments);
+        AtomicInteger remainingSegments = new AtomicInteger(segments);
+
+        for (int i = 0; i < segments; i++) {
+            final int segment = i;
+
+            executorService.submit(() -> {
+                try {
+                    scanSegment(segment, segments);
+                } catch (InterruptedException ignored) {
+                    // The extractor has been closed
+                    return;
+                } catch (Throwable e) {
+                    // Only Errors get this far, but next() would wait forever if nothing was passed on for them
+                    if (!isClosed) {
+                        logger.error("Error thrown scanning segment " + segment + ": ", e);
+                        buffer.offerQuietly(ExtractedElement.failure(new UnrecoverableStreamFailureException(e)));
+                    }
+
+                    return;
+                }
+
+                if (remainingSegments.decrementAndGet() == 0) {
+                    buffer.offerQuietly(ExtractedElement.endOfStream());
+                }
+            });
+        }
+
+        executorService.shutdown();
+    }
+
+    /**
+     * Extract the next object from any of the segments. Blocks until an object is available.
+     *
+     * @return The next object or empty if every segment has been completely scanned.
+     * @throws UnrecoverableStreamFailureException An unrecoverable problem that affects the entire stream has been
+     *                                             detected and the stream needs to be aborted.
+     */
+    @Override
+    public Optional<T> next() throws UnrecoverableStreamFailureException {
+        if (isClosed) {
+            IllegalStateException e = new IllegalStateException("Attempt to use extractor that has been closed");
+            logger.error("Error inside extractor: ", e);
+            throw e;
+        }
+
+        if (buffer == null) {
+            throw new IllegalStateException("Attempt to extract from an uninitialized extractor");
+        }
+
+        return buffer.take("Interrupted waiting for segments to be scanned");
+    }
+
+    /**
+     * Stops any segment scans that are still running and frees up the threads they were using.
+     *
+     * @throws Exception If something goes wrong.
+     */
+    @Override
+    public void close() throws Exception {
+        isClosed = true;
+
+        try (EtlProfilingScope ignored = new EtlProfilingScope(parentMetrics, "DynamoDbScanExtractor.close")) {
+            if (buffer != null) {
+                buffer.close();
+            }
+
+            if (executorService != null) {
+                executorService.shutdownNow();
+                executorService.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+            }
+        }
+    }
+
+    private void scanSegment(int segment, int totalSegments) throws InterruptedException {
+        try (EtlProfilingScope scope = new EtlProfilingScope(parentMetrics, "DynamoDbScanExtractor.scanSegment")) {
+            try {
+                Map<String, AttributeValue> lastEvaluatedKey = null;
+
+                do {
+                    ScanResult result = scanPage(segment, totalSegments, lastEvaluatedKey);
+                    scope.addCounter("DynamoDbScanExtractor.itemsScanned", result.getCount());
+
+                    for (Map<String, AttributeValue> item : result.getItems()) {
+                        if (isClosed) {
+                            return;
+                        }
+
+                        try {
+                            buffer.offer(ExtractedElement.of(mapItem(item)));
+                        } catch (RuntimeException e) {
+                            // A single item could not be mapped; pass the exception on and carry on extracting
+                            buffer.offer(ExtractedElement.failure(e));
+                        }
+                    }
+
+                    lastEvaluatedKey = result.getLastEvaluatedKey();
+                } while (lastEvaluatedKey != null && !isClosed);
+
+                scope.addCounter("DynamoDbScanExtractor.segmentsScanned", 1);
+            } catch (RuntimeException e) {
+                if (!isClosed) {
+                    logger.error("Exception thrown scanning segment " + segment + ": ", e);
+                    buffer.offer(ExtractedElement.failure(new UnrecoverableStreamFailureException(e)));
+                }
+            }
+        }
+    }
+
+    private ScanResult scanPage(int segment, int totalSegments, @Nullable Map<String, AttributeValue> startKey) {
+        ScanRequest scanRequest = new ScanRequest()
+                .withTableName(tableName)
+                .withSegment(segment)
+                .withTotalSegments(totalSegments)
+                .withExclusiveStartKey(startKey)
+                .withLimit(pageSize)
+                .withReturnConsumedCapacity(ReturnConsumedCapacity.TOTAL);
+
+        ScanResult result;
+
+        try (EtlProfilingScope ignored = new EtlProfilingScope(parentMetrics, "DynamoDbScanExtractor.scanPage")) {
+            result = ddbClient.scan(scanRequest);
+        }
+
+        // The capacity a page will consume is not known until it has been read, so each page is paid for after the
+        // fact and the next request from any segment waits until the rate is back within the limit.
+        if (rateLimiter != null && result.getConsumedCapacity() != null) {
+            int permits = (int) Math.ceil(result.getConsumedCapacity().getCapacityUnits() * PERMITS_PER_CAPACITY_UNIT);
+
+            if (permits > 0) {
+                rateLimiter.acquire(permits);
+            }
+        }
+
+        return result;
+    }
+
+    private T mapItem(Map<String, AttributeValue> attributes) {
+        return itemMapper.apply(ItemUtils.toItem(attributes));
+    }
+
+    private Function<Item, T> mapDocumentAttribute(Function<String, T> documentMapper) {
+        return item -> {
+            if (!item.isPresent(documentAttribute)) {
+                throw new RuntimeException("Item does not have a '" + documentAttribute + "' attribute to extract");
+            }
+
+            return documentMapper.apply(item.getJSON(documentAttribute));
+        };
+    }
+}
@@ -0,0 +1,46 @@
+/*
+ *   Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package com.amazon.pocketEtl.extractor;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * An element passed from a background extraction thread to the thread calling next() on an extractor. Each element
+ * holds either an extracted object, an exception that was thrown trying to extract an object or a marker signalling
+ * that there is nothing left to extract. Passed through a ReadAheadBuffer.
+ * @param <T> The type of object being extracted.
+ */
+@Getter(AccessLevel.PACKAGE)
+@RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+class ExtractedElement<T> {
+    private final T value;
+    private final Exception failure;
+    private final boolean isEndOfStream;
+
+    static <T> ExtractedElement<T> of(T value) {
+        return new ExtractedElement<>(value, null, false);
+    }
+
+    static <T> ExtractedElement<T> failure(Exception failure) {
+        return new ExtractedElement<>(null, failure, false);
+    }
+
+    static <T> ExtractedElement<T> endOfStream() {
+        return new ExtractedElement<>(null, null, true);
+    }
+}
@@ -0,0 +1,263 @@
+/*
+ *   Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package com.amazon.pocketEtl.extractor;
+
+import static org.apache.logging.log4j.LogManager.getLogger;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.Nullable;
+
+import org.apache.logging.log4j.Logger;
+
+import com.amazon.pocketEtl.EtlMetrics;
+import com.amazon.pocketEtl.EtlProfilingScope;
+import com.amazon.pocketEtl.Extractor;
+import com.amazon.pocketEtl.exception.UnrecoverableStreamFailureException;
+
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Extractor implementation that reads all the files in a local directory, optionally filtered by a glob pattern, and
+ * maps each of them into objects to be extracted using an InputStreamMapper. Files are read by memory-mapping them in
+ * bounded windows (see withMappingWindowSizeInBytes) so that data is read straight out of the page cache, avoiding the
+ * copy from the kernel into a FileInputStream buffer that a read() call makes. The mapper still copies the bytes it
+ * reads into buffers of its own. Files larger than a single window are handled by sliding the window along the file.
+ *
+ * Multiple files are read concurrently, each on its own thread, and the extracted objects are handed to next() through
+ * a bounded buffer. Objects extracted from the same file will be returned in the order they appear in that file, but
+ * objects from different files will be interleaved in no particular order. The InputStreamMapper provided must
+ * therefore be safe to call from multiple threads at the same time; all the mappers provided with PocketETL are.
+ *
+ * Any failure to read or map a file is treated as unrecoverable and will abort the stream.
+ *
+ * Example usage:
+ * FileExtractor.of(Paths.get("/var/spool/myJob"), CsvInputStreamMapper.of(My.class)).withGlob("*.csv").withThreads(4);
+ *
+ * @param <T> Type of object to be extracted from the files.
+ */
+@SuppressWarnings("WeakerAccess")
+@RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+public class FileExtractor<T> implements Extractor<T> {
+    private static final Logger logger = getLogger(FileExtractor.class);
+    private static final String DEFAULT_GLOB = "*";
+    private static final int DEFAULT_NUMBER_OF_THREADS = 1;
+    private static final int DEFAULT_BUFFER_SIZE = 1000;
+
+    // Default mapping window is 64 MiB
+    private static final long DEFAULT_MAPPING_WINDOW_SIZE_IN_BYTES = 1024 * 1024 * 64;
+
+    private final Path directory;
+    private final InputStreamMapper<T> inputStreamMapper;
+    private final String glob;
+    private final Integer numberOfThreads;
+    private final Long mappingWindowSizeInBytes;
+    private final Integer bufferSize;
+
+    private ReadAheadBuffer<T> buffer = null;
+    private ExecutorService executorService = null;
+    private EtlMetrics parentMetrics = null;
+    private volatile boolean isClosed = false;
+
+    /**
+     * Static constructor method to build a functioning extractor that reads every file in a directory.
+     * @param directory The local directory to read files from. Sub-directories are not read.
+     * @param inputStreamMapper A function that can map an open inputStream into an iterator of the objects being
+     *                          extracted. It will be called concurrently if more than one thread is used.
+     * @param <T> The type of object being extracted/mapped-to.
+     * @return A functioning extractor.
+     */
+    public static <T> FileExtractor<T> of(Path directory, InputStreamMapper<T> inputStreamMapper) {
+        return new FileExtractor<>(directory, inputStreamMapper, null, null, null, null);
+    }
+
+    /**
+     * Optional: Restrict the files that are read to those whose names match a glob pattern, eg: "*.csv". The default
+     * is to read all files in the directory.
+     * @param glob A glob pattern as defined by FileSystem.getPathMatcher.
+     * @return A copy of this extractor with this property modified.
+     */
+    public FileExtractor<T> withGlob(String glob) {
+        return new FileExtractor<>(directory, inputStreamMapper, glob, numberOfThreads, mappingWindowSizeInBytes,
+                bufferSize);
+    }
+
+    /**
+     * Optional: The number of files that will be read concurrently. The default is one.
+     * @param numberOfThreads Number of threads to read files with.
+     * @return A copy of this extractor with this property modified.
+     */
+    public FileExtractor<T> withThreads(int numberOfThreads) {
+        return new FileExtractor<>(directory, inputStreamMapper, glob, numberOfThreads, mappingWindowSizeInBytes,
+                bufferSize);
+    }
+
+    /**
+     * Optional: The maximum number of bytes of each file that will be memory-mapped at any one time. The default is
+     * 64 MiB, and the maximum is the largest value that can be held in an int.
+     * @param mappingWindowSizeInBytes Size of the mapping window in bytes.
+     * @return A copy of this extractor with this property modified.
+     */
+    public FileExtractor<T> withMappingWindowSizeInBytes(long mappingWindowSizeInBytes) {
+        return new FileExtractor<>(directory, inputStreamMapper, glob, numberOfThreads, mappingWindowSizeInBytes,
+                bufferSize);
+    }
+
+    /**
+     * Optional: The maximum number of extracted objects that will be held waiting for next() to be called before the
+     * threads reading files block. The default is 1000.
+     * @param bufferSize Maximum number of buffered objects.
+     * @return A copy of this extractor with this property modified.
+     */
+    public FileExtractor<T> withBufferSize(int bufferSize) {
+        return new FileExtractor<>(directory, inputStreamMapper, glob, numberOfThreads, mappingWindowSizeInBytes,
+                bufferSize);
+    }
+
+    /**
+     * Lists the files to be read and starts reading them in the background.
+     * @param parentMetrics A parent EtlMetrics object to record all timers and counters into, will be null if
+     *                      profiling is not required.
+     */
+    @Override
+    public void open(@Nullable EtlMetrics parentMetrics) {
+        this.parentMetrics = parentMetrics;
+        List<Path> files = listFiles();
+
+        buffer = new ReadAheadBuffer<>(bufferSize == null ? DEFAULT_BUFFER_SIZE : bufferSize, parentMetrics,
+                "FileExtractor.bufferOccupancy");
+
+        if (files.isEmpty()) {
+            buffer.offerQuietly(ExtractedElement.endOfStream());
+            return;
+        }
+
+        int threads = Math.min(files.size(), numberOfThreads == null ? DEFAULT_NUMBER_OF_THREADS : numberOfThreads);
+        executorService = Executors.newFixedThreadPool(threads);
+        AtomicInteger remainingFiles = new AtomicInteger(files.size());
+
+        files.forEach(file -> executorService.submit(() -> {
+            try {
+                extractFile(file);
+            } catch (InterruptedException ignored) {
+                // The extractor has been closed
+                return;
+            } catch (Throwable e) {
+                // Errors are caught as well, otherwise next() would wait forever for an element that never comes
+                if (isClosed) {
+                    return;
+                }
+
+                logger.error("Exception thrown extracting file " + file + ": ", e);
+                buffer.offerQuietly(ExtractedElement.failure(e instanceof UnrecoverableStreamFailureException ?
+                        (UnrecoverableStreamFailureException) e : new UnrecoverableStreamFailureException(e)));
+                return;
+            }
+
+            if (remainingFiles.decrementAndGet() == 0) {
+                buffer.offerQuietly(ExtractedElement.endOfStream());
+            }
+        }));
+
+        executorService.shutdown();
+    }
+
+    /**
+     * Attempts to extract the next object from the files being read. Blocks until an object is available.
+     * @return A newly extracted object or an empty optional if all the files have been completely read.
+     * @throws UnrecoverableStreamFailureException If any of the files could not be read or mapped.
+     */
+    @Override
+    public Optional<T> next() throws UnrecoverableStreamFailureException {
+        if (isClosed) {
+            IllegalStateException e = new IllegalStateException("Attempt to use extractor that has been closed");
+            logger.error("Error inside extractor: ", e);
+            throw e;
+        }
+
+        if (buffer == null) {
+            throw new IllegalStateException("Attempt to call next() on an uninitialized extractor");
+        }
+
+        return buffer.take("Interrupted waiting for files to be extracted");
+    }
+
+    /**
+     * Stops reading any files that have not been fully read and frees up the threads used to read them.
+     * @throws Exception If something goes wrong.
+     */
+    @Override
+    public void close() throws Exception {
+        isClosed = true;
+
+        if (buffer != null) {
+            buffer.close();
+        }
+
+        if (executorService != null) {
+            executorService.shutdownNow();
+            executorService.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private List<Path> listFiles() {
+        List<Path> files = new ArrayList<>();
+
+        try (DirectoryStream<Path> directoryStream =
+                     Files.newDirectoryStream(directory, glob == null ? DEFAULT_GLOB : glob)) {
+            directoryStream.forEach(path -> {
+                if (Files.isRegularFile(path)) {
+                    files.add(path);
+                }
+            });
+        } catch (IOException e) {
+            throw new UnrecoverableStreamFailureException("Unable to list files in directory " + directory, e);
+        }
+
+        // Sort the files so that single-threaded extraction is deterministic
+        Collections.sort(files);
+        return files;
+    }
+
+    private void extractFile(Path file) throws IOException, InterruptedException {
+        long windowSize = mappingWindowSizeInBytes == null ? DEFAULT_MAPPING_WINDOW_SIZE_IN_BYTES : mappingWindowSizeInBytes;
+
+        try (EtlProfilingScope scope = new EtlProfilingScope(parentMetrics, "FileExtractor.extractFile");
+             InputStream inputStream = new MappedFileInputStream(file, windowSize)) {
+            Iterator<T> iterator = inputStreamMapper.apply(inputStream);
+
+            while (!isClosed && iterator.hasNext()) {
+                buffer.offer(ExtractedElement.of(iterator.next()));
+            }
+
+            scope.addCounter("FileExtractor.filesExtracted", 1);
+        }
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ *   Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package com.amazon.pocketEtl.extractor;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Optional;
+
+import com.amazon.pocketEtl.exception.UnrecoverableStreamFailureException;
+
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Implementation of HighWaterMarkStore that keeps the high-water mark as text in a local file. The file is replaced
+ * atomically when a new high-water mark is saved, so a job that dies whilst saving will leave the previous value
+ * intact.
+ *
+ * Example usage:
+ * FileHighWaterMarkStore.of(Paths.get("/var/lib/myJob/orders.hwm"));
+ */
+@SuppressWarnings("WeakerAccess")
+@RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+public class FileHighWaterMarkStore implements HighWaterMarkStore {
+    private final Path file;
+
+    /**
+     * Static constructor method to build a store backed by a local file.
+     * @param file The file to keep the high-water mark in. Does not need to exist yet, but its directory does.
+     * @return A functioning store.
+     */
+    public static FileHighWaterMarkStore of(Path file) {
+        return new FileHighWaterMarkStore(file);
+    }
+
+    @Override
+    public Optional<String> load() throws UnrecoverableStreamFailureException {
+        if (!Files.exists(file)) {
+            return Optional.empty();
+        }
+
+        try {
+            String highWaterMark = new String(Files.readAllBytes(file), StandardCharsets.UTF_8).trim();
+            return highWaterMark.isEmpty() ? Optional.empty() : Optional.of(highWaterMark);
+        } catch (IOException e) {
+            throw new UnrecoverableStreamFailureException("Unable to read high-water mark from " + file, e);
+        }
+    }
+
+    @Override
+    public void save(String highWaterMark) throws UnrecoverableStreamFailureException {
+        Path absoluteFile = file.toAbsolutePath();
+        Path temporaryFile = null;
+
+        try {
+            temporaryFile = Files.createTempFile(absoluteFile.getParent(), absoluteFile.getFileName().toString(), ".tmp");
+            Files.write(temporaryFile, highWaterMark.getBytes(StandardCharsets.UTF_8));
+            Files.move(temporaryFile, absoluteFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            deleteQuietly(temporaryFile);
+            throw new UnrecoverableStreamFailureException("Unable to save high-water mark to " + file, e);
+        }
+    }
+
+    private static void deleteQuietly(Path path) {
+        if (path == null) {
+            return;
+        }
+
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException ignored) {
+            // Nothing more can be done
+        }
+    }
+}
@@ -0,0 +1,41 @@
+/*
+ *   Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package com.amazon.pocketEtl.extractor;
+
+import java.util.Optional;
+
+import com.amazon.pocketEtl.exception.UnrecoverableStreamFailureException;
+
+/**
+ * Interface for somewhere to keep the high-water mark of an incremental extraction between runs of a job, see
+ * IncrementalSqlExtractor. FileHighWaterMarkStore is provided to keep the high-water mark in a local file; implement
+ * this interface to keep it somewhere else.
+ */
+public interface HighWaterMarkStore {
+    /**
+     * Load the high-water mark saved by the last successful run.
+     * @return The saved high-water mark, or empty if there has not yet been a successful run.
+     * @throws UnrecoverableStreamFailureException If the store could not be read.
+     */
+    Optional<String> load() throws UnrecoverableStreamFailureException;
+
+    /**
+     * Save a new high-water mark, replacing any previously saved value.
+     * @param highWaterMark The high-water mark to save.
+     * @throws UnrecoverableStreamFailureException If the store could not be written.
+     */
+    void save(String highWaterMark) throws UnrecoverableStreamFailureException;
+}
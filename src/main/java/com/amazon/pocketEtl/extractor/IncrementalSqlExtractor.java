@@ -0,0 +1,425 @@
+/*
+ *   Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package com.amazon.pocketEtl.extractor;
+
+import static org.apache.logging.log4j.LogManager.getLogger;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+import javax.annotation.Nullable;
+import javax.sql.DataSource;
+
+import org.apache.logging.log4j.Logger;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.skife.jdbi.v2.DBI;
+import org.skife.jdbi.v2.Handle;
+import org.skife.jdbi.v2.Query;
+
+import com.amazon.pocketEtl.EtlMetrics;
+import com.amazon.pocketEtl.EtlProfilingScope;
+import com.amazon.pocketEtl.Extractor;
+import com.amazon.pocketEtl.exception.UnrecoverableStreamFailureException;
+import com.amazon.pocketEtl.integration.db.jdbi.EtlJdbi;
+import com.amazon.pocketEtl.integration.db.jdbi.StatementCache;
+
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * An implementation of Extractor that incrementally extracts rows from a JDBC datasource, returning only the rows that
+ * have been added or changed since the last time the job ran successfully. Rows are tracked by an ordered key column,
+ * either a numeric key that always increases (such as an identity column) or a timestamp that is updated whenever a row
+ * changes (such as an 'updated_at' column).
+ *
+ * Rather than running one long query, rows are read in pages of a fixed size using keyset pagination: each page is a
+ * short query that asks for rows with a key greater than the last key read, in key order. With an index on the key
+ * column each page is cheap to run regardless of how far through the table the extraction is, and no connection or
+ * transaction is held open between pages. Keys do not need to be unique.
+ *
+ * Keys are tracked as whole numbers: timestamps to the millisecond and numbers to the integer. A key stands for every
+ * value that rounds down to it, so a column holding microsecond timestamps or fractional numbers is still extracted
+ * completely; rows whose values round down to the same key are simply treated as having the same key. Negative
+ * fractional numbers round down too, so -0.5 has the key -1.
+ *
+ * Rows with a NULL key can not be ordered against the high-water mark and are never extracted.
+ *
+ * The highest key extracted (the high-water mark) is saved to a HighWaterMarkStore when the extractor is closed after
+ * every row has been extracted. A run that fails part way through will not save its high-water mark, so the next run
+ * will start again from the previous one. This gives at-least-once extraction: rows extracted by a failed run may be
+ * extracted again.
+ *
+ * A row that fails to map will abort the stream, as skipping it would move the high-water mark past it and it would
+ * never be extracted.
+ *
+ * The query is wrapped as a sub-query, so the key column must be one of the columns it returns. SQL parameters work in
+ * the same way as SqlExtractor, see that class for details.
+ *
+ * Each page query is limited with 'LIMIT n', which PostgreSQL, Redshift, MySQL, H2, HSQLDB and SQLite understand. For
+ * other databases set the paging clause with withPagingClause(), eg: "FETCH FIRST %d ROWS ONLY" for Oracle 12c and DB2
+ * or "OFFSET 0 ROWS FETCH NEXT %d ROWS ONLY" for SQL Server.
+ *
+ * Example usage:
+ * IncrementalSqlExtractor.ofTimestampKey(dataSource, "SELECT * FROM orders", Order.class, "updated_at",
+ *                                        Order::getUpdatedAt)
+ *     .withHighWaterMarkFile(Paths.get("/var/lib/myJob/orders.hwm"));
+ *
+ * @param <T> Type of object that is extracted from the datasource.
+ */
+@SuppressWarnings("WeakerAccess")
+@RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+public class IncrementalSqlExtractor<T> implements Extractor<T> {
+    private final static Logger logger = getLogger(IncrementalSqlExtractor.class);
+    private final static int DEFAULT_PAGE_SIZE = 1000;
+    private final static String HIGH_WATER_MARK_PARAMETER = "incrementalHighWaterMark";
+    private final static String KEY_UPPER_BOUND_PARAMETER = "incrementalKeyUpperBound";
+    private final static String DEFAULT_PAGING_CLAUSE = "LIMIT %d";
+
+    private final String extractSql;
+    private final Class<T> extractClass;
+    private final DataSource dataSource;
+    private final String keyColumn;
+    private final Function<T, ?> keyFunction;
+    private final boolean isTimestampKey;
+    private final HighWaterMarkStore highWaterMarkStore;
+    private final Integer pageSize;
+    private final Map<String, ?> extractSqlParameters;
+    private final BiConsumer<T, Map.Entry<String, String>> unknownPropertyMapper;
+    private final String pagingClause;
+    private final StatementCache statementCache;
+
+    private DBI dbi = null;
+    private Iterator<T> page = null;
+    private Long savedHighWaterMark = null;
+    private Long highWaterMark = null;
+    private Long pageLowerBound = null;
+    private boolean isPageLowerBoundInclusive = false;
+    private boolean isLastPage = false;
+    private boolean isExhausted = false;
+    private boolean isClosed = false;
+    private EtlMetrics parentMetrics = null;
+
+    /**
+     * Static constructor method to build an incremental extractor that tracks rows by a numeric key that increases
+     * whenever a row is added or changed.
+     * @param dataSource The JDBC datasource to extract from.
+     * @param extractSql The SQL query that returns every row that could be extracted.
+     * @param extractClass The class of object to map each row to.
+     * @param keyColumn The name of the numeric key column returned by the query.
+     * @param keyFunction A function that returns the value of the key column from an extracted object.
+     * @param <T> The type of object being extracted.
+     * @return A functioning extractor. A high-water mark store must be set before it is opened.
+     */
+    public static <T> IncrementalSqlExtractor<T> of(DataSource dataSource, String extractSql, Class<T> extractClass,
+                                                    String keyColumn, Function<T, ? extends Number> keyFunction) {
+        return new IncrementalSqlExtractor<>(extractSql, extractClass, dataSource, keyColumn, keyFunction, false, null,
+                null, null, null, null, null);
+    }
+
+    /**
+     * Static constructor method to build an incremental extractor that tracks rows by a timestamp that is updated
+     * whenever a row is added or changed.
+     * @param dataSource The JDBC datasource to extract from.
+     * @param extractSql The SQL query that returns every row that could be extracted.
+     * @param extractClass The class of object to map each row to.
+     * @param keyColumn The name of the timestamp column returned by the query.
+     * @param keyFunction A function that returns the value of the timestamp column from an extracted object.
+     * @param <T> The type of object being extracted.
+     * @return A functioning extractor. A high-water mark store must be set before it is opened.
+     */
+    public static <T> IncrementalSqlExtractor<T> ofTimestampKey(DataSource dataSource, String extractSql,
+                                                                Class<T> extractClass, String keyColumn,
+                                                                Function<T, DateTime> keyFunction) {
+        return new IncrementalSqlExtractor<>(extractSql, extractClass, dataSource, keyColumn, keyFunction, true, null,
+                null, null, null, null, null);
+    }
+
+    /**
+     * Keep the high-water mark in a local file, see FileHighWaterMarkStore.
+     * @param highWaterMarkFile The file to keep the high-water mark in.
+     * @return A copy of this extractor with this property modified.
+     */
+    public IncrementalSqlExtractor<T> withHighWaterMarkFile(Path highWaterMarkFile) {
+        return withHighWaterMarkStore(FileHighWaterMarkStore.of(highWaterMarkFile));
+    }
+
+    /**
+     * Keep the high-water mark in a custom store.
+     * @param highWaterMarkStore The store to keep the high-water mark in.
+     * @return A copy of this extractor with this property modified.
+     */
+    public IncrementalSqlExtractor<T> withHighWaterMarkStore(HighWaterMarkStore highWaterMarkStore) {
+        return new IncrementalSqlExtractor<>(extractSql, extractClass, dataSource, keyColumn, keyFunction,
+                isTimestampKey, highWaterMarkStore, pageSize, extractSqlParameters, unknownPropertyMapper,
+                pagingClause, statementCache);
+    }
+
+    /**
+     * Optional: The maximum number of rows read by each page query. The default is 1000.
+     * @param pageSize Number of rows per page.
+     * @return A copy of this extractor with this property modified.
+     */
+    public IncrementalSqlExtractor<T> withPageSize(int pageSize) {
+        return new IncrementalSqlExtractor<>(extractSql, extractClass, dataSource, keyColumn, keyFunction,
+                isTimestampKey, highWaterMarkStore, pageSize, extractSqlParameters, unknownPropertyMapper,
+                pagingClause, statementCache);
+    }
+
+    public IncrementalSqlExtractor<T> withSqlParameters(Map<String, ?> extractSqlParameters) {
+        return new IncrementalSqlExtractor<>(extractSql, extractClass, dataSource, keyColumn, keyFunction,
+                isTimestampKey, highWaterMarkStore, pageSize, extractSqlParameters, unknownPropertyMapper,
+                pagingClause, statementCache);
+    }
+
+    public IncrementalSqlExtractor<T> withUnknownPropertyMapper(
+            BiConsumer<T, Map.Entry<String, String>> unknownPropertyMapper) {
+        return new IncrementalSqlExtractor<>(extractSql, extractClass, dataSource, keyColumn, keyFunction,
+                isTimestampKey, highWaterMarkStore, pageSize, extractSqlParameters, unknownPropertyMapper,
+                pagingClause, statementCache);
+    }
+
+    /**
+     * Optional: The clause added after ORDER BY to limit the number of rows read by each page query, with %d in place
+     * of the page size. The default is "LIMIT %d".
+     * @param pagingClause Format of the paging clause, eg: "FETCH FIRST %d ROWS ONLY".
+     * @return A copy of this extractor with this property modified.
+     */
+    public IncrementalSqlExtractor<T> withPagingClause(String pagingClause) {
+        return new IncrementalSqlExtractor<>(extractSql, extractClass, dataSource, keyColumn, keyFunction,
+                isTimestampKey, highWaterMarkStore, pageSize, extractSqlParameters, unknownPropertyMapper,
+                pagingClause, statementCache);
+    }
+
+    /**
+     * Optional: Run the page queries on handles borrowed from a statement cache, so that each page query is prepared
+     * once and re-used by the following pages and by the next extractor to run the same SQL with the same cache. The
+     * cache must be for the same datasource. See StatementCache for details.
+     * @param statementCache The statement cache to borrow handles from.
+     * @return A copy of this extractor with this property modified.
+     */
+    public IncrementalSqlExtractor<T> withStatementCache(StatementCache statementCache) {
+        return new IncrementalSqlExtractor<>(extractSql, extractClass, dataSource, keyColumn, keyFunction,
+                isTimestampKey, highWaterMarkStore, pageSize, extractSqlParameters, unknownPropertyMapper,
+                pagingClause, statementCache);
+    }
+
+    /**
+     * Loads the high-water mark saved by the last successful run.
+     * @param parentMetrics A parent EtlMetrics object to record all timers and counters into, will be null if
+     *                      profiling is not required.
+     */
+    @Override
+    public void open(@Nullable EtlMetrics parentMetrics) {
+        if (highWaterMarkStore == null) {
+            throw new IllegalStateException("A high-water mark file or store must be set on IncrementalSqlExtractor");
+        }
+
+        this.parentMetrics = parentMetrics;
+        dbi = statementCache == null ? EtlJdbi.getDBI(dataSource, unknownPropertyMapper) : null;
+        savedHighWaterMark = highWaterMarkStore.load().map(this::decodeHighWaterMark).orElse(null);
+        highWaterMark = savedHighWaterMark;
+        pageLowerBound = savedHighWaterMark;
+        page = Collections.emptyIterator();
+    }
+
+    /**
+     * Extract the next new or changed object from the database, in key order.
+     *
+     * @return The next object or empty if no more objects can be extracted.
+     * @throws UnrecoverableStreamFailureException An unrecoverable problem that affects the entire stream has been
+     *                                             detected and the stream needs to be aborted.
+     */
+    @Override
+    public Optional<T> next() throws UnrecoverableStreamFailureException {
+        if (isClosed) {
+            IllegalStateException e = new IllegalStateException("Attempt to use extractor that has been closed");
+            logger.error("Error inside extractor: ", e);
+            throw e;
+        }
+
+        if (page == null) {
+            throw new IllegalStateException("Attempt to extract from an uninitialized extractor");
+        }
+
+        while (!page.hasNext()) {
+            if (isLastPage) {
+                isExhausted = true;
+                return Optional.empty();
+            }
+
+            fetchPage();
+        }
+
+        T extractedObject = page.next();
+        highWaterMark = keyOf(extractedObject);
+        return Optional.of(extractedObject);
+    }
+
+    /**
+     * Saves the new high-water mark if every row has been extracted.
+     *
+     * @throws Exception If something goes wrong.
+     */
+    @Override
+    public void close() throws Exception {
+        isClosed = true;
+
+        try (EtlProfilingScope ignored = new EtlProfilingScope(parentMetrics, "IncrementalSqlExtractor.close")) {
+            if (isExhausted && highWaterMark != null && !highWaterMark.equals(savedHighWaterMark)) {
+                highWaterMarkStore.save(encodeHighWaterMark(highWaterMark));
+            }
+        }
+    }
+
+    // If a full page ends part way through a run of rows with the same key, those rows are held back and the next page
+    // starts from that key inclusively. If every row in a full page has the same key then all the rows with that key
+    // are read at once so that the extraction can move past it.
+    private void fetchPage() {
+        int rowsPerPage = pageSize == null ? DEFAULT_PAGE_SIZE : pageSize;
+        List<T> rows = queryPage(rowsPerPage);
+
+        if (rows.size() < rowsPerPage) {
+            page = rows.iterator();
+            isLastPage = true;
+            return;
+        }
+
+        long lastKey = keyOf(rows.get(rows.size() - 1));
+        int rowsToReturn = rows.size();
+
+        while (rowsToReturn > 0 && keyOf(rows.get(rowsToReturn - 1)) == lastKey) {
+            rowsToReturn--;
+        }
+
+        pageLowerBound = lastKey;
+
+        if (rowsToReturn > 0) {
+            page = rows.subList(0, rowsToReturn).iterator();
+            isPageLowerBoundInclusive = true;
+        } else {
+            page = queryAllRowsWithKey(lastKey).iterator();
+            isPageLowerBoundInclusive = false;
+        }
+    }
+
+    // Each key covers every value from that key up to, but not including, the next key. This keeps the queries
+    // consistent with keyOf() when the column holds more precision than the key, such as microsecond timestamps.
+    private List<T> queryPage(int rowsPerPage) {
+        String pageSql = "SELECT * FROM (" + extractSql + ") incremental_extract WHERE " + keyColumn + " IS NOT NULL";
+        Long lowerBound = null;
+
+        if (pageLowerBound != null) {
+            pageSql += " AND " + keyColumn + " >= #" + HIGH_WATER_MARK_PARAMETER;
+            lowerBound = isPageLowerBoundInclusive ? pageLowerBound : pageLowerBound + 1;
+        }
+
+        pageSql += " ORDER BY " + keyColumn + " " +
+                String.format(pagingClause == null ? DEFAULT_PAGING_CLAUSE : pagingClause, rowsPerPage);
+        return query(pageSql, lowerBound, null);
+    }
+
+    private List<T> queryAllRowsWithKey(long key) {
+        String keySql = "SELECT * FROM (" + extractSql + ") incremental_extract WHERE " + keyColumn + " >= #" +
+                HIGH_WATER_MARK_PARAMETER + " AND " + keyColumn + " < #" + KEY_UPPER_BOUND_PARAMETER;
+        return query(keySql, key, key + 1);
+    }
+
+    private List<T> query(String sql, @Nullable Long lowerBound, @Nullable Long upperBound) {
+        Map<String, Object> parameters = new HashMap<>();
+
+        if (extractSqlParameters != null) {
+            parameters.putAll(extractSqlParameters);
+        }
+
+        if (lowerBound != null) {
+            parameters.put(HIGH_WATER_MARK_PARAMETER, keyParameter(lowerBound));
+        }
+
+        if (upperBound != null) {
+            parameters.put(KEY_UPPER_BOUND_PARAMETER, keyParameter(upperBound));
+        }
+
+        Handle handle;
+
+        try {
+            handle = statementCache == null ? dbi.open() : statementCache.borrowHandle();
+        } catch (RuntimeException e) {
+            throw new UnrecoverableStreamFailureException(e);
+        }
+
+        try (EtlProfilingScope scope = new EtlProfilingScope(parentMetrics, "IncrementalSqlExtractor.fetchPage")) {
+            Query<Map<String, Object>> unmappedQuery = handle.createQuery(sql).bindFromMap(parameters);
+            List<T> rows = (statementCache == null ? unmappedQuery.mapTo(extractClass) :
+                    unmappedQuery.map(statementCache.mapperFor(extractClass, unknownPropertyMapper))).list();
+            scope.addCounter("IncrementalSqlExtractor.rowsFetched", rows.size());
+            return rows;
+        } catch (RuntimeException e) {
+            throw new UnrecoverableStreamFailureException(e);
+        } finally {
+            if (statementCache == null) {
+                handle.close();
+            } else {
+                statementCache.returnHandle(handle);
+            }
+        }
+    }
+
+    private Object keyParameter(long key) {
+        return isTimestampKey ? new Timestamp(key) : key;
+    }
+
+    private long keyOf(T extractedObject) {
+        Object key = keyFunction.apply(extractedObject);
+
+        if (key == null) {
+            throw new UnrecoverableStreamFailureException("Key column " + keyColumn + " of extracted row is null");
+        }
+
+        return isTimestampKey ? ((DateTime) key).getMillis() : floorOf((Number) key);
+    }
+
+    // longValue() truncates towards zero, which would put -0.5 under the key 0 rather than -1
+    private static long floorOf(Number key) {
+        if (key instanceof BigDecimal) {
+            return ((BigDecimal) key).setScale(0, RoundingMode.FLOOR).longValue();
+        }
+
+        if (key instanceof Double || key instanceof Float) {
+            return (long) Math.floor(key.doubleValue());
+        }
+
+        return key.longValue();
+    }
+
+    private String encodeHighWaterMark(long value) {
+        return isTimestampKey ? new DateTime(value, DateTimeZone.UTC).toString() : Long.toString(value);
+    }
+
+    private long decodeHighWaterMark(String value) {
+        return isTimestampKey ? DateTime.parse(value).getMillis() : Long.parseLong(value);
+    }
+}
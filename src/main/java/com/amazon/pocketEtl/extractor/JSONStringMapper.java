@@ -15,8 +15,10 @@
 
 package com.amazon.pocketEtl.extractor;
 
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.databind.JsonMappingException;
 import com.fasterxml.jackson.databind.MapperFeature;
+import com.fasterxml.jackson.databind.Module;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.ObjectReader;
 import com.fasterxml.jackson.databind.exc.UnrecognizedPropertyException;
@@ -40,26 +42,48 @@ import java.util.function.Function;
  *   "keyTwo": "valueTwo"
  * }
  *
+ * Callers that already hold a payload as UTF-8 bytes or as characters can map it with fromBytes() or fromChars()
+ * rather than building a String first. A payload that is already a String, such as the body of an SQS message, should
+ * be mapped with apply(): encoding it to bytes just to call fromBytes() costs more than it saves. Additional Jackson
+ * modules, for instance one that generates optimized bean deserializers, can be registered with withModule().
+ *
  * NOTE: Currently this mapper is able to map string dates in json to joda DateTime which are in ISO format.
  * For example, "2017-08-15T12:00:00Z"
  * This is an open bug with jackson API. This needs to be handled in future by adding custom joda datetime
  * serializable or wait for jackson API to fix this.
  */
 public class JSONStringMapper<T> implements Function<String, T> {
-    private static final ObjectMapper objectMapper = new ObjectMapper()
+    // NdJsonInputStreamMapper reads each line with a reader from this mapper, so that a DTO maps the same way
+    // whether it arrives as a single message or as a line of a file.
+    static final ObjectMapper objectMapper = new ObjectMapper()
             // Mapping java bean case conventions can be problematic when the second character is capitalized
             // (eg: getAString()). We are solving this problem by making case not matter.
             .configure(MapperFeature.ACCEPT_CASE_INSENSITIVE_PROPERTIES, true)
             .registerModules(new JodaModule(), new Jdk8Module(), new JavaTimeModule());
 
+    private final Class<T> mapToClass;
+    private final ObjectMapper mapper;
     private final ObjectReader objectReader;
 
     public static <T> JSONStringMapper<T> of(Class<T> mapToClass) {
-        return new JSONStringMapper<>(mapToClass);
+        return new JSONStringMapper<>(mapToClass, objectMapper);
+    }
+
+    private JSONStringMapper(Class<T> mapToClass, ObjectMapper mapper) {
+        this.mapToClass = mapToClass;
+        this.mapper = mapper;
+        objectReader = mapper.readerFor(mapToClass);
     }
 
-    private JSONStringMapper(Class<T> mapToClass) {
-        objectReader = objectMapper.readerFor(mapToClass);
+    /**
+     * Register an additional Jackson module with this mapper, such as a module that replaces reflection based bean
+     * deserializers with generated bytecode. The module only applies to the returned mapper; the configuration shared
+     * with other mappers is not modified.
+     * @param module Jackson module to register.
+     * @return A new JSONStringMapper with modified configuration.
+     */
+    public JSONStringMapper<T> withModule(Module module) {
+        return new JSONStringMapper<>(mapToClass, mapper.copy().registerModule(module));
     }
 
     /**
@@ -69,12 +93,40 @@ public class JSONStringMapper<T> implements Function<String, T> {
      */
     @Override
     public T apply(String json) {
+        return json == null ? null : map(() -> objectReader.readValue(json));
+    }
+
+    /**
+     * Parse UTF-8 encoded json bytes and creates an object of dtoClass with field values populated from parsed json
+     * field values. The bytes are parsed directly, without first being decoded into a String.
+     * @param json UTF-8 encoded json to be mapped.
+     * @return object of dtoClass type having values populated from json bytes.
+     */
+    public T fromBytes(byte[] json) {
+        return json == null ? null : map(() -> objectReader.readValue(json));
+    }
+
+    /**
+     * Parse json characters and creates an object of dtoClass with field values populated from parsed json field
+     * values. The characters are parsed in place, without first being copied into a String.
+     * @param json json characters to be mapped.
+     * @return object of dtoClass type having values populated from json characters.
+     */
+    public T fromChars(char[] json) {
         if (json == null) {
             return null;
         }
 
+        return map(() -> {
+            try (JsonParser parser = objectReader.getFactory().createParser(json)) {
+                return objectReader.readValue(parser);
+            }
+        });
+    }
+
+    private T map(JsonRead<T> read) {
         try {
-            return objectReader.readValue(json);
+            return read.read();
         } catch (UnrecognizedPropertyException e) {
             throw new RuntimeException("Unable to find property in mapToClass. " +
                     "Check for typos or make sure dtoClass has all the fields that are in json: ", e);
@@ -84,4 +136,9 @@ public class JSONStringMapper<T> implements Function<String, T> {
             throw new RuntimeException("Unable to parse JSON string: ", e);
         }
     }
+
+    @FunctionalInterface
+    private interface JsonRead<T> {
+        T read() throws IOException;
+    }
 }
\ No newline at end of file
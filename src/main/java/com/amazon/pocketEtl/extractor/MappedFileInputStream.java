@@ -0,0 +1,136 @@
+/*
+ *   Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package com.amazon.pocketEtl.extractor;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * InputStream implementation that reads a local file by memory-mapping it into the address space of the process rather
+ * than copying it through a heap buffer. Files are mapped in bounded windows; once a window has been fully read the
+ * next window of the file is mapped in its place, so files of any size can be read with a fixed amount of address
+ * space. Used by FileExtractor.
+ *
+ * Mark and reset are not supported by this implementation.
+ */
+class MappedFileInputStream extends InputStream {
+    private final FileChannel fileChannel;
+    private final long fileSize;
+    private final long windowSizeInBytes;
+
+    private MappedByteBuffer window = null;
+    private long windowStartPosition = 0;
+
+    /**
+     * Opens a file to be read through memory-mapped windows.
+     * @param path The path of the file to read.
+     * @param windowSizeInBytes The maximum number of bytes of the file that will be mapped at any one time.
+     * @throws IOException If the file could not be opened.
+     */
+    MappedFileInputStream(Path path, long windowSizeInBytes) throws IOException {
+        if (windowSizeInBytes <= 0 || windowSizeInBytes > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("windowSizeInBytes must be between 1 and " + Integer.MAX_VALUE);
+        }
+
+        this.fileChannel = FileChannel.open(path, StandardOpenOption.READ);
+        this.fileSize = fileChannel.size();
+        this.windowSizeInBytes = windowSizeInBytes;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!ensureWindowHasRemaining()) {
+            return -1;
+        }
+
+        return window.get() & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (off < 0 || len < 0 || len > b.length - off) {
+            throw new IndexOutOfBoundsException();
+        }
+
+        if (len == 0) {
+            return 0;
+        }
+
+        if (!ensureWindowHasRemaining()) {
+            return -1;
+        }
+
+        int bytesToRead = Math.min(len, window.remaining());
+        window.get(b, off, bytesToRead);
+        return bytesToRead;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        if (n <= 0) {
+            return 0;
+        }
+
+        long currentPosition = getPosition();
+        long newPosition = Math.min(fileSize, currentPosition + n);
+
+        if (window != null && newPosition < windowStartPosition + window.limit()) {
+            window.position((int) (newPosition - windowStartPosition));
+        } else {
+            // Force the next read to map a new window starting at the new position
+            window = null;
+            windowStartPosition = newPosition;
+        }
+
+        return newPosition - currentPosition;
+    }
+
+    @Override
+    public int available() {
+        return (int) Math.min(Integer.MAX_VALUE, fileSize - getPosition());
+    }
+
+    @Override
+    public void close() throws IOException {
+        window = null;
+        fileChannel.close();
+    }
+
+    private long getPosition() {
+        return window == null ? windowStartPosition : windowStartPosition + window.position();
+    }
+
+    private boolean ensureWindowHasRemaining() throws IOException {
+        if (window != null && window.hasRemaining()) {
+            return true;
+        }
+
+        long nextWindowStartPosition = getPosition();
+
+        if (nextWindowStartPosition >= fileSize) {
+            return false;
+        }
+
+        long mappingSize = Math.min(windowSizeInBytes, fileSize - nextWindowStartPosition);
+        window = fileChannel.map(FileChannel.MapMode.READ_ONLY, nextWindowStartPosition, mappingSize);
+        windowStartPosition = nextWindowStartPosition;
+        return true;
+    }
+}
@@ -0,0 +1,245 @@
+/*
+ *   Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package com.amazon.pocketEtl.extractor;
+
+import static org.apache.logging.log4j.LogManager.getLogger;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.logging.log4j.Logger;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectReader;
+
+/**
+ * Implementation of InputStreamMapper that takes an InputStream with newline delimited JSON (NDJSON, also known as
+ * JSON-lines) data in it and creates an iterator around that data. Each line of the stream is expected to hold exactly
+ * one JSON object.
+ *
+ * Powered by Jackson and shares its configuration with JSONStringMapper, so the same Jackson annotations, date handling
+ * and case-insensitive property matching apply. The stream is parsed directly from its bytes, no intermediate String
+ * is built for each line.
+ *
+ * By default any malformed line will cause the iterator to throw an exception which will abort the stream. If the
+ * mapper is put into error-tolerant mode then malformed lines are logged, counted and skipped instead. In this mode a
+ * line with anything other than whitespace after its JSON object, including a second object, counts as malformed.
+ *
+ * Example usage:
+ * InputStreamExtractor.of(myInputStreamSupplier, NdJsonInputStreamMapper.of(My.class).withErrorTolerance(true));
+ *
+ * @param <T> The type of object the JSON data is being mapped to.
+ */
+@SuppressWarnings("WeakerAccess")
+public class NdJsonInputStreamMapper<T> implements InputStreamMapper<T> {
+    private static final Logger logger = getLogger(NdJsonInputStreamMapper.class);
+    private static final int READ_BUFFER_SIZE_IN_BYTES = 64 * 1024;
+    private static final int INITIAL_LINE_BUFFER_SIZE_IN_BYTES = 1024;
+
+    private final ObjectReader objectReader;
+    private final ObjectReader lineReader;
+    private final boolean isErrorTolerant;
+    private final AtomicLong malformedLineCount = new AtomicLong(0);
+
+    /**
+     * Convert an InputStream containing newline delimited JSON data to an iterator. Used by InputStreamExtractor.
+     *
+     * @param objectClassToMapTo Class definition to map the JSON data into.
+     * @param <T>                Type of object being iterated over.
+     * @return A function that converts an inputStream to an iterator.
+     */
+    public static <T> NdJsonInputStreamMapper<T> of(Class<T> objectClassToMapTo) {
+        return new NdJsonInputStreamMapper<>(JSONStringMapper.objectMapper.readerFor(objectClassToMapTo), false);
+    }
+
+    /**
+     * Change how the mapper reacts to lines that cannot be parsed or mapped. By default a malformed line will cause
+     * an exception to be thrown by the iterator. When error tolerance is switched on, malformed lines will be skipped
+     * and counted instead, see getMalformedLineCount().
+     * @param isErrorTolerant True to skip malformed lines; false to throw an exception.
+     * @return A copy of this object with this property changed.
+     */
+    public NdJsonInputStreamMapper<T> withErrorTolerance(boolean isErrorTolerant) {
+        return new NdJsonInputStreamMapper<>(objectReader, isErrorTolerant);
+    }
+
+    /**
+     * Get the number of malformed lines that have been skipped by iterators created by this mapper. This will always
+     * be zero unless error tolerance has been switched on.
+     * @return Count of skipped lines.
+     */
+    public long getMalformedLineCount() {
+        return malformedLineCount.get();
+    }
+
+    /**
+     * Converts an inputStream into an iterator of objects using Jackson's streaming parser.
+     * @param inputStream inputStream in NDJSON format.
+     * @return An iterator based on the inputStream.
+     */
+    @Override
+    public Iterator<T> apply(InputStream inputStream) {
+        if (isErrorTolerant) {
+            return new ErrorTolerantLineIterator(inputStream);
+        }
+
+        try {
+            // Jackson natively handles root-level values separated by whitespace, which covers NDJSON.
+            return objectReader.readValues(inputStream);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private NdJsonInputStreamMapper(ObjectReader objectReader, boolean isErrorTolerant) {
+        this.objectReader = objectReader;
+        // Reading a single value from a line ignores anything after it unless told otherwise
+        this.lineReader = objectReader.with(DeserializationFeature.FAIL_ON_TRAILING_TOKENS);
+        this.isErrorTolerant = isErrorTolerant;
+    }
+
+    /**
+     * Frames the stream into lines in a reusable byte buffer and maps each line independently so that a malformed
+     * line can be discarded without losing the position of the parser in the stream.
+     */
+    private class ErrorTolerantLineIterator implements Iterator<T> {
+        private final InputStream inputStream;
+        private final byte[] readBuffer = new byte[READ_BUFFER_SIZE_IN_BYTES];
+        private byte[] lineBuffer = new byte[INITIAL_LINE_BUFFER_SIZE_IN_BYTES];
+        private int readPosition = 0;
+        private int readLimit = 0;
+        private long lineNumber = 0;
+        private boolean isEndOfStream = false;
+        private T nextObject = null;
+
+        ErrorTolerantLineIterator(InputStream inputStream) {
+            this.inputStream = inputStream;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (nextObject == null) {
+                int lineLength = readLine();
+
+                if (lineLength < 0) {
+                    return false;
+                }
+
+                if (isBlank(lineLength)) {
+                    continue;
+                }
+
+                try {
+                    nextObject = lineReader.readValue(lineBuffer, 0, lineLength);
+                } catch (IOException e) {
+                    malformedLineCount.incrementAndGet();
+                    logger.warn("Skipping malformed JSON on line {}: ", lineNumber, e);
+                }
+            }
+
+            return true;
+        }
+
+        @Override
+        public T next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+
+            T result = nextObject;
+            nextObject = null;
+            return result;
+        }
+
+        // Copies the next line into lineBuffer and returns its length, or -1 if the end of the stream has been reached.
+        private int readLine() {
+            int lineLength = 0;
+            boolean hasReadAnything = false;
+
+            while (true) {
+                if (readPosition >= readLimit && !fillReadBuffer()) {
+                    return hasReadAnything ? lineLength : -1;
+                }
+
+                hasReadAnything = true;
+                int lineStart = readPosition;
+
+                while (readPosition < readLimit && readBuffer[readPosition] != '\n') {
+                    readPosition++;
+                }
+
+                lineLength = appendToLineBuffer(lineStart, readPosition - lineStart, lineLength);
+
+                if (readPosition < readLimit) {
+                    // Consume the newline
+                    readPosition++;
+                    lineNumber++;
+                    return lineLength;
+                }
+            }
+        }
+
+        private boolean fillReadBuffer() {
+            if (isEndOfStream) {
+                return false;
+            }
+
+            try {
+                int bytesRead = inputStream.read(readBuffer);
+
+                if (bytesRead < 0) {
+                    isEndOfStream = true;
+                    lineNumber++;
+                    return false;
+                }
+
+                readPosition = 0;
+                readLimit = bytesRead;
+                return true;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private int appendToLineBuffer(int offset, int length, int lineLength) {
+            int newLineLength = lineLength + length;
+
+            if (newLineLength > lineBuffer.length) {
+                lineBuffer = Arrays.copyOf(lineBuffer, Math.max(newLineLength, lineBuffer.length * 2));
+            }
+
+            System.arraycopy(readBuffer, offset, lineBuffer, lineLength, length);
+            return newLineLength;
+        }
+
+        private boolean isBlank(int lineLength) {
+            for (int i = 0; i < lineLength; i++) {
+                byte b = lineBuffer[i];
+
+                if (b != ' ' && b != '\t' && b != '\r') {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+    }
+}
@@ -0,0 +1,445 @@
+/*
+ *   Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package com.amazon.pocketEtl.extractor;
+
+import static org.apache.logging.log4j.LogManager.getLogger;
+
+import java.math.BigInteger;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+
+import javax.annotation.Nullable;
+import javax.sql.DataSource;
+
+import org.apache.logging.log4j.Logger;
+import org.joda.time.DateTime;
+import org.skife.jdbi.v2.Handle;
+
+import com.amazon.pocketEtl.EtlMetrics;
+import com.amazon.pocketEtl.EtlProfilingScope;
+import com.amazon.pocketEtl.Extractor;
+import com.amazon.pocketEtl.exception.UnrecoverableStreamFailureException;
+import com.amazon.pocketEtl.integration.db.jdbi.EtlJdbi;
+import com.amazon.pocketEtl.integration.db.jdbi.StatementCache;
+
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * An implementation of Extractor that splits a single SQL query into a number of range-bounded partitions on a
+ * numeric or timestamp column and runs a query for each partition concurrently, each on its own connection from the
+ * same JDBC datasource. Used in place of SqlExtractor when extracting large tables, where the extraction would
+ * otherwise be limited by the rate a single connection can fetch rows.
+ *
+ * The range between the lower and upper bounds is divided into partitions of equal width. The bounds only determine
+ * where the partitions are split; every row returned by the query is extracted exactly once, including rows that fall
+ * outside the bounds and rows where the split column is null. If bounds are not provided they will be discovered by
+ * querying the MIN and MAX of the split column when the extractor is opened.
+ *
+ * The query is wrapped as a sub-query, so the split column must be one of the columns it returns. SQL parameters
+ * work in the same way as SqlExtractor, see that class for details.
+ *
+ * Objects extracted from the same partition are returned in the order the query returned them, but objects from
+ * different partitions will be interleaved in no particular order.
+ *
+ * Example usage:
+ * PartitionedSqlExtractor.of(dataSource, "SELECT * FROM orders", Order.class, "order_id").withPartitions(8);
+ *
+ * @param <T> Type of object that is extracted from the datasource.
+ */
+@SuppressWarnings("WeakerAccess")
+@RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+public class PartitionedSqlExtractor<T> implements Extractor<T> {
+    private final static Logger logger = getLogger(PartitionedSqlExtractor.class);
+    private final static int DEFAULT_NUMBER_OF_PARTITIONS = 4;
+    private final static int DEFAULT_BUFFER_SIZE = 1000;
+    private final static String LOWER_BOUND_PARAMETER = "partitionLowerBound";
+    private final static String UPPER_BOUND_PARAMETER = "partitionUpperBound";
+
+    private final String extractSql;
+    private final Class<T> extractClass;
+    private final DataSource dataSource;
+    private final String splitColumn;
+    private final Integer numberOfPartitions;
+    private final Long lowerBound;
+    private final Long upperBound;
+    private final boolean isTimestampSplitColumn;
+    private final Integer bufferSize;
+    private final Map<String, ?> extractSqlParameters;
+    private final BiConsumer<T, Map.Entry<String, String>> unknownPropertyMapper;
+    private final StatementCache statementCache;
+
+    private ReadAheadBuffer<T> buffer = null;
+    private ExecutorService executorService = null;
+    private EtlMetrics parentMetrics = null;
+    private volatile boolean isClosed = false;
+
+    /**
+     * Static constructor method to build a functioning extractor that splits a query on a numeric or timestamp column.
+     * @param dataSource The JDBC datasource to extract from; one connection per partition will be used.
+     * @param extractSql The SQL query to be partitioned.
+     * @param extractClass The class of object to map each row to.
+     * @param splitColumn The name of a numeric or timestamp column returned by the query to partition on. An indexed
+     *                    column with evenly distributed values will give the best results.
+     * @param <T> The type of object being extracted.
+     * @return A functioning extractor.
+     */
+    public static <T> PartitionedSqlExtractor<T> of(DataSource dataSource, String extractSql, Class<T> extractClass,
+                                                    String splitColumn) {
+        return new PartitionedSqlExtractor<>(extractSql, extractClass, dataSource, splitColumn, null, null, null,
+                false, null, null, null, null);
+    }
+
+    /**
+     * Optional: The number of partitions to split the query into, which is also the number of queries that will be
+     * run concurrently. The default is 4.
+     * @param numberOfPartitions Number of partitions.
+     * @return A copy of this extractor with this property modified.
+     */
+    public PartitionedSqlExtractor<T> withPartitions(int numberOfPartitions) {
+        return new PartitionedSqlExtractor<>(extractSql, extractClass, dataSource, splitColumn, numberOfPartitions,
+                lowerBound, upperBound, isTimestampSplitColumn, bufferSize, extractSqlParameters,
+                unknownPropertyMapper, statementCache);
+    }
+
+    /**
+     * Optional: The range of a numeric split column to divide into partitions. If not set, the range will be
+     * discovered using MIN and MAX.
+     * @param lowerBound The lowest value to partition on.
+     * @param upperBound The highest value to partition on.
+     * @return A copy of this extractor with this property modified.
+     */
+    public PartitionedSqlExtractor<T> withBounds(long lowerBound, long upperBound) {
+        return new PartitionedSqlExtractor<>(extractSql, extractClass, dataSource, splitColumn, numberOfPartitions,
+                lowerBound, upperBound, false, bufferSize, extractSqlParameters, unknownPropertyMapper,
+                statementCache);
+    }
+
+    /**
+     * Optional: The range of a timestamp split column to divide into partitions. If not set, the range will be
+     * discovered using MIN and MAX.
+     * @param lowerBound The earliest time to partition on.
+     * @param upperBound The latest time to partition on.
+     * @return A copy of this extractor with this property modified.
+     */
+    public PartitionedSqlExtractor<T> withBounds(DateTime lowerBound, DateTime upperBound) {
+        return new PartitionedSqlExtractor<>(extractSql, extractClass, dataSource, splitColumn, numberOfPartitions,
+                lowerBound.getMillis(), upperBound.getMillis(), true, bufferSize, extractSqlParameters,
+                unknownPropertyMapper, statementCache);
+    }
+
+    /**
+     * Optional: The maximum number of extracted objects that will be held waiting for next() to be called before the
+     * partition queries stop fetching rows. The default is 1000.
+     * @param bufferSize Maximum number of buffered objects.
+     * @return A copy of this extractor with this property modified.
+     */
+    public PartitionedSqlExtractor<T> withBufferSize(int bufferSize) {
+        return new PartitionedSqlExtractor<>(extractSql, extractClass, dataSource, splitColumn, numberOfPartitions,
+                lowerBound, upperBound, isTimestampSplitColumn, bufferSize, extractSqlParameters,
+                unknownPropertyMapper, statementCache);
+    }
+
+    public PartitionedSqlExtractor<T> withSqlParameters(Map<String, ?> extractSqlParameters) {
+        return new PartitionedSqlExtractor<>(extractSql, extractClass, dataSource, splitColumn, numberOfPartitions,
+                lowerBound, upperBound, isTimestampSplitColumn, bufferSize, extractSqlParameters,
+                unknownPropertyMapper, statementCache);
+    }
+
+    public PartitionedSqlExtractor<T> withUnknownPropertyMapper(
+            BiConsumer<T, Map.Entry<String, String>> unknownPropertyMapper) {
+        return new PartitionedSqlExtractor<>(extractSql, extractClass, dataSource, splitColumn, numberOfPartitions,
+                lowerBound, upperBound, isTimestampSplitColumn, bufferSize, extractSqlParameters,
+                unknownPropertyMapper, statementCache);
+    }
+
+    /**
+     * Optional: Run the bounds and partition queries on handles borrowed from a statement cache, so that the statements
+     * they prepare are re-used by the next extractor to run the same SQL with the same cache. Partitions run at the same
+     * time, so each one borrows its own handle. The cache must be for the same datasource. See StatementCache for
+     * details.
+     * @param statementCache The statement cache to borrow handles from.
+     * @return A copy of this extractor with this property modified.
+     */
+    public PartitionedSqlExtractor<T> withStatementCache(StatementCache statementCache) {
+        return new PartitionedSqlExtractor<>(extractSql, extractClass, dataSource, splitColumn, numberOfPartitions,
+                lowerBound, upperBound, isTimestampSplitColumn, bufferSize, extractSqlParameters,
+                unknownPropertyMapper, statementCache);
+    }
+
+    /**
+     * Discovers the bounds of the split column if required and starts running the partition queries in the background.
+     * @param parentMetrics A parent EtlMetrics object to record all timers and counters into, will be null if
+     *                      profiling is not required.
+     */
+    @Override
+    public void open(@Nullable EtlMetrics parentMetrics) {
+        this.parentMetrics = parentMetrics;
+
+        List<SqlExtractor<T>> partitionExtractors = createPartitionExtractors();
+
+        buffer = new ReadAheadBuffer<>(bufferSize == null ? DEFAULT_BUFFER_SIZE : bufferSize, parentMetrics,
+                "PartitionedSqlExtractor.bufferOccupancy");
+        executorService = Executors.newFixedThreadPool(partitionExtractors.size());
+        AtomicInteger remainingPartitions = new AtomicInteger(partitionExtractors.size());
+
+        partitionExtractors.forEach(partitionExtractor -> executorService.submit(() -> {
+            try {
+                extractPartition(partitionExtractor);
+            } catch (InterruptedException ignored) {
+                // The extractor has been closed
+                return;
+            } catch (Throwable e) {
+                // Only Errors get this far, but next() would wait forever if nothing was passed on for them
+                if (!isClosed) {
+                    logger.error("Error thrown extracting partition: ", e);
+                    buffer.offerQuietly(ExtractedElement.failure(new UnrecoverableStreamFailureException(e)));
+                }
+
+                return;
+            }
+
+            if (remainingPartitions.decrementAndGet() == 0) {
+                buffer.offerQuietly(ExtractedElement.endOfStream());
+            }
+        }));
+
+        executorService.shutdown();
+    }
+
+    /**
+     * Extract the next object from any of the partitions. Blocks until an object is available.
+     *
+     * @return The next object or empty if every partition has been completely extracted.
+     * @throws UnrecoverableStreamFailureException An unrecoverable problem that affects the entire stream has been
+     *                                             detected and the stream needs to be aborted.
+     */
+    @Override
+    public Optional<T> next() throws UnrecoverableStreamFailureException {
+        if (isClosed) {
+            IllegalStateException e = new IllegalStateException("Attempt to use extractor that has been closed");
+            logger.error("Error inside extractor: ", e);
+            throw e;
+        }
+
+        if (buffer == null) {
+            throw new IllegalStateException("Attempt to extract from an uninitialized extractor");
+        }
+
+        return buffer.take("Interrupted waiting for partitions to be extracted");
+    }
+
+    /**
+     * Stops any partition queries that are still running and frees up the connections and threads they were using.
+     *
+     * @throws Exception If something goes wrong.
+     */
+    @Override
+    public void close() throws Exception {
+        isClosed = true;
+
+        try (EtlProfilingScope ignored = new EtlProfilingScope(parentMetrics, "PartitionedSqlExtractor.close")) {
+            if (buffer != null) {
+                buffer.close();
+            }
+
+            if (executorService != null) {
+                executorService.shutdownNow();
+                executorService.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+            }
+        }
+    }
+
+    private List<SqlExtractor<T>> createPartitionExtractors() {
+        Long lower = lowerBound;
+        Long upper = upperBound;
+        boolean isTimestamp = isTimestampSplitColumn;
+
+        if (lower == null || upper == null) {
+            Bounds discoveredBounds = discoverBounds();
+
+            if (discoveredBounds == null) {
+                // The query returned no non-null values for the split column, so there is nothing to partition
+                return createPartitionExtractors(new ArrayList<>(), false);
+            }
+
+            lower = discoveredBounds.lower;
+            upper = discoveredBounds.upper;
+            isTimestamp = discoveredBounds.isTimestamp;
+        }
+
+        if (lower > upper) {
+            throw new IllegalArgumentException("Lower bound of split column cannot be greater than upper bound");
+        }
+
+        // TreeSet removes duplicate split points when there are more partitions than values in the range
+        TreeSet<Long> splitPoints = new TreeSet<>();
+        int partitions = numberOfPartitions == null ? DEFAULT_NUMBER_OF_PARTITIONS : numberOfPartitions;
+        BigInteger range = BigInteger.valueOf(upper).subtract(BigInteger.valueOf(lower));
+
+        for (int i = 1; i < partitions; i++) {
+            splitPoints.add(BigInteger.valueOf(lower)
+                    .add(range.multiply(BigInteger.valueOf(i)).divide(BigInteger.valueOf(partitions)))
+                    .longValueExact());
+        }
+
+        splitPoints.remove(lower);
+        return createPartitionExtractors(new ArrayList<>(splitPoints), isTimestamp);
+    }
+
+    // Each partition covers [previous split point, next split point); the first partition is unbounded below and also
+    // picks up rows where the split column is null, the last partition is unbounded above.
+    private List<SqlExtractor<T>> createPartitionExtractors(List<Long> splitPoints, boolean isTimestamp) {
+        List<SqlExtractor<T>> partitionExtractors = new ArrayList<>();
+
+        if (splitPoints.isEmpty()) {
+            partitionExtractors.add(createPartitionExtractor(extractSql, new HashMap<>()));
+            return partitionExtractors;
+        }
+
+        for (int i = 0; i <= splitPoints.size(); i++) {
+            Map<String, Object> parameters = new HashMap<>();
+            String condition;
+
+            if (i == 0) {
+                condition = splitColumn + " < #" + UPPER_BOUND_PARAMETER + " OR " + splitColumn + " IS NULL";
+                parameters.put(UPPER_BOUND_PARAMETER, toSqlValue(splitPoints.get(i), isTimestamp));
+            } else if (i == splitPoints.size()) {
+                condition = splitColumn + " >= #" + LOWER_BOUND_PARAMETER;
+                parameters.put(LOWER_BOUND_PARAMETER, toSqlValue(splitPoints.get(i - 1), isTimestamp));
+            } else {
+                condition = splitColumn + " >= #" + LOWER_BOUND_PARAMETER + " AND " + splitColumn + " < #" +
+                        UPPER_BOUND_PARAMETER;
+                parameters.put(LOWER_BOUND_PARAMETER, toSqlValue(splitPoints.get(i - 1), isTimestamp));
+                parameters.put(UPPER_BOUND_PARAMETER, toSqlValue(splitPoints.get(i), isTimestamp));
+            }
+
+            String partitionSql = "SELECT * FROM (" + extractSql + ") partitioned_extract WHERE " + condition;
+            partitionExtractors.add(createPartitionExtractor(partitionSql, parameters));
+        }
+
+        return partitionExtractors;
+    }
+
+    private SqlExtractor<T> createPartitionExtractor(String partitionSql, Map<String, Object> partitionParameters) {
+        if (extractSqlParameters != null) {
+            partitionParameters.putAll(extractSqlParameters);
+        }
+
+        return SqlExtractor.of(dataSource, partitionSql, extractClass)
+                .withSqlParameters(partitionParameters)
+                .withUnknownPropertyMapper(unknownPropertyMapper)
+                .withStatementCache(statementCache);
+    }
+
+    private Bounds discoverBounds() {
+        String boundsSql = "SELECT MIN(" + splitColumn + "), MAX(" + splitColumn + ") FROM (" + extractSql +
+                ") partitioned_extract";
+
+        Handle handle = statementCache == null ? EtlJdbi.getDBI(dataSource, null).open() :
+                statementCache.borrowHandle();
+
+        try (EtlProfilingScope ignored = new EtlProfilingScope(parentMetrics, "PartitionedSqlExtractor.discoverBounds")) {
+            return handle.createQuery(boundsSql)
+                    .bindFromMap(extractSqlParameters)
+                    .map((index, resultSet, context) -> Bounds.of(resultSet.getObject(1), resultSet.getObject(2)))
+                    .first();
+        } finally {
+            if (statementCache == null) {
+                handle.close();
+            } else {
+                statementCache.returnHandle(handle);
+            }
+        }
+    }
+
+    private void extractPartition(SqlExtractor<T> partitionExtractor) throws InterruptedException {
+        try (EtlProfilingScope scope = new EtlProfilingScope(parentMetrics, "PartitionedSqlExtractor.extractPartition")) {
+            try {
+                partitionExtractor.open(parentMetrics);
+
+                while (!isClosed) {
+                    try {
+                        Optional<T> next = partitionExtractor.next();
+
+                        if (!next.isPresent()) {
+                            break;
+                        }
+
+                        buffer.offer(ExtractedElement.of(next.get()));
+                    } catch (UnrecoverableStreamFailureException e) {
+                        throw e;
+                    } catch (RuntimeException e) {
+                        // A single row could not be mapped; pass the exception on and carry on extracting
+                        buffer.offer(ExtractedElement.failure(e));
+                    }
+                }
+
+                scope.addCounter("PartitionedSqlExtractor.partitionsExtracted", 1);
+            } catch (RuntimeException e) {
+                if (!isClosed) {
+                    logger.error("Exception thrown extracting partition: ", e);
+                    buffer.offer(ExtractedElement.failure(e instanceof UnrecoverableStreamFailureException ?
+                            e : new UnrecoverableStreamFailureException(e)));
+                }
+            } finally {
+                try {
+                    partitionExtractor.close();
+                } catch (Exception e) {
+                    logger.warn("Exception thrown closing partition extractor: ", e);
+                }
+            }
+        }
+    }
+
+    private static Object toSqlValue(long value, boolean isTimestamp) {
+        return isTimestamp ? new Timestamp(value) : value;
+    }
+
+    @RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+    private static class Bounds {
+        private final long lower;
+        private final long upper;
+        private final boolean isTimestamp;
+
+        static Bounds of(Object lower, Object upper) {
+            if (lower == null || upper == null) {
+                return null;
+            }
+
+            if (lower instanceof java.util.Date && upper instanceof java.util.Date) {
+                return new Bounds(((java.util.Date) lower).getTime(), ((java.util.Date) upper).getTime(), true);
+            }
+
+            if (lower instanceof Number && upper instanceof Number) {
+                return new Bounds(((Number) lower).longValue(), ((Number) upper).longValue(), false);
+            }
+
+            throw new UnrecoverableStreamFailureException("Split column must be numeric or a timestamp, found: " +
+                    lower.getClass().getName());
+        }
+    }
+}
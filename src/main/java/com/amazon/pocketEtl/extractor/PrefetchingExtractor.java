@@ -0,0 +1,177 @@
+/*
+ *   Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package com.amazon.pocketEtl.extractor;
+
+import static org.apache.logging.log4j.LogManager.getLogger;
+
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nullable;
+
+import org.apache.logging.log4j.Logger;
+
+import com.amazon.pocketEtl.EtlMetrics;
+import com.amazon.pocketEtl.EtlProfilingScope;
+import com.amazon.pocketEtl.Extractor;
+import com.amazon.pocketEtl.exception.UnrecoverableStreamFailureException;
+
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Extractor implementation that wraps another extractor and reads ahead of it on a background thread, holding the
+ * objects it extracts in a bounded buffer until next() is called. This decouples a slow extractor (for instance one
+ * that blocks on network I/O) from the rest of the ETL stream so that extraction can continue whilst downstream
+ * steps are busy, and downstream steps don't sit idle whilst the extractor waits on I/O.
+ *
+ * Objects are returned by next() in exactly the same order they were extracted by the wrapped extractor. Any exception
+ * thrown by the wrapped extractor is re-thrown by next() in its place in the stream; an
+ * UnrecoverableStreamFailureException will also stop any further reading ahead.
+ *
+ * The wrapped extractor is opened, read and closed from different threads, but never concurrently.
+ *
+ * Example usage:
+ * PrefetchingExtractor.of(SqsExtractor.of(queueUrl, JSONStringMapper.of(My.class))).withBufferSize(500);
+ *
+ * @param <T> Type of object being extracted.
+ */
+@SuppressWarnings("WeakerAccess")
+@RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+public class PrefetchingExtractor<T> implements Extractor<T> {
+    private static final Logger logger = getLogger(PrefetchingExtractor.class);
+    private static final int DEFAULT_BUFFER_SIZE = 1000;
+
+    private final Extractor<T> extractor;
+    private final Integer bufferSize;
+
+    private ReadAheadBuffer<T> buffer = null;
+    private ExecutorService executorService = null;
+    private EtlMetrics parentMetrics = null;
+    private volatile boolean isClosed = false;
+
+    /**
+     * Static constructor method to wrap an existing extractor so that it is read ahead of next() being called.
+     * @param extractor The extractor to read ahead of.
+     * @param <T> The type of object being extracted.
+     * @return A functioning extractor.
+     */
+    public static <T> PrefetchingExtractor<T> of(Extractor<T> extractor) {
+        return new PrefetchingExtractor<>(extractor, null);
+    }
+
+    /**
+     * Optional: The maximum number of extracted objects that will be held waiting for next() to be called before
+     * reading ahead is paused. The default is 1000.
+     * @param bufferSize Maximum number of buffered objects.
+     * @return A copy of this extractor with this property modified.
+     */
+    public PrefetchingExtractor<T> withBufferSize(int bufferSize) {
+        return new PrefetchingExtractor<>(extractor, bufferSize);
+    }
+
+    /**
+     * Opens the wrapped extractor and starts reading ahead of it in the background.
+     * @param parentMetrics A parent EtlMetrics object to record all timers and counters into, will be null if
+     *                      profiling is not required.
+     */
+    @Override
+    public void open(@Nullable EtlMetrics parentMetrics) {
+        this.parentMetrics = parentMetrics;
+        extractor.open(parentMetrics);
+
+        buffer = new ReadAheadBuffer<>(bufferSize == null ? DEFAULT_BUFFER_SIZE : bufferSize, parentMetrics,
+                "PrefetchingExtractor.bufferOccupancy");
+        executorService = Executors.newSingleThreadExecutor();
+        executorService.submit(this::prefetch);
+        executorService.shutdown();
+    }
+
+    /**
+     * Returns the next object extracted by the wrapped extractor. Blocks until an object is available.
+     * @return The next extracted object or an empty optional if the wrapped extractor has been exhausted.
+     * @throws UnrecoverableStreamFailureException If the wrapped extractor threw an unrecoverable exception.
+     */
+    @Override
+    public Optional<T> next() throws UnrecoverableStreamFailureException {
+        if (isClosed) {
+            IllegalStateException e = new IllegalStateException("Attempt to use extractor that has been closed");
+            logger.error("Error inside extractor: ", e);
+            throw e;
+        }
+
+        if (buffer == null) {
+            throw new IllegalStateException("Attempt to call next() on an uninitialized extractor");
+        }
+
+        try (EtlProfilingScope ignored = new EtlProfilingScope(parentMetrics, "PrefetchingExtractor.next")) {
+            return buffer.take("Interrupted waiting for wrapped extractor");
+        }
+    }
+
+    /**
+     * Stops reading ahead, waits for any call to the wrapped extractor that is in progress to complete and then closes
+     * the wrapped extractor.
+     * @throws Exception If something goes wrong.
+     */
+    @Override
+    public void close() throws Exception {
+        isClosed = true;
+
+        if (buffer != null) {
+            buffer.close();
+        }
+
+        if (executorService != null) {
+            executorService.shutdownNow();
+            executorService.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        }
+
+        extractor.close();
+    }
+
+    private void prefetch() {
+        try {
+            while (!isClosed) {
+                try {
+                    Optional<T> next = extractor.next();
+
+                    if (!next.isPresent()) {
+                        buffer.offer(ExtractedElement.endOfStream());
+                        return;
+                    }
+
+                    buffer.offer(ExtractedElement.of(next.get()));
+                } catch (UnrecoverableStreamFailureException e) {
+                    buffer.offer(ExtractedElement.failure(e));
+                    return;
+                } catch (RuntimeException e) {
+                    buffer.offer(ExtractedElement.failure(e));
+                }
+            }
+        } catch (InterruptedException ignored) {
+            // The extractor has been closed
+        } catch (Throwable e) {
+            // Only Errors get this far, but next() would wait forever if nothing was passed on for them
+            if (!isClosed) {
+                logger.error("Error thrown by wrapped extractor: ", e);
+                buffer.offerQuietly(ExtractedElement.failure(new UnrecoverableStreamFailureException(e)));
+            }
+        }
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ *   Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package com.amazon.pocketEtl.extractor;
+
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nullable;
+
+import com.amazon.pocketEtl.EtlMetrics;
+import com.amazon.pocketEtl.exception.UnrecoverableStreamFailureException;
+
+/**
+ * A bounded buffer of ExtractedElements that background threads fill ahead of next() being called on an extractor.
+ * Shared by the extractors that read ahead, such as FileExtractor and PrefetchingExtractor.
+ *
+ * Offering an element blocks whilst the buffer is full, but gives up as soon as the buffer is closed so that a
+ * background thread is never left waiting for room that will not come. Elements are taken by a single thread; a
+ * failure that is an UnrecoverableStreamFailureException or the end of the stream marker exhausts the buffer, any
+ * other failure is re-thrown in its place and taking carries on. The number of elements waiting in the buffer is
+ * sampled into metrics every so often as elements are taken.
+ * @param <T> The type of object being extracted.
+ */
+class ReadAheadBuffer<T> {
+    private static final long OFFER_TIMEOUT_IN_MILLISECONDS = 100;
+    private static final int OCCUPANCY_SAMPLE_INTERVAL = 100;
+
+    private final BlockingQueue<ExtractedElement<T>> queue;
+    private final EtlMetrics parentMetrics;
+    private final String occupancyMetricName;
+
+    private volatile boolean isClosed = false;
+    private boolean isExhausted = false;
+    private long elementsTaken = 0;
+
+    /**
+     * Create an empty buffer.
+     * @param capacity The maximum number of elements the buffer will hold.
+     * @param parentMetrics A parent EtlMetrics object to sample the occupancy of the buffer into, or null if profiling
+     *                      is not required.
+     * @param occupancyMetricName The name of the counter the occupancy of the buffer is sampled into.
+     */
+    ReadAheadBuffer(int capacity, @Nullable EtlMetrics parentMetrics, String occupancyMetricName) {
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.parentMetrics = parentMetrics;
+        this.occupancyMetricName = occupancyMetricName;
+    }
+
+    /**
+     * Adds an element to the buffer, blocking until there is room for it. If the buffer is closed whilst waiting the
+     * element is discarded.
+     * @param element The element to add.
+     * @throws InterruptedException If the thread was interrupted whilst waiting for room.
+     */
+    void offer(ExtractedElement<T> element) throws InterruptedException {
+        while (!isClosed) {
+            if (queue.offer(element, OFFER_TIMEOUT_IN_MILLISECONDS, TimeUnit.MILLISECONDS)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Adds an element to the buffer in the same way as offer(), but treats being interrupted the same way as the buffer
+     * being closed.
+     * @param element The element to add.
+     */
+    void offerQuietly(ExtractedElement<T> element) {
+        try {
+            offer(element);
+        } catch (InterruptedException ignored) {
+            // The extractor has been closed
+        }
+    }
+
+    /**
+     * Takes the next element from the buffer, blocking until one is available.
+     * @param interruptedMessage The message to use if the thread is interrupted whilst waiting.
+     * @return The value of the next element or an empty optional if the end of the stream has been reached.
+     * @throws UnrecoverableStreamFailureException If the thread was interrupted or the failure held by the next
+     * element was unrecoverable.
+     * @throws RuntimeException The failure held by the next element, if there was one.
+     */
+    Optional<T> take(String interruptedMessage) throws UnrecoverableStreamFailureException {
+        if (isExhausted) {
+            return Optional.empty();
+        }
+
+        if (parentMetrics != null && elementsTaken++ % OCCUPANCY_SAMPLE_INTERVAL == 0) {
+            parentMetrics.addCount(occupancyMetricName, queue.size());
+        }
+
+        ExtractedElement<T> element;
+
+        try {
+            element = queue.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new UnrecoverableStreamFailureException(interruptedMessage, e);
+        }
+
+        if (element.getFailure() != null) {
+            if (element.getFailure() instanceof UnrecoverableStreamFailureException) {
+                isExhausted = true;
+            }
+
+            throw (RuntimeException) element.getFailure();
+        }
+
+        if (element.isEndOfStream()) {
+            isExhausted = true;
+            return Optional.empty();
+        }
+
+        return Optional.of(element.getValue());
+    }
+
+    /**
+     * Stops any further elements being added to the buffer and discards the elements it holds.
+     */
+    void close() {
+        isClosed = true;
+        queue.clear();
+    }
+}
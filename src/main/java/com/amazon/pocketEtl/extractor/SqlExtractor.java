@@ -17,6 +17,8 @@ package com.amazon.pocketEtl.extractor;
 
 import static org.apache.logging.log4j.LogManager.getLogger;
 
+import java.sql.Connection;
+import java.sql.SQLException;
 import java.util.Map;
 import java.util.Optional;
 import java.util.function.BiConsumer;
@@ -26,6 +28,7 @@ import javax.sql.DataSource;
 import org.apache.logging.log4j.Logger;
 import org.skife.jdbi.v2.DBI;
 import org.skife.jdbi.v2.Handle;
+import org.skife.jdbi.v2.Query;
 import org.skife.jdbi.v2.ResultIterator;
 
 import com.amazon.pocketEtl.EtlMetrics;
@@ -33,6 +36,7 @@ import com.amazon.pocketEtl.EtlProfilingScope;
 import com.amazon.pocketEtl.Extractor;
 import com.amazon.pocketEtl.exception.UnrecoverableStreamFailureException;
 import com.amazon.pocketEtl.integration.db.jdbi.EtlJdbi;
+import com.amazon.pocketEtl.integration.db.jdbi.StatementCache;
 
 import lombok.AccessLevel;
 import lombok.RequiredArgsConstructor;
@@ -46,6 +50,10 @@ import lombok.RequiredArgsConstructor;
  * "SELECT columnOne FROM myTable WHERE someAttribute = #matchParameter"
  * <p>
  * For the parameter map you should pass in a map that associates a value to "matchParameter".
+ * <p>
+ * By default most JDBC drivers (including PostgreSQL and Redshift) will read the entire result set into memory before
+ * returning the first row. For large extracts set a fetch size and enable streaming cursor mode so that rows are
+ * streamed from a server-side cursor a batch at a time, keeping both time to first row and memory use constant.
  *
  * @param <T> Type of object that is extracted from the datasource.
  */
@@ -53,41 +61,105 @@ import lombok.RequiredArgsConstructor;
 @RequiredArgsConstructor(access = AccessLevel.PRIVATE)
 public class SqlExtractor<T> implements Extractor<T> {
     private final static Logger logger = getLogger(SqlExtractor.class);
+    private final static int DEFAULT_STREAMING_FETCH_SIZE = 1000;
 
     private final String extractSql;
     private final Class<T> extractClass;
     private final DataSource dataSource;
     private final Map<String, ?> extractSqlParameters;
     private final BiConsumer<T, Map.Entry<String, String>> unknownPropertyMapper;
+    private final Integer fetchSize;
+    private final boolean isStreamingCursor;
+    private final StatementCache statementCache;
 
     private boolean isClosed = false;
     private Handle handle = null;
+    private Boolean previousReadOnly = null;
     private ResultIterator<T> resultIterator = null;
     private EtlMetrics parentMetrics = null;
 
     public static <T> SqlExtractor<T> of(DataSource dataSource, String extractSql, Class<T> extractClass) {
-        return new SqlExtractor<>(extractSql, extractClass, dataSource, null, null);
+        return new SqlExtractor<>(extractSql, extractClass, dataSource, null, null, null, false, null);
     }
 
     public SqlExtractor<T> withSqlParameters(Map<String, ?> extractSqlParameters) {
-        return new SqlExtractor<>(extractSql, extractClass, dataSource, extractSqlParameters, unknownPropertyMapper);
+        return new SqlExtractor<>(extractSql, extractClass, dataSource, extractSqlParameters, unknownPropertyMapper,
+                fetchSize, isStreamingCursor, statementCache);
     }
 
     public SqlExtractor<T> withUnknownPropertyMapper(BiConsumer<T, Map.Entry<String, String>> unknownPropertyMapper) {
-        return new SqlExtractor<>(extractSql, extractClass, dataSource, extractSqlParameters, unknownPropertyMapper);
+        return new SqlExtractor<>(extractSql, extractClass, dataSource, extractSqlParameters, unknownPropertyMapper,
+                fetchSize, isStreamingCursor, statementCache);
+    }
+
+    /**
+     * Optional: A hint to the JDBC driver of how many rows to fetch from the database at a time. By default the
+     * driver's own setting is used, for PostgreSQL and Redshift this will fetch every row at once unless streaming
+     * cursor mode is also enabled.
+     * @param fetchSize Number of rows to fetch at a time.
+     * @return A copy of this extractor with this property modified.
+     */
+    public SqlExtractor<T> withFetchSize(int fetchSize) {
+        return new SqlExtractor<>(extractSql, extractClass, dataSource, extractSqlParameters, unknownPropertyMapper,
+                fetchSize, isStreamingCursor, statementCache);
+    }
+
+    /**
+     * Optional: Read the results through a forward-only, read-only cursor inside a single transaction with autocommit
+     * switched off, which is what drivers such as PostgreSQL and Redshift require before they will stream rows from
+     * a server-side cursor. The transaction is committed and the connection restored when the extractor is closed.
+     * If no fetch size has been set a default of 1000 rows will be used. Disabled by default.
+     * @param isStreamingCursor True to enable streaming cursor mode.
+     * @return A copy of this extractor with this property modified.
+     */
+    public SqlExtractor<T> withStreamingCursor(boolean isStreamingCursor) {
+        return new SqlExtractor<>(extractSql, extractClass, dataSource, extractSqlParameters, unknownPropertyMapper,
+                fetchSize, isStreamingCursor, statementCache);
+    }
+
+    /**
+     * Optional: Run the query on a handle borrowed from a statement cache, so that the statement it prepares is re-used
+     * by the next extractor to run the same SQL with the same cache. The cache must be for the same datasource. See
+     * StatementCache for details.
+     * @param statementCache The statement cache to borrow a handle from.
+     * @return A copy of this extractor with this property modified.
+     */
+    public SqlExtractor<T> withStatementCache(StatementCache statementCache) {
+        return new SqlExtractor<>(extractSql, extractClass, dataSource, extractSqlParameters, unknownPropertyMapper,
+                fetchSize, isStreamingCursor, statementCache);
     }
 
     @Override
     public void open(EtlMetrics parentMetrics) {
         this.parentMetrics = parentMetrics;
-        DBI dbi = EtlJdbi.newDBI(dataSource, unknownPropertyMapper);
-        handle = dbi.open();
+
+        if (statementCache == null) {
+            DBI dbi = EtlJdbi.getDBI(dataSource, unknownPropertyMapper);
+            handle = dbi.open();
+        } else {
+            handle = statementCache.borrowHandle();
+        }
+
+        if (isStreamingCursor) {
+            beginStreamingTransaction();
+        }
 
         try (EtlProfilingScope ignored = new EtlProfilingScope(parentMetrics, "SqlExtractor.executeQuery")) {
-            resultIterator = handle.createQuery(extractSql)
-                    .bindFromMap(extractSqlParameters)
-                    .mapTo(extractClass)
-                    .iterator();
+            Query<Map<String, Object>> unmappedQuery = handle.createQuery(extractSql).bindFromMap(extractSqlParameters);
+            Query<T> query = statementCache == null ? unmappedQuery.mapTo(extractClass) :
+                    unmappedQuery.map(statementCache.mapperFor(extractClass, unknownPropertyMapper));
+
+            if (fetchSize != null) {
+                query.setFetchSize(fetchSize);
+            } else if (isStreamingCursor) {
+                query.setFetchSize(DEFAULT_STREAMING_FETCH_SIZE);
+            }
+
+            if (isStreamingCursor) {
+                query.fetchForward();
+            }
+
+            resultIterator = query.iterator();
         }
     }
 
@@ -152,8 +224,50 @@ public class SqlExtractor<T> implements Extractor<T> {
             }
 
             if (handle != null) {
-                handle.close();
+                try {
+                    if (isStreamingCursor) {
+                        endStreamingTransaction();
+                    }
+                } finally {
+                    releaseHandle();
+                }
             }
         }
     }
+
+    // JDBI already creates statements with the JDBC default of a forward-only, read-only result set; all that is left
+    // is to mark the connection read-only and start a transaction so that the cursor survives between fetches.
+    private void beginStreamingTransaction() {
+        Connection connection = handle.getConnection();
+
+        try {
+            previousReadOnly = connection.isReadOnly();
+            connection.setReadOnly(true);
+        } catch (SQLException e) {
+            releaseHandle();
+            throw new UnrecoverableStreamFailureException("Unable to prepare connection for streaming cursor", e);
+        }
+
+        handle.begin();
+    }
+
+    private void releaseHandle() {
+        if (statementCache == null) {
+            handle.close();
+        } else {
+            statementCache.returnHandle(handle);
+        }
+
+        handle = null;
+    }
+
+    private void endStreamingTransaction() throws SQLException {
+        if (handle.isInTransaction()) {
+            handle.commit();
+        }
+
+        if (previousReadOnly != null) {
+            handle.getConnection().setReadOnly(previousReadOnly);
+        }
+    }
 }
\ No newline at end of file
@@ -23,6 +23,15 @@ import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+import java.util.function.BooleanSupplier;
 import java.util.function.Function;
 import java.util.function.Supplier;
 
@@ -46,7 +55,15 @@ import lombok.AllArgsConstructor;
 /**
  * An implementation of Extractor that uses SQS as backing store. A function that can translate string messages from the
  * queue into data objects must be provided.
- * It deletes all extracted messages from SQS on close.
+ * It deletes all extracted messages from SQS on close, using DeleteMessageBatch requests that are sent in parallel,
+ * and fails to close if any of them could not be deleted.
+ * Alternatively messages can be deleted as soon as the records extracted from them have been loaded by giving the
+ * extractor an SqsMessageAcknowledger, see {@link SqsMessageAcknowledger}.
+ *
+ * By default all the messages are received up front on a single thread, and extraction ends when the batch size limit
+ * has been reached or the queue appears to be empty. In continuous mode a number of threads each long-poll the queue
+ * and feed the messages they receive into a bounded buffer that the extractor emits messages from as soon as they
+ * arrive, and extraction only ends once a stop signal has been given and the buffer has been drained.
  *
  * Usage example:
  *
@@ -60,6 +77,9 @@ public class SqsExtractor<T> implements Extractor<T> {
     private static final int SQS_MAXIMUM_MESSAGES_PER_REQUEST = 10;
     private static final int SQS_GET_MESSAGES_MAX_RETRIES = 3;
     private static final int SQS_LONG_POLLING_PERIOD_IN_SECONDS = 20;
+    // Enough for every receiver to have one full response buffered and another in flight
+    private static final int CONTINUOUS_BUFFER_SIZE_PER_RECEIVER = SQS_MAXIMUM_MESSAGES_PER_REQUEST * 2;
+    private static final long CONTINUOUS_POLL_INTERVAL_IN_MILLISECONDS = 100;
     private static final Supplier<AmazonSQS> DEFAULT_SQS_CLIENT_BUILDER = () -> AmazonSQSClient.builder().build();
 
     private Iterator<Message> messageIterator;
@@ -69,10 +89,23 @@ public class SqsExtractor<T> implements Extractor<T> {
     private final Function<String, T> stringMapper;
     private final String queueUrl;
     private final int batchSizeLimit;
+    private final SqsMessageAcknowledger acknowledger;
+    // True if the extractor deletes every message it extracted when it is closed, rather than leaving it to a loader
+    private final boolean deletesOnClose;
+    private final BiConsumer<T, String> receiptHandleSetter;
+    private final Integer numberOfReceivers;
+    private final BooleanSupplier stopSignal;
 
     private boolean isClosed = false;
     private EtlMetrics parentMetrics = null;
 
+    // THREAD-SAFE OBJECTS: they are shared by and modified by concurrent threads
+    private BlockingQueue<Message> receivedMessages = null;
+    private final AtomicInteger activeReceivers = new AtomicInteger(0);
+    private final AtomicReference<UnrecoverableStreamFailureException> receiverFailure = new AtomicReference<>();
+    // END THREAD-SAFE
+    private ExecutorService receivers = null;
+
     /**
      * Creates a Supplier object that will construct SqlExtractor objects on demand based on supplied parameters.
      * Out of the box the extractor will use the default Amazon SQS client. This can be modified as required.
@@ -86,7 +119,7 @@ public class SqsExtractor<T> implements Extractor<T> {
      * @return A builder that be extended with additional configuration or passed as an extractor to EtlStream.
      */
     public static <T> SqsExtractorProvider<T> of(String queueUrl, Function<String, T> stringMapper) {
-        return new SqsExtractorProvider<>(null, queueUrl, stringMapper, null);
+        return new SqsExtractorProvider<>(null, queueUrl, stringMapper, null, null, null, null, null);
     }
 
     /**
@@ -100,6 +133,10 @@ public class SqsExtractor<T> implements Extractor<T> {
         private final String queueUrl;
         private final Function<String, T> stringMapper;
         private final Integer batchSizeLimit;
+        private final SqsMessageAcknowledger acknowledger;
+        private final BiConsumer<T, String> receiptHandleSetter;
+        private final Integer numberOfReceivers;
+        private final BooleanSupplier stopSignal;
 
         /**
          * Modify the AWS SQS Client object to be used with the extractor.
@@ -107,7 +144,8 @@ public class SqsExtractor<T> implements Extractor<T> {
          * @return A new SqlExtractorProvider with modified configuration.
          */
         public SqsExtractorProvider<T> withClient(AmazonSQS amazonSQS) {
-            return new SqsExtractorProvider<>(amazonSQS, queueUrl, stringMapper, batchSizeLimit);
+            return new SqsExtractorProvider<>(amazonSQS, queueUrl, stringMapper, batchSizeLimit, acknowledger,
+                    receiptHandleSetter, numberOfReceivers, stopSignal);
         }
 
         /**
@@ -122,17 +160,64 @@ public class SqsExtractor<T> implements Extractor<T> {
          * @return A new SqlExtractorProvider with modified configuration.
          */
         public SqsExtractorProvider<T> withBatchSizeLimit(Integer batchSizeLimit) {
-            return new SqsExtractorProvider<>(sqsClient, queueUrl, stringMapper, batchSizeLimit);
+            return new SqsExtractorProvider<>(sqsClient, queueUrl, stringMapper, batchSizeLimit, acknowledger,
+                    receiptHandleSetter, numberOfReceivers, stopSignal);
+        }
+
+        /**
+         * Leave deleting extracted messages to an SqsMessageAcknowledger instead of deleting them all when the
+         * extractor is closed. The receipt handle of each message is set on the object extracted from it, so that the
+         * acknowledger can read it back off the object once it has been loaded. The extractor opens the acknowledger,
+         * which extends the visibility timeout of the extracted messages until they are acknowledged if it has been
+         * configured to.
+         * @param acknowledger The acknowledger that will delete the messages.
+         * @param receiptHandleSetter Function that sets a receipt handle on an extracted object.
+         * @return A new SqlExtractorProvider with modified configuration.
+         */
+        public SqsExtractorProvider<T> withAcknowledger(SqsMessageAcknowledger acknowledger,
+                                                        BiConsumer<T, String> receiptHandleSetter) {
+            return new SqsExtractorProvider<>(sqsClient, queueUrl, stringMapper, batchSizeLimit, acknowledger,
+                    receiptHandleSetter, numberOfReceivers, stopSignal);
+        }
+
+        /**
+         * Receive messages continuously instead of receiving a single batch of them. A number of threads each
+         * long-poll the queue and feed the messages they receive into a bounded buffer, and the extractor emits
+         * messages from the buffer as soon as they arrive. Receiving continues until the stop signal returns true,
+         * after which the extractor emits any messages that are still buffered and then ends the stream. The batch size
+         * limit does not apply in this mode, and duplicate deliveries of a message are not filtered out.
+         *
+         * Messages must be deleted as they are processed rather than when the extractor is closed, so an acknowledger
+         * must also be given with withAcknowledger().
+         * @param numberOfReceivers Number of threads that concurrently long-poll the queue.
+         * @param stopSignal Function that returns true once receiving should stop, for instance the get method of an
+         *                   AtomicBoolean.
+         * @return A new SqlExtractorProvider with modified configuration.
+         * @throws IllegalArgumentException If the number of receivers is not positive.
+         */
+        public SqsExtractorProvider<T> withContinuousReceiving(int numberOfReceivers, BooleanSupplier stopSignal) {
+            if (numberOfReceivers < 1) {
+                throw new IllegalArgumentException("numberOfReceivers must be at least 1");
+            }
+
+            return new SqsExtractorProvider<>(sqsClient, queueUrl, stringMapper, batchSizeLimit, acknowledger,
+                    receiptHandleSetter, numberOfReceivers, stopSignal);
         }
 
         /**
          * Constructs an instance of an SQSExtractor based on the current configuration set.
          * @return An SQSExtractor instance.
+         * @throws IllegalStateException If continuous receiving was requested without an acknowledger.
          */
         @Override
         public SqsExtractor<T> get() {
+            if (numberOfReceivers != null && acknowledger == null) {
+                throw new IllegalStateException("Continuous receiving requires an SqsMessageAcknowledger");
+            }
+
             AmazonSQS effectiveClient = (sqsClient == null) ? DEFAULT_SQS_CLIENT_BUILDER.get() : sqsClient;
-            return new SqsExtractor<>(effectiveClient, stringMapper, queueUrl, batchSizeLimit);
+            return new SqsExtractor<>(effectiveClient, stringMapper, queueUrl, batchSizeLimit, acknowledger,
+                    receiptHandleSetter, numberOfReceivers, stopSignal);
         }
     }
 
@@ -140,17 +225,28 @@ public class SqsExtractor<T> implements Extractor<T> {
             AmazonSQS amazonSqs,
             Function<String, T> stringMapper,
             String queueUrl,
-            Integer batchSizeLimit) {
+            Integer batchSizeLimit,
+            SqsMessageAcknowledger acknowledger,
+            BiConsumer<T, String> receiptHandleSetter,
+            Integer numberOfReceivers,
+            BooleanSupplier stopSignal) {
         this.amazonSqs = amazonSqs;
         this.stringMapper = stringMapper;
         this.queueUrl = queueUrl;
         this.extractedMessagesReceiptHandle = new ArrayList<>(0);
         this.batchSizeLimit = (batchSizeLimit == null || batchSizeLimit < 0) ? Integer.MAX_VALUE : batchSizeLimit;
+        this.acknowledger = acknowledger == null ?
+                SqsMessageAcknowledger.of(queueUrl).withClient(amazonSqs) : acknowledger;
+        this.deletesOnClose = acknowledger == null;
+        this.receiptHandleSetter = receiptHandleSetter;
+        this.numberOfReceivers = numberOfReceivers;
+        this.stopSignal = stopSignal;
     }
 
     @Override
     public void open(EtlMetrics parentMetrics) {
         this.parentMetrics = parentMetrics;
+        acknowledger.open(parentMetrics);
     }
 
     /**
@@ -168,16 +264,25 @@ public class SqsExtractor<T> implements Extractor<T> {
         }
 
         try (EtlProfilingScope scope = new EtlProfilingScope(parentMetrics, "SqsExtractor.next")) {
-            Iterator<Message> messageIterator = getMessageIterator();
-            if (messageIterator.hasNext()) {
+            Message extractedMessage = numberOfReceivers == null ? nextReceivedMessage() : nextBufferedMessage();
+
+            if (extractedMessage != null) {
                 try {
-                    Message extractedMessage = messageIterator.next();
                     T extractedObject = stringMapper.apply(extractedMessage.getBody());
-                    extractedMessagesReceiptHandle.add(extractedMessage.getReceiptHandle());
+
+                    if (deletesOnClose) {
+                        extractedMessagesReceiptHandle.add(extractedMessage.getReceiptHandle());
+                    } else {
+                        receiptHandleSetter.accept(extractedObject, extractedMessage.getReceiptHandle());
+                    }
+
                     scope.addCounter("SqsExtractor.extractionSuccess", 1);
                     scope.addCounter("SqsExtractor.extractionFailure", 0);
                     return Optional.of(extractedObject);
                 } catch (RuntimeException retryableException) {
+                    // Nothing downstream will acknowledge this message, so let it be redelivered
+                    acknowledger.untrack(extractedMessage.getReceiptHandle());
+
                     scope.addCounter("SqsExtractor.extractionSuccess", 0);
                     scope.addCounter("SqsExtractor.extractionFailure", 1);
                     throw retryableException;
@@ -187,6 +292,91 @@ public class SqsExtractor<T> implements Extractor<T> {
         return Optional.empty();
     }
 
+    private Message nextReceivedMessage() throws UnrecoverableStreamFailureException {
+        Iterator<Message> messageIterator = getMessageIterator();
+        return messageIterator.hasNext() ? messageIterator.next() : null;
+    }
+
+    private Message nextBufferedMessage() throws UnrecoverableStreamFailureException {
+        if (receivers == null) {
+            startReceivers();
+        }
+
+        try {
+            while (true) {
+                // Checked before polling, so that every message received before the last receiver stopped is emitted
+                boolean receiversHaveStopped = activeReceivers.get() == 0;
+                Message message = receivedMessages.poll(CONTINUOUS_POLL_INTERVAL_IN_MILLISECONDS,
+                        TimeUnit.MILLISECONDS);
+
+                if (message != null) {
+                    return message;
+                }
+
+                if (receiverFailure.get() != null) {
+                    throw receiverFailure.get();
+                }
+
+                if (receiversHaveStopped) {
+                    return null;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new UnrecoverableStreamFailureException(e);
+        }
+    }
+
+    private void startReceivers() {
+        receivedMessages = new ArrayBlockingQueue<>(numberOfReceivers * CONTINUOUS_BUFFER_SIZE_PER_RECEIVER);
+        activeReceivers.set(numberOfReceivers);
+        receivers = Executors.newFixedThreadPool(numberOfReceivers, runnable -> {
+            Thread thread = new Thread(runnable, "SqsExtractor-receiver");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        for (int i = 0; i < numberOfReceivers; i++) {
+            receivers.execute(this::receiveUntilStopped);
+        }
+    }
+
+    private void receiveUntilStopped() {
+        try {
+            while (!stopSignal.getAsBoolean() && receiverFailure.get() == null) {
+                List<Message> messages;
+
+                try (EtlProfilingScope scope = new EtlProfilingScope(parentMetrics, "SqsExtractor.receive")) {
+                    messages = receiveMessages(SQS_MAXIMUM_MESSAGES_PER_REQUEST);
+                    scope.addCounter("SqsExtractor.messagesReceived", messages.size());
+                }
+
+                messages.forEach(message -> acknowledger.track(message.getReceiptHandle()));
+
+                for (int i = 0; i < messages.size(); i++) {
+                    try {
+                        receivedMessages.put(messages.get(i));
+                    } catch (InterruptedException e) {
+                        // These messages will never be emitted, so let them be redelivered
+                        messages.subList(i, messages.size())
+                                .forEach(message -> acknowledger.untrack(message.getReceiptHandle()));
+                        throw e;
+                    }
+                }
+            }
+        } catch (UnrecoverableStreamFailureException e) {
+            receiverFailure.compareAndSet(null, e);
+        } catch (InterruptedException e) {
+            // The extractor has been closed
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            logger.error("SQS receiver failed", e);
+            receiverFailure.compareAndSet(null, new UnrecoverableStreamFailureException(e));
+        } finally {
+            activeReceivers.decrementAndGet();
+        }
+    }
+
     private Iterator<Message> getMessageIterator() throws UnrecoverableStreamFailureException {
         if (messageIterator == null) {
             // Need to use Set since calling receiveMessage in loop might return duplicate messages from SQS.
@@ -194,35 +384,14 @@ public class SqsExtractor<T> implements Extractor<T> {
 
             // Keep trying until SQS returns no messages or we hit the batchSizeLimit
             while (extractedMessagesReceiptHandle.size() + messageSet.size() < batchSizeLimit) {
-                List<Message> messages = null;
-                int retries;
-                for (retries = 0; retries < SQS_GET_MESSAGES_MAX_RETRIES; retries++) {
-                    try {
-                        ReceiveMessageRequest receiveMessageRequest = new ReceiveMessageRequest()
-                                .withQueueUrl(queueUrl)
-                                .withWaitTimeSeconds(SQS_LONG_POLLING_PERIOD_IN_SECONDS)
-                                // Never try and retrieve more messages than we are contracted to handle in total
-                                .withMaxNumberOfMessages(
-                                        Math.min(batchSizeLimit - (extractedMessagesReceiptHandle.size() + messageSet.size()),
-                                                SQS_MAXIMUM_MESSAGES_PER_REQUEST));
-                        messages = amazonSqs.receiveMessage(receiveMessageRequest).getMessages();
-                        break;
-                    } catch (AmazonServiceException e) {
-                        logger.warn("Problem retrieving messages. Retrying...", e);
-                        logger.warn(String.format("Retries count: %d", retries));
-                    } catch (AmazonClientException e) {
-                        logger.error("Non-retriable exception received", e);
-                        throw new UnrecoverableStreamFailureException(e);
-                    }
-                }
-
-                if (retries >= SQS_GET_MESSAGES_MAX_RETRIES) {
-                    throw new UnrecoverableStreamFailureException("Maximum number of retries reached attempting to get "
-                                                                  + "SQS messages. Giving up.");
-                }
+                // Never try and retrieve more messages than we are contracted to handle in total
+                List<Message> messages = receiveMessages(
+                        Math.min(batchSizeLimit - (extractedMessagesReceiptHandle.size() + messageSet.size()),
+                                SQS_MAXIMUM_MESSAGES_PER_REQUEST));
 
                 if (messages.isEmpty()) break;
                 messageSet.addAll(messages);
+                messages.forEach(message -> acknowledger.track(message.getReceiptHandle()));
             }
 
             messageIterator = messageSet.iterator();
@@ -231,18 +400,56 @@ public class SqsExtractor<T> implements Extractor<T> {
         return messageIterator;
     }
 
+    private List<Message> receiveMessages(int maxNumberOfMessages) throws UnrecoverableStreamFailureException {
+        for (int retries = 0; retries < SQS_GET_MESSAGES_MAX_RETRIES; retries++) {
+            try {
+                ReceiveMessageRequest receiveMessageRequest = new ReceiveMessageRequest()
+                        .withQueueUrl(queueUrl)
+                        .withWaitTimeSeconds(SQS_LONG_POLLING_PERIOD_IN_SECONDS)
+                        .withMaxNumberOfMessages(maxNumberOfMessages);
+                return amazonSqs.receiveMessage(receiveMessageRequest).getMessages();
+            } catch (AmazonServiceException e) {
+                logger.warn("Problem retrieving messages. Retrying...", e);
+                logger.warn(String.format("Retries count: %d", retries));
+            } catch (AmazonClientException e) {
+                logger.error("Non-retriable exception received", e);
+                throw new UnrecoverableStreamFailureException(e);
+            }
+        }
+
+        throw new UnrecoverableStreamFailureException("Maximum number of retries reached attempting to get "
+                                                      + "SQS messages. Giving up.");
+    }
+
     /**
-     * Deletes all the extracted messages from SQS and emits time metrics.
+     * Deletes all the extracted messages from SQS in batches and emits time metrics. Does not delete any messages if
+     * an SqsMessageAcknowledger given with withAcknowledger() is deleting them instead.
      *
+     * @throws UnrecoverableStreamFailureException If any of the extracted messages could not be deleted.
      * @throws Exception if something goes wrong
      */
     @Override
     public void close() throws Exception {
         isClosed = true;
         try (EtlProfilingScope ignored = new EtlProfilingScope(parentMetrics, "SqsExtractor.close")) {
-            for(String receiptHandle : extractedMessagesReceiptHandle) {
-                amazonSqs.deleteMessage(queueUrl, receiptHandle);
+            if (receivers != null) {
+                stopReceivers();
+            }
+
+            if (deletesOnClose) {
+                extractedMessagesReceiptHandle.forEach(acknowledger::acknowledge);
+                acknowledger.close();
             }
         }
     }
+
+    private void stopReceivers() throws InterruptedException {
+        receivers.shutdownNow();
+        receivers.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+
+        // Messages that were never emitted will not be acknowledged, so let them be redelivered
+        List<Message> unemittedMessages = new ArrayList<>();
+        receivedMessages.drainTo(unemittedMessages);
+        unemittedMessages.forEach(message -> acknowledger.untrack(message.getReceiptHandle()));
+    }
 }
\ No newline at end of file
@@ -0,0 +1,503 @@
+/*
+ *   Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package com.amazon.pocketEtl.extractor;
+
+import com.amazon.pocketEtl.EtlMetrics;
+import com.amazon.pocketEtl.EtlProfilingScope;
+import com.amazon.pocketEtl.Loader;
+import com.amazon.pocketEtl.exception.UnrecoverableStreamFailureException;
+import com.amazon.pocketEtl.integration.SqsBatchRetrier;
+import com.amazon.pocketEtl.loader.DynamoDbLoader;
+import com.amazon.pocketEtl.loader.JdbcBatchLoader;
+import com.amazon.pocketEtl.loader.RedshiftBulkLoader;
+import com.amazon.pocketEtl.loader.S3FastLoader;
+import com.amazon.pocketEtl.loader.SqsLoader;
+import com.amazon.pocketEtl.loader.WrappedLoader;
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.services.sqs.AmazonSQS;
+import com.amazonaws.services.sqs.AmazonSQSClient;
+import com.amazonaws.services.sqs.model.ChangeMessageVisibilityBatchRequest;
+import com.amazonaws.services.sqs.model.ChangeMessageVisibilityBatchRequestEntry;
+import com.amazonaws.services.sqs.model.DeleteMessageBatchRequest;
+import com.amazonaws.services.sqs.model.DeleteMessageBatchRequestEntry;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import org.apache.logging.log4j.Logger;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.apache.logging.log4j.LogManager.getLogger;
+
+/**
+ * Deletes messages from an SQS queue once they have been processed, using DeleteMessageBatch requests of up to 10
+ * messages, several of which can be in flight at once.
+ *
+ * By default SqsExtractor deletes every message it extracted when it is closed. Giving the same acknowledger to an
+ * SqsExtractor with SqsExtractorProvider.withAcknowledger() and wrapping the loader at the end of the stream with
+ * acknowledgeAfter() instead deletes each message as soon as the record that was extracted from it has been loaded.
+ * A job that dies part of the way through then only has the messages it had not finished with redelivered, rather than
+ * all of them. The receipt handle of each message travels down the stream with its record: the extractor sets it on
+ * each extracted object, and the loader reads it back off each loaded object.
+ *
+ * Loaders that buffer records and write them later, such as S3FastLoader, JdbcBatchLoader, SqsLoader,
+ * RedshiftBulkLoader and DynamoDbLoader in batch mode, should be wrapped with acknowledgeAfterClose() instead. Their
+ * records are acknowledged once the loader has been closed without an exception being thrown, as only then have they
+ * all been written.
+ *
+ * Messages that have been extracted but not yet acknowledged are kept invisible to other consumers if a visibility
+ * timeout extension is requested, so that a slow stream does not cause them to be redelivered while they are still
+ * being processed. Once the acknowledging loader has been closed any messages that were never acknowledged, for
+ * instance because they failed to load, are left to become visible again when their visibility timeout expires.
+ *
+ * Deletes that fail are retried with a jittered exponential backoff. Messages that still cannot be deleted will be
+ * redelivered, and cause close() to throw once every other delete has been sent.
+ *
+ * Example usage:
+ * SqsMessageAcknowledger acknowledger = SqsMessageAcknowledger.of(queueUrl).withVisibilityTimeoutExtension(60);
+ *
+ * EtlStream.extract(SqsExtractor.of(queueUrl, JSONStringMapper.of(Invite.class))
+ *                               .withAcknowledger(acknowledger, Invite::setReceiptHandle)
+ *                               .get())
+ *          .load(Invite.class, acknowledger.acknowledgeAfter(inviteLoader, Invite::getReceiptHandle))
+ *          .run();
+ */
+@SuppressWarnings("WeakerAccess")
+@RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+public class SqsMessageAcknowledger {
+    private final static Logger logger = getLogger(SqsMessageAcknowledger.class);
+
+    private final static String DELETED_METRIC_KEY = "SqsMessageAcknowledger.deleted";
+    private final static String DELETE_FAILURE_METRIC_KEY = "SqsMessageAcknowledger.deleteFailure";
+
+    // DeleteMessageBatch and ChangeMessageVisibilityBatch accept at most 10 entries in a single request
+    private final static int MAXIMUM_ENTRIES_PER_BATCH = 10;
+    private final static int DEFAULT_MAX_BATCHES_IN_FLIGHT = 4;
+    private final static int MAXIMUM_VISIBILITY_TIMEOUT_IN_SECONDS = 12 * 60 * 60;
+    private final static long DELETE_LINGER_TIME_IN_MILLISECONDS = 1000;
+
+    private final AmazonSQS sqsClient;
+    private final String queueUrl;
+    private final int maxBatchesInFlight;
+    private final Integer visibilityTimeoutInSeconds;
+
+    // THREAD-SAFE OBJECTS: they are shared by and modified by concurrent threads
+    private final Set<String> inFlightReceiptHandles = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger undeletedMessageCount = new AtomicInteger(0);
+    // END THREAD-SAFE
+
+    // Guarded by synchronizing on this
+    private List<String> pendingDeletes = new ArrayList<>();
+    private EtlMetrics parentMetrics = null;
+    private AmazonSQS effectiveSqsClient = null;
+    private ExecutorService deleteSender = null;
+    private Semaphore batchesInFlight = null;
+    private ScheduledExecutorService scheduler = null;
+
+    /**
+     * Create a new SqsMessageAcknowledger for messages from a specific queue. Out of the box the acknowledger will use
+     * the default Amazon SQS client and will not extend the visibility timeout of messages.
+     *
+     * @param queueUrl URL of the SQS queue the messages were received from.
+     * @return A newly constructed SqsMessageAcknowledger.
+     */
+    public static SqsMessageAcknowledger of(String queueUrl) {
+        return new SqsMessageAcknowledger(null, queueUrl, DEFAULT_MAX_BATCHES_IN_FLIGHT, null);
+    }
+
+    /**
+     * Modify the AWS SQS Client object to be used with the acknowledger.
+     *
+     * @param amazonSQS An initialized AWS SQS Client.
+     * @return A copy of this acknowledger with its behavior modified.
+     */
+    public SqsMessageAcknowledger withClient(AmazonSQS amazonSQS) {
+        return new SqsMessageAcknowledger(amazonSQS, queueUrl, maxBatchesInFlight, visibilityTimeoutInSeconds);
+    }
+
+    /**
+     * Optional: The maximum number of DeleteMessageBatch requests that can be in flight at the same time. The default
+     * is 4.
+     *
+     * @param maxBatchesInFlight Maximum number of concurrent batch requests.
+     * @return A copy of this acknowledger with its behavior modified.
+     * @throws IllegalArgumentException If the maximum is not positive.
+     */
+    public SqsMessageAcknowledger withMaxBatchesInFlight(int maxBatchesInFlight) {
+        if (maxBatchesInFlight < 1) {
+            throw new IllegalArgumentException("maxBatchesInFlight must be at least 1");
+        }
+
+        return new SqsMessageAcknowledger(sqsClient, queueUrl, maxBatchesInFlight, visibilityTimeoutInSeconds);
+    }
+
+    /**
+     * Optional: Keep messages that have been extracted but not yet acknowledged invisible to other consumers, by
+     * setting their visibility timeout to this value every time half of it has elapsed. This should be no longer than
+     * the visibility timeout of the queue, so that the first extension happens before any message becomes visible.
+     *
+     * @param visibilityTimeoutInSeconds The visibility timeout to keep setting on messages that are in flight.
+     * @return A copy of this acknowledger with its behavior modified.
+     * @throws IllegalArgumentException If the timeout is not between 2 seconds and 12 hours.
+     */
+    public SqsMessageAcknowledger withVisibilityTimeoutExtension(int visibilityTimeoutInSeconds) {
+        if (visibilityTimeoutInSeconds < 2 || visibilityTimeoutInSeconds > MAXIMUM_VISIBILITY_TIMEOUT_IN_SECONDS) {
+            throw new IllegalArgumentException("visibilityTimeoutInSeconds must be between 2 and "
+                    + MAXIMUM_VISIBILITY_TIMEOUT_IN_SECONDS);
+        }
+
+        return new SqsMessageAcknowledger(sqsClient, queueUrl, maxBatchesInFlight, visibilityTimeoutInSeconds);
+    }
+
+    /**
+     * Wraps a loader so that the message each record was extracted from is acknowledged as soon as the record has been
+     * loaded without an exception being thrown. Closing the returned loader sends any deletes that are still pending,
+     * waits for them to complete and stops extending the visibility timeout of messages that were never acknowledged.
+     *
+     * @param loader                 The loader to wrap, which must write each record before load() returns.
+     * @param receiptHandleExtractor Function that returns the receipt handle the extractor set on a record.
+     * @param <T>                    Type of object being loaded.
+     * @return A loader that acknowledges records after loading them.
+     * @throws IllegalArgumentException If the loader is known to buffer records, use acknowledgeAfterClose() instead.
+     */
+    public <T> Loader<T> acknowledgeAfter(Loader<T> loader, Function<T, String> receiptHandleExtractor) {
+        if (buffersRecords(loader)) {
+            throw new IllegalArgumentException(loader.getClass().getSimpleName() + " buffers records, so they would be "
+                    + "acknowledged before they had been written. Use acknowledgeAfterClose() instead.");
+        }
+
+        return new AcknowledgingLoader<>(loader, receiptHandleExtractor, this, false);
+    }
+
+    /**
+     * Wraps a loader so that the messages the records it loaded were extracted from are acknowledged once the loader
+     * has been closed without an exception being thrown. Use this for loaders that buffer records in load() and only
+     * guarantee they have been written when they are closed. If closing the loader fails then none of its messages
+     * are acknowledged and they will all be redelivered.
+     *
+     * @param loader                 The loader to wrap.
+     * @param receiptHandleExtractor Function that returns the receipt handle the extractor set on a record.
+     * @param <T>                    Type of object being loaded.
+     * @return A loader that acknowledges records after it has been closed.
+     */
+    public <T> Loader<T> acknowledgeAfterClose(Loader<T> loader, Function<T, String> receiptHandleExtractor) {
+        return new AcknowledgingLoader<>(loader, receiptHandleExtractor, this, true);
+    }
+
+    /**
+     * Acknowledges that a message has been processed so that it can be deleted from the queue. The delete is sent as
+     * soon as there are enough acknowledged messages to fill a batch, or after a second otherwise.
+     *
+     * @param receiptHandle The receipt handle of the message.
+     * @throws IllegalStateException If the acknowledger is not open.
+     */
+    public void acknowledge(String receiptHandle) {
+        List<String> fullBatch = null;
+
+        synchronized (this) {
+            if (deleteSender == null) {
+                throw new IllegalStateException("SqsMessageAcknowledger is not open and cannot acknowledge messages.");
+            }
+
+            inFlightReceiptHandles.remove(receiptHandle);
+            pendingDeletes.add(receiptHandle);
+
+            if (pendingDeletes.size() >= MAXIMUM_ENTRIES_PER_BATCH) {
+                fullBatch = takePendingDeletes();
+            }
+        }
+
+        if (fullBatch != null) {
+            submitDeletes(fullBatch);
+        }
+    }
+
+    /**
+     * Prepares the acknowledger to acknowledge messages. Does nothing if it is already open, so that it can be opened
+     * by every component that uses it.
+     *
+     * @param parentMetrics An EtlMetrics object to attach any counters or timers to, will be null if profiling is not
+     *                      required.
+     */
+    public synchronized void open(@Nullable EtlMetrics parentMetrics) {
+        if (deleteSender != null) {
+            return;
+        }
+
+        this.parentMetrics = parentMetrics;
+        undeletedMessageCount.set(0);
+        effectiveSqsClient = sqsClient == null ? AmazonSQSClient.builder().build() : sqsClient;
+        batchesInFlight = new Semaphore(maxBatchesInFlight);
+        deleteSender = Executors.newFixedThreadPool(maxBatchesInFlight, runnable -> {
+            Thread thread = new Thread(runnable, "SqsMessageAcknowledger-delete-sender");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "SqsMessageAcknowledger-scheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        scheduler.scheduleWithFixedDelay(this::sendLingeringDeletes, DELETE_LINGER_TIME_IN_MILLISECONDS,
+                DELETE_LINGER_TIME_IN_MILLISECONDS, TimeUnit.MILLISECONDS);
+
+        if (visibilityTimeoutInSeconds != null) {
+            long extensionInterval = TimeUnit.SECONDS.toMillis(visibilityTimeoutInSeconds) / 2;
+            scheduler.scheduleWithFixedDelay(this::extendVisibilityTimeouts, extensionInterval, extensionInterval,
+                    TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Sends any deletes that are still pending, waits for them to complete and stops extending the visibility
+     * timeout of messages that were never acknowledged. Does nothing if the acknowledger is not open.
+     *
+     * @throws InterruptedException If interrupted while waiting for deletes to complete.
+     * @throws UnrecoverableStreamFailureException If any acknowledged message could not be deleted.
+     */
+    public void close() throws InterruptedException {
+        ScheduledExecutorService schedulerToClose;
+        ExecutorService deleteSenderToClose;
+        List<String> lastBatch;
+
+        synchronized (this) {
+            if (deleteSender == null) {
+                return;
+            }
+
+            schedulerToClose = scheduler;
+            deleteSenderToClose = deleteSender;
+        }
+
+        try (EtlProfilingScope ignored = new EtlProfilingScope(parentMetrics, "SqsMessageAcknowledger.close")) {
+            // Wait for any scheduled work that is already running, as it may still submit deletes
+            schedulerToClose.shutdown();
+            schedulerToClose.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+
+            synchronized (this) {
+                lastBatch = takePendingDeletes();
+            }
+
+            for (int i = 0; i < lastBatch.size(); i += MAXIMUM_ENTRIES_PER_BATCH) {
+                submitDeletes(lastBatch.subList(i, Math.min(i + MAXIMUM_ENTRIES_PER_BATCH, lastBatch.size())));
+            }
+
+            deleteSenderToClose.shutdown();
+            deleteSenderToClose.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } finally {
+            synchronized (this) {
+                inFlightReceiptHandles.clear();
+                deleteSender = null;
+                scheduler = null;
+            }
+        }
+
+        int undeletedMessages = undeletedMessageCount.getAndSet(0);
+
+        if (undeletedMessages > 0) {
+            throw new UnrecoverableStreamFailureException(undeletedMessages + " acknowledged messages could not be "
+                    + "deleted from " + queueUrl + " and will be redelivered");
+        }
+    }
+
+    /*
+     * Records that a message has been received and not yet acknowledged, so that its visibility timeout is extended
+     * until it is.
+     */
+    void track(String receiptHandle) {
+        if (visibilityTimeoutInSeconds != null) {
+            inFlightReceiptHandles.add(receiptHandle);
+        }
+    }
+
+    /*
+     * Stops extending the visibility timeout of a message that will never be acknowledged.
+     */
+    void untrack(String receiptHandle) {
+        inFlightReceiptHandles.remove(receiptHandle);
+    }
+
+    private static boolean buffersRecords(Loader<?> loader) {
+        return loader instanceof S3FastLoader || loader instanceof JdbcBatchLoader || loader instanceof SqsLoader
+                || loader instanceof RedshiftBulkLoader
+                || (loader instanceof DynamoDbLoader && ((DynamoDbLoader<?>) loader).isBatchWriting());
+    }
+
+    // Must be called holding the lock on this
+    private List<String> takePendingDeletes() {
+        List<String> receiptHandles = pendingDeletes;
+        pendingDeletes = new ArrayList<>();
+        return receiptHandles;
+    }
+
+    private void sendLingeringDeletes() {
+        List<String> lingeringDeletes;
+
+        synchronized (this) {
+            lingeringDeletes = takePendingDeletes();
+        }
+
+        if (!lingeringDeletes.isEmpty()) {
+            submitDeletes(lingeringDeletes);
+        }
+    }
+
+    private void submitDeletes(List<String> receiptHandles) {
+        batchesInFlight.acquireUninterruptibly();
+
+        try {
+            deleteSender.execute(() -> {
+                try {
+                    deleteBatch(receiptHandles);
+                } finally {
+                    batchesInFlight.release();
+                }
+            });
+        } catch (RuntimeException e) {
+            batchesInFlight.release();
+            throw e;
+        }
+    }
+
+    private void deleteBatch(List<String> receiptHandles) {
+        try (EtlProfilingScope scope = new EtlProfilingScope(parentMetrics, "SqsMessageAcknowledger.deleteBatch")) {
+            int failedDeleteCount = deleteMessages(receiptHandles);
+            undeletedMessageCount.addAndGet(failedDeleteCount);
+            scope.addCounter(DELETED_METRIC_KEY, receiptHandles.size() - failedDeleteCount);
+            scope.addCounter(DELETE_FAILURE_METRIC_KEY, failedDeleteCount);
+        }
+    }
+
+    // Returns the number of messages that could not be deleted
+    private int deleteMessages(List<String> receiptHandles) {
+        return SqsBatchRetrier.<String, DeleteMessageBatchRequestEntry>sendWithRetries(receiptHandles,
+                DeleteMessageBatchRequestEntry::new,
+                entries -> effectiveSqsClient.deleteMessageBatch(new DeleteMessageBatchRequest(queueUrl, entries))
+                        .getFailed(),
+                "delete");
+    }
+
+    private void extendVisibilityTimeouts() {
+        List<String> receiptHandles = new ArrayList<>(inFlightReceiptHandles);
+
+        if (receiptHandles.isEmpty()) {
+            return;
+        }
+
+        try (EtlProfilingScope ignored = new EtlProfilingScope(parentMetrics,
+                "SqsMessageAcknowledger.extendVisibilityTimeouts")) {
+            for (int i = 0; i < receiptHandles.size(); i += MAXIMUM_ENTRIES_PER_BATCH) {
+                List<ChangeMessageVisibilityBatchRequestEntry> entries = new ArrayList<>();
+
+                for (int j = i; j < Math.min(i + MAXIMUM_ENTRIES_PER_BATCH, receiptHandles.size()); j++) {
+                    entries.add(new ChangeMessageVisibilityBatchRequestEntry(Integer.toString(j - i),
+                            receiptHandles.get(j)).withVisibilityTimeout(visibilityTimeoutInSeconds));
+                }
+
+                try {
+                    effectiveSqsClient.changeMessageVisibilityBatch(
+                            new ChangeMessageVisibilityBatchRequest(queueUrl, entries));
+                } catch (AmazonClientException e) {
+                    // The next extension will try again, which is still in time for any message that has not already
+                    // become visible
+                    logger.warn("Failed to extend the visibility timeout of {} messages", entries.size(), e);
+                }
+            }
+        }
+    }
+
+    private static class AcknowledgingLoader<T> extends WrappedLoader<T> {
+        private final Loader<T> wrappedLoader;
+        private final Function<T, String> receiptHandleExtractor;
+        private final SqsMessageAcknowledger acknowledger;
+        private final boolean acknowledgesOnClose;
+        private final Queue<String> loadedReceiptHandles = new ConcurrentLinkedQueue<>();
+
+        AcknowledgingLoader(Loader<T> wrappedLoader, Function<T, String> receiptHandleExtractor,
+                            SqsMessageAcknowledger acknowledger, boolean acknowledgesOnClose) {
+            this.wrappedLoader = wrappedLoader;
+            this.receiptHandleExtractor = receiptHandleExtractor;
+            this.acknowledger = acknowledger;
+            this.acknowledgesOnClose = acknowledgesOnClose;
+        }
+
+        @Override
+        protected Loader<T> getWrappedLoader() {
+            return wrappedLoader;
+        }
+
+        @Override
+        public void load(T objectToLoad) {
+            String receiptHandle = receiptHandleExtractor.apply(objectToLoad);
+
+            try {
+                wrappedLoader.load(objectToLoad);
+            } catch (RuntimeException e) {
+                // The message will never be acknowledged, so let it become visible again
+                if (receiptHandle != null) {
+                    acknowledger.untrack(receiptHandle);
+                }
+
+                throw e;
+            }
+
+            if (receiptHandle == null) {
+                return;
+            }
+
+            if (acknowledgesOnClose) {
+                loadedReceiptHandles.add(receiptHandle);
+            } else {
+                acknowledger.acknowledge(receiptHandle);
+            }
+        }
+
+        @Override
+        public void open(@Nullable EtlMetrics parentMetrics) {
+            wrappedLoader.open(parentMetrics);
+            acknowledger.open(parentMetrics);
+        }
+
+        @Override
+        public void close() throws Exception {
+            try {
+                wrappedLoader.close();
+
+                String receiptHandle;
+
+                while ((receiptHandle = loadedReceiptHandles.poll()) != null) {
+                    acknowledger.acknowledge(receiptHandle);
+                }
+            } finally {
+                loadedReceiptHandles.clear();
+                acknowledger.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,346 @@
+/*
+ *   Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package com.amazon.pocketEtl.integration;
+
+import com.amazon.pocketEtl.integration.db.BeanPropertyTable;
+import com.amazonaws.services.dynamodbv2.document.Item;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jdk8.Jdk8Module;
+import com.fasterxml.jackson.datatype.joda.JodaModule;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+
+import java.beans.PropertyDescriptor;
+import java.lang.invoke.MethodHandle;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Type;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Maps the properties of a bean class directly to the attributes of a DynamoDB item and back again, as an alternative
+ * to storing each object as a single JSON document attribute. Each bean property and public field is stored as an
+ * attribute of the same name with the closest matching DynamoDB type:
+ * - Strings and enums as strings.
+ * - Numbers (primitive, boxed, BigDecimal and BigInteger) as numbers.
+ * - Booleans as booleans.
+ * - byte arrays as binary.
+ * - Joda DateTimes as ISO-8601 strings in UTC.
+ * - Anything else (lists, maps, sets and nested beans) as DynamoDB lists and maps, converted using Jackson.
+ *
+ * Properties that are null are left out of the item altogether rather than being stored as a null attribute, and
+ * attributes that are missing from an item leave the matching property untouched.
+ *
+ * The mapping for each class is worked out once, the first time the class is mapped, and shared after that. Properties
+ * are read and written through the accessors of the shared BeanPropertyTable of the class.
+ *
+ * @param <T> The type of bean being mapped.
+ */
+@SuppressWarnings("WeakerAccess")
+public class DynamoDbItemMapper<T> {
+    private static final ObjectMapper objectMapper = new ObjectMapper()
+            .registerModules(new JodaModule(), new Jdk8Module(), new JavaTimeModule());
+
+    private static final ClassValue<DynamoDbItemMapper<?>> mappers = new ClassValue<DynamoDbItemMapper<?>>() {
+        @Override
+        protected DynamoDbItemMapper<?> computeValue(Class<?> type) {
+            return new DynamoDbItemMapper<>(type);
+        }
+    };
+
+    private final Class<T> type;
+    private final List<AttributeBinding> bindings;
+    private final Constructor<T> constructor;
+
+    /**
+     * Get the mapper for a bean class.
+     * @param type The bean class to map.
+     * @param <T> The type of bean being mapped.
+     * @return A mapper for the class.
+     * @throws IllegalArgumentException If the class cannot be introspected.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> DynamoDbItemMapper<T> of(Class<T> type) {
+        return (DynamoDbItemMapper<T>) mappers.get(type);
+    }
+
+    private DynamoDbItemMapper(Class<T> type) {
+        this.type = type;
+
+        BeanPropertyTable properties = BeanPropertyTable.of(type);
+        List<AttributeBinding> bindings = new ArrayList<>();
+        Set<String> boundNames = new HashSet<>();
+
+        for (PropertyDescriptor descriptor : properties.getProperties()) {
+            if (!isDeclaredByObject(descriptor)) {
+                bindings.add(bindProperty(properties, descriptor));
+                boundNames.add(descriptor.getName());
+            }
+        }
+
+        for (Field field : type.getFields()) {
+            int modifiers = field.getModifiers();
+
+            if (!Modifier.isStatic(modifiers) && !Modifier.isTransient(modifiers) &&
+                    !boundNames.contains(field.getName())) {
+                bindings.add(bindField(properties, field));
+            }
+        }
+
+        this.bindings = Collections.unmodifiableList(bindings);
+        this.constructor = findNoArgumentConstructor(type);
+    }
+
+    /**
+     * Create a DynamoDB item from the readable properties of a bean.
+     * @param object The bean to map.
+     * @return A new item holding one attribute for each property that is not null.
+     */
+    public Item toItem(T object) {
+        Item item = new Item();
+
+        for (AttributeBinding binding : bindings) {
+            if (binding.getter != null) {
+                Object value = invokeGetter(binding, object);
+
+                if (value != null) {
+                    binding.codec.write(item, binding.name, value);
+                }
+            }
+        }
+
+        return item;
+    }
+
+    /**
+     * Create a bean from the attributes of a DynamoDB item. The bean class must have a no-argument constructor.
+     * @param item The item to map.
+     * @return A new bean with each writable property that has a matching attribute populated.
+     */
+    public T fromItem(Item item) {
+        if (constructor == null) {
+            throw new IllegalStateException("Cannot create " + type.getName() + " as it has no no-argument " +
+                    "constructor");
+        }
+
+        T object;
+
+        try {
+            object = constructor.newInstance();
+        }
+        catch (ReflectiveOperationException e) {
+            throw new RuntimeException("Unable to create " + type.getName(), e);
+        }
+
+        for (AttributeBinding binding : bindings) {
+            if (binding.setter != null && item.isPresent(binding.name) && !item.isNull(binding.name)) {
+                invokeSetter(binding, object, binding.codec.read(item, binding.name));
+            }
+        }
+
+        return object;
+    }
+
+    private static Object invokeGetter(AttributeBinding binding, Object object) {
+        try {
+            return (Object) binding.getter.invokeExact(object);
+        }
+        catch (RuntimeException | Error e) {
+            throw e;
+        }
+        catch (Throwable e) {
+            throw new RuntimeException("Unable to read property " + binding.name, e);
+        }
+    }
+
+    private static void invokeSetter(AttributeBinding binding, Object object, Object value) {
+        try {
+            binding.setter.invokeExact(object, value);
+        }
+        catch (RuntimeException | Error e) {
+            throw e;
+        }
+        catch (Throwable e) {
+            throw new RuntimeException("Unable to write property " + binding.name, e);
+        }
+    }
+
+    // The 'class' property every object has is not an attribute of the item
+    private static boolean isDeclaredByObject(PropertyDescriptor descriptor) {
+        Method readMethod = descriptor.getReadMethod();
+        return readMethod != null && Object.class.equals(readMethod.getDeclaringClass());
+    }
+
+    private static AttributeBinding bindProperty(BeanPropertyTable properties, PropertyDescriptor descriptor) {
+        Method readMethod = descriptor.getReadMethod();
+        Method writeMethod = descriptor.getWriteMethod();
+        Type genericType = readMethod != null ? readMethod.getGenericReturnType() :
+                writeMethod.getGenericParameterTypes()[0];
+
+        return new AttributeBinding(descriptor.getName(),
+                readMethod == null ? null : properties.getGetter(readMethod),
+                writeMethod == null ? null : properties.getSetter(writeMethod),
+                codecForType(descriptor.getPropertyType(), genericType));
+    }
+
+    private static AttributeBinding bindField(BeanPropertyTable properties, Field field) {
+        MethodHandle getter = properties.getGetter(field);
+        MethodHandle setter = Modifier.isFinal(field.getModifiers()) ? null : properties.getSetter(field);
+
+        return new AttributeBinding(field.getName(), getter, setter,
+                codecForType(field.getType(), field.getGenericType()));
+    }
+
+    private static <T> Constructor<T> findNoArgumentConstructor(Class<T> type) {
+        try {
+            Constructor<T> constructor = type.getDeclaredConstructor();
+            constructor.setAccessible(true);
+            return constructor;
+        }
+        catch (NoSuchMethodException | SecurityException e) {
+            return null;
+        }
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static AttributeCodec codecForType(Class<?> type, Type genericType) {
+        if (String.class.equals(type)) {
+            return new AttributeCodec((item, name, value) -> item.withString(name, (String) value), Item::getString);
+        }
+
+        if (type.isEnum()) {
+            return new AttributeCodec((item, name, value) -> item.withString(name, ((Enum) value).name()),
+                    (item, name) -> Enum.valueOf((Class<Enum>) type, item.getString(name)));
+        }
+
+        if (Boolean.class.equals(type) || boolean.class.equals(type)) {
+            return new AttributeCodec((item, name, value) -> item.withBoolean(name, (Boolean) value),
+                    Item::getBoolean);
+        }
+
+        if (byte[].class.equals(type)) {
+            return new AttributeCodec((item, name, value) -> item.withBinary(name, (byte[]) value), Item::getBinary);
+        }
+
+        if (DateTime.class.equals(type)) {
+            return new AttributeCodec(
+                    (item, name, value) -> item.withString(name, ((DateTime) value).withZone(DateTimeZone.UTC).toString()),
+                    (item, name) -> DateTime.parse(item.getString(name)));
+        }
+
+        Function<BigDecimal, Object> numberConverter = numberConverterForType(type);
+
+        if (numberConverter != null) {
+            return new AttributeCodec((item, name, value) -> item.withNumber(name, (Number) value),
+                    (item, name) -> numberConverter.apply(item.getNumber(name)));
+        }
+
+        JavaType javaType = objectMapper.constructType(genericType);
+
+        return new AttributeCodec(
+                (item, name, value) -> item.with(name, objectMapper.convertValue(value, Object.class)),
+                (item, name) -> objectMapper.convertValue(item.get(name), javaType));
+    }
+
+    private static Function<BigDecimal, Object> numberConverterForType(Class<?> type) {
+        if (Integer.class.equals(type) || int.class.equals(type)) {
+            return BigDecimal::intValueExact;
+        }
+
+        if (Long.class.equals(type) || long.class.equals(type)) {
+            return BigDecimal::longValueExact;
+        }
+
+        if (Double.class.equals(type) || double.class.equals(type)) {
+            return BigDecimal::doubleValue;
+        }
+
+        if (Float.class.equals(type) || float.class.equals(type)) {
+            return BigDecimal::floatValue;
+        }
+
+        if (Short.class.equals(type) || short.class.equals(type)) {
+            return BigDecimal::shortValueExact;
+        }
+
+        if (Byte.class.equals(type) || byte.class.equals(type)) {
+            return BigDecimal::byteValueExact;
+        }
+
+        if (BigDecimal.class.equals(type)) {
+            return value -> value;
+        }
+
+        if (BigInteger.class.equals(type)) {
+            return BigDecimal::toBigIntegerExact;
+        }
+
+        return null;
+    }
+
+    @FunctionalInterface
+    private interface AttributeWriter {
+        void write(Item item, String name, Object value);
+    }
+
+    @FunctionalInterface
+    private interface AttributeReader {
+        Object read(Item item, String name);
+    }
+
+    private static class AttributeCodec {
+        private final AttributeWriter writer;
+        private final AttributeReader reader;
+
+        AttributeCodec(AttributeWriter writer, AttributeReader reader) {
+            this.writer = writer;
+            this.reader = reader;
+        }
+
+        void write(Item item, String name, Object value) {
+            writer.write(item, name, value);
+        }
+
+        Object read(Item item, String name) {
+            return reader.read(item, name);
+        }
+    }
+
+    private static class AttributeBinding {
+        private final String name;
+        private final MethodHandle getter;
+        private final MethodHandle setter;
+        private final AttributeCodec codec;
+
+        AttributeBinding(String name, MethodHandle getter, MethodHandle setter, AttributeCodec codec) {
+            this.name = name;
+            this.getter = getter;
+            this.setter = setter;
+            this.codec = codec;
+        }
+    }
+}
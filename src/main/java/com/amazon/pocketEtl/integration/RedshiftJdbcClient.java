@@ -18,6 +18,9 @@ package com.amazon.pocketEtl.integration;
 import com.amazon.pocketEtl.EtlMetrics;
 import com.amazon.pocketEtl.EtlProfilingScope;
 import com.amazon.pocketEtl.exception.DependencyException;
+import lombok.AccessLevel;
+import lombok.EqualsAndHashCode;
+import lombok.RequiredArgsConstructor;
 import org.apache.logging.log4j.Logger;
 import org.joda.time.DateTime;
 
@@ -25,7 +28,11 @@ import javax.sql.DataSource;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.UUID;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 import static org.apache.logging.log4j.LogManager.getLogger;
@@ -43,6 +50,15 @@ public class RedshiftJdbcClient {
     private static final String S3_SOURCE_URL_TOKEN = "$s3_source_url";
     private static final String IAM_ROLE_TOKEN = "$iam_role";
     private static final String AWS_S3_REGION_TOKEN = "$aws_s3_region";
+    private static final String COPY_OPTIONS_TOKEN = "$copy_options";
+    private static final String DEDUPLICATED_TABLE_NAME_TOKEN = "$deduplicated_table_name";
+    private static final String KEY_COLUMN_LIST_TOKEN = "$key_column_list";
+    private static final String ORDER_BY_TOKEN = "$order_by";
+
+    private static final String ROW_NUMBER_COLUMN_NAME = "pocket_etl_row_number";
+    private static final String DEDUPLICATED_TABLE_SUFFIX = "_deduplicated";
+
+    private static final String MANIFEST_COPY_OPTION = "manifest";
 
     private static final String DROP_TABLE_IF_EXISTS_SQL =
             "drop table if exists " + STAGE_TABLE_NAME_TOKEN;
@@ -59,7 +75,7 @@ public class RedshiftJdbcClient {
                     "from '" + S3_SOURCE_URL_TOKEN + "' " +
                     "iam_role '" + IAM_ROLE_TOKEN + "' " +
                     "region '" + AWS_S3_REGION_TOKEN + "' " +
-                    "removequotes";
+                    "removequotes" + COPY_OPTIONS_TOKEN;
 
     private static final String DELETE_FROM_TABLE_USING_TEMPORARY_TABLE =
             "delete from " + DESTINATION_TABLE_NAME_TOKEN + " " +
@@ -70,6 +86,27 @@ public class RedshiftJdbcClient {
             "insert into " + DESTINATION_TABLE_NAME_TOKEN + " " +
                     "select * from " + STAGE_TABLE_NAME_TOKEN;
 
+    private static final String CREATE_TABLE_LIKE_SQL =
+            "create table " + STAGE_TABLE_NAME_TOKEN +
+                    " (like " + DESTINATION_TABLE_NAME_TOKEN + " including defaults)";
+
+    private static final String ALTER_TABLE_APPEND_SQL =
+            "alter table " + DESTINATION_TABLE_NAME_TOKEN + " append from " + STAGE_TABLE_NAME_TOKEN;
+
+    private static final String MERGE_REMOVE_DUPLICATES_SQL =
+            "merge into " + DESTINATION_TABLE_NAME_TOKEN + " " +
+                    "using " + STAGE_TABLE_NAME_TOKEN + " " +
+                    "on " + COLUMN_MATCH_TOKEN + " " +
+                    "remove duplicates";
+
+    private static final String INSERT_LATEST_ROW_FOR_EACH_KEY_SQL =
+            "insert into " + DEDUPLICATED_TABLE_NAME_TOKEN + " (" + COLUMN_LIST_TOKEN + ") " +
+                    "select " + COLUMN_LIST_TOKEN + " from (" +
+                    "select " + COLUMN_LIST_TOKEN + ", " +
+                    "row_number() over (partition by " + KEY_COLUMN_LIST_TOKEN + ORDER_BY_TOKEN + ") as " + ROW_NUMBER_COLUMN_NAME + " " +
+                    "from " + STAGE_TABLE_NAME_TOKEN + ") as ranked " +
+                    "where " + ROW_NUMBER_COLUMN_NAME + " = 1";
+
     private static final String DELETE_ALL_ROWS_FROM_DESTINATION_TABLE =
             "delete from " + DESTINATION_TABLE_NAME_TOKEN;
 
@@ -77,6 +114,7 @@ public class RedshiftJdbcClient {
             "truncate " + DESTINATION_TABLE_NAME_TOKEN;
 
     private final DataSource dataSource;
+    private final Supplier<String> uniqueIdSupplier;
 
     /**
      * Standard constructor.
@@ -84,7 +122,13 @@ public class RedshiftJdbcClient {
      * @param dataSource JDBC datasource for a Redshift database.
      */
     public RedshiftJdbcClient(DataSource dataSource) {
+        this(dataSource, () -> UUID.randomUUID().toString().replace("-", ""));
+    }
+
+    // Visible for testing.
+    RedshiftJdbcClient(DataSource dataSource, Supplier<String> uniqueIdSupplier) {
         this.dataSource = dataSource;
+        this.uniqueIdSupplier = uniqueIdSupplier;
     }
 
     /**
@@ -102,8 +146,169 @@ public class RedshiftJdbcClient {
      */
     public void copyAndMerge(List<String> fileColumnNames, List<String> keyColumnNames, String destinationTableName, String sourceS3bucket,
                              String sourceS3prefix, String sourceS3region, String iamRoleToAssume, EtlMetrics parentMetrics) {
-        try (EtlProfilingScope ignored = new EtlProfilingScope(parentMetrics, "RedshiftJdbcClient.copyAndMerge")) {
-            String s3Url = String.format("s3://%s/%s/", sourceS3bucket, sourceS3prefix);
+        copyAndMerge(fileColumnNames, keyColumnNames, destinationTableName, sourceS3bucket, sourceS3prefix,
+                sourceS3region, iamRoleToAssume, Collections.emptyList(), parentMetrics);
+    }
+
+    /**
+     * Loads data from an S3 file (PSV) into a staging table, then deletes and inserts all the records into a destination
+     * table, adding extra options to the COPY command.
+     *
+     * @param fileColumnNames      List of column names to map the data onto (in the order they are found in the file)
+     * @param keyColumnNames       List of key column names to uniquely identify records from this dataset
+     * @param destinationTableName The table name of the final destination table
+     * @param sourceS3bucket       S3 Bucket where the data to loader can be found
+     * @param sourceS3prefix       Key prefix to locate al the files in S3 to loader
+     * @param sourceS3region       S3 region where the bucket is hosted
+     * @param iamRoleToAssume      IAM role assumed by Redshift to read the data from S3
+     * @param copyOptions          Extra options appended to the COPY command, eg: GZIP for compressed files
+     * @param parentMetrics        Parent metrics object to log timers and counters into
+     */
+    public void copyAndMerge(List<String> fileColumnNames, List<String> keyColumnNames, String destinationTableName, String sourceS3bucket,
+                             String sourceS3prefix, String sourceS3region, String iamRoleToAssume, List<String> copyOptions,
+                             EtlMetrics parentMetrics) {
+        copyAndMergeFromS3Url(fileColumnNames, keyColumnNames, destinationTableName,
+                String.format("s3://%s/%s/", sourceS3bucket, sourceS3prefix), sourceS3region, iamRoleToAssume,
+                copyOptions, parentMetrics);
+    }
+
+    /**
+     * Loads exactly the data files listed in a COPY manifest in S3 into a staging table, then deletes and inserts all the
+     * records into a destination table. Unlike copying from a key prefix, no other files that happen to share a prefix
+     * with the data files will be loaded.
+     *
+     * @param fileColumnNames      List of column names to map the data onto (in the order they are found in the file)
+     * @param keyColumnNames       List of key column names to uniquely identify records from this dataset
+     * @param destinationTableName The table name of the final destination table
+     * @param manifestS3bucket     S3 Bucket where the manifest can be found
+     * @param manifestS3key        S3 Key of the manifest that lists the files to load
+     * @param sourceS3region       S3 region where the bucket is hosted
+     * @param iamRoleToAssume      IAM role assumed by Redshift to read the data from S3
+     * @param copyOptions          Extra options appended to the COPY command, eg: GZIP for compressed files
+     * @param parentMetrics        Parent metrics object to log timers and counters into
+     */
+    public void copyAndMergeFromManifest(List<String> fileColumnNames, List<String> keyColumnNames, String destinationTableName,
+                                         String manifestS3bucket, String manifestS3key, String sourceS3region,
+                                         String iamRoleToAssume, List<String> copyOptions, EtlMetrics parentMetrics) {
+        copyAndMergeFromS3Url(fileColumnNames, keyColumnNames, destinationTableName,
+                String.format("s3://%s/%s", manifestS3bucket, manifestS3key), sourceS3region, iamRoleToAssume,
+                withManifestOption(copyOptions), parentMetrics);
+    }
+
+    /**
+     * Loads exactly the data files listed in a COPY manifest in S3 into a staging table, then appends all the records to
+     * a destination table with ALTER TABLE APPEND. This moves the loaded data blocks into the destination table rather
+     * than copying them, so it is much faster than inserting the records and does not leave the table needing a VACUUM,
+     * but it does not check for or replace any existing records with the same key. It is therefore only suitable for
+     * data that is only ever appended to. ALTER TABLE APPEND cannot run inside a transaction, so the staging table is a
+     * permanent table that is dropped afterwards.
+     *
+     * @param fileColumnNames      List of column names to map the data onto (in the order they are found in the file)
+     * @param destinationTableName The table name of the final destination table
+     * @param manifestS3bucket     S3 Bucket where the manifest can be found
+     * @param manifestS3key        S3 Key of the manifest that lists the files to load
+     * @param sourceS3region       S3 region where the bucket is hosted
+     * @param iamRoleToAssume      IAM role assumed by Redshift to read the data from S3
+     * @param copyOptions          Extra options appended to the COPY command, eg: GZIP for compressed files
+     * @param parentMetrics        Parent metrics object to log timers and counters into
+     */
+    public void copyAndAppendFromManifest(List<String> fileColumnNames, String destinationTableName, String manifestS3bucket,
+                                          String manifestS3key, String sourceS3region, String iamRoleToAssume,
+                                          List<String> copyOptions, EtlMetrics parentMetrics) {
+        copyIntoStageTableAndMerge("copyAndAppend", fileColumnNames, destinationTableName,
+                String.format("s3://%s/%s", manifestS3bucket, manifestS3key), sourceS3region, iamRoleToAssume,
+                withManifestOption(copyOptions), parentMetrics, true,
+                (connection, stageTableName) -> alterTableAppend(connection, stageTableName, destinationTableName));
+    }
+
+    /**
+     * Loads exactly the data files listed in a COPY manifest in S3 into a staging table, then merges the records into a
+     * destination table with a single MERGE command that replaces any existing records with the same key. This needs a
+     * version of Redshift that supports MERGE, and the data being loaded must not contain more than one record with the
+     * same key or Redshift will reject it.
+     *
+     * @param fileColumnNames      List of column names to map the data onto (in the order they are found in the file)
+     * @param keyColumnNames       List of key column names to uniquely identify records from this dataset
+     * @param destinationTableName The table name of the final destination table
+     * @param manifestS3bucket     S3 Bucket where the manifest can be found
+     * @param manifestS3key        S3 Key of the manifest that lists the files to load
+     * @param sourceS3region       S3 region where the bucket is hosted
+     * @param iamRoleToAssume      IAM role assumed by Redshift to read the data from S3
+     * @param copyOptions          Extra options appended to the COPY command, eg: GZIP for compressed files
+     * @param parentMetrics        Parent metrics object to log timers and counters into
+     */
+    public void copyAndMergeCommandFromManifest(List<String> fileColumnNames, List<String> keyColumnNames,
+                                                String destinationTableName, String manifestS3bucket, String manifestS3key,
+                                                String sourceS3region, String iamRoleToAssume, List<String> copyOptions,
+                                                EtlMetrics parentMetrics) {
+        copyIntoStageTableAndMerge("copyAndMergeCommand", fileColumnNames, destinationTableName,
+                String.format("s3://%s/%s", manifestS3bucket, manifestS3key), sourceS3region, iamRoleToAssume,
+                withManifestOption(copyOptions), parentMetrics, false,
+                (connection, stageTableName) ->
+                        mergeRemovingDuplicates(connection, keyColumnNames, stageTableName, destinationTableName));
+    }
+
+    /**
+     * Loads exactly the data files listed in a COPY manifest in S3 into a staging table, reduces the staged records to
+     * the latest record for each key, then deletes and inserts those records into a destination table. When the data
+     * being loaded has many records for the same key this keeps the delete, and the number of rows inserted, as small
+     * as possible.
+     *
+     * @param fileColumnNames      List of column names to map the data onto (in the order they are found in the file)
+     * @param keyColumnNames       List of key column names to uniquely identify records from this dataset
+     * @param latestRowColumnName  Column whose highest value marks the latest record for each key, or null to keep an
+     *                             arbitrary record for each key
+     * @param destinationTableName The table name of the final destination table
+     * @param manifestS3bucket     S3 Bucket where the manifest can be found
+     * @param manifestS3key        S3 Key of the manifest that lists the files to load
+     * @param sourceS3region       S3 region where the bucket is hosted
+     * @param iamRoleToAssume      IAM role assumed by Redshift to read the data from S3
+     * @param copyOptions          Extra options appended to the COPY command, eg: GZIP for compressed files
+     * @param parentMetrics        Parent metrics object to log timers and counters into
+     */
+    public void copyDeduplicateAndMergeFromManifest(List<String> fileColumnNames, List<String> keyColumnNames,
+                                                    String latestRowColumnName, String destinationTableName,
+                                                    String manifestS3bucket, String manifestS3key, String sourceS3region,
+                                                    String iamRoleToAssume, List<String> copyOptions,
+                                                    EtlMetrics parentMetrics) {
+        copyIntoStageTableAndMerge("copyDeduplicateAndMerge", fileColumnNames, destinationTableName,
+                String.format("s3://%s/%s", manifestS3bucket, manifestS3key), sourceS3region, iamRoleToAssume,
+                withManifestOption(copyOptions), parentMetrics, false,
+                (connection, stageTableName) -> {
+                    String deduplicatedTableName = stageTableName + DEDUPLICATED_TABLE_SUFFIX;
+                    createTemporaryTableLikeExistingTable(connection, deduplicatedTableName, destinationTableName);
+                    insertLatestRowForEachKey(connection, fileColumnNames, keyColumnNames, latestRowColumnName,
+                            stageTableName, deduplicatedTableName);
+                    deleteFromRealTableUsingTemporaryTable(connection, keyColumnNames, deduplicatedTableName,
+                            destinationTableName);
+                    insertFromTemporaryTable(connection, deduplicatedTableName, destinationTableName);
+                    dropTable(connection, deduplicatedTableName);
+                });
+    }
+
+    private void copyAndMergeFromS3Url(List<String> fileColumnNames, List<String> keyColumnNames, String destinationTableName,
+                                       String s3Url, String sourceS3region, String iamRoleToAssume, List<String> copyOptions,
+                                       EtlMetrics parentMetrics) {
+        copyIntoStageTableAndMerge("copyAndMerge", fileColumnNames, destinationTableName, s3Url,
+                sourceS3region, iamRoleToAssume, copyOptions, parentMetrics, false,
+                (connection, stageTableName) -> {
+                    deleteFromRealTableUsingTemporaryTable(connection, keyColumnNames, stageTableName,
+                            destinationTableName);
+                    insertFromTemporaryTable(connection, stageTableName, destinationTableName);
+                });
+    }
+
+    /*
+     * Copies data from S3 into a new staging table that is like the destination table, runs a merge of the staging
+     * table into the destination table and then drops the staging table. The merge runs in a transaction unless it is
+     * an ALTER TABLE APPEND, which Redshift does not allow inside a transaction and which needs a permanent staging
+     * table rather than a temporary one.
+     */
+    private void copyIntoStageTableAndMerge(String operationName, List<String> fileColumnNames,
+                                            String destinationTableName, String s3Url, String sourceS3region,
+                                            String iamRoleToAssume, List<String> copyOptions, EtlMetrics parentMetrics,
+                                            boolean isAlterTableAppend, StageTableMerge stageTableMerge) {
+        try (EtlProfilingScope ignored = new EtlProfilingScope(parentMetrics, "RedshiftJdbcClient." + operationName)) {
             String stageTableName = generateStageTableName();
             Connection connection = null;
 
@@ -115,24 +320,35 @@ public class RedshiftJdbcClient {
                 }
 
                 dropTableIfExists(connection, stageTableName);
-                createTemporaryTableLikeExistingTable(connection, stageTableName, destinationTableName);
 
-                copyFromS3ToRedshiftTable(connection, fileColumnNames, stageTableName, s3Url, iamRoleToAssume, sourceS3region);
+                if (isAlterTableAppend) {
+                    createTableLikeExistingTable(connection, stageTableName, destinationTableName);
+                } else {
+                    createTemporaryTableLikeExistingTable(connection, stageTableName, destinationTableName);
+                }
 
-                connection.setAutoCommit(false);
+                copyFromS3ToRedshiftTable(connection, fileColumnNames, stageTableName, s3Url, iamRoleToAssume, sourceS3region,
+                        copyOptions);
 
-                deleteFromRealTableUsingTemporaryTable(connection, keyColumnNames, stageTableName, destinationTableName);
-                insertFromTemporaryTable(connection, stageTableName, destinationTableName);
+                if (isAlterTableAppend) {
+                    stageTableMerge.merge(connection, stageTableName);
+                } else {
+                    connection.setAutoCommit(false);
 
-                connection.commit();
+                    stageTableMerge.merge(connection, stageTableName);
+
+                    connection.commit();
+
+                    connection.setAutoCommit(true);
+                }
 
-                connection.setAutoCommit(true);
                 dropTable(connection, stageTableName);
                 connection.close();
             } catch (SQLException e) {
                 if (connection != null) {
                     // Attempt a rollback if something went wrong
-                    logger.warn("SQL exception thrown during Redshift copyAndMerge operation, rolling back transaction", e);
+                    logger.warn("SQL exception thrown during Redshift " + operationName +
+                            " operation, rolling back transaction", e);
                     attemptRollbackOnException(connection, e);
                 }
             } finally {
@@ -161,8 +377,56 @@ public class RedshiftJdbcClient {
      */
     public void deleteAndCopy(List<String> fileColumnNames, String destinationTableName, String sourceS3bucket, String sourceS3prefix,
                               String sourceS3region, String iamRoleToAssume, EtlMetrics parentMetrics) {
+        deleteAndCopy(fileColumnNames, destinationTableName, sourceS3bucket, sourceS3prefix, sourceS3region,
+                iamRoleToAssume, Collections.emptyList(), parentMetrics);
+    }
+
+    /**
+     * Deletes all the rows of destination table and then loads data from S3 into destination table, adding extra options
+     * to the COPY command.
+     *
+     * @param fileColumnNames      List of column names to map the data onto (in the order they are found in the file)
+     * @param destinationTableName The table name of the final destination table
+     * @param sourceS3bucket       S3 Bucket where the data to loader can be found
+     * @param sourceS3prefix       Key prefix to locate al the files in S3 to loader
+     * @param sourceS3region       S3 region where the bucket is hosted
+     * @param iamRoleToAssume      IAM role assumed by Redshift to read the data from S3
+     * @param copyOptions          Extra options appended to the COPY command, eg: GZIP for compressed files
+     * @param parentMetrics        Parent metrics object to log timers and counters into
+     */
+    public void deleteAndCopy(List<String> fileColumnNames, String destinationTableName, String sourceS3bucket, String sourceS3prefix,
+                              String sourceS3region, String iamRoleToAssume, List<String> copyOptions,
+                              EtlMetrics parentMetrics) {
+        deleteAndCopyFromS3Url(fileColumnNames, destinationTableName,
+                String.format("s3://%s/%s/", sourceS3bucket, sourceS3prefix), sourceS3region, iamRoleToAssume,
+                copyOptions, parentMetrics);
+    }
+
+    /**
+     * Deletes all the rows of destination table and then loads exactly the data files listed in a COPY manifest in S3
+     * into destination table.
+     *
+     * @param fileColumnNames      List of column names to map the data onto (in the order they are found in the file)
+     * @param destinationTableName The table name of the final destination table
+     * @param manifestS3bucket     S3 Bucket where the manifest can be found
+     * @param manifestS3key        S3 Key of the manifest that lists the files to load
+     * @param sourceS3region       S3 region where the bucket is hosted
+     * @param iamRoleToAssume      IAM role assumed by Redshift to read the data from S3
+     * @param copyOptions          Extra options appended to the COPY command, eg: GZIP for compressed files
+     * @param parentMetrics        Parent metrics object to log timers and counters into
+     */
+    public void deleteAndCopyFromManifest(List<String> fileColumnNames, String destinationTableName, String manifestS3bucket,
+                                          String manifestS3key, String sourceS3region, String iamRoleToAssume,
+                                          List<String> copyOptions, EtlMetrics parentMetrics) {
+        deleteAndCopyFromS3Url(fileColumnNames, destinationTableName,
+                String.format("s3://%s/%s", manifestS3bucket, manifestS3key), sourceS3region, iamRoleToAssume,
+                withManifestOption(copyOptions), parentMetrics);
+    }
+
+    private void deleteAndCopyFromS3Url(List<String> fileColumnNames, String destinationTableName, String s3Url,
+                                        String sourceS3region, String iamRoleToAssume, List<String> copyOptions,
+                                        EtlMetrics parentMetrics) {
         try (EtlProfilingScope ignored = new EtlProfilingScope(parentMetrics, "RedshiftJdbcClient.deleteAndCopy")) {
-            String s3Url = String.format("s3://%s/%s/", sourceS3bucket, sourceS3prefix);
             Connection connection = null;
 
             try {
@@ -175,7 +439,8 @@ public class RedshiftJdbcClient {
                 connection.setAutoCommit(false);
 
                 deleteAllRowsFromDestinationTable(connection, destinationTableName);
-                copyFromS3ToRedshiftTable(connection, fileColumnNames, destinationTableName, s3Url, iamRoleToAssume, sourceS3region);
+                copyFromS3ToRedshiftTable(connection, fileColumnNames, destinationTableName, s3Url, iamRoleToAssume, sourceS3region,
+                        copyOptions);
 
                 connection.commit();
 
@@ -197,6 +462,142 @@ public class RedshiftJdbcClient {
         }
     }
 
+    /**
+     * Loads exactly the data files listed in a COPY manifest in S3 into a new staging table that is like the destination
+     * table, and leaves it there to be published later by {@link #publishStageTables(List, EtlMetrics)}. The staging
+     * table is a permanent table with a unique name, so any number of these can run at the same time, on any number of
+     * connections, without interfering with each other.
+     *
+     * @param fileColumnNames      List of column names to map the data onto (in the order they are found in the file)
+     * @param destinationTableName The table name of the final destination table
+     * @param manifestS3bucket     S3 Bucket where the manifest can be found
+     * @param manifestS3key        S3 Key of the manifest that lists the files to load
+     * @param sourceS3region       S3 region where the bucket is hosted
+     * @param iamRoleToAssume      IAM role assumed by Redshift to read the data from S3
+     * @param copyOptions          Extra options appended to the COPY command, eg: GZIP for compressed files
+     * @param parentMetrics        Parent metrics object to log timers and counters into
+     * @return The name of the staging table the data was loaded into.
+     */
+    public String copyIntoNewStageTableFromManifest(List<String> fileColumnNames, String destinationTableName,
+                                                    String manifestS3bucket, String manifestS3key, String sourceS3region,
+                                                    String iamRoleToAssume, List<String> copyOptions,
+                                                    EtlMetrics parentMetrics) {
+        try (EtlProfilingScope ignored = new EtlProfilingScope(parentMetrics, "RedshiftJdbcClient.copyIntoNewStageTable")) {
+            String stageTableName = generateStageTableName();
+            Connection connection = null;
+            boolean copySucceeded = false;
+
+            try {
+                connection = dataSource.getConnection();
+
+                if (connection == null) {
+                    throw new DependencyException("DataSource returned null connection");
+                }
+
+                createTableLikeExistingTable(connection, stageTableName, destinationTableName);
+                copyFromS3ToRedshiftTable(connection, fileColumnNames, stageTableName,
+                        String.format("s3://%s/%s", manifestS3bucket, manifestS3key), iamRoleToAssume, sourceS3region,
+                        withManifestOption(copyOptions));
+                copySucceeded = true;
+                connection.close();
+                return stageTableName;
+            } catch (SQLException e) {
+                logger.warn("SQL exception thrown during Redshift copyIntoNewStageTable operation", e);
+                throw new RuntimeException(e);
+            } finally {
+                // If the copy did not succeed then attempt to drop the staging table if it exists then close it
+                try {
+                    if (!copySucceeded && connection != null && !connection.isClosed()) {
+                        dropTableIfExists(connection, stageTableName);
+                        connection.close();
+                    }
+                } catch (SQLException ignored2) {
+                }
+            }
+        }
+    }
+
+    /**
+     * Publishes a number of staging tables into their destination tables in a single transaction, so either all of the
+     * destination tables are updated or none of them are, then drops the staging tables. If the transaction fails the
+     * staging tables are kept, so that publishing them can be retried or they can be dropped with
+     * {@link #dropStageTables(List)}.
+     *
+     * @param stagedTables  Staging tables to publish, in the order they should be published.
+     * @param parentMetrics Parent metrics object to log timers and counters into
+     */
+    public void publishStageTables(List<StagedTable> stagedTables, EtlMetrics parentMetrics) {
+        try (EtlProfilingScope ignored = new EtlProfilingScope(parentMetrics, "RedshiftJdbcClient.publishStageTables")) {
+            Connection connection = null;
+            boolean publishSucceeded = false;
+
+            try {
+                connection = dataSource.getConnection();
+
+                if (connection == null) {
+                    throw new DependencyException("DataSource returned null connection");
+                }
+
+                connection.setAutoCommit(false);
+
+                for (StagedTable stagedTable : stagedTables) {
+                    publishStageTable(connection, stagedTable);
+                }
+
+                connection.commit();
+                publishSucceeded = true;
+            } catch (SQLException e) {
+                if (connection == null) {
+                    logger.warn("SQL exception thrown during Redshift publishStageTables operation", e);
+                    throw new RuntimeException(e);
+                }
+
+                // Attempt a rollback if something went wrong
+                logger.warn("SQL exception thrown during Redshift publishStageTables operation, rolling back transaction", e);
+                attemptRollbackOnException(connection, e);
+            } finally {
+                // The staging tables are only dropped once their data has been published, the drops are committed as
+                // they go now the transaction is over
+                try {
+                    if (connection != null && !connection.isClosed()) {
+                        if (publishSucceeded) {
+                            connection.setAutoCommit(true);
+
+                            for (StagedTable stagedTable : stagedTables) {
+                                if (stagedTable.stageTableName != null) {
+                                    dropTableIfExists(connection, stagedTable.stageTableName);
+                                }
+                            }
+                        }
+
+                        connection.close();
+                    }
+                } catch (SQLException ignored2) {
+                }
+            }
+        }
+    }
+
+    /**
+     * Drops staging tables created by {@link #copyIntoNewStageTableFromManifest} that are not going to be published.
+     *
+     * @param stageTableNames Names of the staging tables to drop.
+     */
+    public void dropStageTables(List<String> stageTableNames) {
+        try (Connection connection = dataSource.getConnection()) {
+            if (connection == null) {
+                throw new DependencyException("DataSource returned null connection");
+            }
+
+            for (String stageTableName : stageTableNames) {
+                dropTableIfExists(connection, stageTableName);
+            }
+        } catch (SQLException e) {
+            logger.warn("SQL exception thrown during Redshift dropStageTables operation.", e);
+            throw new RuntimeException(e);
+        }
+    }
+
     /**
      * Deletes all the rows of given table.
      *
@@ -218,8 +619,32 @@ public class RedshiftJdbcClient {
         }
     }
 
+    private static List<String> withManifestOption(List<String> copyOptions) {
+        List<String> copyOptionsWithManifest = new ArrayList<>();
+        copyOptionsWithManifest.add(MANIFEST_COPY_OPTION);
+        copyOptionsWithManifest.addAll(copyOptions);
+        return copyOptionsWithManifest;
+    }
+
+    /*
+     * The time keeps the name readable when looking for stray staging tables, the unique id stops two loads that start
+     * in the same millisecond from colliding.
+     */
     private String generateStageTableName() {
-        return String.format("stage_%d", DateTime.now().getMillis());
+        return String.format("stage_%d_%s", DateTime.now().getMillis(), uniqueIdSupplier.get());
+    }
+
+    private void publishStageTable(Connection connection, StagedTable stagedTable) throws SQLException {
+        if (stagedTable.replacesExistingData) {
+            deleteAllRowsFromDestinationTable(connection, stagedTable.destinationTableName);
+        } else if (stagedTable.keyColumnNames != null) {
+            deleteFromRealTableUsingTemporaryTable(connection, stagedTable.keyColumnNames, stagedTable.stageTableName,
+                    stagedTable.destinationTableName);
+        }
+
+        if (stagedTable.stageTableName != null) {
+            insertFromTemporaryTable(connection, stagedTable.stageTableName, stagedTable.destinationTableName);
+        }
     }
 
     private String performSqlTableSubstitutions(String sql, String stageTableName, String destinationTableName) {
@@ -249,22 +674,35 @@ public class RedshiftJdbcClient {
         }
     }
 
+    private void createTableLikeExistingTable(Connection connection, String tableName, String likeTableName)
+            throws SQLException {
+        try (PreparedStatement preparedStatement = connection.prepareStatement(
+                performSqlTableSubstitutions(CREATE_TABLE_LIKE_SQL, tableName, likeTableName))) {
+            preparedStatement.execute();
+        }
+    }
+
     private String performSqlCopySubstitutions(String temporaryTableName, String combinedColumnNames,
-                                               String s3SourceUrl, String iamRole, String awsS3Region) {
+                                               String s3SourceUrl, String iamRole, String awsS3Region,
+                                               List<String> copyOptions) {
         return RedshiftJdbcClient.COPY_SQL.replace(STAGE_TABLE_NAME_TOKEN, temporaryTableName)
                                           .replace(COLUMN_LIST_TOKEN, combinedColumnNames)
                                           .replace(S3_SOURCE_URL_TOKEN, s3SourceUrl)
                                           .replace(IAM_ROLE_TOKEN, iamRole)
-                                          .replace(AWS_S3_REGION_TOKEN, awsS3Region);
+                                          .replace(AWS_S3_REGION_TOKEN, awsS3Region)
+                                          .replace(COPY_OPTIONS_TOKEN, copyOptions.stream()
+                                                                                  .map(option -> " " + option)
+                                                                                  .collect(Collectors.joining()));
     }
 
     private void copyFromS3ToRedshiftTable(Connection connection, List<String> fileColumnNames, String destinationTableName,
-                                           String s3SourceUrl, String iamRole, String awsS3Region) throws SQLException {
+                                           String s3SourceUrl, String iamRole, String awsS3Region,
+                                           List<String> copyOptions) throws SQLException {
 
         String combinedColumnNames = String.join(",", fileColumnNames);
         try (PreparedStatement preparedStatement = connection.prepareStatement(
                 performSqlCopySubstitutions(destinationTableName, combinedColumnNames, s3SourceUrl,
-                                            iamRole, awsS3Region))) {
+                                            iamRole, awsS3Region, copyOptions))) {
             preparedStatement.execute();
         }
     }
@@ -290,6 +728,41 @@ public class RedshiftJdbcClient {
         }
     }
 
+    private void alterTableAppend(Connection connection, String stageTableName, String destinationTableName)
+            throws SQLException {
+        try (PreparedStatement preparedStatement = connection.prepareStatement(
+                performSqlTableSubstitutions(ALTER_TABLE_APPEND_SQL, stageTableName, destinationTableName))) {
+            preparedStatement.execute();
+        }
+    }
+
+    private void mergeRemovingDuplicates(Connection connection, List<String> keyColumnNames, String stageTableName,
+                                         String destinationTableName) throws SQLException {
+        String columnMatchSQL = keyColumnNames.stream()
+                .map(columnName -> String.format("%s.%s = %s.%s", destinationTableName, columnName, stageTableName,
+                        columnName))
+                .collect(Collectors.joining(" and "));
+        try (PreparedStatement preparedStatement = connection.prepareStatement(
+                performSqlTableSubstitutions(MERGE_REMOVE_DUPLICATES_SQL, stageTableName, destinationTableName)
+                        .replace(COLUMN_MATCH_TOKEN, columnMatchSQL))) {
+            preparedStatement.execute();
+        }
+    }
+
+    private void insertLatestRowForEachKey(Connection connection, List<String> fileColumnNames,
+                                           List<String> keyColumnNames, String latestRowColumnName,
+                                           String stageTableName, String deduplicatedTableName) throws SQLException {
+        String orderBySQL = latestRowColumnName == null ? "" : " order by " + latestRowColumnName + " desc";
+        try (PreparedStatement preparedStatement = connection.prepareStatement(
+                performSqlTableSubstitutions(INSERT_LATEST_ROW_FOR_EACH_KEY_SQL, stageTableName, "")
+                        .replace(DEDUPLICATED_TABLE_NAME_TOKEN, deduplicatedTableName)
+                        .replace(COLUMN_LIST_TOKEN, String.join(",", fileColumnNames))
+                        .replace(KEY_COLUMN_LIST_TOKEN, String.join(",", keyColumnNames))
+                        .replace(ORDER_BY_TOKEN, orderBySQL))) {
+            preparedStatement.execute();
+        }
+    }
+
     private void deleteAllRowsFromDestinationTable(Connection connection, String destinationTableName) throws SQLException {
         try (PreparedStatement preparedStatement = connection.prepareStatement(
                 DELETE_ALL_ROWS_FROM_DESTINATION_TABLE.replace(DESTINATION_TABLE_NAME_TOKEN, destinationTableName))) {
@@ -315,4 +788,60 @@ public class RedshiftJdbcClient {
 
         throw new RuntimeException(cause);
     }
+
+    /**
+     * A staging table created by {@link #copyIntoNewStageTableFromManifest} and how it is to be published into its
+     * destination table by {@link #publishStageTables(List, EtlMetrics)}.
+     */
+    @EqualsAndHashCode
+    @RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+    public static class StagedTable {
+        private final String destinationTableName;
+        private final String stageTableName;
+        private final List<String> keyColumnNames;
+        private final boolean replacesExistingData;
+
+        /**
+         * Publishes a staging table by deleting the records in the destination table that have the same key as a
+         * record in the staging table, then inserting all the records from the staging table.
+         *
+         * @param destinationTableName The table name of the final destination table
+         * @param stageTableName       The name of the staging table
+         * @param keyColumnNames       List of key column names to uniquely identify records from this dataset
+         * @return A staging table to publish.
+         */
+        public static StagedTable mergeInto(String destinationTableName, String stageTableName,
+                                            List<String> keyColumnNames) {
+            return new StagedTable(destinationTableName, stageTableName, keyColumnNames, false);
+        }
+
+        /**
+         * Publishes a staging table by inserting all its records into the destination table.
+         *
+         * @param destinationTableName The table name of the final destination table
+         * @param stageTableName       The name of the staging table
+         * @return A staging table to publish.
+         */
+        public static StagedTable appendTo(String destinationTableName, String stageTableName) {
+            return new StagedTable(destinationTableName, stageTableName, null, false);
+        }
+
+        /**
+         * Publishes a staging table by deleting all the records in the destination table, then inserting all the
+         * records from the staging table.
+         *
+         * @param destinationTableName The table name of the final destination table
+         * @param stageTableName       The name of the staging table, or null to just delete all the records in the
+         *                             destination table
+         * @return A staging table to publish.
+         */
+        public static StagedTable replace(String destinationTableName, String stageTableName) {
+            return new StagedTable(destinationTableName, stageTableName, null, true);
+        }
+    }
+
+    @FunctionalInterface
+    private interface StageTableMerge {
+        void merge(Connection connection, String stageTableName) throws SQLException;
+    }
 }
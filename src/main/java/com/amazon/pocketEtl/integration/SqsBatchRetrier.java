@@ -0,0 +1,125 @@
+/*
+ *   Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package com.amazon.pocketEtl.integration;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.services.sqs.model.BatchResultErrorEntry;
+import org.apache.logging.log4j.Logger;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+import static org.apache.logging.log4j.LogManager.getLogger;
+
+/**
+ * Sends a single SQS batch request, such as SendMessageBatch or DeleteMessageBatch, retrying it until every entry has
+ * either succeeded or failed through the fault of the sender. Only the entries that are still outstanding are included
+ * in each retry, and retries are spaced out with a jittered exponential backoff. Used by SqsLoader and
+ * SqsMessageAcknowledger.
+ */
+public class SqsBatchRetrier {
+    private final static Logger logger = getLogger(SqsBatchRetrier.class);
+
+    private final static int MAXIMUM_ATTEMPTS = 5;
+    private final static long BASE_BACKOFF_IN_MILLISECONDS = 50;
+    private final static long MAXIMUM_BACKOFF_IN_MILLISECONDS = 5000;
+
+    private SqsBatchRetrier() {
+    }
+
+    /**
+     * Sends a batch of values, giving up on any that are still outstanding after 5 attempts.
+     *
+     * @param values       The values to send, at most 10 of them as that is the most an SQS batch request accepts.
+     * @param entryFactory Function that builds the request entry for a value, given the id to use for the entry.
+     * @param sendEntries  Function that sends a request made up of the given entries and returns the entries in its
+     *                     result that failed. Any entry that was sent and is not returned is treated as a success.
+     * @param action       What the request does to each value, used in log messages, eg: "send" or "delete".
+     * @param <V>          Type of value being sent.
+     * @param <E>          Type of request entry.
+     * @return The number of values that could not be sent.
+     */
+    public static <V, E> int sendWithRetries(List<V> values,
+                                             BiFunction<String, V, E> entryFactory,
+                                             Function<List<E>, List<BatchResultErrorEntry>> sendEntries,
+                                             String action) {
+        Map<String, E> outstandingEntries = new LinkedHashMap<>();
+
+        for (int i = 0; i < values.size(); i++) {
+            String id = Integer.toString(i);
+            outstandingEntries.put(id, entryFactory.apply(id, values.get(i)));
+        }
+
+        int failedCount = 0;
+
+        for (int attempt = 1; !outstandingEntries.isEmpty(); attempt++) {
+            try {
+                Map<String, E> sentEntries = new LinkedHashMap<>(outstandingEntries);
+                List<BatchResultErrorEntry> failedEntries = sendEntries.apply(new ArrayList<>(sentEntries.values()));
+                outstandingEntries.clear();
+
+                for (BatchResultErrorEntry errorEntry : failedEntries) {
+                    E entry = sentEntries.get(errorEntry.getId());
+
+                    if (entry == null) {
+                        continue;
+                    }
+
+                    if (Boolean.TRUE.equals(errorEntry.getSenderFault())) {
+                        logger.warn("SQS rejected {}: {} {}", action, errorEntry.getCode(), errorEntry.getMessage());
+                        failedCount++;
+                    } else {
+                        outstandingEntries.put(errorEntry.getId(), entry);
+                    }
+                }
+            } catch (AmazonClientException e) {
+                logger.warn("Failed to {} batch of {} messages", action, outstandingEntries.size(), e);
+            }
+
+            if (outstandingEntries.isEmpty()) {
+                break;
+            }
+
+            if (attempt >= MAXIMUM_ATTEMPTS) {
+                logger.warn("Failed to {} {} messages after {} attempts", action, outstandingEntries.size(),
+                        MAXIMUM_ATTEMPTS);
+                return failedCount + outstandingEntries.size();
+            }
+
+            try {
+                Thread.sleep(backoffInMillis(attempt));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                logger.warn("Interrupted trying to {} batch of {} messages", action, outstandingEntries.size(), e);
+                return failedCount + outstandingEntries.size();
+            }
+        }
+
+        return failedCount;
+    }
+
+    // 'Full jitter' backoff: a random delay up to an exponentially growing cap, so that batches that were throttled
+    // at the same time do not all retry at the same time.
+    private static long backoffInMillis(int attempt) {
+        long cap = Math.min(MAXIMUM_BACKOFF_IN_MILLISECONDS, BASE_BACKOFF_IN_MILLISECONDS << Math.min(attempt, 20));
+        return ThreadLocalRandom.current().nextLong(cap + 1);
+    }
+}
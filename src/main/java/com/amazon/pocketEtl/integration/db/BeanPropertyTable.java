@@ -0,0 +1,193 @@
+/*
+ *   Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package com.amazon.pocketEtl.integration.db;
+
+import javax.annotation.Nullable;
+import java.beans.BeanInfo;
+import java.beans.IntrospectionException;
+import java.beans.Introspector;
+import java.beans.PropertyDescriptor;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.invoke.WrongMethodTypeException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Member;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The bean properties of a class, looked up by name ignoring case in the same way that database columns are matched to
+ * properties. Each class is introspected once and its table is shared by everything that reads or writes objects of it:
+ * the JDBC mappers and loaders, DynamoDbItemMapper and the CSV row writers.
+ *
+ * Getters and setters are returned as method handles of type (Object)Object and (Object,Object)void respectively, and
+ * are only created the first time they are asked for. They can be looked up either by property name or by the method or
+ * field that accesses the value, for callers such as Jackson that find their own accessors. Access checks are
+ * suppressed so that bean classes do not need to be public.
+ */
+public class BeanPropertyTable {
+    private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+    private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+
+    private static final ClassValue<BeanPropertyTable> tables = new ClassValue<BeanPropertyTable>() {
+        @Override
+        protected BeanPropertyTable computeValue(Class<?> type) {
+            return new BeanPropertyTable(type);
+        }
+    };
+
+    private final List<PropertyDescriptor> propertyList;
+    private final Map<String, PropertyDescriptor> properties;
+    private final Map<Member, MethodHandle> getters = new ConcurrentHashMap<>();
+    private final Map<Member, MethodHandle> setters = new ConcurrentHashMap<>();
+
+    /**
+     * Get the property table of a class.
+     * @param type The bean class.
+     * @return The shared property table of that class.
+     * @throws IllegalArgumentException If the class cannot be introspected.
+     */
+    public static BeanPropertyTable of(Class<?> type) {
+        return tables.get(type);
+    }
+
+    private BeanPropertyTable(Class<?> type) {
+        List<PropertyDescriptor> propertyList = new ArrayList<>();
+        Map<String, PropertyDescriptor> properties = new HashMap<>();
+
+        try {
+            BeanInfo info = Introspector.getBeanInfo(type);
+
+            for (PropertyDescriptor descriptor : info.getPropertyDescriptors()) {
+                propertyList.add(descriptor);
+                properties.put(descriptor.getName().toLowerCase(), descriptor);
+            }
+        }
+        catch (IntrospectionException e) {
+            throw new IllegalArgumentException(e);
+        }
+
+        this.propertyList = Collections.unmodifiableList(propertyList);
+        this.properties = Collections.unmodifiableMap(properties);
+    }
+
+    /**
+     * Get every property of the class, including the 'class' property every object has.
+     * @return The properties in the order the Introspector returned them.
+     */
+    public List<PropertyDescriptor> getProperties() {
+        return propertyList;
+    }
+
+    /**
+     * Find a property by name, ignoring case.
+     * @param name The name of the property.
+     * @return The property, or null if the class has no property with that name.
+     */
+    @Nullable
+    public PropertyDescriptor getProperty(String name) {
+        return properties.get(name.toLowerCase());
+    }
+
+    /**
+     * Get a method handle that reads a property.
+     * @param name The name of the property, ignoring case.
+     * @return A method handle of type (Object)Object, or null if there is no readable property with that name.
+     * @throws IllegalArgumentException If the getter cannot be accessed.
+     */
+    @Nullable
+    public MethodHandle getGetter(String name) {
+        PropertyDescriptor descriptor = getProperty(name);
+        Method readMethod = descriptor == null ? null : descriptor.getReadMethod();
+
+        return readMethod == null ? null : getGetter(readMethod);
+    }
+
+    /**
+     * Get a method handle that writes a property.
+     * @param name The name of the property, ignoring case.
+     * @return A method handle of type (Object,Object)void, or null if there is no writable property with that name.
+     * @throws IllegalArgumentException If the setter cannot be accessed.
+     */
+    @Nullable
+    public MethodHandle getSetter(String name) {
+        PropertyDescriptor descriptor = getProperty(name);
+        Method writeMethod = descriptor == null ? null : descriptor.getWriteMethod();
+
+        return writeMethod == null ? null : getSetter(writeMethod);
+    }
+
+    /**
+     * Get a method handle that reads a value through a no-argument method or a field of the class.
+     * @param member The method or field.
+     * @return A method handle of type (Object)Object.
+     * @throws IllegalArgumentException If the member is not a method or field, or cannot be accessed.
+     */
+    public MethodHandle getGetter(Member member) {
+        return getters.computeIfAbsent(member, key -> {
+            try {
+                if (key instanceof Method) {
+                    ((Method) key).setAccessible(true);
+                    return MethodHandles.lookup().unreflect((Method) key).asType(GETTER_TYPE);
+                }
+
+                if (key instanceof Field) {
+                    ((Field) key).setAccessible(true);
+                    return MethodHandles.lookup().unreflectGetter((Field) key).asType(GETTER_TYPE);
+                }
+            }
+            catch (IllegalAccessException | SecurityException | WrongMethodTypeException e) {
+                throw new IllegalArgumentException(String.format("Unable to access getter, %s", key.getName()), e);
+            }
+
+            throw new IllegalArgumentException(String.format("Cannot read a value through %s", key.getName()));
+        });
+    }
+
+    /**
+     * Get a method handle that writes a value through a one-argument method or a non-final field of the class.
+     * @param member The method or field.
+     * @return A method handle of type (Object,Object)void.
+     * @throws IllegalArgumentException If the member is not a method or non-final field, or cannot be accessed.
+     */
+    public MethodHandle getSetter(Member member) {
+        return setters.computeIfAbsent(member, key -> {
+            try {
+                if (key instanceof Method) {
+                    ((Method) key).setAccessible(true);
+                    return MethodHandles.lookup().unreflect((Method) key).asType(SETTER_TYPE);
+                }
+
+                if (key instanceof Field && !Modifier.isFinal(key.getModifiers())) {
+                    ((Field) key).setAccessible(true);
+                    return MethodHandles.lookup().unreflectSetter((Field) key).asType(SETTER_TYPE);
+                }
+            }
+            catch (IllegalAccessException | SecurityException | WrongMethodTypeException e) {
+                throw new IllegalArgumentException(String.format("Unable to access setter, %s", key.getName()), e);
+            }
+
+            throw new IllegalArgumentException(String.format("Cannot write a value through %s", key.getName()));
+        });
+    }
+}
@@ -15,17 +15,16 @@
 
 package com.amazon.pocketEtl.integration.db.jdbi;
 
+import com.amazon.pocketEtl.integration.db.BeanPropertyTable;
 import org.joda.time.DateTime;
 import org.joda.time.format.DateTimeFormat;
+import org.joda.time.format.DateTimeFormatter;
 import org.skife.jdbi.v2.StatementContext;
 import org.skife.jdbi.v2.tweak.ResultSetMapper;
 
 import javax.annotation.Nullable;
-import java.beans.BeanInfo;
-import java.beans.IntrospectionException;
-import java.beans.Introspector;
 import java.beans.PropertyDescriptor;
-import java.lang.reflect.InvocationTargetException;
+import java.lang.invoke.MethodHandle;
 import java.math.BigDecimal;
 import java.sql.Date;
 import java.sql.ResultSet;
@@ -35,7 +34,6 @@ import java.sql.Time;
 import java.sql.Timestamp;
 import java.sql.Types;
 import java.util.AbstractMap.SimpleImmutableEntry;
-import java.util.HashMap;
 import java.util.Map;
 import java.util.function.BiConsumer;
 
@@ -47,33 +45,28 @@ import java.util.function.BiConsumer;
  * Also, once the column extracted from the resultset does not map to any property in DTO and DTO has a property named
  * 'otherInformation' of type Map, then it adds the column name and value in a LinkedHashMap and adds it to the DTO.
  *
+ * The work of matching columns to properties and choosing how to read each column is done once per ResultSet, when its
+ * first row (row 0) is mapped, and compiled into a binding plan. Every row after that is mapped by simply running
+ * through the plan.
+ *
  * @param <T> Type of DTO being mapped into
  */
 class EtlBeanMapper<T> implements ResultSetMapper<T> {
-    private static final String DATE_TIME_FORMAT = "yyyy-MM-dd HH:mm:ss";
+    private static final DateTimeFormatter DATE_TIME_FORMATTER = DateTimeFormat.forPattern("yyyy-MM-dd HH:mm:ss");
 
     private final Class<T> type;
-    private final Map<String, PropertyDescriptor> properties = new HashMap<>();
+    private final BeanPropertyTable properties;
     private final BiConsumer<T, Map.Entry<String, String>> secondaryMapper;
 
+    private ColumnBinding[] bindingPlan = null;
+
     EtlBeanMapper(Class<T> type, @Nullable BiConsumer<T, Map.Entry<String, String>> secondaryMapper)
     {
         this.type = type;
         this.secondaryMapper = secondaryMapper;
-
-        try {
-            BeanInfo info = Introspector.getBeanInfo(type);
-
-            for (PropertyDescriptor descriptor : info.getPropertyDescriptors()) {
-                properties.put(descriptor.getName().toLowerCase(), descriptor);
-            }
-        }
-        catch (IntrospectionException e) {
-            throw new IllegalArgumentException(e);
-        }
+        this.properties = BeanPropertyTable.of(type);
     }
 
-    @SuppressWarnings({"unchecked", "rawtypes"})
     public T map(int row, ResultSet rs, StatementContext ctx)
             throws SQLException
     {
@@ -86,115 +79,164 @@ class EtlBeanMapper<T> implements ResultSetMapper<T> {
                     "which was not instantiable", type.getName()), e);
         }
 
-        ResultSetMetaData metadata = rs.getMetaData();
+        // JDBI numbers the rows of each ResultSet from zero, so row 0 is the start of a ResultSet whose columns may
+        // differ from the last one. Keying on the row number avoids holding on to the ResultSet itself.
+        if (bindingPlan == null || row == 0) {
+            bindingPlan = compileBindingPlan(rs);
+        }
+
+        for (ColumnBinding binding : bindingPlan) {
+            binding.bind(bean, rs);
+        }
+
+        return bean;
+    }
 
-        for (int i = 1; i <= metadata.getColumnCount(); ++i) {
-            String name = metadata.getColumnLabel(i).toLowerCase();
+    private ColumnBinding[] compileBindingPlan(ResultSet rs) throws SQLException {
+        ResultSetMetaData metadata = rs.getMetaData();
+        int columnCount = metadata.getColumnCount();
+        ColumnBinding[] bindings = new ColumnBinding[columnCount];
+        int bindingCount = 0;
 
-            PropertyDescriptor descriptor = properties.get(name);
+        for (int i = 1; i <= columnCount; ++i) {
+            String label = metadata.getColumnLabel(i);
+            String name = label.toLowerCase();
+            PropertyDescriptor descriptor = properties.getProperty(name);
+            ColumnBinding binding = null;
 
             if (descriptor != null) {
-                Class type = descriptor.getPropertyType();
-                Object value = getValueForTypeFromResultSet(i, rs, type);
-                setBeanPropertyValue(bean, descriptor, name, value);
+                binding = propertyBinding(i, name, descriptor);
             } else if (secondaryMapper != null) {
-                String value;
-                int columnType = metadata.getColumnType(i);
-
-                if(columnType == Types.DATE || columnType == Types.TIMESTAMP) {
-                    DateTime dateTime = (DateTime) getValueForTypeFromResultSet(i, rs, DateTime.class);
-                    value = dateTime.toString(DateTimeFormat.forPattern(DATE_TIME_FORMAT));
-                } else {
-                    value = (String)getValueForTypeFromResultSet(i, rs, String.class);
-                }
+                binding = secondaryMapperBinding(i, label, metadata.getColumnType(i));
+            }
 
-                secondaryMapper.accept(bean, new SimpleImmutableEntry(metadata.getColumnLabel(i), value));
+            if (binding != null) {
+                bindings[bindingCount++] = binding;
             }
         }
 
-        return bean;
+        ColumnBinding[] compactedBindings = new ColumnBinding[bindingCount];
+        System.arraycopy(bindings, 0, compactedBindings, 0, bindingCount);
+        return compactedBindings;
+    }
+
+    private ColumnBinding propertyBinding(int columnIndex, String name, PropertyDescriptor descriptor) {
+        ColumnReader reader = readerForType(descriptor.getPropertyType());
+        MethodHandle setter = properties.getSetter(name);
+
+        if (setter == null) {
+            throw new IllegalArgumentException(String.format("No appropriate method to " +
+                    "write property %s", name));
+        }
+
+        return (bean, rs) -> {
+            Object value = reader.read(rs, columnIndex);
+
+            try {
+                setter.invokeExact(bean, value);
+            }
+            catch (Error e) {
+                throw e;
+            }
+            catch (Throwable e) {
+                throw new IllegalArgumentException(String.format("Invocation target exception trying to " +
+                        "invoker setter for the %s property", name), e);
+            }
+        };
     }
 
     @SuppressWarnings("unchecked")
-    private Object getValueForTypeFromResultSet(int columnIndex, ResultSet rs, Class type) throws SQLException {
-        Object value;
+    private ColumnBinding secondaryMapperBinding(int columnIndex, String label, int columnType) {
+        if (columnType == Types.DATE || columnType == Types.TIMESTAMP) {
+            ColumnReader reader = readerForType(DateTime.class);
+
+            return (bean, rs) -> {
+                DateTime dateTime = (DateTime) reader.read(rs, columnIndex);
+                String value = dateTime.toString(DATE_TIME_FORMATTER);
+                secondaryMapper.accept((T) bean, new SimpleImmutableEntry<>(label, value));
+            };
+        }
+
+        ColumnReader reader = readerForType(String.class);
+
+        return (bean, rs) -> {
+            String value = (String) reader.read(rs, columnIndex);
+            secondaryMapper.accept((T) bean, new SimpleImmutableEntry<>(label, value));
+        };
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static ColumnReader readerForType(Class type) {
+        ColumnReader reader;
 
         if (type.isAssignableFrom(Boolean.class) || type.isAssignableFrom(boolean.class)) {
-            value = rs.getBoolean(columnIndex);
+            reader = ResultSet::getBoolean;
         }
         else if (type.isAssignableFrom(Byte.class) || type.isAssignableFrom(byte.class)) {
-            value = rs.getByte(columnIndex);
+            reader = ResultSet::getByte;
         }
         else if (type.isAssignableFrom(Short.class) || type.isAssignableFrom(short.class)) {
-            value = rs.getShort(columnIndex);
+            reader = ResultSet::getShort;
         }
         else if (type.isAssignableFrom(Integer.class) || type.isAssignableFrom(int.class)) {
-            value = rs.getInt(columnIndex);
+            reader = ResultSet::getInt;
         }
         else if (type.isAssignableFrom(Long.class) || type.isAssignableFrom(long.class)) {
-            value = rs.getLong(columnIndex);
+            reader = ResultSet::getLong;
         }
         else if (type.isAssignableFrom(Float.class) || type.isAssignableFrom(float.class)) {
-            value = rs.getFloat(columnIndex);
+            reader = ResultSet::getFloat;
         }
         else if (type.isAssignableFrom(Double.class) || type.isAssignableFrom(double.class)) {
-            value = rs.getDouble(columnIndex);
+            reader = ResultSet::getDouble;
         }
         else if (type.isAssignableFrom(BigDecimal.class)) {
-            value = rs.getBigDecimal(columnIndex);
+            reader = ResultSet::getBigDecimal;
         }
         else if (type.isAssignableFrom(Timestamp.class)) {
-            value = rs.getTimestamp(columnIndex);
+            reader = ResultSet::getTimestamp;
         }
         else if (type.isAssignableFrom(DateTime.class)) {
-            Timestamp ts = rs.getTimestamp(columnIndex);
-
-            if (ts != null) {
-                value = new DateTime(ts.getTime());
-            }
-            else {
-                value = null;
-            }
+            reader = (rs, columnIndex) -> {
+                Timestamp ts = rs.getTimestamp(columnIndex);
+                return ts != null ? new DateTime(ts.getTime()) : null;
+            };
         }
         else if (type.isAssignableFrom(Time.class)) {
-            value = rs.getTime(columnIndex);
+            reader = ResultSet::getTime;
         }
         else if (type.isAssignableFrom(Date.class)) {
-            value = rs.getDate(columnIndex);
+            reader = ResultSet::getDate;
         }
         else if (type.isAssignableFrom(String.class)) {
-            value = rs.getString(columnIndex);
+            reader = ResultSet::getString;
         }
         else if (type.isEnum()) {
-            value = Enum.valueOf(type, rs.getString(columnIndex));
+            reader = (rs, columnIndex) -> Enum.valueOf(type, rs.getString(columnIndex));
         }
         else {
-            value = rs.getObject(columnIndex);
+            reader = ResultSet::getObject;
         }
 
-        if (rs.wasNull() && !type.isPrimitive()) {
-            value = null;
+        if (type.isPrimitive()) {
+            return reader;
         }
 
-        return value;
+        ColumnReader typedReader = reader;
+
+        return (rs, columnIndex) -> {
+            Object value = typedReader.read(rs, columnIndex);
+            return rs.wasNull() ? null : value;
+        };
     }
 
-    private void setBeanPropertyValue(T bean, PropertyDescriptor descriptor, String name, Object value) {
-        try
-        {
-            descriptor.getWriteMethod().invoke(bean, value);
-        }
-        catch (IllegalAccessException e) {
-            throw new IllegalArgumentException(String.format("Unable to access setter for " +
-                    "property, %s", name), e);
-        }
-        catch (InvocationTargetException e) {
-            throw new IllegalArgumentException(String.format("Invocation target exception trying to " +
-                    "invoker setter for the %s property", name), e);
-        }
-        catch (NullPointerException e) {
-            throw new IllegalArgumentException(String.format("No appropriate method to " +
-                    "write property %s", name), e);
-        }
+    @FunctionalInterface
+    private interface ColumnReader {
+        Object read(ResultSet rs, int columnIndex) throws SQLException;
+    }
+
+    @FunctionalInterface
+    private interface ColumnBinding {
+        void bind(Object bean, ResultSet rs) throws SQLException;
     }
 }
@@ -15,6 +15,10 @@
 
 package com.amazon.pocketEtl.integration.db.jdbi;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import lombok.EqualsAndHashCode;
+import org.skife.jdbi.v2.CachingStatementBuilderFactory;
 import org.skife.jdbi.v2.DBI;
 import org.skife.jdbi.v2.HashPrefixStatementRewriter;
 
@@ -27,8 +31,24 @@ import java.util.function.BiConsumer;
  * JDBI integration factory. Constructs a DBI that has custom handlers for things we care about:
  * - Joda DateTime marshalling from ResultSet.
  * - String list SQL parameter handling (Postgres/Redshift only)
+ *
+ * Constructing a DBI throws away the parsed SQL statements cached by its statement rewriter, so components that open
+ * many short-lived connections should use getDBI() which re-uses a DBI for the same datasource and secondary mapper.
+ * Shared DBI objects are only softly held, so a cached DBI does not stop its datasource being garbage collected once
+ * memory runs short.
  */
 public class EtlJdbi {
+    // Bounds the number of datasources kept reachable by the cache
+    private static final int MAXIMUM_CACHED_DBI_INSTANCES = 100;
+
+    /*
+     * A DBI holds on to its datasource, so weak keys would never be cleared while the DBI was cached. Soft values are
+     * used instead: a DBI that nothing else is using can be collected when memory runs short, and the entry holding its
+     * datasource and secondary mapper is then evicted along with it.
+     */
+    private static final Cache<DbiKey, DBI> dbiCache =
+            CacheBuilder.newBuilder().maximumSize(MAXIMUM_CACHED_DBI_INSTANCES).softValues().build();
+
     /**
      * Construct a new DBI wrapper for a JDBC datasource using an optional secondary mapper. The secondary mapper comes
      * into play when the default mapper is unable to directly map a value that the SQL query returned to a property in
@@ -42,11 +62,93 @@ public class EtlJdbi {
      * @return A fully constructed DBI object.
      */
     public static <T> DBI newDBI(DataSource dataSource, @Nullable BiConsumer<T, Map.Entry<String, String>> secondaryMapper) {
+        return newDBI(dataSource, secondaryMapper, false);
+    }
+
+    /**
+     * Get a shared DBI wrapper for a JDBC datasource using an optional secondary mapper, constructing it if it does not
+     * already exist. DBI objects are thread-safe and are cached by the identity of both the datasource and the
+     * secondary mapper, so the same secondary mapper instance must be passed each time for the DBI to be re-used. See
+     * newDBI() for a description of the secondary mapper.
+     * @param dataSource JDBC datasource to be wrapped.
+     * @param secondaryMapper A lambda that is invoked when a data element can't be directly mapped to the bean is
+     *                        extracted. If set to null, unrecognized properties will be ignored.
+     * @return A fully constructed DBI object that may be shared with other callers.
+     */
+    public static <T> DBI getDBI(DataSource dataSource, @Nullable BiConsumer<T, Map.Entry<String, String>> secondaryMapper) {
+        return getDBI(dataSource, secondaryMapper, false);
+    }
+
+    /**
+     * Get a shared DBI wrapper for a JDBC datasource using an optional secondary mapper, constructing it if it does not
+     * already exist, and optionally with prepared statement caching. When statement caching is enabled, each handle
+     * opened from the DBI will keep the statements it prepares and re-use them when the same SQL is run again on that
+     * handle, which avoids re-preparing a parameterized query that is run repeatedly. Cached statements are closed
+     * when the handle is closed. To re-use statements across extractors give them a shared StatementCache, which keeps
+     * its handles open between extractors.
+     * @param dataSource JDBC datasource to be wrapped.
+     * @param secondaryMapper A lambda that is invoked when a data element can't be directly mapped to the bean is
+     *                        extracted. If set to null, unrecognized properties will be ignored.
+     * @param isStatementCacheEnabled True to cache prepared statements for the life of each handle.
+     * @return A fully constructed DBI object that may be shared with other callers.
+     */
+    public static <T> DBI getDBI(DataSource dataSource, @Nullable BiConsumer<T, Map.Entry<String, String>> secondaryMapper,
+                                 boolean isStatementCacheEnabled) {
+        return dbiCache.asMap().computeIfAbsent(new DbiKey(dataSource, secondaryMapper, isStatementCacheEnabled),
+                key -> newDBI(dataSource, secondaryMapper, isStatementCacheEnabled));
+    }
+
+    /**
+     * Discard every shared DBI, so that the next call to getDBI() constructs a new one. DBI objects that have already
+     * been handed out are unaffected. Used by tests to stop the cache carrying state from one test to the next.
+     */
+    static void invalidateSharedDBIs() {
+        dbiCache.invalidateAll();
+    }
+
+    private static <T> DBI newDBI(DataSource dataSource, @Nullable BiConsumer<T, Map.Entry<String, String>> secondaryMapper,
+                                  boolean isStatementCacheEnabled) {
         DBI dbi = new DBI(dataSource);
         dbi.setStatementRewriter(new HashPrefixStatementRewriter());
         dbi.registerMapper(new EtlBeanMapperFactory(secondaryMapper));
         dbi.registerArgumentFactory(new PostgresStringArrayArgumentFactory());
 
+        if (isStatementCacheEnabled) {
+            dbi.setStatementBuilderFactory(new CachingStatementBuilderFactory());
+        }
+
         return dbi;
     }
+
+    // Datasources and mappers are compared by identity as neither is expected to implement equals()
+    @EqualsAndHashCode
+    private static class DbiKey {
+        private final IdentityReference dataSource;
+        private final IdentityReference secondaryMapper;
+        private final boolean isStatementCacheEnabled;
+
+        private DbiKey(DataSource dataSource, @Nullable Object secondaryMapper, boolean isStatementCacheEnabled) {
+            this.dataSource = new IdentityReference(dataSource);
+            this.secondaryMapper = new IdentityReference(secondaryMapper);
+            this.isStatementCacheEnabled = isStatementCacheEnabled;
+        }
+    }
+
+    private static class IdentityReference {
+        private final Object referent;
+
+        private IdentityReference(@Nullable Object referent) {
+            this.referent = referent;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof IdentityReference && ((IdentityReference) o).referent == referent;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(referent);
+        }
+    }
 }
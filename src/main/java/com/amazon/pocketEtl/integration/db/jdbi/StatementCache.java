@@ -0,0 +1,155 @@
+/*
+ *   Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package com.amazon.pocketEtl.integration.db.jdbi;
+
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import org.apache.logging.log4j.Logger;
+import org.skife.jdbi.v2.DBI;
+import org.skife.jdbi.v2.Handle;
+import org.skife.jdbi.v2.tweak.ResultSetMapper;
+
+import javax.annotation.Nullable;
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+import static org.apache.logging.log4j.LogManager.getLogger;
+
+/**
+ * Re-uses prepared statements across the extractors that run queries against the same datasource. A JDBC prepared
+ * statement belongs to the connection it was prepared on, so the cache keeps a pool of open JDBI handles, each of which
+ * keeps every statement it prepares keyed by its SQL text. Extractors that are given a StatementCache borrow a handle
+ * from it instead of opening a new connection and give it back when they are done, so the next extractor to run the
+ * same parameterized query executes the statement that has already been prepared. Rows are mapped to the result type
+ * of each query separately, so extractors with different result types or unknown property mappers share statements.
+ *
+ * Borrowed connections, and the statements prepared on them, are held open until the cache is closed. Create one cache
+ * per datasource for the duration of a job and close it after every extractor that uses it has been closed. A
+ * connection pool that caches statements itself, such as c3p0 with maxStatements set, is an alternative that does not
+ * hold connections open.
+ *
+ * Example usage:
+ * try (StatementCache statementCache = StatementCache.of(dataSource)) {
+ *     EtlStream.extract(SqlExtractor.of(dataSource, sql, Order.class).withStatementCache(statementCache))
+ *              ...
+ * }
+ */
+@RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+public class StatementCache implements AutoCloseable {
+    private final static Logger logger = getLogger(StatementCache.class);
+
+    private final DBI dbi;
+
+    // Guarded by synchronizing on this
+    private final Deque<Handle> idleHandles = new ArrayDeque<>();
+    private boolean isClosed = false;
+
+    /**
+     * Create a new statement cache for a JDBC datasource.
+     * @param dataSource The datasource the extractors using this cache query.
+     * @return A newly constructed StatementCache.
+     */
+    public static StatementCache of(DataSource dataSource) {
+        return new StatementCache(EtlJdbi.getDBI(dataSource, null, true));
+    }
+
+    /**
+     * Borrow a handle to run queries on, opening a new one if every handle is already borrowed. The handle must be
+     * given back with returnHandle() rather than being closed.
+     * @return An open handle that caches the statements it prepares.
+     * @throws IllegalStateException If the cache has been closed.
+     */
+    public synchronized Handle borrowHandle() {
+        if (isClosed) {
+            throw new IllegalStateException("Attempt to borrow a handle from a StatementCache that has been closed");
+        }
+
+        Handle handle = idleHandles.poll();
+        return handle == null ? dbi.open() : handle;
+    }
+
+    /**
+     * Give back a handle that was borrowed from this cache so that its statements can be re-used. Any transaction
+     * left open on the handle is rolled back. A handle that can no longer be used, or one returned after the cache
+     * has been closed, is closed instead.
+     * @param handle The handle to give back.
+     */
+    public void returnHandle(Handle handle) {
+        boolean isReusable;
+
+        try {
+            if (handle.isInTransaction()) {
+                handle.rollback();
+            }
+
+            isReusable = !handle.getConnection().isClosed();
+        } catch (SQLException | RuntimeException e) {
+            logger.warn("Discarding handle that could not be returned to the statement cache", e);
+            isReusable = false;
+        }
+
+        synchronized (this) {
+            if (isReusable && !isClosed) {
+                idleHandles.push(handle);
+                return;
+            }
+        }
+
+        closeQuietly(handle);
+    }
+
+    /**
+     * Get a mapper that maps rows to a bean class, for running a query on a borrowed handle.
+     * @param resultType The class to map each row to.
+     * @param secondaryMapper A lambda that is invoked when a data element can't be directly mapped to the bean, see
+     *                        EtlJdbi.newDBI(). If set to null, unrecognized properties will be ignored.
+     * @param <T> The type of object each row is mapped to.
+     * @return A mapper for the result type.
+     */
+    public <T> ResultSetMapper<T> mapperFor(Class<T> resultType,
+                                            @Nullable BiConsumer<T, Map.Entry<String, String>> secondaryMapper) {
+        return new EtlBeanMapper<>(resultType, secondaryMapper);
+    }
+
+    /**
+     * Closes every handle that is not borrowed, along with the statements prepared on it. Handles that are still
+     * borrowed are closed when they are returned.
+     */
+    @Override
+    public void close() {
+        Deque<Handle> handlesToClose;
+
+        synchronized (this) {
+            isClosed = true;
+            handlesToClose = new ArrayDeque<>(idleHandles);
+            idleHandles.clear();
+        }
+
+        handlesToClose.forEach(StatementCache::closeQuietly);
+    }
+
+    private static void closeQuietly(Handle handle) {
+        try {
+            handle.close();
+        } catch (RuntimeException e) {
+            logger.warn("Failed to close handle", e);
+        }
+    }
+}
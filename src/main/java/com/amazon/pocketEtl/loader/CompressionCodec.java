@@ -0,0 +1,92 @@
+/*
+ *   Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package com.amazon.pocketEtl.loader;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Describes how the part files written by S3FastLoader are compressed: how to wrap an output stream so that everything
+ * written to it is compressed, the extension that is conventionally added to the names of compressed files and the
+ * option that tells a Redshift COPY command how to decompress them.
+ *
+ * GZIP is built in. Other formats that Redshift can load can be used by supplying a compressing stream from a library
+ * that implements them, for example:
+ *
+ * CompressionCodec.of("BZIP2", ".bz2", BZip2CompressorOutputStream::new)   (Apache Commons Compress)
+ * CompressionCodec.of("ZSTD", ".zst", ZstdOutputStream::new)               (zstd-jni)
+ */
+@SuppressWarnings("WeakerAccess")
+@RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+public class CompressionCodec {
+    private static final int GZIP_BUFFER_SIZE_IN_BYTES = 64 * 1024;
+
+    /**
+     * GZIP compression using the implementation built into the JDK.
+     */
+    public static final CompressionCodec GZIP = new CompressionCodec("GZIP", ".gz",
+            outputStream -> new GZIPOutputStream(outputStream, GZIP_BUFFER_SIZE_IN_BYTES));
+
+    /**
+     * The option that is added to a Redshift COPY command to load files compressed with this codec, eg: GZIP.
+     */
+    @Getter
+    private final String redshiftCopyOption;
+
+    /**
+     * The extension added to the names of files compressed with this codec, eg: .gz
+     */
+    @Getter
+    private final String fileExtension;
+
+    private final CompressingStreamFactory compressingStreamFactory;
+
+    /**
+     * Functional interface for a function that wraps an output stream in one that compresses everything written to it.
+     * Closing the compressing stream must finish the compressed data and close the wrapped stream.
+     */
+    @FunctionalInterface
+    public interface CompressingStreamFactory {
+        OutputStream wrap(OutputStream outputStream) throws IOException;
+    }
+
+    /**
+     * Describe a custom compression codec.
+     * @param redshiftCopyOption The option added to a Redshift COPY command to load files compressed with this codec.
+     * @param fileExtension The extension added to the names of files compressed with this codec.
+     * @param compressingStreamFactory A function that wraps an output stream in one that compresses what is written.
+     * @return A new CompressionCodec.
+     */
+    public static CompressionCodec of(String redshiftCopyOption, String fileExtension,
+                                      CompressingStreamFactory compressingStreamFactory) {
+        return new CompressionCodec(redshiftCopyOption, fileExtension, compressingStreamFactory);
+    }
+
+    /**
+     * Wrap an output stream in one that compresses everything written to it with this codec.
+     * @param outputStream The stream the compressed data will be written to.
+     * @return A compressing output stream.
+     * @throws IOException If the compressing stream could not be created.
+     */
+    public OutputStream wrap(OutputStream outputStream) throws IOException {
+        return compressingStreamFactory.wrap(outputStream);
+    }
+}
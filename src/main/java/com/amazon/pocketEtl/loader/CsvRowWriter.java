@@ -0,0 +1,354 @@
+/*
+ *   Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package com.amazon.pocketEtl.loader;
+
+import com.amazon.pocketEtl.integration.db.BeanPropertyTable;
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonRawValue;
+import com.fasterxml.jackson.annotation.JsonTypeInfo;
+import com.fasterxml.jackson.annotation.JsonUnwrapped;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.BeanDescription;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.SerializationConfig;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.introspect.Annotated;
+import com.fasterxml.jackson.databind.introspect.AnnotatedMember;
+import com.fasterxml.jackson.databind.introspect.BeanPropertyDefinition;
+import com.fasterxml.jackson.databind.util.EnumValues;
+import com.fasterxml.jackson.dataformat.csv.CsvMapper;
+import com.fasterxml.jackson.dataformat.csv.CsvSchema;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.joda.time.format.DateTimeFormatter;
+import org.joda.time.format.ISODateTimeFormat;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.annotation.Annotation;
+import java.lang.invoke.MethodHandle;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes objects as delimited rows exactly as a Jackson CsvMapper writer with no quote character would, but without
+ * going through Jackson for every row. The columns of a class are worked out once, from the same schema and property
+ * definitions Jackson uses, and each column is bound to an accessor from the shared BeanPropertyTable of the class and
+ * a function that appends its value to a StringBuilder. Rows are built in a StringBuilder that is reused by each thread, and written to streams as UTF-8
+ * through a byte buffer that is also reused.
+ *
+ * Only columns with simple types are supported: strings, characters, booleans, numbers, enums, Joda DateTimes and
+ * collections of any of those except DateTimes. Any class with a column of another type, or with a column Jackson has
+ * been told to serialize differently through annotations, cannot be compiled and has to be written by Jackson.
+ *
+ * @param <T> Type of object to be written.
+ */
+class CsvRowWriter<T> {
+    // Annotations that change how Jackson writes a property, so any property that has one is left to Jackson
+    private static final List<Class<? extends Annotation>> CUSTOM_SERIALIZATION_ANNOTATIONS = Arrays.asList(
+            JsonSerialize.class, JsonFormat.class, JsonRawValue.class, JsonUnwrapped.class, JsonTypeInfo.class);
+
+    private static final ThreadLocal<RowBuffer> rowBuffers = ThreadLocal.withInitial(RowBuffer::new);
+
+    private final MethodHandle[] accessors;
+    private final ColumnWriter[] columnWriters;
+    private final char columnSeparator;
+    private final char[] nullValue;
+    private final char[] lineSeparator;
+
+    private CsvRowWriter(MethodHandle[] accessors, ColumnWriter[] columnWriters, CsvSchema schema) {
+        this.accessors = accessors;
+        this.columnWriters = columnWriters;
+        this.columnSeparator = schema.getColumnSeparator();
+        this.nullValue = schema.getNullValueOrEmpty();
+        this.lineSeparator = schema.getLineSeparator();
+    }
+
+    /**
+     * Compile a row writer for a class.
+     * @param mapper The mapper whose configuration the rows would otherwise be written with.
+     * @param schema The schema the rows would otherwise be written with. It must not use a quote character.
+     * @param classToWrite The class of object to be written.
+     * @param <T> Type of object to be written.
+     * @return A row writer for the class, or null if the class has columns that can only be written by Jackson.
+     */
+    static <T> CsvRowWriter<T> compile(CsvMapper mapper, CsvSchema schema, Class<T> classToWrite) {
+        SerializationConfig config = mapper.getSerializationConfig();
+        JavaType type = config.constructType(classToWrite);
+        BeanDescription description = config.introspect(type);
+
+        if (schema.usesQuoteChar() || schema.usesEscapeChar() || schema.size() == 0 ||
+                description.findJsonValueAccessor() != null || description.findAnyGetter() != null ||
+                hasCustomSerialization(description.getClassInfo())) {
+            return null;
+        }
+
+        BeanPropertyTable propertyTable = BeanPropertyTable.of(classToWrite);
+        Map<String, BeanPropertyDefinition> properties = new HashMap<>();
+        description.findProperties().forEach(property -> properties.put(property.getName(), property));
+
+        MethodHandle[] accessors = new MethodHandle[schema.size()];
+        ColumnWriter[] columnWriters = new ColumnWriter[schema.size()];
+
+        for (int i = 0; i < schema.size(); i++) {
+            BeanPropertyDefinition property = properties.get(schema.columnName(i));
+            AnnotatedMember accessor = property == null ? null : property.getAccessor();
+
+            if (accessor == null || hasCustomSerialization(accessor)) {
+                return null;
+            }
+
+            accessors[i] = getterFor(propertyTable, accessor);
+            columnWriters[i] = columnWriterFor(mapper, schema, accessor.getType());
+
+            if (accessors[i] == null || columnWriters[i] == null) {
+                return null;
+            }
+        }
+
+        return new CsvRowWriter<>(accessors, columnWriters, schema);
+    }
+
+    /**
+     * Write an object as a row.
+     * @param object The object to write.
+     * @return The row, including its line separator.
+     */
+    String writeRow(T object) {
+        StringBuilder row = rowBuffers.get().row;
+        row.setLength(0);
+        appendRow(object, row);
+        return row.toString();
+    }
+
+    /**
+     * Write an object as a row to an output stream, encoded as UTF-8.
+     * @param object The object to write.
+     * @param outputStream The stream to write the row to.
+     * @throws IOException If the row could not be written.
+     */
+    void writeRow(T object, OutputStream outputStream) throws IOException {
+        RowBuffer rowBuffer = rowBuffers.get();
+        rowBuffer.row.setLength(0);
+        appendRow(object, rowBuffer.row);
+        int length = rowBuffer.encodeRow();
+        outputStream.write(rowBuffer.bytes, 0, length);
+    }
+
+    private void appendRow(T object, StringBuilder row) {
+        for (int i = 0; i < accessors.length; i++) {
+            if (i > 0) {
+                row.append(columnSeparator);
+            }
+
+            Object value = invokeAccessor(accessors[i], object);
+
+            if (value == null) {
+                row.append(nullValue);
+            } else {
+                columnWriters[i].write(value, row);
+            }
+        }
+
+        row.append(lineSeparator);
+    }
+
+    private static Object invokeAccessor(MethodHandle accessor, Object object) {
+        try {
+            return (Object) accessor.invokeExact(object);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static boolean hasCustomSerialization(Annotated annotated) {
+        return CUSTOM_SERIALIZATION_ANNOTATIONS.stream().anyMatch(annotated::hasAnnotation);
+    }
+
+    private static MethodHandle getterFor(BeanPropertyTable propertyTable, AnnotatedMember accessor) {
+        try {
+            return propertyTable.getGetter(accessor.getMember());
+        } catch (IllegalArgumentException ignored) {
+            // Leave the class to Jackson
+            return null;
+        }
+    }
+
+    private static ColumnWriter columnWriterFor(CsvMapper mapper, CsvSchema schema, JavaType type) {
+        if (type.isCollectionLikeType() && Collection.class.isAssignableFrom(type.getRawClass())) {
+            ColumnWriter elementWriter = scalarWriterFor(mapper, type.getContentType());
+
+            if (!schema.hasArrayElementSeparator() || elementWriter == null ||
+                    DateTime.class.equals(type.getContentType().getRawClass())) {
+                return null;
+            }
+
+            return collectionWriter(elementWriter, schema.getArrayElementSeparator(), schema.getNullValueOrEmpty());
+        }
+
+        return scalarWriterFor(mapper, type);
+    }
+
+    private static ColumnWriter collectionWriter(ColumnWriter elementWriter, String elementSeparator, char[] nullValue) {
+        return (value, row) -> {
+            boolean isFirstElement = true;
+
+            for (Object element : (Collection<?>) value) {
+                if (!isFirstElement) {
+                    row.append(elementSeparator);
+                }
+
+                isFirstElement = false;
+
+                if (element == null) {
+                    row.append(nullValue);
+                } else {
+                    elementWriter.write(element, row);
+                }
+            }
+        };
+    }
+
+    /*
+     * Each writer appends a value exactly as Jackson would write it: numbers using their Java string representation,
+     * enums by their (possibly annotated) names and DateTimes as ISO-8601 strings in the mapper's time zone.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static ColumnWriter scalarWriterFor(CsvMapper mapper, JavaType type) {
+        Class<?> rawClass = type.getRawClass();
+
+        if (String.class.equals(rawClass)) {
+            return (value, row) -> row.append((String) value);
+        }
+
+        if (Character.class.equals(rawClass) || char.class.equals(rawClass)) {
+            return (value, row) -> row.append((char) (Character) value);
+        }
+
+        if (Boolean.class.equals(rawClass) || boolean.class.equals(rawClass)) {
+            return (value, row) -> row.append((boolean) (Boolean) value);
+        }
+
+        if (Integer.class.equals(rawClass) || int.class.equals(rawClass) ||
+                Short.class.equals(rawClass) || short.class.equals(rawClass) ||
+                Byte.class.equals(rawClass) || byte.class.equals(rawClass)) {
+            return (value, row) -> row.append(((Number) value).intValue());
+        }
+
+        if (Long.class.equals(rawClass) || long.class.equals(rawClass)) {
+            return (value, row) -> row.append((long) (Long) value);
+        }
+
+        if (Double.class.equals(rawClass) || double.class.equals(rawClass)) {
+            return (value, row) -> row.append((double) (Double) value);
+        }
+
+        if (Float.class.equals(rawClass) || float.class.equals(rawClass)) {
+            return (value, row) -> row.append((float) (Float) value);
+        }
+
+        if ((BigDecimal.class.equals(rawClass) && !mapper.getFactory().isEnabled(
+                JsonGenerator.Feature.WRITE_BIGDECIMAL_AS_PLAIN)) ||
+                BigInteger.class.equals(rawClass)) {
+            return (value, row) -> row.append(value.toString());
+        }
+
+        if (rawClass.isEnum()) {
+            return enumWriterFor(mapper, (Class<Enum<?>>) rawClass);
+        }
+
+        if (DateTime.class.equals(rawClass) && !mapper.isEnabled(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS) &&
+                !mapper.isEnabled(SerializationFeature.WRITE_DATES_WITH_ZONE_ID)) {
+            DateTimeFormatter formatter = ISODateTimeFormat.dateTime()
+                    .withZone(DateTimeZone.forTimeZone(mapper.getSerializationConfig().getTimeZone()));
+            return (value, row) -> formatter.printTo(row, (DateTime) value);
+        }
+
+        return null;
+    }
+
+    private static ColumnWriter enumWriterFor(CsvMapper mapper, Class<Enum<?>> enumClass) {
+        SerializationConfig config = mapper.getSerializationConfig();
+        BeanDescription description = config.introspect(config.constructType(enumClass));
+
+        if (description.findJsonValueAccessor() != null || hasCustomSerialization(description.getClassInfo()) ||
+                config.isEnabled(SerializationFeature.WRITE_ENUMS_USING_INDEX)) {
+            return null;
+        }
+
+        EnumValues enumValues = config.isEnabled(SerializationFeature.WRITE_ENUMS_USING_TO_STRING) ?
+                EnumValues.constructFromToString(config, enumClass) : EnumValues.constructFromName(config, enumClass);
+
+        String[] names = new String[enumClass.getEnumConstants().length];
+        enumValues.internalMap().forEach((constant, name) -> names[constant.ordinal()] = name.getValue());
+
+        return (value, row) -> row.append(names[((Enum<?>) value).ordinal()]);
+    }
+
+    @FunctionalInterface
+    private interface ColumnWriter {
+        void write(Object value, StringBuilder row);
+    }
+
+    private static class RowBuffer {
+        private final StringBuilder row = new StringBuilder(256);
+        private byte[] bytes = new byte[768];
+
+        // Encodes the row as UTF-8 into the byte buffer, replacing broken surrogate pairs the same way String does
+        private int encodeRow() {
+            int length = row.length();
+
+            if (bytes.length < length * 3) {
+                bytes = new byte[length * 3];
+            }
+
+            int position = 0;
+
+            for (int i = 0; i < length; i++) {
+                char c = row.charAt(i);
+
+                if (c < 0x80) {
+                    bytes[position++] = (byte) c;
+                } else if (c < 0x800) {
+                    bytes[position++] = (byte) (0xc0 | (c >> 6));
+                    bytes[position++] = (byte) (0x80 | (c & 0x3f));
+                } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(row.charAt(i + 1))) {
+                    int codePoint = Character.toCodePoint(c, row.charAt(++i));
+                    bytes[position++] = (byte) (0xf0 | (codePoint >> 18));
+                    bytes[position++] = (byte) (0x80 | ((codePoint >> 12) & 0x3f));
+                    bytes[position++] = (byte) (0x80 | ((codePoint >> 6) & 0x3f));
+                    bytes[position++] = (byte) (0x80 | (codePoint & 0x3f));
+                } else if (Character.isSurrogate(c)) {
+                    bytes[position++] = '?';
+                } else {
+                    bytes[position++] = (byte) (0xe0 | (c >> 12));
+                    bytes[position++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+                    bytes[position++] = (byte) (0x80 | (c & 0x3f));
+                }
+            }
+
+            return position;
+        }
+    }
+}
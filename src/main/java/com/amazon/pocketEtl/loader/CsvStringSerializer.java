@@ -15,6 +15,7 @@
 
 package com.amazon.pocketEtl.loader;
 
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectWriter;
@@ -23,18 +24,44 @@ import com.fasterxml.jackson.dataformat.csv.CsvMapper;
 import com.fasterxml.jackson.dataformat.csv.CsvSchema;
 import com.fasterxml.jackson.datatype.joda.JodaModule;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
 /**
  * A StringSerializer implementation for serializing a DTO to a delimited String with specified columnSeparator.
  * If a headerRow is used, this serializer is not thread-safe.
  *
+ * This class can also be used as a StreamSerializer, in which case rows are written straight to the output stream as
+ * UTF-8 encoded bytes. Used this way the header row, if there is one, is only ever written by writeHeader and never by
+ * serialize, and the serializer is thread-safe.
+ *
+ * Rows of classes whose columns all have simple types (strings, numbers, booleans, enums, Joda DateTimes and collections
+ * of these) are written by a row writer that is compiled once for the class, and produce exactly the same output as
+ * Jackson would without going through Jackson for every row. Rows of any other class are written by Jackson.
+ *
  * PocketETL developer note: Currently it serializes joda datetime to string in UTC timezone. This behaviour can be
  * changed by setting default timezone using setTimeZone method of CsvMapper class.
  *
  * @param <T> Type of DTO to be deserialized.
  */
 @SuppressWarnings("WeakerAccess")
-public class CsvStringSerializer<T> implements StringSerializer<T> {
-    private static final CsvMapper mapper = new CsvMapper();
+public class CsvStringSerializer<T> implements StringSerializer<T>, StreamSerializer<T> {
+    private static final CsvMapper mapper = createMapper();
+
+    // Compiling a row writer introspects the whole class, so it is only done once for each class and column separator
+    private static final ClassValue<Map<Character, Optional<CsvRowWriter<?>>>> rowWriters =
+            new ClassValue<Map<Character, Optional<CsvRowWriter<?>>>>() {
+                @Override
+                protected Map<Character, Optional<CsvRowWriter<?>>> computeValue(Class<?> type) {
+                    return new ConcurrentHashMap<>();
+                }
+            };
 
     private static final char DEFAULT_COLUMN_SEPARATOR = ',';
 
@@ -43,6 +70,10 @@ public class CsvStringSerializer<T> implements StringSerializer<T> {
     private final Boolean writeHeaderRow;
     private ObjectWriter firstRowWriter;
     private ObjectWriter writer;
+    private ObjectWriter streamWriter;
+    private CsvRowWriter<T> rowWriter;
+    private byte[] headerRow;
+    private String headerRowString;
 
     private boolean hasWrittenFirstRow = false;
 
@@ -85,15 +116,55 @@ public class CsvStringSerializer<T> implements StringSerializer<T> {
         try {
             if (!hasWrittenFirstRow) {
                 hasWrittenFirstRow = true;
+
+                if (rowWriter != null) {
+                    return getWriteHeaderRow() ? headerRowString + rowWriter.writeRow(objectToDeserialize) :
+                            rowWriter.writeRow(objectToDeserialize);
+                }
+
                 return firstRowWriter.writeValueAsString(objectToDeserialize);
             }
 
+            if (rowWriter != null) {
+                return rowWriter.writeRow(objectToDeserialize);
+            }
+
             return writer.writeValueAsString(objectToDeserialize);
         } catch (JsonProcessingException e){
             throw new RuntimeException(e);
         }
     }
 
+    /**
+     * Writes a dto object to an output stream as a delimited row without quote character.
+     *
+     * @param objectToSerialize Object to be serialized.
+     * @param outputStream The stream to write the row to.
+     * @throws IOException If the object could not be serialized or written.
+     */
+    @Override
+    public void serialize(T objectToSerialize, OutputStream outputStream) throws IOException {
+        if (rowWriter != null) {
+            rowWriter.writeRow(objectToSerialize, outputStream);
+            return;
+        }
+
+        streamWriter.writeValue(outputStream, objectToSerialize);
+    }
+
+    /**
+     * Writes the header row to an output stream if this serializer has been configured to write one.
+     *
+     * @param outputStream The stream to write the header row to.
+     * @throws IOException If the header row could not be written.
+     */
+    @Override
+    public void writeHeader(OutputStream outputStream) throws IOException {
+        if (getWriteHeaderRow()) {
+            outputStream.write(headerRow);
+        }
+    }
+
     private CsvStringSerializer(Class<T> classToSerialize, Character columnSeparator, Boolean writeHeaderRow) {
         this.classToSerialize = classToSerialize;
         this.columnSeparator = columnSeparator;
@@ -101,12 +172,21 @@ public class CsvStringSerializer<T> implements StringSerializer<T> {
         createObjectWriter();
     }
 
+    private static CsvMapper createMapper() {
+        CsvMapper csvMapper = new CsvMapper();
+        csvMapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        csvMapper.registerModule(new JodaModule());
+        csvMapper.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        return csvMapper;
+    }
+
     private void createObjectWriter() {
-        mapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
-        mapper.registerModule(new JodaModule());
-        mapper.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
         CsvSchema schema = mapper.schemaFor(classToSerialize).withColumnSeparator(getColumnSeparator()).withoutQuoteChar();
         writer = mapper.writer(schema);
+        streamWriter = writer.without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        rowWriter = rowWriterFor(classToSerialize, getColumnSeparator());
+        headerRowString = createHeaderRow(schema);
+        headerRow = headerRowString.getBytes(StandardCharsets.UTF_8);
 
         if (getWriteHeaderRow()) {
             schema = schema.withHeader();
@@ -115,6 +195,30 @@ public class CsvStringSerializer<T> implements StringSerializer<T> {
         firstRowWriter = mapper.writer(schema);
     }
 
+    /**
+     * Get the row writer shared by every serializer of a class that uses the same column separator.
+     * @param classToSerialize Class of DTO to be serialized.
+     * @param columnSeparator Delimiter used as column separator.
+     * @param <T> Type of DTO to be serialized.
+     * @return The row writer, or null if rows of the class have to be written by Jackson.
+     */
+    @SuppressWarnings("unchecked")
+    static <T> CsvRowWriter<T> rowWriterFor(Class<T> classToSerialize, char columnSeparator) {
+        return (CsvRowWriter<T>) rowWriters.get(classToSerialize).computeIfAbsent(columnSeparator, separator ->
+                Optional.ofNullable(CsvRowWriter.compile(mapper,
+                        mapper.schemaFor(classToSerialize).withColumnSeparator(separator).withoutQuoteChar(),
+                        classToSerialize)))
+                .orElse(null);
+    }
+
+    private static String createHeaderRow(CsvSchema schema) {
+        List<String> columnNames = new ArrayList<>();
+        schema.forEach(column -> columnNames.add(column.getName()));
+
+        return String.join(String.valueOf(schema.getColumnSeparator()), columnNames) +
+                new String(schema.getLineSeparator());
+    }
+
     private boolean getWriteHeaderRow() {
         return Boolean.TRUE.equals(writeHeaderRow);
     }
@@ -18,19 +18,40 @@ package com.amazon.pocketEtl.loader;
 import com.amazon.pocketEtl.EtlMetrics;
 import com.amazon.pocketEtl.EtlProfilingScope;
 import com.amazon.pocketEtl.Loader;
+import com.amazon.pocketEtl.integration.DynamoDbItemMapper;
 import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
 import com.amazonaws.services.dynamodbv2.AmazonDynamoDBClientBuilder;
+import com.amazonaws.services.dynamodbv2.document.BatchWriteItemOutcome;
 import com.amazonaws.services.dynamodbv2.document.DynamoDB;
 import com.amazonaws.services.dynamodbv2.document.Item;
 import com.amazonaws.services.dynamodbv2.document.Table;
+import com.amazonaws.services.dynamodbv2.document.TableWriteItems;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.WriteRequest;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.ObjectWriter;
 import lombok.AccessLevel;
 import lombok.RequiredArgsConstructor;
 import org.apache.logging.log4j.Logger;
+import org.joda.time.DateTime;
 
 import javax.annotation.Nullable;
 import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
 
 import static org.apache.logging.log4j.LogManager.getLogger;
@@ -39,6 +60,15 @@ import static org.apache.logging.log4j.LogManager.getLogger;
  * Loads a JSON record to a DynamoDB table. If an item with that hash key already exists in Dynamo, it will be
  * updated.
  * <p>
+ * By default each record is written with its own PutItem request. Batch writing can be enabled with withBatchSize(),
+ * in which case each thread that calls load() buffers its records and writes them with a single BatchWriteItem request
+ * when the buffer is full, when the oldest record in the buffer has waited for the linger time, or when the loader is
+ * closed. Records that DynamoDB reports as unprocessed are resubmitted with a jittered exponential backoff; records that
+ * still cannot be written are logged and counted as failures in the same way as a failed PutItem.
+ * <p>
+ * Tables with a composite primary key are supported with withRangeKey(), and items can be given an expiry time for
+ * DynamoDB's time to live feature with withTimeToLive(). Instead of storing each record as a JSON document,
+ * withNativeAttributes() stores each property of the record as an attribute of its own.
  **/
 
 @RequiredArgsConstructor(access = AccessLevel.PRIVATE)
@@ -48,28 +78,120 @@ public class DynamoDbLoader<T> implements Loader<T> {
 
     private final static Logger logger = getLogger(DynamoDbLoader.class);
 
+    // BatchWriteItem accepts at most 25 items in a single request
+    private final static int MAXIMUM_BATCH_SIZE = 25;
+    private final static long DEFAULT_BATCH_LINGER_TIME_IN_MILLISECONDS = 1000;
+    private final static int MAXIMUM_BATCH_WRITE_ATTEMPTS = 10;
+    private final static long BASE_BACKOFF_IN_MILLISECONDS = 50;
+    private final static long MAXIMUM_BACKOFF_IN_MILLISECONDS = 5000;
+
     private final DynamoDB db;
     private final String tableName;
     private final String hashKey;
     private final Function<T, String> hashKeyExtractor;
     private final ObjectWriter writer;
+    private final Integer batchSize;
+    private final Long batchLingerTimeInMillis;
+    private final DynamoDbItemMapper<T> itemMapper;
+    private final String rangeKey;
+    private final Function<T, ?> rangeKeyExtractor;
+    private final String timeToLiveAttribute;
+    private final Function<T, DateTime> timeToLiveExtractor;
     private EtlMetrics parentMetrics;
 
+    private final Set<WriteBatch> writeBatches = ConcurrentHashMap.newKeySet();
+    private final ThreadLocal<WriteBatch> threadWriteBatch = ThreadLocal.withInitial(this::newWriteBatch);
+    private ScheduledExecutorService lingerFlusher = null;
+
     public static <T> DynamoDbLoader<T> of(String tableName, String hashKey, Function<T, String> hashKeyExtractor) {
-        return new DynamoDbLoader<>(new DynamoDB(AmazonDynamoDBClientBuilder.standard().withRegion("us-east-1").build()), tableName, hashKey, hashKeyExtractor, new ObjectMapper().writer());
+        return new DynamoDbLoader<>(new DynamoDB(AmazonDynamoDBClientBuilder.standard().withRegion("us-east-1").build()), tableName, hashKey, hashKeyExtractor, new ObjectMapper().writer(), null, null, null, null, null, null, null);
     }
 
     public DynamoDbLoader<T> withDynamoDb(DynamoDB db) {
-        return new DynamoDbLoader<>(db, tableName, hashKey, hashKeyExtractor, writer);
+        return new DynamoDbLoader<>(db, tableName, hashKey, hashKeyExtractor, writer, batchSize, batchLingerTimeInMillis, itemMapper, rangeKey, rangeKeyExtractor, timeToLiveAttribute, timeToLiveExtractor);
     }
 
     public DynamoDbLoader<T> withClient(AmazonDynamoDB ddbClient) {
-        return new DynamoDbLoader<>(new DynamoDB(ddbClient), tableName, hashKey, hashKeyExtractor, writer);
+        return new DynamoDbLoader<>(new DynamoDB(ddbClient), tableName, hashKey, hashKeyExtractor, writer, batchSize, batchLingerTimeInMillis, itemMapper, rangeKey, rangeKeyExtractor, timeToLiveAttribute, timeToLiveExtractor);
+    }
+
+    /**
+     * Optional: Write records in batches using BatchWriteItem instead of one PutItem request per record. Each thread
+     * that loads records buffers up to this many records before writing them.
+     * @param batchSize Number of records to write in each batch, between 1 and 25.
+     * @return A copy of this loader with this property modified.
+     */
+    public DynamoDbLoader<T> withBatchSize(int batchSize) {
+        if (batchSize < 1 || batchSize > MAXIMUM_BATCH_SIZE) {
+            throw new IllegalArgumentException("Batch size must be between 1 and " + MAXIMUM_BATCH_SIZE);
+        }
+
+        return new DynamoDbLoader<>(db, tableName, hashKey, hashKeyExtractor, writer, batchSize, batchLingerTimeInMillis, itemMapper, rangeKey, rangeKeyExtractor, timeToLiveAttribute, timeToLiveExtractor);
+    }
+
+    /**
+     * Optional: When batch writing is enabled, the longest time a record will be buffered before its batch is written
+     * even if the batch is not full. The default is one second.
+     * @param batchLingerTimeInMillis Maximum time to buffer a record in milliseconds.
+     * @return A copy of this loader with this property modified.
+     */
+    public DynamoDbLoader<T> withBatchLingerTimeInMillis(long batchLingerTimeInMillis) {
+        if (batchLingerTimeInMillis < 1) {
+            throw new IllegalArgumentException("Batch linger time must be at least one millisecond");
+        }
+
+        return new DynamoDbLoader<>(db, tableName, hashKey, hashKeyExtractor, writer, batchSize, batchLingerTimeInMillis, itemMapper, rangeKey, rangeKeyExtractor, timeToLiveAttribute, timeToLiveExtractor);
+    }
+
+    /**
+     * Optional: Store each property of the object as its own typed attribute instead of storing the whole object in
+     * the 'document' attribute. This avoids serializing every object to JSON and then parsing the JSON back into an
+     * attribute map, and since properties that are null are left out of the item rather than stored as null values,
+     * items are smaller and consume less write capacity. See DynamoDbItemMapper for how each type of property is
+     * stored.
+     * @param loadClass The class of object being loaded.
+     * @return A copy of this loader with this property modified.
+     */
+    public DynamoDbLoader<T> withNativeAttributes(Class<T> loadClass) {
+        DynamoDbItemMapper<T> itemMapper = DynamoDbItemMapper.of(loadClass);
+        return new DynamoDbLoader<>(db, tableName, hashKey, hashKeyExtractor, writer, batchSize, batchLingerTimeInMillis, itemMapper, rangeKey, rangeKeyExtractor, timeToLiveAttribute, timeToLiveExtractor);
+    }
+
+    /**
+     * Optional: The range key of the table, for tables that have a composite primary key.
+     * @param rangeKey The name of the range key attribute.
+     * @param rangeKeyExtractor A function that returns the range key of an object, which must be a String, a Number or
+     *                          a byte array.
+     * @return A copy of this loader with this property modified.
+     */
+    public DynamoDbLoader<T> withRangeKey(String rangeKey, Function<T, ?> rangeKeyExtractor) {
+        return new DynamoDbLoader<>(db, tableName, hashKey, hashKeyExtractor, writer, batchSize, batchLingerTimeInMillis, itemMapper, rangeKey, rangeKeyExtractor, timeToLiveAttribute, timeToLiveExtractor);
+    }
+
+    /**
+     * Optional: Set a time to live attribute on each item, so that DynamoDB will delete the item once it has expired.
+     * The expiry time is stored as a number of seconds since the epoch, which is the format DynamoDB requires. Objects
+     * with no expiry time are loaded without the attribute and will not expire.
+     * @param timeToLiveAttribute The name of the time to live attribute configured on the table.
+     * @param timeToLiveExtractor A function that returns the time an object should expire.
+     * @return A copy of this loader with this property modified.
+     */
+    public DynamoDbLoader<T> withTimeToLive(String timeToLiveAttribute, Function<T, DateTime> timeToLiveExtractor) {
+        return new DynamoDbLoader<>(db, tableName, hashKey, hashKeyExtractor, writer, batchSize, batchLingerTimeInMillis, itemMapper, rangeKey, rangeKeyExtractor, timeToLiveAttribute, timeToLiveExtractor);
+    }
+
+    /**
+     * Whether this loader buffers records and writes them in batches, in which case a record has not necessarily been
+     * written when load() returns. Only true once withBatchSize() has been set.
+     * @return True if records are written in batches.
+     */
+    public boolean isBatchWriting() {
+        return batchSize != null;
     }
 
     // package-protected to allow for swapping out during unit testing
     DynamoDbLoader<T> withWriter(ObjectWriter writer) {
-        return new DynamoDbLoader<>(db, tableName, hashKey, hashKeyExtractor, writer);
+        return new DynamoDbLoader<>(db, tableName, hashKey, hashKeyExtractor, writer, batchSize, batchLingerTimeInMillis, itemMapper, rangeKey, rangeKeyExtractor, timeToLiveAttribute, timeToLiveExtractor);
     }
 
     @Override
@@ -77,31 +199,73 @@ public class DynamoDbLoader<T> implements Loader<T> {
         logger.debug("Loading");
 
         final String primaryKey;
-        final String objectAsJson;
+        final Object rangeKeyValue;
+        final Item item;
+        final Object batchKey;
 
         try (EtlProfilingScope scope = new EtlProfilingScope(parentMetrics, "DynamoDbLoader.prepare")) {
             try {
                 primaryKey = hashKeyExtractor.apply(objectToLoad);
+                rangeKeyValue = rangeKeyExtractor == null ? null : rangeKeyExtractor.apply(objectToLoad);
             } catch (RuntimeException e) {
                 emitSuccessAndFailureMetrics(scope, false);
                 logger.warn("Failed to extract primary key", e);
                 return;
             }
 
+            if (itemMapper == null) {
+                try {
+                    item = new Item().withJSON("document", writer.writeValueAsString(objectToLoad));
+                } catch (IOException e) {
+                    emitSuccessAndFailureMetrics(scope, false);
+                    logger.warn("Failed to convert to JSON", e);
+                    return;
+                }
+            } else {
+                try {
+                    item = itemMapper.toItem(objectToLoad);
+                } catch (RuntimeException e) {
+                    emitSuccessAndFailureMetrics(scope, false);
+                    logger.warn("Failed to convert to DynamoDB attributes", e);
+                    return;
+                }
+            }
+
             try {
-                objectAsJson = writer.writeValueAsString(objectToLoad);
-            } catch (IOException e) {
+                addKeyAttributes(item, primaryKey, rangeKeyValue, objectToLoad);
+                batchKey = rangeKeyValue == null ?
+                        primaryKey : Arrays.asList(primaryKey, normalizeRangeKey(rangeKeyValue));
+            } catch (RuntimeException e) {
                 emitSuccessAndFailureMetrics(scope, false);
-                logger.warn("Failed to convert to JSON", e);
+                logger.warn("Failed to set key attributes for record with primary key '{}'", primaryKey, e);
                 return;
             }
         }
 
+        if (batchSize != null) {
+            WriteBatch writeBatch = threadWriteBatch.get();
+
+            synchronized (writeBatch) {
+                // BatchWriteItem rejects a batch that writes the same item twice, so the batch holding the earlier
+                // record is written first
+                if (writeBatch.contains(batchKey)) {
+                    writeBatch(writeBatch);
+                }
+
+                writeBatch.add(batchKey, item);
+
+                if (writeBatch.size() >= batchSize) {
+                    writeBatch(writeBatch);
+                }
+            }
+
+            return;
+        }
+
         try (EtlProfilingScope scope = new EtlProfilingScope(parentMetrics, "DynamoDbLoader.load")) {
             Table table = db.getTable(tableName);
-            Item item = new Item().withPrimaryKey(hashKey, primaryKey).withJSON("document", objectAsJson);
 
-            // write to ddb. using a batch operation would improve performance
+            // write to ddb. withBatchSize() enables batch writes, which perform better
             try {
                 table.putItem(item);
             } catch (Exception e) {
@@ -121,6 +285,22 @@ public class DynamoDbLoader<T> implements Loader<T> {
         try (EtlProfilingScope ignored = new EtlProfilingScope(parentMetrics, "DynamoDbLoader.open")) {
             this.parentMetrics = parentMetrics;
             logger.debug("Opening");
+
+            if (batchSize != null) {
+                long lingerTime = batchLingerTimeInMillis == null ?
+                        DEFAULT_BATCH_LINGER_TIME_IN_MILLISECONDS : batchLingerTimeInMillis;
+
+                lingerFlusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                    Thread thread = new Thread(runnable, "DynamoDbLoader-linger-flusher");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+
+                // Checking at half the linger time means no record waits more than one and a half linger times
+                long checkInterval = Math.max(1, lingerTime / 2);
+                lingerFlusher.scheduleWithFixedDelay(() -> writeLingeringBatches(lingerTime), checkInterval,
+                        checkInterval, TimeUnit.MILLISECONDS);
+            }
         }
     }
 
@@ -128,11 +308,192 @@ public class DynamoDbLoader<T> implements Loader<T> {
     public void close() throws Exception {
         try (EtlProfilingScope ignored = new EtlProfilingScope(parentMetrics, "DynamoDbLoader.close")) {
             logger.debug("Closing");
+
+            // shutdown() rather than shutdownNow(): interrupting a flush that is backing off would fail every record
+            // in its batch, including records DynamoDB has already accepted
+            if (lingerFlusher != null) {
+                lingerFlusher.shutdown();
+                lingerFlusher.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+            }
+
+            for (WriteBatch writeBatch : writeBatches) {
+                synchronized (writeBatch) {
+                    writeBatch(writeBatch);
+                }
+            }
+        }
+    }
+
+    // Key attributes are set last so that they take precedence over properties with the same name
+    private void addKeyAttributes(Item item, String primaryKey, @Nullable Object rangeKeyValue, T objectToLoad) {
+        item.withPrimaryKey(hashKey, primaryKey);
+
+        if (rangeKey != null) {
+            if (rangeKeyValue == null) {
+                throw new IllegalArgumentException("Range key '" + rangeKey + "' cannot be null");
+            }
+
+            item.with(rangeKey, rangeKeyValue);
+        }
+
+        if (timeToLiveAttribute != null) {
+            DateTime expiryTime = timeToLiveExtractor.apply(objectToLoad);
+
+            if (expiryTime == null) {
+                item.removeAttribute(timeToLiveAttribute);
+            } else {
+                item.withLong(timeToLiveAttribute, expiryTime.getMillis() / 1000);
+            }
+        }
+    }
+
+    // Range keys that DynamoDB considers equal must also be equal as batch keys: byte arrays are compared by content
+    // and numbers by value regardless of their type or scale, otherwise a batch could write the same item twice.
+    private static Object normalizeRangeKey(Object rangeKeyValue) {
+        if (rangeKeyValue instanceof byte[]) {
+            return ByteBuffer.wrap(((byte[]) rangeKeyValue).clone());
+        }
+
+        if (rangeKeyValue instanceof Number) {
+            return new BigDecimal(rangeKeyValue.toString()).stripTrailingZeros();
+        }
+
+        return rangeKeyValue;
+    }
+
+    private WriteBatch newWriteBatch() {
+        WriteBatch writeBatch = new WriteBatch();
+        writeBatches.add(writeBatch);
+        return writeBatch;
+    }
+
+    private void writeLingeringBatches(long lingerTimeInMillis) {
+        long now = System.currentTimeMillis();
+
+        for (WriteBatch writeBatch : writeBatches) {
+            synchronized (writeBatch) {
+                if (writeBatch.size() > 0 && now - writeBatch.getFirstAddedTimeInMillis() >= lingerTimeInMillis) {
+                    writeBatch(writeBatch);
+                }
+            }
+        }
+    }
+
+    // Must be called holding the lock on the batch
+    private void writeBatch(WriteBatch writeBatch) {
+        if (writeBatch.size() == 0) {
+            return;
+        }
+
+        Collection<Item> items = writeBatch.drain();
+
+        try (EtlProfilingScope scope = new EtlProfilingScope(parentMetrics, "DynamoDbLoader.batchWrite")) {
+            List<String> failedPrimaryKeys = writeItems(items);
+
+            scope.addCounter(SUCCESS_METRIC_KEY, items.size() - failedPrimaryKeys.size());
+            scope.addCounter(FAILURE_METRIC_KEY, failedPrimaryKeys.size());
+            failedPrimaryKeys.forEach(primaryKey ->
+                    logger.warn("Failed to load record with primary key '{}'", primaryKey));
         }
     }
 
+    // Returns the primary keys of the items that could not be written
+    private List<String> writeItems(Collection<Item> items) {
+        List<WriteRequest> unprocessedItems;
+
+        try {
+            BatchWriteItemOutcome outcome = db.batchWriteItem(new TableWriteItems(tableName).withItemsToPut(items));
+            unprocessedItems = getUnprocessedItems(outcome);
+
+            for (int attempt = 1; !unprocessedItems.isEmpty() && attempt < MAXIMUM_BATCH_WRITE_ATTEMPTS; attempt++) {
+                Thread.sleep(backoffInMillis(attempt));
+                outcome = db.batchWriteItemUnprocessed(Collections.singletonMap(tableName, unprocessedItems));
+                unprocessedItems = getUnprocessedItems(outcome);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.warn("Interrupted writing batch of {} records", items.size(), e);
+            return getPrimaryKeys(items);
+        } catch (RuntimeException e) {
+            logger.warn("Failed to write batch of {} records", items.size(), e);
+            return getPrimaryKeys(items);
+        }
+
+        List<String> failedPrimaryKeys = new ArrayList<>();
+
+        if (!unprocessedItems.isEmpty()) {
+            logger.warn("{} records were still unprocessed after {} batch write attempts", unprocessedItems.size(),
+                    MAXIMUM_BATCH_WRITE_ATTEMPTS);
+        }
+
+        for (WriteRequest writeRequest : unprocessedItems) {
+            AttributeValue primaryKey = writeRequest.getPutRequest().getItem().get(hashKey);
+            failedPrimaryKeys.add(primaryKey == null ? null : primaryKey.getS());
+        }
+
+        return failedPrimaryKeys;
+    }
+
+    private List<WriteRequest> getUnprocessedItems(BatchWriteItemOutcome outcome) {
+        Map<String, List<WriteRequest>> unprocessedItems = outcome.getUnprocessedItems();
+
+        if (unprocessedItems == null || !unprocessedItems.containsKey(tableName)) {
+            return Collections.emptyList();
+        }
+
+        return unprocessedItems.get(tableName);
+    }
+
+    private List<String> getPrimaryKeys(Collection<Item> items) {
+        List<String> primaryKeys = new ArrayList<>();
+        items.forEach(item -> primaryKeys.add(item.getString(hashKey)));
+        return primaryKeys;
+    }
+
+    // 'Full jitter' backoff: a random delay up to an exponentially growing cap, so that threads that were throttled
+    // at the same time do not all retry at the same time.
+    private static long backoffInMillis(int attempt) {
+        long cap = Math.min(MAXIMUM_BACKOFF_IN_MILLISECONDS, BASE_BACKOFF_IN_MILLISECONDS << Math.min(attempt, 20));
+        return ThreadLocalRandom.current().nextLong(cap + 1);
+    }
+
     private void emitSuccessAndFailureMetrics(final EtlProfilingScope scope, final boolean isSuccess) {
         scope.addCounter(SUCCESS_METRIC_KEY, isSuccess ? 1 : 0);
         scope.addCounter(FAILURE_METRIC_KEY, isSuccess ? 0 : 1);
     }
-}
\ No newline at end of file
+
+    /**
+     * Records buffered by a single loading thread, keyed by primary key. A batch never holds two records with the same
+     * key, as BatchWriteItem rejects a batch that writes the same item twice.
+     */
+    private static class WriteBatch {
+        private final Map<Object, Item> items = new LinkedHashMap<>();
+        private long firstAddedTimeInMillis = 0;
+
+        void add(Object primaryKey, Item item) {
+            if (items.isEmpty()) {
+                firstAddedTimeInMillis = System.currentTimeMillis();
+            }
+
+            items.put(primaryKey, item);
+        }
+
+        boolean contains(Object primaryKey) {
+            return items.containsKey(primaryKey);
+        }
+
+        int size() {
+            return items.size();
+        }
+
+        long getFirstAddedTimeInMillis() {
+            return firstAddedTimeInMillis;
+        }
+
+        Collection<Item> drain() {
+            List<Item> drainedItems = new ArrayList<>(items.values());
+            items.clear();
+            return drainedItems;
+        }
+    }
+}
@@ -0,0 +1,447 @@
+/*
+ *   Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package com.amazon.pocketEtl.loader;
+
+import com.amazon.pocketEtl.EtlMetrics;
+import com.amazon.pocketEtl.EtlProfilingScope;
+import com.amazon.pocketEtl.Loader;
+import com.amazon.pocketEtl.exception.DependencyException;
+import com.amazon.pocketEtl.exception.UnrecoverableStreamFailureException;
+import com.amazon.pocketEtl.integration.db.BeanPropertyTable;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import org.apache.logging.log4j.Logger;
+import org.joda.time.DateTime;
+
+import javax.annotation.Nullable;
+import javax.sql.DataSource;
+import java.lang.invoke.MethodHandle;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import static org.apache.logging.log4j.LogManager.getLogger;
+
+/**
+ * Loader implementation that inserts objects as rows in a table of any JDBC database, writing them in batches rather
+ * than with one INSERT for every object. Each column is loaded with the value of the property of the object that has
+ * the same name, ignoring case, in the same way that SqlExtractor maps columns onto properties when extracting.
+ *
+ * Like S3FastLoader this class is optimized for throughput, so it is deliberately not synchronized and is not
+ * thread-safe. Each loader holds its own connection for as long as it is open, so the best way to use it is to construct
+ * a Supplier using the supplierOf static method and pass that supplier into a ParallelLoader, which gives each thread
+ * that loads data its own loader and therefore its own connection. Eg:
+ *
+ * ParallelLoader.of(JdbcBatchLoader.supplierOf(dataSource, "customer", ImmutableList.of("id", "name"), Customer.class))
+ *
+ * Rows are buffered until there is a full batch of them, and each batch is then written either with JDBC batching
+ * (addBatch/executeBatch) or, if requested, with a single INSERT statement that has a VALUES entry for every row. Which
+ * is faster depends on the database and its driver. The transaction is committed after a configurable number of
+ * batches and when the loader is closed. Rows can be upserted instead of inserted by choosing a
+ * {@link JdbcUpsertDialect} that the database supports.
+ *
+ * Any failure writing a batch rolls back everything written since the last commit and stops the stream, as there is no
+ * way of knowing which rows of the batch were written.
+ *
+ * @param <T> Type of object being loaded.
+ */
+@SuppressWarnings("WeakerAccess")
+@RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+public class JdbcBatchLoader<T> implements Loader<T> {
+    private final static Logger logger = getLogger(JdbcBatchLoader.class);
+    private final static String ROWS_WRITTEN_METRIC_KEY = "JdbcBatchLoader.rowsWritten";
+    private final static String SOURCE_TABLE_ALIAS = "source";
+
+    private final DataSource dataSource;
+    private final List<MethodHandle> columnGetters;
+    private final String fullBatchSql;
+    private final Map<Integer, String> partialBatchSql;
+    private final JdbcBatchLoaderSupplier<T> configuration;
+
+    private final List<Object[]> bufferedRows = new ArrayList<>();
+    private Connection connection = null;
+    private PreparedStatement fullBatchStatement = null;
+    private int batchesSinceCommit = 0;
+    private EtlMetrics parentMetrics = null;
+
+    /**
+     * Create a supplier of JdbcBatchLoader objects that insert into a specific table.
+     *
+     * @param dataSource  A DataSource that connects to the database, ideally through a connection pool.
+     * @param tableName   The name of the table to load the data into. This can include a schema name if appropriate.
+     * @param columnNames The names of the columns to load, each of which is loaded from the property of the object
+     *                    with the same name.
+     * @param classToLoad The class of object being loaded.
+     * @param <T>         The type of object being loaded.
+     * @return A newly constructed JdbcBatchLoaderSupplier object.
+     */
+    public static <T> JdbcBatchLoaderSupplier<T> supplierOf(DataSource dataSource, String tableName,
+                                                           List<String> columnNames, Class<T> classToLoad) {
+        return new JdbcBatchLoaderSupplier<>(dataSource, tableName, columnNames, classToLoad,
+                JdbcBatchLoaderSupplier.DEFAULT_BATCH_SIZE, 1, false, null, null);
+    }
+
+    /**
+     * Buffers an object to be written as a row, and writes the buffered rows if there is now a full batch of them.
+     *
+     * @param objectToLoad The object to be loaded.
+     */
+    @Override
+    public void load(T objectToLoad) {
+        if (connection == null) {
+            throw new IllegalStateException("JdbcBatchLoader is not open and cannot receive load requests.");
+        }
+
+        Object[] row = new Object[columnGetters.size()];
+
+        try {
+            for (int i = 0; i < row.length; i++) {
+                row[i] = toJdbcValue(columnGetters.get(i).invokeExact((Object) objectToLoad));
+            }
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new RuntimeException(e);
+        }
+
+        bufferedRows.add(row);
+
+        if (bufferedRows.size() >= configuration.batchSize) {
+            writeBufferedRows();
+        }
+    }
+
+    /**
+     * Opens the connection the rows will be written with and starts a transaction.
+     *
+     * @param parentMetrics An EtlMetrics object to attach any counters or timers to, will be null if profiling is not
+     *                      required.
+     */
+    @Override
+    public void open(@Nullable EtlMetrics parentMetrics) {
+        try (EtlProfilingScope ignored = new EtlProfilingScope(parentMetrics, "JdbcBatchLoader.open")) {
+            this.parentMetrics = parentMetrics;
+
+            try {
+                Connection newConnection = dataSource.getConnection();
+
+                if (newConnection == null) {
+                    throw new DependencyException("DataSource returned null connection");
+                }
+
+                newConnection.setAutoCommit(false);
+                connection = newConnection;
+            } catch (SQLException e) {
+                throw new UnrecoverableStreamFailureException(e);
+            }
+        }
+    }
+
+    /**
+     * Writes any rows that are still buffered, commits the transaction and closes the connection.
+     *
+     * @throws Exception If something goes wrong.
+     */
+    @Override
+    public void close() throws Exception {
+        try (EtlProfilingScope ignored = new EtlProfilingScope(parentMetrics, "JdbcBatchLoader.close")) {
+            if (connection == null) {
+                return;
+            }
+
+            try {
+                writeBufferedRows();
+
+                if (batchesSinceCommit > 0) {
+                    connection.commit();
+                }
+            } finally {
+                closeConnection();
+            }
+        }
+    }
+
+    private void writeBufferedRows() {
+        if (bufferedRows.isEmpty()) {
+            return;
+        }
+
+        try (EtlProfilingScope scope = new EtlProfilingScope(parentMetrics, "JdbcBatchLoader.writeBatch")) {
+            try {
+                if (configuration.isMultiRowValues) {
+                    writeRowsAsOneStatement();
+                } else {
+                    writeRowsAsJdbcBatch();
+                }
+
+                scope.addCounter(ROWS_WRITTEN_METRIC_KEY, bufferedRows.size());
+                bufferedRows.clear();
+
+                if (++batchesSinceCommit >= configuration.commitIntervalInBatches) {
+                    connection.commit();
+                    batchesSinceCommit = 0;
+                }
+            } catch (Exception e) {
+                logger.error("Failed to write batch of {} rows, rolling back", bufferedRows.size(), e);
+                attemptRollback();
+                closeConnection();
+                throw new UnrecoverableStreamFailureException(e);
+            }
+        }
+    }
+
+    private void writeRowsAsJdbcBatch() throws SQLException {
+        PreparedStatement statement = getFullBatchStatement();
+
+        for (Object[] row : bufferedRows) {
+            for (int i = 0; i < row.length; i++) {
+                statement.setObject(i + 1, row[i]);
+            }
+
+            statement.addBatch();
+        }
+
+        statement.executeBatch();
+    }
+
+    private void writeRowsAsOneStatement() throws SQLException {
+        if (bufferedRows.size() == configuration.batchSize) {
+            bindAllRowsAndExecute(getFullBatchStatement());
+        } else {
+            // Only the last batch is ever partial, so its statement is not worth keeping
+            try (PreparedStatement statement = connection.prepareStatement(partialBatchSql.computeIfAbsent(
+                    bufferedRows.size(), configuration::buildSql))) {
+                bindAllRowsAndExecute(statement);
+            }
+        }
+    }
+
+    private void bindAllRowsAndExecute(PreparedStatement statement) throws SQLException {
+        int parameterIndex = 1;
+
+        for (Object[] row : bufferedRows) {
+            for (Object value : row) {
+                statement.setObject(parameterIndex++, value);
+            }
+        }
+
+        statement.execute();
+    }
+
+    private PreparedStatement getFullBatchStatement() throws SQLException {
+        if (fullBatchStatement == null) {
+            fullBatchStatement = connection.prepareStatement(fullBatchSql);
+        }
+
+        return fullBatchStatement;
+    }
+
+    private void attemptRollback() {
+        try {
+            connection.rollback();
+        } catch (SQLException e) {
+            logger.warn("SQL exception thrown during rollback", e);
+        }
+    }
+
+    private void closeConnection() {
+        if (connection == null) {
+            return;
+        }
+
+        try {
+            if (fullBatchStatement != null) {
+                fullBatchStatement.close();
+            }
+
+            connection.close();
+        } catch (SQLException e) {
+            logger.warn("SQL exception thrown closing connection", e);
+        } finally {
+            fullBatchStatement = null;
+            connection = null;
+        }
+    }
+
+    private static Object toJdbcValue(Object value) {
+        if (value instanceof DateTime) {
+            return new Timestamp(((DateTime) value).getMillis());
+        }
+
+        if (value instanceof Enum) {
+            return ((Enum<?>) value).name();
+        }
+
+        return value;
+    }
+
+    @RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+    public static class JdbcBatchLoaderSupplier<T> implements Supplier<Loader<T>> {
+        private final static int DEFAULT_BATCH_SIZE = 1000;
+
+        private final DataSource dataSource;
+        private final String tableName;
+        private final List<String> columnNames;
+        private final Class<T> classToLoad;
+        private final int batchSize;
+        private final int commitIntervalInBatches;
+        private final boolean isMultiRowValues;
+        private final JdbcUpsertDialect upsertDialect;
+        private final List<String> keyColumnNames;
+
+        /**
+         * Optional: The number of rows each loader buffers before writing them all at once. The default is 1000.
+         *
+         * @param batchSize Number of rows to write in each batch.
+         * @return A copy of the current JdbcBatchLoaderSupplier with this property modified.
+         * @throws IllegalArgumentException If the batch size is not positive.
+         */
+        public JdbcBatchLoaderSupplier<T> withBatchSize(int batchSize) {
+            if (batchSize < 1) {
+                throw new IllegalArgumentException("batchSize must be at least 1");
+            }
+
+            return new JdbcBatchLoaderSupplier<>(dataSource, tableName, columnNames, classToLoad, batchSize,
+                    commitIntervalInBatches, isMultiRowValues, upsertDialect, keyColumnNames);
+        }
+
+        /**
+         * Optional: The number of batches each loader writes before committing its transaction. Committing less often
+         * is faster, but means more work is lost and has to be repeated if the load fails, and locks are held for
+         * longer. The default is to commit after every batch. The transaction is always committed when the loader is
+         * closed.
+         *
+         * @param commitIntervalInBatches Number of batches to write in each transaction.
+         * @return A copy of the current JdbcBatchLoaderSupplier with this property modified.
+         * @throws IllegalArgumentException If the interval is not positive.
+         */
+        public JdbcBatchLoaderSupplier<T> withCommitIntervalInBatches(int commitIntervalInBatches) {
+            if (commitIntervalInBatches < 1) {
+                throw new IllegalArgumentException("commitIntervalInBatches must be at least 1");
+            }
+
+            return new JdbcBatchLoaderSupplier<>(dataSource, tableName, columnNames, classToLoad, batchSize,
+                    commitIntervalInBatches, isMultiRowValues, upsertDialect, keyColumnNames);
+        }
+
+        /**
+         * Optional: Write each batch with a single statement that has a VALUES entry for every row, rather than with
+         * JDBC batching. Some drivers execute a JDBC batch as one round trip per row, in which case this is much
+         * faster. Databases limit how many parameters a single statement can have, so the batch size times the number
+         * of columns must be within that limit. When upserting, a batch must not contain two rows with the same key.
+         *
+         * @return A copy of the current JdbcBatchLoaderSupplier with this property modified.
+         */
+        public JdbcBatchLoaderSupplier<T> withMultiRowValues() {
+            return new JdbcBatchLoaderSupplier<>(dataSource, tableName, columnNames, classToLoad, batchSize,
+                    commitIntervalInBatches, true, upsertDialect, keyColumnNames);
+        }
+
+        /**
+         * Optional: Replace any existing row that has the same key as a row being loaded, instead of inserting a new
+         * row alongside it. By default rows are always inserted.
+         *
+         * @param upsertDialect  The SQL dialect to upsert with, which must be supported by the database.
+         * @param keyColumnNames The names of the columns that uniquely identify a row, which must be among the columns
+         *                       being loaded.
+         * @return A copy of the current JdbcBatchLoaderSupplier with this property modified.
+         * @throws IllegalArgumentException If a key column is not one of the columns being loaded.
+         */
+        public JdbcBatchLoaderSupplier<T> withUpsert(JdbcUpsertDialect upsertDialect, List<String> keyColumnNames) {
+            if (keyColumnNames.isEmpty() || !columnNames.containsAll(keyColumnNames)) {
+                throw new IllegalArgumentException("keyColumnNames must be a non-empty subset of the columns being loaded");
+            }
+
+            return new JdbcBatchLoaderSupplier<>(dataSource, tableName, columnNames, classToLoad, batchSize,
+                    commitIntervalInBatches, isMultiRowValues, upsertDialect, keyColumnNames);
+        }
+
+        /**
+         * Invoke the provider to construct a loader object.
+         *
+         * @return A constructed and functional Loader object.
+         * @throws IllegalArgumentException If a column does not have a readable property of the same name.
+         */
+        @Override
+        public JdbcBatchLoader<T> get() {
+            List<MethodHandle> columnGetters = columnNames.stream()
+                    .map(this::getterFor)
+                    .collect(Collectors.toList());
+            String fullBatchSql = buildSql(isMultiRowValues ? batchSize : 1);
+
+            return new JdbcBatchLoader<>(dataSource, columnGetters, fullBatchSql, new HashMap<>(), this);
+        }
+
+        private MethodHandle getterFor(String columnName) {
+            MethodHandle getter = BeanPropertyTable.of(classToLoad).getGetter(columnName);
+
+            if (getter == null) {
+                throw new IllegalArgumentException(String.format("No readable property of %s matches the column %s",
+                        classToLoad.getName(), columnName));
+            }
+
+            return getter;
+        }
+
+        // Visible for testing.
+        String buildSql(int numberOfRows) {
+            String columnList = String.join(",", columnNames);
+            String rowPlaceholders = "(" + String.join(",", Collections.nCopies(columnNames.size(), "?")) + ")";
+            String valuesList = String.join(",", Collections.nCopies(numberOfRows, rowPlaceholders));
+
+            if (upsertDialect == null) {
+                return String.format("insert into %s (%s) values %s", tableName, columnList, valuesList);
+            }
+
+            List<String> valueColumnNames = columnNames.stream()
+                    .filter(columnName -> !keyColumnNames.contains(columnName))
+                    .collect(Collectors.toList());
+
+            switch (upsertDialect) {
+                case ON_CONFLICT:
+                    return String.format("insert into %s (%s) values %s on conflict (%s) %s", tableName, columnList,
+                            valuesList, String.join(",", keyColumnNames), valueColumnNames.isEmpty() ? "do nothing" :
+                                    "do update set " + valueColumnNames.stream()
+                                            .map(columnName -> columnName + " = excluded." + columnName)
+                                            .collect(Collectors.joining(",")));
+                case MERGE:
+                    return String.format("merge into %s using (values %s) as %s (%s) on %s %swhen not matched then " +
+                                    "insert (%s) values (%s)", tableName, valuesList, SOURCE_TABLE_ALIAS, columnList,
+                            keyColumnNames.stream()
+                                    .map(columnName -> String.format("%s.%s = %s.%s", tableName, columnName,
+                                            SOURCE_TABLE_ALIAS, columnName))
+                                    .collect(Collectors.joining(" and ")),
+                            valueColumnNames.isEmpty() ? "" : "when matched then update set " + valueColumnNames.stream()
+                                    .map(columnName -> columnName + " = " + SOURCE_TABLE_ALIAS + "." + columnName)
+                                    .collect(Collectors.joining(",")) + " ",
+                            columnList,
+                            columnNames.stream()
+                                    .map(columnName -> SOURCE_TABLE_ALIAS + "." + columnName)
+                                    .collect(Collectors.joining(",")));
+                default:
+                    throw new IllegalStateException("Unknown upsert dialect " + upsertDialect);
+            }
+        }
+    }
+}
@@ -0,0 +1,36 @@
+/*
+ *   Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package com.amazon.pocketEtl.loader;
+
+/**
+ * Enumeration of the SQL dialects JdbcBatchLoader can use to insert rows that replace any existing rows with the same
+ * key, rather than failing or creating duplicates.
+ */
+public enum JdbcUpsertDialect {
+    /**
+     * INSERT ... ON CONFLICT (key columns) DO UPDATE SET ..., as supported by PostgreSQL and SQLite. The key columns
+     * must have a unique index or constraint on them.
+     */
+    ON_CONFLICT,
+
+    /**
+     * MERGE INTO table USING (VALUES ...) AS source (columns) ON ... WHEN MATCHED THEN UPDATE ... WHEN NOT MATCHED THEN
+     * INSERT ..., in the form accepted by HSQLDB, which it is tested against, and H2. Other databases that have a MERGE
+     * statement, such as Oracle and SQL Server, do not accept this form: Oracle has no VALUES table constructor or
+     * column aliases on the source and SQL Server requires the statement to end with a semicolon.
+     */
+    MERGE
+}
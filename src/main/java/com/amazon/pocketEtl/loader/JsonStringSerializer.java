@@ -0,0 +1,95 @@
+/*
+ *   Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package com.amazon.pocketEtl.loader;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jdk8.Jdk8Module;
+import com.fasterxml.jackson.datatype.joda.JodaModule;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * A serializer that writes a DTO as a single line of JSON terminated by a newline, so that the objects written to a
+ * file form newline-delimited JSON that can be read back with NdJsonInputStreamMapper. It can be used either as a
+ * StringSerializer or as a StreamSerializer, in which case Jackson writes the UTF-8 encoded JSON straight to the output
+ * stream without building an intermediate String. This serializer holds no state and is thread-safe.
+ *
+ * Joda and java.time dates are written as ISO-8601 strings rather than as timestamps.
+ *
+ * @param <T> Type of DTO to be serialized.
+ */
+@SuppressWarnings("WeakerAccess")
+public class JsonStringSerializer<T> implements StringSerializer<T>, StreamSerializer<T> {
+    // SqsLoader writes message bodies with this mapper, so that they can be read back by the same DTOs as files
+    // written by this serializer.
+    static final ObjectMapper mapper = new ObjectMapper()
+            .registerModules(new JodaModule(), new Jdk8Module(), new JavaTimeModule())
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+            .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+
+    private static final byte LINE_SEPARATOR = '\n';
+
+    private final ObjectWriter writer;
+
+    /**
+     * Standard constructor.
+     *
+     * @param classToSerialize Class of DTO to be serialized.
+     * @param <T> Type of DTO to be serialized.
+     * @return A new JsonStringSerializer.
+     */
+    public static <T> JsonStringSerializer<T> of(Class<T> classToSerialize) {
+        return new JsonStringSerializer<>(classToSerialize);
+    }
+
+    private JsonStringSerializer(Class<T> classToSerialize) {
+        writer = mapper.writerFor(classToSerialize);
+    }
+
+    /**
+     * Converts a DTO to a line of JSON.
+     *
+     * @param objectToSerialize Object to be serialized.
+     * @return A JSON string terminated by a newline.
+     */
+    @Override
+    public String apply(T objectToSerialize) {
+        try {
+            return writer.writeValueAsString(objectToSerialize) + (char) LINE_SEPARATOR;
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Writes a DTO to an output stream as a line of UTF-8 encoded JSON.
+     *
+     * @param objectToSerialize Object to be serialized.
+     * @param outputStream The stream to write the JSON to.
+     * @throws IOException If the object could not be serialized or written.
+     */
+    @Override
+    public void serialize(T objectToSerialize, OutputStream outputStream) throws IOException {
+        writer.writeValue(outputStream, objectToSerialize);
+        outputStream.write(LINE_SEPARATOR);
+    }
+}
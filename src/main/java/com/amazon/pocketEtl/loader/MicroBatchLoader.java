@@ -0,0 +1,362 @@
+/*
+ *   Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package com.amazon.pocketEtl.loader;
+
+import com.amazon.pocketEtl.EtlMetrics;
+import com.amazon.pocketEtl.EtlProfilingScope;
+import com.amazon.pocketEtl.Loader;
+import com.amazon.pocketEtl.exception.UnrecoverableStreamFailureException;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import org.apache.logging.log4j.Logger;
+
+import javax.annotation.Nullable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+
+import static org.apache.logging.log4j.LogManager.getLogger;
+
+/**
+ * Loader implementation that splits a long-running stream of objects into a sequence of batches, each of which is its
+ * own wrapped loader. A batch is sealed once it holds a maximum number of bytes or once it has been open for a maximum
+ * amount of time, and a new batch is started for the objects that follow. Sealed batches are committed by closing them
+ * on a single background thread, so objects keep being loaded into the next batch while the previous one commits.
+ *
+ * Batches are committed one at a time in the order they were sealed, and each batch is either closed or aborted exactly
+ * once. If a batch fails to commit, every later batch is aborted rather than committed and the failure is thrown as an
+ * UnrecoverableStreamFailureException by the next call to load() or close(). If more than one sealed batch is waiting
+ * to be committed, sealing the next one blocks until the oldest has been committed, so a slow commit slows down loading
+ * rather than piling up batches.
+ *
+ * The wrapped batch loaders are used by multiple threads at once and therefore must be threadsafe, but no object is
+ * ever loaded into a batch once it has been sealed. If no objects are loaded at all, a single empty batch is still
+ * opened and committed when this loader is closed.
+ *
+ * An ideal use-case for this loader is a stream that never ends, such as one being fed from a queue, being loaded into
+ * a destination that is best written to in bulk, for instance by wrapping a ParallelLoader that writes S3 files and
+ * then copies them into Redshift when it is closed.
+ *
+ * @param <T> Type of object being loaded.
+ */
+@SuppressWarnings("WeakerAccess")
+@RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+public class MicroBatchLoader<T> implements Loader<T> {
+    private final static Logger logger = getLogger(MicroBatchLoader.class);
+
+    // One batch committing and one waiting behind it; sealing any more than that blocks until there is room.
+    private final static int MAX_PENDING_BATCHES = 2;
+
+    private final Supplier<? extends Batch<T>> batchSupplier;
+    private final Long maxBatchSizeInBytes;
+    private final Long maxBatchAgeInMillis;
+
+    private EtlMetrics parentMetrics = null;
+    private ExecutorService committer = null;
+    private ScheduledExecutorService batchAgeChecker = null;
+    private volatile boolean isClosed = false;
+
+    // THREAD-SAFE OBJECTS: they are shared by and modified by concurrent threads
+    private final ReadWriteLock currentBatchLock = new ReentrantReadWriteLock();
+    private final Semaphore pendingBatches = new Semaphore(MAX_PENDING_BATCHES);
+    private final AtomicReference<RuntimeException> commitFailure = new AtomicReference<>();
+    private Batch<T> currentBatch = null;
+    private long currentBatchStartTimeInMillis = 0;
+    private boolean batchWasStarted = false;
+    // END THREAD-SAFE
+
+    /**
+     * A loader that can report how many bytes have been loaded into it so far. Closing the batch commits it.
+     * @param <T> Type of object being loaded.
+     */
+    public interface Batch<T> extends Loader<T> {
+        /**
+         * The number of bytes loaded into this batch so far. This is only used to decide when to seal the batch, so it
+         * does not have to be exact.
+         * @return Number of bytes loaded into this batch.
+         */
+        long getSizeInBytes();
+
+        /**
+         * Release everything held by this batch without committing it. Called instead of close() once an earlier
+         * batch has failed to commit.
+         * @throws Exception If something goes wrong.
+         */
+        void abort() throws Exception;
+    }
+
+    /**
+     * Create a new MicroBatchLoader based on a factory of batches. This factory will be used to dispense a new batch
+     * each time the previous batch has been sealed and another object is loaded.
+     * @param batchSupplier An object that provides Batch objects.
+     * @param <T> The type of object being loaded.
+     * @return A newly constructed MicroBatchLoader.
+     */
+    public static <T> MicroBatchLoader<T> of(Supplier<? extends Batch<T>> batchSupplier) {
+        return new MicroBatchLoader<>(batchSupplier, null, null);
+    }
+
+    /**
+     * Seal each batch once this many bytes have been loaded into it. The batch is sealed after the object that takes it
+     * over this size, so batches will be slightly larger than this. By default batches are not sealed by size.
+     * @param maxBatchSizeInBytes Size of a batch in bytes at which it is sealed.
+     * @return A new copy of this loader with its behavior modified.
+     * @throws IllegalArgumentException If the size is not positive.
+     */
+    public MicroBatchLoader<T> withMaxBatchSizeInBytes(long maxBatchSizeInBytes) {
+        if (maxBatchSizeInBytes < 1) {
+            throw new IllegalArgumentException("Max batch size must be at least one byte");
+        }
+
+        return new MicroBatchLoader<>(batchSupplier, maxBatchSizeInBytes, maxBatchAgeInMillis);
+    }
+
+    /**
+     * Seal each batch once this much time has passed since the first object was loaded into it, even if no more
+     * objects are being loaded. By default batches are not sealed by age.
+     * @param maxBatchAgeInMillis Age of a batch in milliseconds at which it is sealed.
+     * @return A new copy of this loader with its behavior modified.
+     * @throws IllegalArgumentException If the age is not positive.
+     */
+    public MicroBatchLoader<T> withMaxBatchAgeInMillis(long maxBatchAgeInMillis) {
+        if (maxBatchAgeInMillis < 1) {
+            throw new IllegalArgumentException("Max batch age must be at least one millisecond");
+        }
+
+        return new MicroBatchLoader<>(batchSupplier, maxBatchSizeInBytes, maxBatchAgeInMillis);
+    }
+
+    /**
+     * Loads an object into the current batch, starting a new batch if there isn't one. If this makes the batch too big
+     * or too old it is then sealed and handed to the background thread to be committed.
+     * @param objectToLoad The object to be loaded.
+     * @throws UnrecoverableStreamFailureException If an earlier batch failed to commit.
+     */
+    @Override
+    public void load(T objectToLoad) {
+        if (isClosed) {
+            IllegalStateException e = new IllegalStateException("MicroBatchLoader is closed and cannot receive more load requests.");
+            logger.error("Error inside MicroBatchLoader: ", e);
+            throw e;
+        }
+
+        throwIfCommitFailed();
+
+        Batch<T> batchToSeal = null;
+
+        while (true) {
+            currentBatchLock.readLock().lock();
+
+            try {
+                if (currentBatch != null) {
+                    currentBatch.load(objectToLoad);
+
+                    if (isReadyToSeal()) {
+                        batchToSeal = currentBatch;
+                    }
+
+                    break;
+                }
+            } finally {
+                currentBatchLock.readLock().unlock();
+            }
+
+            currentBatchLock.writeLock().lock();
+
+            try {
+                if (currentBatch == null) {
+                    startBatch();
+                }
+            } finally {
+                currentBatchLock.writeLock().unlock();
+            }
+        }
+
+        if (batchToSeal != null) {
+            seal(batchToSeal);
+        }
+    }
+
+    /**
+     * Prepares this loader to begin loading objects and starts checking the age of the current batch if there is a
+     * maximum age.
+     * @param parentMetrics An EtlMetrics object to attach the batches and their commits to.
+     */
+    @Override
+    public void open(@Nullable EtlMetrics parentMetrics) {
+        this.parentMetrics = parentMetrics;
+
+        committer = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "MicroBatchLoader-committer");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        if (maxBatchAgeInMillis != null) {
+            batchAgeChecker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "MicroBatchLoader-batch-age-checker");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+            // Checking at half the max age means no batch stays open for more than one and a half max ages
+            long checkInterval = Math.max(1, maxBatchAgeInMillis / 2);
+            batchAgeChecker.scheduleWithFixedDelay(this::sealCurrentBatchIfTooOld, checkInterval, checkInterval,
+                    TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Seals the current batch and waits for it and every other sealed batch to be committed.
+     * @throws UnrecoverableStreamFailureException If any batch failed to commit.
+     * @throws Exception If something else goes wrong.
+     */
+    @Override
+    public void close() throws Exception {
+        try (EtlProfilingScope ignored = new EtlProfilingScope(parentMetrics, "MicroBatchLoader.close")) {
+            if (batchAgeChecker != null) {
+                batchAgeChecker.shutdownNow();
+                batchAgeChecker.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+            }
+
+            Batch<T> lastBatch;
+            currentBatchLock.writeLock().lock();
+
+            try {
+                // An empty batch is committed if nothing was loaded so that the batch can still act on an empty stream
+                if (!batchWasStarted) {
+                    startBatch();
+                }
+
+                lastBatch = currentBatch;
+            } finally {
+                currentBatchLock.writeLock().unlock();
+            }
+
+            if (lastBatch != null) {
+                seal(lastBatch);
+            }
+
+            isClosed = true;
+
+            if (committer != null) {
+                committer.shutdown();
+                committer.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+            }
+
+            throwIfCommitFailed();
+        }
+    }
+
+    // Must be called whilst holding a lock on the current batch.
+    private boolean isReadyToSeal() {
+        return (maxBatchSizeInBytes != null && currentBatch.getSizeInBytes() >= maxBatchSizeInBytes) ||
+                (maxBatchAgeInMillis != null &&
+                        System.currentTimeMillis() - currentBatchStartTimeInMillis >= maxBatchAgeInMillis);
+    }
+
+    // Must be called whilst holding the write lock on the current batch.
+    private void startBatch() {
+        try (EtlProfilingScope ignored = new EtlProfilingScope(parentMetrics, "MicroBatchLoader.startBatch")) {
+            Batch<T> batch = batchSupplier.get();
+            batch.open(parentMetrics);
+            currentBatch = batch;
+            currentBatchStartTimeInMillis = System.currentTimeMillis();
+            batchWasStarted = true;
+        }
+    }
+
+    private void sealCurrentBatchIfTooOld() {
+        Batch<T> batchToSeal = null;
+        currentBatchLock.readLock().lock();
+
+        try {
+            if (currentBatch != null && isReadyToSeal()) {
+                batchToSeal = currentBatch;
+            }
+        } finally {
+            currentBatchLock.readLock().unlock();
+        }
+
+        if (batchToSeal != null) {
+            seal(batchToSeal);
+        }
+    }
+
+    /*
+     * Swaps out the batch so no more objects are loaded into it and queues it to be committed, unless another thread
+     * has already done so. Holding the write lock whilst waiting for room to queue the batch stops every loading thread
+     * until the oldest pending batch has been committed.
+     */
+    private void seal(Batch<T> batch) {
+        currentBatchLock.writeLock().lock();
+
+        try (EtlProfilingScope ignored = new EtlProfilingScope(parentMetrics, "MicroBatchLoader.seal")) {
+            if (currentBatch != batch) {
+                return;
+            }
+
+            try {
+                pendingBatches.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new UnrecoverableStreamFailureException("Interrupted waiting for a batch to be committed", e);
+            }
+
+            currentBatch = null;
+
+            try {
+                committer.submit(() -> commit(batch));
+            } catch (RuntimeException e) {
+                pendingBatches.release();
+                throw e;
+            }
+        } finally {
+            currentBatchLock.writeLock().unlock();
+        }
+    }
+
+    private void commit(Batch<T> batch) {
+        try (EtlProfilingScope ignored = new EtlProfilingScope(parentMetrics, "MicroBatchLoader.commit")) {
+            if (commitFailure.get() != null) {
+                logger.warn("Aborting batch because an earlier batch failed to commit");
+                batch.abort();
+            } else {
+                batch.close();
+            }
+        } catch (Throwable e) {
+            logger.error("Exception thrown committing batch: ", e);
+            commitFailure.compareAndSet(null, e instanceof UnrecoverableStreamFailureException ?
+                    (UnrecoverableStreamFailureException) e : new UnrecoverableStreamFailureException(e));
+        } finally {
+            pendingBatches.release();
+        }
+    }
+
+    private void throwIfCommitFailed() {
+        RuntimeException failure = commitFailure.get();
+
+        if (failure != null) {
+            throw failure;
+        }
+    }
+}
@@ -20,12 +20,14 @@ import com.amazon.pocketEtl.EtlProfilingScope;
 import com.amazon.pocketEtl.Loader;
 import com.amazon.pocketEtl.exception.UnrecoverableStreamFailureException;
 
-import lombok.AccessLevel;
-import lombok.RequiredArgsConstructor;
 import org.apache.logging.log4j.Logger;
 
 import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 import java.util.function.BiConsumer;
 import java.util.function.Supplier;
 
@@ -42,15 +44,20 @@ import static org.apache.logging.log4j.LogManager.getLogger;
  * in this case because the threads would have to synchronize on writes to the stream and you would therefore lose all
  * the potential throughput gains from parallelism.
  *
+ * Alternatively the parallel loader can be given a fixed number of wrapped loaders, in which case objects are dealt out
+ * to them in turn regardless of which thread is loading them. This spreads the objects evenly over a known number of
+ * loaders, for instance to write a known number of similarly sized files, at the cost of each wrapped loader being
+ * locked while an object is loaded into it.
+ *
  * @param <T> Type of object being loaded.
  */
 @SuppressWarnings("WeakerAccess")
-@RequiredArgsConstructor(access = AccessLevel.PRIVATE)
 public class ParallelLoader<T> implements Loader<T> {
     private final static Logger logger = getLogger(ParallelLoader.class);
 
     private final Supplier<Loader<T>> loaderSupplier;
     private final BiConsumer<Boolean, EtlMetrics> closeCallback;
+    private final Integer numberOfLoaders;
 
     private boolean isClosed = false;
     private boolean dataWasLoaded = false;
@@ -58,9 +65,21 @@ public class ParallelLoader<T> implements Loader<T> {
 
     // THREAD-SAFE OBJECTS: they are shared by and modified by concurrent threads
     private final Queue<Loader<T>> activeLoaders = new ConcurrentLinkedQueue<>();
-    private final ThreadLocal<Loader<T>> loaderThreadLocal = new ThreadLocal<>();
+    // Not a ThreadLocal, so that the loaders can be garbage collected with this object rather than living on for as
+    // long as the threads that used them
+    private final ConcurrentMap<Thread, Loader<T>> threadLoaders = new ConcurrentHashMap<>();
+    private final AtomicInteger nextFixedLoader = new AtomicInteger(0);
+    private final AtomicReferenceArray<Loader<T>> fixedLoaders;
     // END THREAD-SAFE
 
+    private ParallelLoader(Supplier<Loader<T>> loaderSupplier, BiConsumer<Boolean, EtlMetrics> closeCallback,
+                           Integer numberOfLoaders) {
+        this.loaderSupplier = loaderSupplier;
+        this.closeCallback = closeCallback;
+        this.numberOfLoaders = numberOfLoaders;
+        this.fixedLoaders = numberOfLoaders == null ? null : new AtomicReferenceArray<>(numberOfLoaders);
+    }
+
     /**
      * Create a new ParallelLoader based on a Loader factory. This factory will be used to dispense a new wrapped
      * Loader each time a new thread loading data is seen.
@@ -69,7 +88,7 @@ public class ParallelLoader<T> implements Loader<T> {
      * @return A newly constructed ParallelLoader.
      */
     public static <T> ParallelLoader<T> of(Supplier<Loader<T>> loaderSupplier) {
-        return new ParallelLoader<>(loaderSupplier, null);
+        return new ParallelLoader<>(loaderSupplier, null, null);
     }
 
     /**
@@ -82,12 +101,29 @@ public class ParallelLoader<T> implements Loader<T> {
      * @return A new copy of this loader with its behavior modified.
      */
     public ParallelLoader<T> withOnCloseCallback(BiConsumer<Boolean, EtlMetrics> closeCallback) {
-        return new ParallelLoader<>(loaderSupplier, closeCallback);
+        return new ParallelLoader<>(loaderSupplier, closeCallback, numberOfLoaders);
+    }
+
+    /**
+     * Use a fixed number of wrapped loaders rather than one for each thread, dealing the objects being loaded out to
+     * them in turn. Each wrapped loader is only ever used by one thread at a time, so the wrapped loaders still do not
+     * need to be threadsafe. A wrapped loader is not created until the first object is dealt to it.
+     * @param numberOfLoaders The number of wrapped loaders to deal objects out to.
+     * @return A new copy of this loader with its behavior modified.
+     * @throws IllegalArgumentException If the number of loaders is not positive.
+     */
+    public ParallelLoader<T> withFixedNumberOfLoaders(int numberOfLoaders) {
+        if (numberOfLoaders < 1) {
+            throw new IllegalArgumentException("numberOfLoaders must be at least 1");
+        }
+
+        return new ParallelLoader<>(loaderSupplier, closeCallback, numberOfLoaders);
     }
 
     /**
      * Creates a new wrapped loader for this thread if one doesn't already exist and then passes the object to load to
-     * the wrapped loader for the current thread.
+     * the wrapped loader for the current thread. If there is a fixed number of wrapped loaders the object is instead
+     * passed to the next of them in turn.
      * @param objectToLoad The object to be loaded.
      */
     @Override
@@ -101,8 +137,12 @@ public class ParallelLoader<T> implements Loader<T> {
         try (EtlProfilingScope ignored = new EtlProfilingScope(parentMetrics, "ParallelLoader.load")) {
             dataWasLoaded = true;
             try {
-                Loader<T> loader = getLoaderForCurrentThread();
-                loader.load(objectToLoad);
+                if (numberOfLoaders != null) {
+                    loadIntoNextFixedLoader(objectToLoad);
+                } else {
+                    Loader<T> loader = getLoaderForCurrentThread();
+                    loader.load(objectToLoad);
+                }
             } catch (UnrecoverableStreamFailureException e) {
                 throw e;
             } catch (Exception e) {
@@ -153,13 +193,35 @@ public class ParallelLoader<T> implements Loader<T> {
         }
     }
 
+    private void loadIntoNextFixedLoader(T objectToLoad) {
+        int index = Math.floorMod(nextFixedLoader.getAndIncrement(), numberOfLoaders);
+        Loader<T> loader = fixedLoaders.get(index);
+
+        if (loader == null) {
+            synchronized (fixedLoaders) {
+                loader = fixedLoaders.get(index);
+
+                if (loader == null) {
+                    loader = loaderSupplier.get();
+                    loader.open(parentMetrics);
+                    fixedLoaders.set(index, loader);
+                    activeLoaders.add(loader);
+                }
+            }
+        }
+
+        synchronized (loader) {
+            loader.load(objectToLoad);
+        }
+    }
+
     private Loader<T> getLoaderForCurrentThread() {
-        Loader<T> loader = loaderThreadLocal.get();
+        Loader<T> loader = threadLoaders.get(Thread.currentThread());
 
         if (loader == null) {
             loader = loaderSupplier.get();
             loader.open(parentMetrics);
-            loaderThreadLocal.set(loader);
+            threadLoaders.put(Thread.currentThread(), loader);
             activeLoaders.add(loader);
         }
 
@@ -15,17 +15,43 @@
 
 package com.amazon.pocketEtl.loader;
 
+import com.amazon.pocketEtl.EtlMetrics;
+import com.amazon.pocketEtl.EtlProfilingScope;
 import com.amazon.pocketEtl.Loader;
 import com.amazon.pocketEtl.exception.UnrecoverableStreamFailureException;
 import com.amazon.pocketEtl.integration.RedshiftJdbcClient;
 import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.AmazonS3Client;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.PutObjectRequest;
+import com.amazonaws.services.s3.model.SSEAwsKeyManagementParams;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
 import lombok.RequiredArgsConstructor;
 
+import javax.annotation.Nonnull;
 import javax.sql.DataSource;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Queue;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 /**
  * Loader implementation that loads data to a Redshift table by first writing it to S3 as CSV files, and then invoking
@@ -40,6 +66,23 @@ import java.util.function.Supplier;
  * Redshift is synchronized, however, and will not be improved by more threads on the EtlStream (although Redshift's
  * own parallelism comes into play at that point).
  *
+ * Once all the data has been written to S3 a COPY manifest listing exactly the files that were written is written
+ * alongside them, and Redshift is told to COPY the files in the manifest. Any other objects that happen to be under
+ * the same S3 prefix are never loaded.
+ *
+ * Redshift loads fastest when the number of files is a multiple of the number of slices in the cluster and the files
+ * are all about the same size. If a slice count is given, the data is dealt out evenly to that many S3 files
+ * regardless of how many threads are loading it, rather than each thread writing its own files.
+ *
+ * By default nothing is copied into Redshift until the loader is closed. For a long-running stream the loader can
+ * instead be given a micro-batch size or age, in which case the data is split into batches that are each copied and
+ * merged into Redshift as soon as they are sealed, while the next batch is being written to S3. See
+ * {@link MicroBatchLoader}.
+ *
+ * When several of these loaders load into the same cluster as part of one job they can share a
+ * {@link RedshiftLoadCoordinator}, which limits how many of them copy into Redshift at once and can publish all their
+ * data into all their tables in a single transaction.
+ *
  * Example usage:
  *
  * {@code
@@ -86,8 +129,10 @@ import java.util.function.Supplier;
 public class RedshiftBulkLoader<T> extends WrappedLoader<T> {
     private static final String DEFAULT_S3_PREFIX = "RedshiftCopyLoader";
     private static final RedshiftLoadStrategy DEFAULT_LOAD_STRATEGY = RedshiftLoadStrategy.MERGE_INTO_EXISTING_DATA;
+    private static final String MANIFEST_FILE_NAME = "copy.manifest";
+    private static final ObjectWriter manifestWriter = new ObjectMapper().writer();
 
-    private final ParallelLoader<T> wrappedParallelLoader;
+    private final Loader<T> wrappedLoader;
 
     /**
      * Create a supplier of RedshiftBulkLoader objects that is based on a specific class to load.
@@ -97,17 +142,81 @@ public class RedshiftBulkLoader<T> extends WrappedLoader<T> {
      * @return A newly constructed RedshiftBulkLoaderSupplier object.
      */
     public static <T> RedshiftBulkLoaderSupplier<T> supplierOf(Class<T> classToLoad) {
-        return new RedshiftBulkLoaderSupplier<>(null, classToLoad, null, null,
-                null, null, null, null, null, null,
-                null, null, DEFAULT_LOAD_STRATEGY, null);
+        return RedshiftBulkLoaderSupplier.<T>builder()
+                .classToLoad(classToLoad)
+                .redshiftLoadStrategy(DEFAULT_LOAD_STRATEGY)
+                .build();
     }
 
     @Override
     protected Loader<T> getWrappedLoader() {
-        return wrappedParallelLoader;
+        return wrappedLoader;
     }
 
+    /*
+     * One batch of data that is written to S3 and then copied into Redshift when it is closed, along with a count of
+     * the bytes written for it so far. Aborting the batch finishes writing its S3 files but does not copy them.
+     */
     @RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+    private static class RedshiftBatch<T> extends WrappedLoader<T> implements MicroBatchLoader.Batch<T> {
+        private final ParallelLoader<T> parallelLoader;
+        private final LongAdder bytesWritten;
+        private final AtomicBoolean isAborted;
+
+        @Override
+        protected Loader<T> getWrappedLoader() {
+            return parallelLoader;
+        }
+
+        @Override
+        public long getSizeInBytes() {
+            return bytesWritten.sum();
+        }
+
+        @Override
+        public void abort() throws Exception {
+            isAborted.set(true);
+            parallelLoader.close();
+        }
+    }
+
+    /*
+     * Counts the bytes written through it to whichever stream it was last given, so that one instance can be reused
+     * for every object serialized by a thread instead of wrapping the stream for each object in a new counting stream.
+     */
+    private static class RewrappableCountingOutputStream extends OutputStream {
+        private OutputStream outputStream = null;
+        private long count = 0;
+
+        void wrap(OutputStream outputStream) {
+            this.outputStream = outputStream;
+            this.count = 0;
+        }
+
+        long getCount() {
+            return count;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            outputStream.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(@Nonnull byte[] b, int off, int len) throws IOException {
+            outputStream.write(b, off, len);
+            count += len;
+        }
+
+        @Override
+        public void flush() throws IOException {
+            outputStream.flush();
+        }
+    }
+
+    @AllArgsConstructor(access = AccessLevel.PRIVATE)
+    @Builder(toBuilder = true)
     public static class RedshiftBulkLoaderSupplier<T> implements Supplier<Loader<T>> {
         private final String s3Bucket;
         private final Class<T> classToLoad;
@@ -123,6 +232,15 @@ public class RedshiftBulkLoader<T> extends WrappedLoader<T> {
         private final List<String> redshiftIndexColumnNames;
         private final RedshiftLoadStrategy redshiftLoadStrategy;
         private final RedshiftJdbcClient redshiftJdbcClient;
+        private final CompressionCodec compressionCodec;
+        private final Integer sliceCount;
+        private final Long microBatchSizeInBytes;
+        private final Long microBatchAgeInMillis;
+        private final String redshiftLatestRowColumnName;
+        private final RedshiftLoadCoordinator loadCoordinator;
+
+        // Initialized here rather than by the builder, so that each copy builds its own default client if it needs one
+        private final AtomicReference<AmazonS3> defaultAmazonS3 = new AtomicReference<>();
 
         /**
          * Required: Defines the name of the S3 bucket this loader should write its interim data to before copying it into
@@ -133,9 +251,7 @@ public class RedshiftBulkLoader<T> extends WrappedLoader<T> {
          * @return A copy of the current RedshiftBulkLoader with this property modified.
          */
         public RedshiftBulkLoaderSupplier<T> withS3Bucket(String s3Bucket) {
-            return new RedshiftBulkLoaderSupplier<>(s3Bucket, classToLoad, bufferSizeInBytes, amazonS3, s3Prefix, kmsArn,
-                    redshiftDataSource, s3Region, redshiftTableName, redshiftIamRole, redshiftColumnNames,
-                    redshiftIndexColumnNames, redshiftLoadStrategy, redshiftJdbcClient);
+            return toBuilder().s3Bucket(s3Bucket).build();
         }
 
         /**
@@ -146,9 +262,7 @@ public class RedshiftBulkLoader<T> extends WrappedLoader<T> {
          * @return A copy of the current RedshiftBulkLoader with this property modified.
          */
         public RedshiftBulkLoaderSupplier<T> withBufferSizeInBytes(Integer bufferSizeInBytes) {
-            return new RedshiftBulkLoaderSupplier<>(s3Bucket, classToLoad, bufferSizeInBytes, amazonS3, s3Prefix, kmsArn,
-                    redshiftDataSource, s3Region, redshiftTableName, redshiftIamRole, redshiftColumnNames,
-                    redshiftIndexColumnNames, redshiftLoadStrategy, redshiftJdbcClient);
+            return toBuilder().bufferSizeInBytes(bufferSizeInBytes).build();
         }
 
         /**
@@ -159,9 +273,7 @@ public class RedshiftBulkLoader<T> extends WrappedLoader<T> {
          * @return A copy of the current RedshiftBulkLoader with this property modified.
          */
         public RedshiftBulkLoaderSupplier<T> withAmazonS3(AmazonS3 amazonS3) {
-            return new RedshiftBulkLoaderSupplier<>(s3Bucket, classToLoad, bufferSizeInBytes, amazonS3, s3Prefix, kmsArn,
-                    redshiftDataSource, s3Region, redshiftTableName, redshiftIamRole, redshiftColumnNames,
-                    redshiftIndexColumnNames, redshiftLoadStrategy, redshiftJdbcClient);
+            return toBuilder().amazonS3(amazonS3).build();
         }
 
         /**
@@ -173,9 +285,7 @@ public class RedshiftBulkLoader<T> extends WrappedLoader<T> {
          * @return A copy of the current RedshiftBulkLoader with this property modified.
          */
         public RedshiftBulkLoaderSupplier<T> withS3Prefix(String s3Prefix) {
-            return new RedshiftBulkLoaderSupplier<>(s3Bucket, classToLoad, bufferSizeInBytes, amazonS3, s3Prefix, kmsArn,
-                    redshiftDataSource, s3Region, redshiftTableName, redshiftIamRole, redshiftColumnNames,
-                    redshiftIndexColumnNames, redshiftLoadStrategy, redshiftJdbcClient);
+            return toBuilder().s3Prefix(s3Prefix).build();
         }
 
         /**
@@ -187,9 +297,7 @@ public class RedshiftBulkLoader<T> extends WrappedLoader<T> {
          * @return A copy of the current RedshiftBulkLoader with this property modified.
          */
         public RedshiftBulkLoaderSupplier<T> withKmsArn(String kmsArn) {
-            return new RedshiftBulkLoaderSupplier<>(s3Bucket, classToLoad, bufferSizeInBytes, amazonS3, s3Prefix, kmsArn,
-                    redshiftDataSource, s3Region, redshiftTableName, redshiftIamRole, redshiftColumnNames,
-                    redshiftIndexColumnNames, redshiftLoadStrategy, redshiftJdbcClient);
+            return toBuilder().kmsArn(kmsArn).build();
         }
 
         /**
@@ -201,9 +309,7 @@ public class RedshiftBulkLoader<T> extends WrappedLoader<T> {
          * @return A copy of the current RedshiftBulkLoader with this property modified.
          */
         public RedshiftBulkLoaderSupplier<T> withLoadStrategy(RedshiftLoadStrategy redshiftLoadStrategy) {
-            return new RedshiftBulkLoaderSupplier<>(s3Bucket, classToLoad, bufferSizeInBytes, amazonS3, s3Prefix, kmsArn,
-                    redshiftDataSource, s3Region, redshiftTableName, redshiftIamRole, redshiftColumnNames,
-                    redshiftIndexColumnNames, redshiftLoadStrategy, redshiftJdbcClient);
+            return toBuilder().redshiftLoadStrategy(redshiftLoadStrategy).build();
         }
 
         /**
@@ -213,9 +319,7 @@ public class RedshiftBulkLoader<T> extends WrappedLoader<T> {
          * @return A copy of the current RedshiftBulkLoader with this property modified.
          */
         public RedshiftBulkLoaderSupplier<T> withRedshiftDataSource(DataSource redshiftDataSource) {
-            return new RedshiftBulkLoaderSupplier<>(s3Bucket, classToLoad, bufferSizeInBytes, amazonS3, s3Prefix, kmsArn,
-                    redshiftDataSource, s3Region, redshiftTableName, redshiftIamRole, redshiftColumnNames,
-                    redshiftIndexColumnNames, redshiftLoadStrategy, redshiftJdbcClient);
+            return toBuilder().redshiftDataSource(redshiftDataSource).build();
         }
 
         /**
@@ -226,9 +330,7 @@ public class RedshiftBulkLoader<T> extends WrappedLoader<T> {
          * @return A copy of the current RedshiftBulkLoader with this property modified.
          */
         public RedshiftBulkLoaderSupplier<T> withS3Region(String s3Region) {
-            return new RedshiftBulkLoaderSupplier<>(s3Bucket, classToLoad, bufferSizeInBytes, amazonS3, s3Prefix, kmsArn,
-                    redshiftDataSource, s3Region, redshiftTableName, redshiftIamRole, redshiftColumnNames,
-                    redshiftIndexColumnNames, redshiftLoadStrategy, redshiftJdbcClient);
+            return toBuilder().s3Region(s3Region).build();
         }
 
         /**
@@ -239,9 +341,7 @@ public class RedshiftBulkLoader<T> extends WrappedLoader<T> {
          * @return A copy of the current RedshiftBulkLoader with this property modified.
          */
         public RedshiftBulkLoaderSupplier<T> withRedshiftTableName(String redshiftTableName) {
-            return new RedshiftBulkLoaderSupplier<>(s3Bucket, classToLoad, bufferSizeInBytes, amazonS3, s3Prefix, kmsArn,
-                    redshiftDataSource, s3Region, redshiftTableName, redshiftIamRole, redshiftColumnNames,
-                    redshiftIndexColumnNames, redshiftLoadStrategy, redshiftJdbcClient);
+            return toBuilder().redshiftTableName(redshiftTableName).build();
         }
 
         /**
@@ -252,9 +352,7 @@ public class RedshiftBulkLoader<T> extends WrappedLoader<T> {
          * @return A copy of the current RedshiftBulkLoader with this property modified.
          */
         public RedshiftBulkLoaderSupplier<T> withRedshiftIamRole(String redshiftIamRole) {
-            return new RedshiftBulkLoaderSupplier<>(s3Bucket, classToLoad, bufferSizeInBytes, amazonS3, s3Prefix, kmsArn,
-                    redshiftDataSource, s3Region, redshiftTableName, redshiftIamRole, redshiftColumnNames,
-                    redshiftIndexColumnNames, redshiftLoadStrategy, redshiftJdbcClient);
+            return toBuilder().redshiftIamRole(redshiftIamRole).build();
         }
 
         /**
@@ -269,9 +367,7 @@ public class RedshiftBulkLoader<T> extends WrappedLoader<T> {
          * @return A copy of the current RedshiftBulkLoader with this property modified.
          */
         public RedshiftBulkLoaderSupplier<T> withRedshiftColumnNames(List<String> redshiftColumnNames) {
-            return new RedshiftBulkLoaderSupplier<>(s3Bucket, classToLoad, bufferSizeInBytes, amazonS3, s3Prefix, kmsArn,
-                    redshiftDataSource, s3Region, redshiftTableName, redshiftIamRole, redshiftColumnNames,
-                    redshiftIndexColumnNames, redshiftLoadStrategy, redshiftJdbcClient);
+            return toBuilder().redshiftColumnNames(redshiftColumnNames).build();
         }
 
         /**
@@ -286,16 +382,109 @@ public class RedshiftBulkLoader<T> extends WrappedLoader<T> {
          * @return A copy of the current RedshiftBulkLoader with this property modified.
          */
         public RedshiftBulkLoaderSupplier<T> withRedshiftIndexColumnNames(List<String> redshiftIndexColumnNames) {
-            return new RedshiftBulkLoaderSupplier<>(s3Bucket, classToLoad, bufferSizeInBytes, amazonS3, s3Prefix, kmsArn,
-                    redshiftDataSource, s3Region, redshiftTableName, redshiftIamRole, redshiftColumnNames,
-                    redshiftIndexColumnNames, redshiftLoadStrategy, redshiftJdbcClient);
+            return toBuilder().redshiftIndexColumnNames(redshiftIndexColumnNames).build();
+        }
+
+        /**
+         * Optional: Compresses the files written to S3 with a compression codec, and tells Redshift to decompress them
+         * when it copies them. The maximum size of each file written in S3 then applies to the compressed size of the
+         * file. Compressing the files makes them quicker to write and for Redshift to read, at the cost of the CPU time
+         * spent compressing them. By default the files are not compressed.
+         *
+         * @param compressionCodec The codec to compress the files with, eg: CompressionCodec.GZIP.
+         * @return A copy of the current RedshiftBulkLoader with this property modified.
+         */
+        public RedshiftBulkLoaderSupplier<T> withCompression(CompressionCodec compressionCodec) {
+            return toBuilder().compressionCodec(compressionCodec).build();
+        }
+
+        /**
+         * Optional: The number of slices in the destination Redshift cluster. When this is set, the data is dealt out
+         * row by row to exactly this many S3 files so that the files are evenly sized and each slice has one file to
+         * load. If the files grow bigger than the maximum file size they all roll over at about the same point, so the
+         * number of files stays at or close to a multiple of the slice count. By default each thread loading data
+         * writes its own files.
+         *
+         * @param sliceCount The number of slices in the Redshift cluster.
+         * @return A copy of the current RedshiftBulkLoader with this property modified.
+         * @throws IllegalArgumentException If the slice count is not positive.
+         */
+        public RedshiftBulkLoaderSupplier<T> withSliceCount(int sliceCount) {
+            if (sliceCount < 1) {
+                throw new IllegalArgumentException("sliceCount must be at least 1");
+            }
+
+            return toBuilder().sliceCount(sliceCount).build();
+        }
+
+        /**
+         * Optional: Loads the data into Redshift in a series of micro-batches rather than all at once when the loader is
+         * closed, sealing each batch once this many bytes (before compression) have been written to S3 for it. Each
+         * sealed batch is copied and merged into the destination table on a background thread while the data for the
+         * next batch continues to be written to S3, so data becomes visible in Redshift while a long-running stream is
+         * still going and no single merge holds the table for long. Batches are committed in order, one at a time. If
+         * the load strategy is {@link RedshiftLoadStrategy#CLOBBER_EXISTING_DATA} only the first batch replaces the
+         * existing data and every later batch is merged into it. By default the data is loaded in one batch.
+         *
+         * @param microBatchSizeInBytes Number of bytes written to S3 at which a batch is sealed and committed.
+         * @return A copy of the current RedshiftBulkLoader with this property modified.
+         * @throws IllegalArgumentException If the size is not positive.
+         */
+        public RedshiftBulkLoaderSupplier<T> withMicroBatchSizeInBytes(long microBatchSizeInBytes) {
+            if (microBatchSizeInBytes < 1) {
+                throw new IllegalArgumentException("microBatchSizeInBytes must be at least 1");
+            }
+
+            return toBuilder().microBatchSizeInBytes(microBatchSizeInBytes).build();
+        }
+
+        /**
+         * Optional: Loads the data into Redshift in a series of micro-batches rather than all at once when the loader is
+         * closed, sealing each batch once this much time has passed since the first object was written to it, even if
+         * no more data is arriving. This can be combined with a maximum batch size, in which case a batch is sealed by
+         * whichever limit it reaches first. See {@link #withMicroBatchSizeInBytes(long)}.
+         *
+         * @param microBatchAgeInMillis Age of a batch in milliseconds at which it is sealed and committed.
+         * @return A copy of the current RedshiftBulkLoader with this property modified.
+         * @throws IllegalArgumentException If the age is not positive.
+         */
+        public RedshiftBulkLoaderSupplier<T> withMicroBatchAgeInMillis(long microBatchAgeInMillis) {
+            if (microBatchAgeInMillis < 1) {
+                throw new IllegalArgumentException("microBatchAgeInMillis must be at least 1");
+            }
+
+            return toBuilder().microBatchAgeInMillis(microBatchAgeInMillis).build();
+        }
+
+        /**
+         * Optional: The name of a column in the destination Redshift table whose highest value marks the latest row for
+         * each key, eg: a last updated timestamp. This is only used by the load strategy
+         * {@link RedshiftLoadStrategy#DEDUPLICATE_AND_MERGE_INTO_EXISTING_DATA} to decide which of the rows being loaded
+         * with the same key is kept. If it is not set an arbitrary row is kept for each key.
+         *
+         * @param redshiftLatestRowColumnName Name of the column that orders the rows loaded for each key.
+         * @return A copy of the current RedshiftBulkLoader with this property modified.
+         */
+        public RedshiftBulkLoaderSupplier<T> withRedshiftLatestRowColumnName(String redshiftLatestRowColumnName) {
+            return toBuilder().redshiftLatestRowColumnName(redshiftLatestRowColumnName).build();
+        }
+
+        /**
+         * Optional: Coordinates this loader with other RedshiftBulkLoaders in the same job that share the same
+         * coordinator, limiting how many of them copy data into Redshift at the same time and optionally publishing all
+         * their data in a single transaction. See {@link RedshiftLoadCoordinator}. By default each loader copies and
+         * publishes its data independently as soon as it is closed.
+         *
+         * @param loadCoordinator A coordinator shared by all the loaders in the job.
+         * @return A copy of the current RedshiftBulkLoader with this property modified.
+         */
+        public RedshiftBulkLoaderSupplier<T> withLoadCoordinator(RedshiftLoadCoordinator loadCoordinator) {
+            return toBuilder().loadCoordinator(loadCoordinator).build();
         }
 
         // Visible for testing.
         RedshiftBulkLoaderSupplier<T> withRedshiftJdbcClient(RedshiftJdbcClient redshiftJdbcClient) {
-            return new RedshiftBulkLoaderSupplier<>(s3Bucket, classToLoad, bufferSizeInBytes, amazonS3, s3Prefix, kmsArn,
-                    redshiftDataSource, s3Region, redshiftTableName, redshiftIamRole, redshiftColumnNames,
-                    redshiftIndexColumnNames, redshiftLoadStrategy, redshiftJdbcClient);
+            return toBuilder().redshiftJdbcClient(redshiftJdbcClient).build();
         }
 
         /**
@@ -316,19 +505,86 @@ public class RedshiftBulkLoader<T> extends WrappedLoader<T> {
             checkRequiredProperty(redshiftColumnNames, "redshiftColumnNames");
             checkRequiredProperty(redshiftIndexColumnNames, "redshiftIndexColumnNames");
 
-            Supplier<StringSerializer<T>> stringSerializerSupplier = () -> CsvStringSerializer.of(classToLoad)
-                    .withColumnSeparator('|');
+            if (loadCoordinator != null && loadCoordinator.isAtomicPublication() &&
+                    redshiftLoadStrategy == RedshiftLoadStrategy.DEDUPLICATE_AND_MERGE_INTO_EXISTING_DATA) {
+                throw new IllegalArgumentException("The load strategy " + redshiftLoadStrategy +
+                        " cannot be used with a coordinator that publishes atomically");
+            }
 
+            CsvStringSerializer<T> csvSerializer = CsvStringSerializer.of(classToLoad).withColumnSeparator('|');
+            RedshiftJdbcClient redshiftJdbcClient = this.redshiftJdbcClient == null ? new RedshiftJdbcClient(redshiftDataSource) : this.redshiftJdbcClient;
             final String finalS3Prefix = (s3Prefix == null ? DEFAULT_S3_PREFIX : s3Prefix) + "/" + UUID.randomUUID().toString();
 
-            S3FastLoader.S3FastLoaderSupplier<T> loaderSupplier = S3FastLoader.supplierOf(s3Bucket, stringSerializerSupplier)
-                    .withS3PartFileKeyGenerator((thread, partNum) ->
-                            String.format("%s/%02d/part-%05d.csv", finalS3Prefix, thread, partNum));
+            if (microBatchSizeInBytes == null && microBatchAgeInMillis == null) {
+                return new RedshiftBulkLoader<>(createBatch(finalS3Prefix, redshiftLoadStrategy, csvSerializer,
+                        redshiftJdbcClient, false));
+            }
+
+            final AtomicInteger nextBatchNumber = new AtomicInteger(0);
 
-            if (amazonS3 != null) {
-                loaderSupplier = loaderSupplier.withClient(amazonS3);
+            MicroBatchLoader<T> microBatchLoader = MicroBatchLoader.of(() -> {
+                int batchNumber = nextBatchNumber.getAndIncrement();
+
+                // Only the first batch replaces the existing data, every later batch has to be merged into it
+                RedshiftLoadStrategy batchLoadStrategy = batchNumber == 0 ||
+                        redshiftLoadStrategy != RedshiftLoadStrategy.CLOBBER_EXISTING_DATA ? redshiftLoadStrategy :
+                        RedshiftLoadStrategy.MERGE_INTO_EXISTING_DATA;
+
+                return createBatch(String.format("%s/batch-%05d", finalS3Prefix, batchNumber), batchLoadStrategy,
+                        csvSerializer, redshiftJdbcClient, true);
+            });
+
+            if (microBatchSizeInBytes != null) {
+                microBatchLoader = microBatchLoader.withMaxBatchSizeInBytes(microBatchSizeInBytes);
+            }
+
+            if (microBatchAgeInMillis != null) {
+                microBatchLoader = microBatchLoader.withMaxBatchAgeInMillis(microBatchAgeInMillis);
+            }
+
+            return new RedshiftBulkLoader<>(microBatchLoader);
+        }
+
+        /*
+         * Creates a loader that writes data to S3 files under a prefix of its own and then copies those files into
+         * Redshift when it is closed.
+         */
+        private RedshiftBatch<T> createBatch(String batchS3Prefix, RedshiftLoadStrategy batchLoadStrategy,
+                                             CsvStringSerializer<T> csvSerializer, RedshiftJdbcClient redshiftJdbcClient,
+                                             boolean countBytesWritten) {
+            final String fileExtension = ".csv" + (compressionCodec == null ? "" : compressionCodec.getFileExtension());
+            final List<String> copyOptions = compressionCodec == null ? Collections.emptyList() :
+                    Collections.singletonList(compressionCodec.getRedshiftCopyOption());
+            final String manifestS3Key = batchS3Prefix + "/" + MANIFEST_FILE_NAME;
+            final Queue<String> writtenS3Keys = new ConcurrentLinkedQueue<>();
+            final LongAdder bytesWritten = new LongAdder();
+            final AtomicBoolean isAborted = new AtomicBoolean(false);
+
+            StreamSerializer<T> streamSerializer = csvSerializer;
+
+            if (countBytesWritten) {
+                // The serializer is shared by every loading thread, so each thread reuses a counting stream of its own
+                ThreadLocal<RewrappableCountingOutputStream> countingOutputStreams =
+                        ThreadLocal.withInitial(RewrappableCountingOutputStream::new);
+
+                streamSerializer = (object, outputStream) -> {
+                    RewrappableCountingOutputStream countingOutputStream = countingOutputStreams.get();
+                    countingOutputStream.wrap(outputStream);
+                    csvSerializer.serialize(object, countingOutputStream);
+                    bytesWritten.add(countingOutputStream.getCount());
+                };
             }
 
+            S3FastLoader.S3FastLoaderSupplier<T> loaderSupplier = S3FastLoader.supplierOf(s3Bucket, streamSerializer)
+                    .withS3PartFileKeyGenerator((thread, partNum) -> {
+                        String s3Key = String.format("%s/%02d/part-%05d%s", batchS3Prefix, thread, partNum, fileExtension);
+                        writtenS3Keys.add(s3Key);
+                        return s3Key;
+                    });
+
+            // The loaders and the manifest share one client rather than each S3FastLoader building its own
+            loaderSupplier = loaderSupplier.withClient(getAmazonS3());
+
             if (bufferSizeInBytes != null) {
                 loaderSupplier = loaderSupplier.withMaxPartFileSizeInBytes(bufferSizeInBytes);
             }
@@ -337,32 +593,153 @@ public class RedshiftBulkLoader<T> extends WrappedLoader<T> {
                 loaderSupplier = loaderSupplier.withSSEKmsArn(kmsArn);
             }
 
-            RedshiftJdbcClient redshiftJdbcClient = this.redshiftJdbcClient == null ? new RedshiftJdbcClient(redshiftDataSource) : this.redshiftJdbcClient;
+            if (compressionCodec != null) {
+                loaderSupplier = loaderSupplier.withCompression(compressionCodec);
+            }
+
+            ParallelLoader<T> parallelLoader = ParallelLoader.of(loaderSupplier);
+
+            if (sliceCount != null) {
+                parallelLoader = parallelLoader.withFixedNumberOfLoaders(sliceCount);
+            }
 
-            return new RedshiftBulkLoader<>(ParallelLoader.of(loaderSupplier)
+            return new RedshiftBatch<>(parallelLoader
                     .withOnCloseCallback((dataWasLoaded, parentMetrics) -> {
+                        if (isAborted.get()) {
+                            return;
+                        }
+
                         try {
                             if (dataWasLoaded) {
-                                switch (redshiftLoadStrategy) {
-                                    case MERGE_INTO_EXISTING_DATA:
-                                        redshiftJdbcClient.copyAndMerge(redshiftColumnNames, redshiftIndexColumnNames,
-                                                                        redshiftTableName, s3Bucket, finalS3Prefix, s3Region, redshiftIamRole,
-                                                                        parentMetrics);
-                                        break;
-                                    case CLOBBER_EXISTING_DATA:
-                                        redshiftJdbcClient.deleteAndCopy(redshiftColumnNames, redshiftTableName, s3Bucket,
-                                                                         finalS3Prefix, s3Region, redshiftIamRole, parentMetrics);
-                                        break;
-                                }
-                            } else if (redshiftLoadStrategy.equals(RedshiftLoadStrategy.CLOBBER_EXISTING_DATA)) {
-                                redshiftJdbcClient.truncate(redshiftTableName);
+                                writeManifest(manifestS3Key, writtenS3Keys, parentMetrics);
+                            }
+
+                            if (loadCoordinator == null) {
+                                copyIntoRedshift(dataWasLoaded, batchLoadStrategy, manifestS3Key, copyOptions,
+                                        redshiftJdbcClient, parentMetrics);
+                            } else if (!loadCoordinator.isAtomicPublication()) {
+                                loadCoordinator.runWithCopySlot(() -> copyIntoRedshift(dataWasLoaded, batchLoadStrategy,
+                                        manifestS3Key, copyOptions, redshiftJdbcClient, parentMetrics));
+                            } else {
+                                stageForPublication(dataWasLoaded, batchLoadStrategy, manifestS3Key, copyOptions,
+                                        redshiftJdbcClient, parentMetrics);
                             }
                         } catch (RuntimeException e) {
                             // Any kind of failure writing the data to Redshift constitutes a complete job failure due
                             // to the batchy nature of this operation
                             throw new UnrecoverableStreamFailureException(e);
                         }
-                    }));
+                    }), bytesWritten, isAborted);
+        }
+
+        private void copyIntoRedshift(boolean dataWasLoaded, RedshiftLoadStrategy batchLoadStrategy, String manifestS3Key,
+                                      List<String> copyOptions, RedshiftJdbcClient redshiftJdbcClient,
+                                      EtlMetrics parentMetrics) {
+            if (dataWasLoaded) {
+                switch (batchLoadStrategy) {
+                    case MERGE_INTO_EXISTING_DATA:
+                        redshiftJdbcClient.copyAndMergeFromManifest(redshiftColumnNames, redshiftIndexColumnNames,
+                                                                    redshiftTableName, s3Bucket, manifestS3Key, s3Region,
+                                                                    redshiftIamRole, copyOptions, parentMetrics);
+                        break;
+                    case CLOBBER_EXISTING_DATA:
+                        redshiftJdbcClient.deleteAndCopyFromManifest(redshiftColumnNames, redshiftTableName, s3Bucket,
+                                                                     manifestS3Key, s3Region, redshiftIamRole,
+                                                                     copyOptions, parentMetrics);
+                        break;
+                    case APPEND_TO_EXISTING_DATA:
+                        redshiftJdbcClient.copyAndAppendFromManifest(redshiftColumnNames, redshiftTableName, s3Bucket,
+                                                                     manifestS3Key, s3Region, redshiftIamRole,
+                                                                     copyOptions, parentMetrics);
+                        break;
+                    case MERGE_INTO_EXISTING_DATA_WITH_MERGE_COMMAND:
+                        redshiftJdbcClient.copyAndMergeCommandFromManifest(redshiftColumnNames, redshiftIndexColumnNames,
+                                                                           redshiftTableName, s3Bucket, manifestS3Key,
+                                                                           s3Region, redshiftIamRole, copyOptions,
+                                                                           parentMetrics);
+                        break;
+                    case DEDUPLICATE_AND_MERGE_INTO_EXISTING_DATA:
+                        redshiftJdbcClient.copyDeduplicateAndMergeFromManifest(redshiftColumnNames, redshiftIndexColumnNames,
+                                                                               redshiftLatestRowColumnName, redshiftTableName,
+                                                                               s3Bucket, manifestS3Key, s3Region,
+                                                                               redshiftIamRole, copyOptions, parentMetrics);
+                        break;
+                }
+            } else if (batchLoadStrategy.equals(RedshiftLoadStrategy.CLOBBER_EXISTING_DATA)) {
+                redshiftJdbcClient.truncate(redshiftTableName);
+            }
+        }
+
+        /*
+         * Copies the data into a staging table and leaves it with the coordinator to be published along with the data
+         * from every other loader using the same coordinator.
+         */
+        private void stageForPublication(boolean dataWasLoaded, RedshiftLoadStrategy batchLoadStrategy,
+                                         String manifestS3Key, List<String> copyOptions,
+                                         RedshiftJdbcClient redshiftJdbcClient, EtlMetrics parentMetrics) {
+            String stageTableName = !dataWasLoaded ? null : loadCoordinator.callWithCopySlot(() ->
+                    redshiftJdbcClient.copyIntoNewStageTableFromManifest(redshiftColumnNames, redshiftTableName,
+                            s3Bucket, manifestS3Key, s3Region, redshiftIamRole, copyOptions, parentMetrics));
+
+            if (batchLoadStrategy == RedshiftLoadStrategy.CLOBBER_EXISTING_DATA) {
+                loadCoordinator.addStagedTable(RedshiftJdbcClient.StagedTable.replace(redshiftTableName, stageTableName),
+                        stageTableName);
+            } else if (stageTableName != null) {
+                loadCoordinator.addStagedTable(batchLoadStrategy == RedshiftLoadStrategy.APPEND_TO_EXISTING_DATA ?
+                        RedshiftJdbcClient.StagedTable.appendTo(redshiftTableName, stageTableName) :
+                        RedshiftJdbcClient.StagedTable.mergeInto(redshiftTableName, stageTableName,
+                                redshiftIndexColumnNames), stageTableName);
+            }
+        }
+
+        /*
+         * Writes a COPY manifest that lists every file written to S3 as mandatory, so the COPY fails rather than
+         * silently loading partial data if any of them cannot be read.
+         */
+        private void writeManifest(String manifestS3Key, Collection<String> writtenS3Keys, EtlMetrics parentMetrics) {
+            try (EtlProfilingScope ignored = new EtlProfilingScope(parentMetrics, "RedshiftBulkLoader.writeManifest")) {
+                List<Map<String, Object>> entries = writtenS3Keys.stream()
+                        .sorted()
+                        .map(s3Key -> {
+                            Map<String, Object> entry = new LinkedHashMap<>();
+                            entry.put("url", String.format("s3://%s/%s", s3Bucket, s3Key));
+                            entry.put("mandatory", true);
+                            return entry;
+                        })
+                        .collect(Collectors.toList());
+
+                byte[] manifest;
+
+                try {
+                    manifest = manifestWriter.writeValueAsBytes(Collections.singletonMap("entries", entries));
+                } catch (JsonProcessingException e) {
+                    throw new RuntimeException(e);
+                }
+
+                ObjectMetadata metadata = new ObjectMetadata();
+                metadata.setContentLength(manifest.length);
+                PutObjectRequest putObjectRequest = new PutObjectRequest(s3Bucket, manifestS3Key,
+                        new ByteArrayInputStream(manifest), metadata);
+
+                if (kmsArn != null && !kmsArn.isEmpty()) {
+                    putObjectRequest.setSSEAwsKeyManagementParams(new SSEAwsKeyManagementParams(kmsArn));
+                }
+
+                getAmazonS3().putObject(putObjectRequest);
+            }
+        }
+
+        // The default client is only built once for this supplier, the first time it is needed
+        private synchronized AmazonS3 getAmazonS3() {
+            if (amazonS3 != null) {
+                return amazonS3;
+            }
+
+            if (defaultAmazonS3.get() == null) {
+                defaultAmazonS3.set(AmazonS3Client.builder().build());
+            }
+
+            return defaultAmazonS3.get();
         }
 
         private void checkRequiredProperty(Object property, String propertyName) {
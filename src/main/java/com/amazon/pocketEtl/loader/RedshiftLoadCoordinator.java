@@ -0,0 +1,219 @@
+/*
+ *   Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package com.amazon.pocketEtl.loader;
+
+import com.amazon.pocketEtl.EtlMetrics;
+import com.amazon.pocketEtl.EtlProfilingScope;
+import com.amazon.pocketEtl.integration.RedshiftJdbcClient;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.function.Supplier;
+
+/**
+ * Coordinates a number of RedshiftBulkLoaders that are loading into the same Redshift cluster as part of the same job,
+ * for instance the loaders of several streams that have been combined with EtlStream.combine(). Give the same
+ * coordinator to each of the loaders with RedshiftBulkLoaderSupplier.withLoadCoordinator().
+ *
+ * The coordinator limits how many of the loaders can be copying data into Redshift at the same time, so that the job
+ * does not queue up more COPY commands than the cluster has WLM slots for them to run in.
+ *
+ * If atomic publication is requested, the loaders only copy their data into staging tables when they are closed, and
+ * nothing is written to any of the destination tables until publish() is called, at which point all the staged data
+ * is merged into all the destination tables in a single transaction. Readers of the destination tables therefore
+ * either see all of the data loaded by the job, or none of it. Call publish() once the job has finished and every
+ * loader has been closed, or discard() to throw the staged data away if the job failed. If publish() fails the staged
+ * data is kept, so publish() can be called again or the data thrown away with discard().
+ *
+ * Example usage:
+ * RedshiftLoadCoordinator coordinator = RedshiftLoadCoordinator.of(redshiftDataSource)
+ *                                                              .withMaxConcurrentCopies(4)
+ *                                                              .withAtomicPublication();
+ * ...
+ * coordinator.publish();
+ */
+@SuppressWarnings("WeakerAccess")
+public class RedshiftLoadCoordinator {
+    private final RedshiftJdbcClient redshiftJdbcClient;
+    private final Integer maxConcurrentCopies;
+    private final boolean isAtomicPublication;
+
+    // THREAD-SAFE OBJECTS: they are shared by and modified by concurrent threads
+    private final Semaphore copySlots;
+    // END THREAD-SAFE
+
+    // Guarded by synchronizing on stagedTables
+    private final List<RedshiftJdbcClient.StagedTable> stagedTables = new ArrayList<>();
+    private final List<String> stageTableNames = new ArrayList<>();
+
+    private RedshiftLoadCoordinator(RedshiftJdbcClient redshiftJdbcClient, Integer maxConcurrentCopies,
+                                    boolean isAtomicPublication) {
+        this.redshiftJdbcClient = redshiftJdbcClient;
+        this.maxConcurrentCopies = maxConcurrentCopies;
+        this.isAtomicPublication = isAtomicPublication;
+        this.copySlots = maxConcurrentCopies == null ? null : new Semaphore(maxConcurrentCopies, true);
+    }
+
+    /**
+     * Create a new RedshiftLoadCoordinator for loaders that load into a specific Redshift cluster. By default the
+     * number of concurrent copies is not limited and each loader publishes its own data when it is closed.
+     *
+     * @param redshiftDataSource A DataSource object that can connect to the Redshift cluster, used to publish the staged
+     *                           data if atomic publication is requested.
+     * @return A newly constructed RedshiftLoadCoordinator.
+     */
+    public static RedshiftLoadCoordinator of(DataSource redshiftDataSource) {
+        return new RedshiftLoadCoordinator(new RedshiftJdbcClient(redshiftDataSource), null, false);
+    }
+
+    /**
+     * Limits the number of loaders that can be copying data into Redshift at the same time. Typically this is set to
+     * the number of slots in the WLM queue the loads run in. Loaders that are closed while all the slots are in use
+     * wait for a slot to become free.
+     *
+     * @param maxConcurrentCopies The maximum number of concurrent COPY operations.
+     * @return A copy of this coordinator with its behavior modified.
+     * @throws IllegalArgumentException If the maximum is not positive.
+     */
+    public RedshiftLoadCoordinator withMaxConcurrentCopies(int maxConcurrentCopies) {
+        if (maxConcurrentCopies < 1) {
+            throw new IllegalArgumentException("maxConcurrentCopies must be at least 1");
+        }
+
+        return new RedshiftLoadCoordinator(redshiftJdbcClient, maxConcurrentCopies, isAtomicPublication);
+    }
+
+    /**
+     * Stages the data of every loader instead of publishing it when the loader is closed, so that it can all be
+     * published into the destination tables in a single transaction by publish(). The load strategies
+     * {@link RedshiftLoadStrategy#MERGE_INTO_EXISTING_DATA_WITH_MERGE_COMMAND} and
+     * {@link RedshiftLoadStrategy#APPEND_TO_EXISTING_DATA} are published with a delete and insert, and an insert,
+     * respectively, as the statements they normally use cannot be combined in one transaction.
+     * {@link RedshiftLoadStrategy#DEDUPLICATE_AND_MERGE_INTO_EXISTING_DATA} cannot be used with atomic publication.
+     *
+     * @return A copy of this coordinator with its behavior modified.
+     */
+    public RedshiftLoadCoordinator withAtomicPublication() {
+        return new RedshiftLoadCoordinator(redshiftJdbcClient, maxConcurrentCopies, true);
+    }
+
+    // Visible for testing.
+    RedshiftLoadCoordinator withRedshiftJdbcClient(RedshiftJdbcClient redshiftJdbcClient) {
+        return new RedshiftLoadCoordinator(redshiftJdbcClient, maxConcurrentCopies, isAtomicPublication);
+    }
+
+    /**
+     * Publishes all the data staged by the loaders using this coordinator into their destination tables in a single
+     * transaction, in the order it was staged, then drops the staging tables. Does nothing unless atomic publication
+     * was requested.
+     *
+     * @throws RuntimeException If the data could not be published, in which case none of it has been and it remains
+     *                          staged.
+     */
+    public void publish() {
+        publish(null);
+    }
+
+    /**
+     * Publishes all the data staged by the loaders using this coordinator into their destination tables in a single
+     * transaction, recording how long it took in a metrics object. See {@link #publish()}.
+     *
+     * @param parentMetrics Parent metrics object to log timers and counters into, may be null.
+     * @throws RuntimeException If the data could not be published, in which case none of it has been and it remains
+     *                          staged.
+     */
+    public synchronized void publish(EtlMetrics parentMetrics) {
+        try (EtlProfilingScope ignored = new EtlProfilingScope(parentMetrics, "RedshiftLoadCoordinator.publish")) {
+            List<RedshiftJdbcClient.StagedTable> tablesToPublish;
+            List<String> tableNamesToPublish;
+
+            synchronized (stagedTables) {
+                tablesToPublish = new ArrayList<>(stagedTables);
+                tableNamesToPublish = new ArrayList<>(stageTableNames);
+            }
+
+            if (tablesToPublish.isEmpty()) {
+                return;
+            }
+
+            redshiftJdbcClient.publishStageTables(tablesToPublish, parentMetrics);
+
+            // Only forget the tables once they have been published, loaders may have staged more in the meantime
+            synchronized (stagedTables) {
+                stagedTables.subList(0, tablesToPublish.size()).clear();
+                stageTableNames.subList(0, tableNamesToPublish.size()).clear();
+            }
+        }
+    }
+
+    /**
+     * Drops all the data staged by the loaders using this coordinator without publishing any of it. Does nothing
+     * unless atomic publication was requested.
+     */
+    public synchronized void discard() {
+        List<String> tablesToDrop;
+
+        synchronized (stagedTables) {
+            tablesToDrop = new ArrayList<>(stageTableNames);
+            stagedTables.clear();
+            stageTableNames.clear();
+        }
+
+        if (!tablesToDrop.isEmpty()) {
+            redshiftJdbcClient.dropStageTables(tablesToDrop);
+        }
+    }
+
+    boolean isAtomicPublication() {
+        return isAtomicPublication;
+    }
+
+    /*
+     * Runs a copy into Redshift once a copy slot is free.
+     */
+    <R> R callWithCopySlot(Supplier<R> copy) {
+        if (copySlots == null) {
+            return copy.get();
+        }
+
+        copySlots.acquireUninterruptibly();
+
+        try {
+            return copy.get();
+        } finally {
+            copySlots.release();
+        }
+    }
+
+    void runWithCopySlot(Runnable copy) {
+        callWithCopySlot(() -> {
+            copy.run();
+            return null;
+        });
+    }
+
+    void addStagedTable(RedshiftJdbcClient.StagedTable stagedTable, String stageTableName) {
+        synchronized (stagedTables) {
+            stagedTables.add(stagedTable);
+
+            if (stageTableName != null) {
+                stageTableNames.add(stageTableName);
+            }
+        }
+    }
+}
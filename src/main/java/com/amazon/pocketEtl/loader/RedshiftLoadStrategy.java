@@ -153,5 +153,32 @@ public enum RedshiftLoadStrategy {
      *   </tr>
      * </table>
      */
-    CLOBBER_EXISTING_DATA
+    CLOBBER_EXISTING_DATA,
+
+    /**
+     * APPEND_TO_EXISTING_DATA will add the new records to the redshift table without looking for or replacing any
+     * existing records with the same key. The loaded data is moved into the table with ALTER TABLE APPEND, which is much
+     * faster than inserting it and does not leave the table needing a VACUUM, so this is the best strategy for data that
+     * is only ever appended to, such as an event log. Loading a record whose key already exists in the table will leave
+     * two records with that key.
+     */
+    APPEND_TO_EXISTING_DATA,
+
+    /**
+     * MERGE_INTO_EXISTING_DATA_WITH_MERGE_COMMAND has the same result as {@link #MERGE_INTO_EXISTING_DATA}, but uses a
+     * single Redshift MERGE command rather than a delete followed by an insert. This needs a version of Redshift that
+     * supports MERGE, and the data being loaded must not contain more than one record with the same key or the load
+     * will fail.
+     */
+    MERGE_INTO_EXISTING_DATA_WITH_MERGE_COMMAND,
+
+    /**
+     * DEDUPLICATE_AND_MERGE_INTO_EXISTING_DATA has the same result as {@link #MERGE_INTO_EXISTING_DATA}, except that if
+     * the data being loaded has more than one record with the same key only the latest of them is loaded. The latest
+     * record is the one with the highest value in the column given to
+     * {@link RedshiftBulkLoader.RedshiftBulkLoaderSupplier#withRedshiftLatestRowColumnName(String)}, or an arbitrary one
+     * if no column was given. Deduplicating the data before merging it keeps the delete of existing records as small
+     * as possible when the same keys are loaded many times, for instance when loading a stream of updates.
+     */
+    DEDUPLICATE_AND_MERGE_INTO_EXISTING_DATA
 }
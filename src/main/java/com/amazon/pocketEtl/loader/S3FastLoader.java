@@ -23,20 +23,46 @@ import com.amazon.pocketEtl.exception.UnrecoverableStreamFailureException;
 import com.amazonaws.AmazonClientException;
 import com.amazonaws.services.s3.AmazonS3;
 import com.amazonaws.services.s3.AmazonS3Client;
+import com.amazonaws.services.s3.model.AbortMultipartUploadRequest;
+import com.amazonaws.services.s3.model.CompleteMultipartUploadRequest;
+import com.amazonaws.services.s3.model.InitiateMultipartUploadRequest;
 import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.PartETag;
 import com.amazonaws.services.s3.model.PutObjectRequest;
 import com.amazonaws.services.s3.model.SSEAwsKeyManagementParams;
+import com.amazonaws.services.s3.model.UploadPartRequest;
 import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
 import lombok.RequiredArgsConstructor;
 import org.apache.logging.log4j.Logger;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.function.Supplier;
 
@@ -53,7 +79,21 @@ import static org.apache.logging.log4j.LogManager.getLogger;
  * The implementation of this loader buffers data in memory until it is ready to write a complete part file in S3 and
  * then writes the entire part file at once and clears the buffer to start loading more data.
  *
- * A serialization function that can convert the data objects into strings is required for this Loader to function.
+ * Alternatively the loader can be put into multipart upload mode (see S3FastLoaderSupplier.withMultipartUpload), in
+ * which case each part file is streamed to S3 as a multipart upload: the loader only buffers a single fixed-size upload
+ * part at a time and uploads it as soon as it fills. This keeps the memory used by each loader small and constant no
+ * matter how large the part files are, and the part buffers can optionally be pooled direct buffers that are shared
+ * between the loaders supplied by the same supplier.
+ *
+ * Uploads can also be made asynchronous (see S3FastLoaderSupplier.withAsynchronousUploads), which always uses multipart
+ * upload mode. Each loader then has two or more part buffers: while one is being filled the others are uploaded by a
+ * small pool of upload threads belonging to the loader, so serialization does not stop while the network is busy. Each
+ * multipart upload is also initiated and completed on the upload threads. Loading only blocks when every other buffer
+ * is still being uploaded, close() waits for all outstanding uploads to finish and an upload that fails is still
+ * surfaced as an UnrecoverableStreamFailureException, either by a later call to load() or by close().
+ *
+ * A serialization function that can convert the data objects into strings, or a StreamSerializer that can write them
+ * straight to bytes, is required for this Loader to function.
  *
  * @param <T> The type of objects being loaded.
  */
@@ -65,6 +105,15 @@ public class S3FastLoader<T> implements Loader<T> {
     // Default part-size is 128 MiB
     private final static int DEFAULT_MAX_PARTFILE_SIZE_IN_BYTES = 1024 * 1024 * 128;
 
+    // Default upload part-size in multipart upload mode is 8 MiB
+    private final static int DEFAULT_MULTIPART_PART_SIZE_IN_BYTES = 1024 * 1024 * 8;
+
+    // S3 will not accept more than this many parts in a single multipart upload
+    private final static int MAX_PARTS_PER_MULTIPART_UPLOAD = 10000;
+
+    // S3 rejects a multipart upload if any part but the last is smaller than 5 MiB
+    private final static int MIN_MULTIPART_PART_SIZE_IN_BYTES = 1024 * 1024 * 5;
+
     private final static String SUCCESS_METRIC_KEY = "S3FastLoader.success";
     private final static String FAILURE_METRIC_KEY = "S3FastLoader.failure";
     private final static Charset DEFAULT_CHARSET = Charset.forName("UTF-8");
@@ -75,12 +124,31 @@ public class S3FastLoader<T> implements Loader<T> {
     private final String sseKmsArn;
     private final Function<Integer, String> s3PartFileKeyGenerator;
     private final Supplier<StringSerializer<T>> stringSerializerProvider;
+    private final StreamSerializer<T> streamSerializer;
+    private final Integer multipartPartSizeInBytes;
+    private final S3PartBufferPool partBufferPool;
+    private final Integer numberOfUploadBuffers;
+    private final CompressionCodec compressionCodec;
 
     private EtlMetrics parentMetrics;
     private ByteBuffer buffer = null;
     private StringSerializer<T> stringSerializer = null;
+    private final SerializedObjectBuffer serializedObject = new SerializedObjectBuffer();
+    private byte[] fileHeader = new byte[0];
+    private OutputStream compressingStream = null;
     private int fileSequenceNumber = 0;
 
+    private Future<String> multipartUploadId = null;
+    private String multipartS3Key = null;
+    private List<PartETag> multipartPartETags = Collections.synchronizedList(new ArrayList<>());
+    private List<Future<?>> multipartPartUploads = new ArrayList<>();
+    private int multipartPartCount = 0;
+    private long multipartFileSizeInBytes = 0;
+
+    private BlockingQueue<ByteBuffer> freeBuffers = null;
+    private ExecutorService uploadExecutor = null;
+    private final List<Future<?>> outstandingUploads = new ArrayList<>();
+
     /**
      * Constructs a new S3FastLoaderSupplier which will supply sequenced instances of S3FastLoader objects that can be used
      * in parallel as they will write to different keys in the S3 bucket.
@@ -106,76 +174,707 @@ public class S3FastLoader<T> implements Loader<T> {
      * @return A newly constructed S3FastLoaderSupplier object.
      */
     public static <T> S3FastLoaderSupplier<T> supplierOf(String s3Bucket, Supplier<StringSerializer<T>> stringSerializerSupplier) {
-        return new S3FastLoaderSupplier<>(null, null, null, s3Bucket, null, stringSerializerSupplier);
+        return S3FastLoaderSupplier.<T>builder()
+                .s3Bucket(s3Bucket)
+                .stringSerializerSupplier(stringSerializerSupplier)
+                .build();
+    }
+
+    /**
+     * Constructs a new S3FastLoaderSupplier in the same way as supplierOf(String, Supplier), but using a StreamSerializer
+     * that writes each object straight into a buffer that the loader reuses for every object, rather than creating a
+     * String and then encoding it. StreamSerializers do not keep state between objects, so a single instance is shared
+     * by all the loaders supplied.
+     *
+     * Example usage:
+     * S3FastLoader.supplierOf("myBucket", CsvStringSerializer.of(MyObject.class))
+     *
+     * @param s3Bucket The S3 bucket to write the data into.
+     * @param streamSerializer A serializer that writes an object to load to an output stream.
+     * @param <T> The type of object being loaded.
+     * @return A newly constructed S3FastLoaderSupplier object.
+     */
+    public static <T> S3FastLoaderSupplier<T> supplierOf(String s3Bucket, StreamSerializer<T> streamSerializer) {
+        return S3FastLoaderSupplier.<T>builder()
+                .s3Bucket(s3Bucket)
+                .streamSerializer(streamSerializer)
+                .build();
     }
 
     /**
      * Loads the next object into the serial buffer. If the buffer is going to exceed the maximum buffer size then
      * the entire buffer will be written to a new part file in S3, and the object being loaded will be added to a
      * new buffer.
+     *
+     * In multipart upload mode the object is instead appended to the current part file, uploading each upload part as
+     * it fills. If the object is going to make the part file exceed the maximum part file size, the current part file
+     * is completed first and the object starts a new one.
+     *
+     * If compression is enabled the object is instead written through the compressor of the current part file, and the
+     * part file is finished once its compressed size has reached the maximum part file size.
      * @param objectToLoad The object to be loaded.
      */
     @Override
     public void load(T objectToLoad) {
-        String serializedObject = stringSerializer.apply(objectToLoad);
-        byte[] serializedObjectBytes = serializedObject.getBytes(DEFAULT_CHARSET);
+        if (compressionCodec != null) {
+            loadIntoCompressedFile(objectToLoad);
+            return;
+        }
 
-        if (buffer.remaining() < serializedObjectBytes.length) {
+        if (isMultipartUpload()) {
+            loadIntoMultipartUpload(objectToLoad);
+            return;
+        }
+
+        serializeObject(objectToLoad);
+        int headerLength = buffer.position() == 0 ? fileHeader.length : 0;
+
+        if (buffer.remaining() < headerLength + serializedObject.size()) {
             flushBuffer();
-            serializedObject = stringSerializer.apply(objectToLoad);
-            serializedObjectBytes = serializedObject.getBytes(DEFAULT_CHARSET);
+            reserializeObjectForNewFile(objectToLoad);
+            headerLength = fileHeader.length;
         }
 
-        if (buffer.remaining() < serializedObjectBytes.length) {
-            writeBufferToS3(serializedObjectBytes, serializedObjectBytes.length);
+        if (buffer.remaining() < headerLength + serializedObject.size()) {
+            byte[] partFile = new byte[headerLength + serializedObject.size()];
+            System.arraycopy(fileHeader, 0, partFile, 0, headerLength);
+            System.arraycopy(serializedObject.getBytes(), 0, partFile, headerLength, serializedObject.size());
+            writeBufferToS3(s3PartFileKeyGenerator.apply(++fileSequenceNumber), new ByteArrayInputStream(partFile),
+                    partFile.length);
         } else {
-            buffer.put(serializedObjectBytes);
+            buffer.put(fileHeader, 0, headerLength);
+            buffer.put(serializedObject.getBytes(), 0, serializedObject.size());
         }
     }
 
     /**
-     * Prepares the loader to start accepting objects to load. Allocates the memory buffer.
+     * Prepares the loader to start accepting objects to load. Allocates the memory buffers and, if uploads are
+     * asynchronous, the threads that will upload them.
      * @param parentMetrics An EtlMetrics object to attach any child threads created by load() to
      */
     @Override
     public void open(@Nullable EtlMetrics parentMetrics) {
         try (EtlProfilingScope ignored = new EtlProfilingScope(parentMetrics, "S3FastLoader.open")) {
             this.parentMetrics = parentMetrics;
-            buffer = ByteBuffer.allocate(getMaxPartFileSizeInBytes());
-            stringSerializer = stringSerializerProvider.get();
+            buffer = allocateBuffer();
+
+            if (isAsynchronousUpload()) {
+                freeBuffers = new ArrayBlockingQueue<>(numberOfUploadBuffers - 1);
+
+                for (int i = 1; i < numberOfUploadBuffers; i++) {
+                    freeBuffers.add(allocateBuffer());
+                }
+
+                uploadExecutor = Executors.newFixedThreadPool(numberOfUploadBuffers - 1);
+            }
+
+            if (streamSerializer != null) {
+                fileHeader = serializeHeader();
+            } else {
+                stringSerializer = stringSerializerProvider.get();
+            }
         }
     }
 
     /**
-     * Will flush any data currently buffered to S3 and close the loader.
+     * Will flush any data currently buffered to S3, wait for any uploads that are still in progress to finish and close
+     * the loader.
      * @throws Exception If something goes wrong.
      */
     @Override
     public void close() throws Exception {
         try (EtlProfilingScope ignored = new EtlProfilingScope(parentMetrics, "S3FastLoader.close")) {
-            flushBuffer();
+            try {
+                if (compressingStream != null) {
+                    finishCompressedFile();
+                }
+
+                if (isMultipartUpload()) {
+                    completeMultipartUpload();
+                } else {
+                    flushBuffer();
+                }
+
+                awaitUploads();
+            } finally {
+                if (uploadExecutor != null) {
+                    uploadExecutor.shutdownNow();
+                    uploadExecutor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+                    uploadExecutor = null;
+                    outstandingUploads.clear();
+                }
+
+                releaseBuffers();
+            }
         }
     }
 
+    private ByteBuffer allocateBuffer() {
+        if (!isMultipartUpload()) {
+            return ByteBuffer.allocate(getMaxPartFileSizeInBytes());
+        }
+
+        return partBufferPool != null ? partBufferPool.acquire() : ByteBuffer.allocate(multipartPartSizeInBytes);
+    }
+
+    // The buffers are dropped even when they are not pooled, as a closed loader can outlive its close() by a long time
+    // (for instance when a ParallelLoader is replaced by a new one but its thread-local loaders linger on the threads).
+    private void releaseBuffers() {
+        if (partBufferPool != null) {
+            if (buffer != null) {
+                partBufferPool.release(buffer);
+            }
+
+            if (freeBuffers != null) {
+                freeBuffers.forEach(partBufferPool::release);
+            }
+        }
+
+        buffer = null;
+        freeBuffers = null;
+    }
+
     private void flushBuffer() {
-        buffer.flip();
+        if (buffer.position() != 0) {
+            String s3Key = s3PartFileKeyGenerator.apply(++fileSequenceNumber);
+            submitUpload(bufferToWrite ->
+                    writeBufferToS3(s3Key, new ByteBufferInputStream(bufferToWrite), bufferToWrite.limit()));
+        }
 
-        if (buffer.limit() != 0) {
-            writeBufferToS3(buffer.array(), buffer.limit());
+        startNewFile();
+    }
+
+    private void serializeObject(T objectToLoad) {
+        serializedObject.reset();
+
+        if (streamSerializer != null) {
+            try {
+                streamSerializer.serialize(objectToLoad, serializedObject);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        } else {
+            byte[] serializedObjectBytes = stringSerializer.apply(objectToLoad).getBytes(DEFAULT_CHARSET);
+            serializedObject.write(serializedObjectBytes, 0, serializedObjectBytes.length);
         }
+    }
 
-        buffer.clear();
-        stringSerializer = stringSerializerProvider.get();
+    /*
+     * A StringSerializer may write something different for the first object in a file (such as a header row), so the
+     * object has to be serialized again by the new serializer. A StreamSerializer writes the same bytes for an object
+     * wherever it appears, so what has already been serialized can be reused as it is.
+     */
+    private void reserializeObjectForNewFile(T objectToLoad) {
+        if (streamSerializer == null) {
+            serializeObject(objectToLoad);
+        }
+    }
+
+    private void startNewFile() {
+        if (streamSerializer == null) {
+            stringSerializer = stringSerializerProvider.get();
+        }
+    }
+
+    private byte[] serializeHeader() {
+        SerializedObjectBuffer header = new SerializedObjectBuffer();
+
+        try {
+            streamSerializer.writeHeader(header);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+
+        return header.toByteArray();
     }
 
     private int getMaxPartFileSizeInBytes() {
         return maxPartFileSizeInBytes == null ? DEFAULT_MAX_PARTFILE_SIZE_IN_BYTES : maxPartFileSizeInBytes;
     }
 
-    private void writeBufferToS3(byte[] toWrite, int limit) {
+    private boolean isMultipartUpload() {
+        return multipartPartSizeInBytes != null;
+    }
+
+    private boolean isAsynchronousUpload() {
+        return numberOfUploadBuffers != null;
+    }
+
+    /*
+     * Hands the contents of the current buffer to an upload action. Synchronously the action is simply run on the
+     * loading thread; asynchronously the filled buffer is handed to an upload thread and loading continues in the next
+     * free buffer, only blocking if every other buffer is still being uploaded. A buffer is always cleared and made
+     * free again once its upload has finished, whether or not it succeeded. Returns the asynchronous upload, or null
+     * if the upload was synchronous.
+     */
+    @Nullable
+    private Future<?> submitUpload(Consumer<ByteBuffer> uploadAction) {
+        if (!isAsynchronousUpload()) {
+            buffer.flip();
+
+            try {
+                uploadAction.accept(buffer);
+            } catch (RuntimeException e) {
+                throw failUpload(e);
+            } finally {
+                buffer.clear();
+            }
+
+            return null;
+        }
+
+        checkUploads();
+
+        ByteBuffer bufferToUpload = buffer;
+        bufferToUpload.flip();
+        Future<?> upload = uploadExecutor.submit(() -> {
+            try {
+                uploadAction.accept(bufferToUpload);
+            } finally {
+                bufferToUpload.clear();
+                freeBuffers.offer(bufferToUpload);
+            }
+        });
+        outstandingUploads.add(upload);
+
+        try {
+            buffer = freeBuffers.take();
+        } catch (InterruptedException e) {
+            buffer = allocateBuffer();
+            Thread.currentThread().interrupt();
+            throw failUpload(new UnrecoverableStreamFailureException("Interrupted waiting for an S3 upload", e));
+        }
+
+        return upload;
+    }
+
+    // Surfaces the failure of any asynchronous upload that has already finished without waiting for the others
+    private void checkUploads() {
+        Iterator<Future<?>> iterator = outstandingUploads.iterator();
+
+        while (iterator.hasNext()) {
+            Future<?> upload = iterator.next();
+
+            if (upload.isDone()) {
+                iterator.remove();
+                getUploadResult(upload);
+            }
+        }
+    }
+
+    private void awaitUploads() {
+        RuntimeException failure = null;
+
+        for (Future<?> upload : outstandingUploads) {
+            try {
+                getUploadResult(upload);
+            } catch (RuntimeException e) {
+                if (failure == null) {
+                    failure = e;
+                } else if (failure != e) {
+                    failure.addSuppressed(e);
+                }
+            }
+        }
+
+        outstandingUploads.clear();
+
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private void getUploadResult(Future<?> upload) {
+        try {
+            upload.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw failUpload(new UnrecoverableStreamFailureException("Interrupted waiting for an S3 upload", e));
+        } catch (ExecutionException e) {
+            throw failUpload(e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() :
+                    new UnrecoverableStreamFailureException("Exception caught trying to write object to S3: ",
+                            e.getCause()));
+        }
+    }
+
+    /*
+     * Abandons the multipart upload a failed part belonged to, if there is one, along with anything buffered that has
+     * not been uploaded yet so that closing the loader does not write a partial part file. Any other uploads still in
+     * progress are allowed to finish first, otherwise a part could be stored after the multipart upload was aborted and
+     * linger in the bucket. Returns the exception to be thrown, which is the original failure with any failure to abort
+     * the multipart upload attached to it.
+     */
+    private RuntimeException failUpload(RuntimeException e) {
+        waitForOutstandingUploads();
+        abortMultipartUpload(e);
+        buffer.clear();
+        compressingStream = null;
+        return e;
+    }
+
+    // Only waits; whether each upload succeeded is still surfaced by checkUploads() or awaitUploads()
+    private void waitForOutstandingUploads() {
+        for (Future<?> upload : outstandingUploads) {
+            try {
+                upload.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (ExecutionException | CancellationException ignored) {
+                // The upload has finished
+            }
+        }
+    }
+
+    private void loadIntoCompressedFile(T objectToLoad) {
+        serializeObject(objectToLoad);
+
+        if (compressingStream != null && isMultipartUpload() && wouldExceedMultipartPartLimit(serializedObject.size())) {
+            finishCompressedFile();
+            reserializeObjectForNewFile(objectToLoad);
+        }
+
+        try {
+            if (compressingStream == null) {
+                compressingStream = compressionCodec.wrap(new PartFileOutputStream());
+                compressingStream.write(fileHeader);
+            }
+
+            compressingStream.write(serializedObject.getBytes(), 0, serializedObject.size());
+        } catch (IOException e) {
+            throw failUpload(new UnrecoverableStreamFailureException("Exception caught trying to compress object: ", e));
+        }
+
+        if (getCompressedFileSizeInBytes() >= getMaxCompressedFileSizeInBytes()) {
+            finishCompressedFile();
+        }
+    }
+
+    private void finishCompressedFile() {
+        try {
+            compressingStream.close();
+        } catch (IOException e) {
+            throw failUpload(new UnrecoverableStreamFailureException("Exception caught trying to compress object: ", e));
+        }
+
+        compressingStream = null;
+
+        if (isMultipartUpload() || multipartUploadId != null) {
+            completeMultipartUpload();
+        } else {
+            flushBuffer();
+        }
+    }
+
+    // Outside multipart upload mode only the parts cut off by appendToCompressedFile are counted in the file size
+    private long getCompressedFileSizeInBytes() {
+        return isMultipartUpload() ? multipartFileSizeInBytes : multipartFileSizeInBytes + buffer.position();
+    }
+
+    private long getMaxCompressedFileSizeInBytes() {
+        if (isMultipartUpload()) {
+            return maxPartFileSizeInBytes == null ? Long.MAX_VALUE : maxPartFileSizeInBytes;
+        }
+
+        return getMaxPartFileSizeInBytes();
+    }
+
+    /*
+     * The compressor holds on to some of what is written to it and writes the end of the compressed data when it is
+     * closed, so the compressed size of a part file can go over the maximum by a little. In multipart upload mode the
+     * extra bytes simply go into the next upload part. Otherwise the buffer is never grown: once it is full and more
+     * compressed data arrives, the part file is turned into a multipart upload and the full buffer is cut off and
+     * uploaded as its first part, so the extra bytes go into the next part just as they would in multipart upload mode.
+     */
+    private void appendToCompressedFile(byte[] bytes, int offset, int count) {
+        if (isMultipartUpload()) {
+            appendToMultipartUpload(bytes, offset, count);
+            return;
+        }
+
+        int end = offset + count;
+
+        while (offset < end) {
+            if (!buffer.hasRemaining()) {
+                multipartFileSizeInBytes += buffer.position();
+                uploadPart();
+            }
+
+            int length = Math.min(buffer.remaining(), end - offset);
+            buffer.put(bytes, offset, length);
+            offset += length;
+        }
+    }
+
+    private void loadIntoMultipartUpload(T objectToLoad) {
+        serializeObject(objectToLoad);
+
+        if (multipartFileSizeInBytes > 0 && wouldExceedMultipartFileLimits(serializedObject.size())) {
+            completeMultipartUpload();
+            reserializeObjectForNewFile(objectToLoad);
+        }
+
+        if (multipartFileSizeInBytes == 0) {
+            appendToMultipartUpload(fileHeader, 0, fileHeader.length);
+        }
+
+        appendToMultipartUpload(serializedObject.getBytes(), 0, serializedObject.size());
+    }
+
+    private void appendToMultipartUpload(byte[] bytes, int offset, int count) {
+        int end = offset + count;
+
+        while (offset < end) {
+            int length = Math.min(buffer.remaining(), end - offset);
+            buffer.put(bytes, offset, length);
+            offset += length;
+            multipartFileSizeInBytes += length;
+
+            if (!buffer.hasRemaining()) {
+                uploadPart();
+            }
+        }
+    }
+
+    // Part files are only ever split between objects, so both limits are checked before any of the object is buffered
+    private boolean wouldExceedMultipartFileLimits(int length) {
+        if (maxPartFileSizeInBytes != null && multipartFileSizeInBytes + length > maxPartFileSizeInBytes) {
+            return true;
+        }
+
+        return wouldExceedMultipartPartLimit(length);
+    }
+
+    private boolean wouldExceedMultipartPartLimit(int length) {
+        long bufferedBytes = (long) buffer.position() + length;
+        long partsNeeded = multipartPartCount + (bufferedBytes + multipartPartSizeInBytes - 1) / multipartPartSizeInBytes;
+        return partsNeeded > MAX_PARTS_PER_MULTIPART_UPLOAD;
+    }
+
+    private void uploadPart() {
+        if (multipartUploadId == null) {
+            initiateMultipartUpload();
+        }
+
+        final String s3Key = multipartS3Key;
+        final Future<String> uploadId = multipartUploadId;
+        final int partNumber = ++multipartPartCount;
+        final List<PartETag> partETags = multipartPartETags;
+
+        Future<?> partUpload = submitUpload(bufferToUpload -> {
+            try (EtlProfilingScope scope = new EtlProfilingScope(parentMetrics, "S3FastLoader.uploadPart")) {
+                UploadPartRequest uploadPartRequest = new UploadPartRequest()
+                        .withBucketName(s3Bucket)
+                        .withKey(s3Key)
+                        .withUploadId(getUploadId(uploadId))
+                        .withPartNumber(partNumber)
+                        .withPartSize(bufferToUpload.limit())
+                        .withInputStream(new ByteBufferInputStream(bufferToUpload));
+
+                try {
+                    partETags.add(amazonS3.uploadPart(uploadPartRequest).getPartETag());
+                } catch (AmazonClientException e) {
+                    throw recordFailure(scope, e);
+                }
+            }
+        });
+
+        if (partUpload != null) {
+            multipartPartUploads.add(partUpload);
+        }
+    }
+
+    /*
+     * Asynchronously the multipart upload is initiated by an upload thread rather than the loading thread, ahead of the
+     * upload of its first part. Each part upload waits for the upload id on its own upload thread, and a failure to
+     * initiate the upload is surfaced by checkUploads() or awaitUploads() like the failure of any other upload.
+     */
+    private void initiateMultipartUpload() {
+        String s3Key = s3PartFileKeyGenerator.apply(++fileSequenceNumber);
+
+        if (isAsynchronousUpload()) {
+            Future<String> uploadId = uploadExecutor.submit(() -> requestMultipartUpload(s3Key));
+            outstandingUploads.add(uploadId);
+            multipartUploadId = uploadId;
+            multipartS3Key = s3Key;
+            return;
+        }
+
+        try {
+            multipartUploadId = CompletableFuture.completedFuture(requestMultipartUpload(s3Key));
+            multipartS3Key = s3Key;
+        } catch (RuntimeException e) {
+            buffer.clear();
+            throw e;
+        }
+    }
+
+    private String requestMultipartUpload(String s3Key) {
+        try (EtlProfilingScope scope = new EtlProfilingScope(parentMetrics, "S3FastLoader.initiateMultipartUpload")) {
+            InitiateMultipartUploadRequest initiateRequest = new InitiateMultipartUploadRequest(s3Bucket, s3Key);
+
+            if (sseKmsArn != null && !sseKmsArn.isEmpty()) {
+                initiateRequest.setSSEAwsKeyManagementParams(new SSEAwsKeyManagementParams(sseKmsArn));
+            }
+
+            try {
+                return amazonS3.initiateMultipartUpload(initiateRequest).getUploadId();
+            } catch (AmazonClientException e) {
+                throw recordFailure(scope, e);
+            }
+        }
+    }
+
+    // A failure to initiate the upload is rethrown as the same exception, so that it is only surfaced once
+    private static String getUploadId(Future<String> uploadId) {
+        try {
+            return uploadId.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new UnrecoverableStreamFailureException("Interrupted waiting for an S3 multipart upload to be " +
+                    "initiated", e);
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() :
+                    new UnrecoverableStreamFailureException("Exception caught trying to write object to S3: ",
+                            e.getCause());
+        }
+    }
+
+    private void completeMultipartUpload() {
+        if (multipartUploadId == null) {
+            // The part file never filled a single upload part, so it is written with a single request instead
+            if (buffer.position() != 0) {
+                String s3Key = s3PartFileKeyGenerator.apply(++fileSequenceNumber);
+                submitUpload(bufferToWrite ->
+                        writeBufferToS3(s3Key, new ByteBufferInputStream(bufferToWrite), bufferToWrite.limit()));
+            }
+        } else {
+            if (buffer.position() != 0) {
+                uploadPart();
+            }
+
+            if (isAsynchronousUpload()) {
+                checkUploads();
+
+                final String s3Key = multipartS3Key;
+                final Future<String> uploadId = multipartUploadId;
+                final List<PartETag> partETags = multipartPartETags;
+                final List<Future<?>> partUploads = multipartPartUploads;
+
+                outstandingUploads.add(uploadExecutor.submit(() ->
+                        finishMultipartUpload(s3Key, uploadId, partETags, partUploads)));
+            } else {
+                try {
+                    requestCompleteMultipartUpload(multipartS3Key, getUploadId(multipartUploadId), multipartPartETags);
+                } catch (RuntimeException e) {
+                    throw failUpload(e);
+                }
+            }
+        }
+
+        resetMultipartUpload();
+        startNewFile();
+    }
+
+    /*
+     * Asynchronously each multipart upload is completed by an upload thread once all of its parts have been uploaded,
+     * so the loading thread carries on into the next part file rather than waiting for them. The parts of a file are
+     * always submitted to the upload threads before the task that completes it, so they have all been started by the
+     * time it runs. If any of them failed, or the upload cannot be completed, the upload is aborted here as the loading
+     * thread has already moved on to the next one; the failure is still surfaced by checkUploads() or awaitUploads().
+     */
+    private void finishMultipartUpload(String s3Key, Future<String> uploadId, List<PartETag> partETags,
+                                       List<Future<?>> partUploads) {
+        RuntimeException failure = null;
+
+        // Every part is waited for before aborting, otherwise a part could be stored after the abort
+        for (Future<?> partUpload : partUploads) {
+            try {
+                partUpload.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                failure = new UnrecoverableStreamFailureException("Interrupted waiting for an S3 upload", e);
+                break;
+            } catch (ExecutionException e) {
+                if (failure == null) {
+                    failure = e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() :
+                            new UnrecoverableStreamFailureException("Exception caught trying to write object to S3: ",
+                                    e.getCause());
+                }
+            }
+        }
+
+        try {
+            if (failure != null) {
+                throw failure;
+            }
+
+            requestCompleteMultipartUpload(s3Key, getUploadId(uploadId), partETags);
+        } catch (RuntimeException e) {
+            abortMultipartUpload(s3Key, uploadId, e);
+            throw e;
+        }
+    }
+
+    private void requestCompleteMultipartUpload(String s3Key, String uploadId, List<PartETag> partETags) {
+        try (EtlProfilingScope scope = new EtlProfilingScope(parentMetrics, "S3FastLoader.writeToS3")) {
+            List<PartETag> sortedPartETags = new ArrayList<>(partETags);
+            sortedPartETags.sort(Comparator.comparingInt(PartETag::getPartNumber));
+
+            try {
+                amazonS3.completeMultipartUpload(new CompleteMultipartUploadRequest(s3Bucket, s3Key, uploadId,
+                        sortedPartETags));
+                emitSuccessAndFailureMetrics(scope, true);
+            } catch (AmazonClientException e) {
+                throw recordFailure(scope, e);
+            }
+        }
+    }
+
+    private void abortMultipartUpload(RuntimeException failure) {
+        if (multipartUploadId != null) {
+            abortMultipartUpload(multipartS3Key, multipartUploadId, failure);
+        }
+
+        resetMultipartUpload();
+    }
+
+    private void abortMultipartUpload(String s3Key, Future<String> uploadId, RuntimeException failure) {
+        String initiatedUploadId;
+
+        try {
+            initiatedUploadId = getUploadId(uploadId);
+        } catch (RuntimeException e) {
+            // An upload that could not be initiated has nothing to abort
+            return;
+        }
+
+        try {
+            amazonS3.abortMultipartUpload(new AbortMultipartUploadRequest(s3Bucket, s3Key, initiatedUploadId));
+        } catch (AmazonClientException e) {
+            logger.warn("Unable to abort multipart upload of " + s3Key + ": ", e);
+            failure.addSuppressed(e);
+        }
+    }
+
+    private void resetMultipartUpload() {
+        multipartUploadId = null;
+        multipartS3Key = null;
+        multipartPartETags = Collections.synchronizedList(new ArrayList<>());
+        multipartPartUploads = new ArrayList<>();
+        multipartPartCount = 0;
+        multipartFileSizeInBytes = 0;
+    }
+
+    private UnrecoverableStreamFailureException recordFailure(EtlProfilingScope scope, AmazonClientException e) {
+        logger.error(e);
+        scope.addCounter(e.getClass().getSimpleName(), 1);
+        emitSuccessAndFailureMetrics(scope, false);
+        return new UnrecoverableStreamFailureException("Exception caught trying to write object to S3: ", e);
+    }
+
+    private void writeBufferToS3(String s3Key, InputStream inputStream, int limit) {
         try (EtlProfilingScope scope = new EtlProfilingScope(parentMetrics, "S3FastLoader.writeToS3")) {
-            InputStream inputStream = new ByteArrayInputStream(toWrite, 0, limit);
-            String s3Key = s3PartFileKeyGenerator.apply(++fileSequenceNumber);
             ObjectMetadata metadata = new ObjectMetadata();
             metadata.setContentLength(limit);
             PutObjectRequest putObjectRequest = new PutObjectRequest(s3Bucket, s3Key, inputStream, metadata);
@@ -188,10 +887,7 @@ public class S3FastLoader<T> implements Loader<T> {
                 amazonS3.putObject(putObjectRequest);
                 emitSuccessAndFailureMetrics(scope, true);
             } catch (AmazonClientException e) {
-                    logger.error(e);
-                    scope.addCounter(e.getClass().getSimpleName(), 1);
-                    emitSuccessAndFailureMetrics(scope, false);
-                    throw new UnrecoverableStreamFailureException("Exception caught trying to write object to S3: ", e);
+                throw recordFailure(scope, e);
             }
         }
     }
@@ -201,6 +897,26 @@ public class S3FastLoader<T> implements Loader<T> {
         scope.addCounter(FAILURE_METRIC_KEY, isSuccess ? 0 : 1);
     }
 
+    // Receives the output of the compressor of the current part file
+    private class PartFileOutputStream extends OutputStream {
+        @Override
+        public void write(int b) {
+            write(new byte[] { (byte) b }, 0, 1);
+        }
+
+        @Override
+        public void write(@Nonnull byte[] b, int off, int len) {
+            appendToCompressedFile(b, off, len);
+        }
+    }
+
+    // Exposes the internal array so that a serialized object can be copied into the part buffer without another copy
+    private static class SerializedObjectBuffer extends ByteArrayOutputStream {
+        byte[] getBytes() {
+            return buf;
+        }
+    }
+
     /**
      * A class that supplies S3FastLoader objects on demand. The class keeps a sequence counter which increments each
      * time it constructs a new S3FastLoader and this sequence number can be referenced in the supplied S3 key generator
@@ -227,7 +943,8 @@ public class S3FastLoader<T> implements Loader<T> {
      * (sequenceNum, partNum) -> String.format("PocketETL/%02d/part-%05d", sequenceNum, partNum)
      */
     @SuppressWarnings("WeakerAccess")
-    @RequiredArgsConstructor(access = AccessLevel.PACKAGE)
+    @AllArgsConstructor(access = AccessLevel.PRIVATE)
+    @Builder(toBuilder = true)
     public static class S3FastLoaderSupplier<T> implements Supplier<Loader<T>> {
         private final String awsKmsArn;
         private final Integer bufferSizeInBytes;
@@ -235,8 +952,15 @@ public class S3FastLoader<T> implements Loader<T> {
         private final String s3Bucket;
         private final S3PartFileKeyGenerator s3KeyGenerator;
         private final Supplier<StringSerializer<T>> stringSerializerSupplier;
+        private final StreamSerializer<T> streamSerializer;
+        private final Integer multipartPartSizeInBytes;
+        private final boolean isPooledDirectBuffers;
+        private final Integer numberOfUploadBuffers;
+        private final CompressionCodec compressionCodec;
 
-        private AtomicInteger sequenceCounter = new AtomicInteger(0);
+        // Initialized here rather than by the builder, so that every copy has its own counter and buffer pool
+        private final AtomicInteger sequenceCounter = new AtomicInteger(0);
+        private final AtomicReference<S3PartBufferPool> partBufferPool = new AtomicReference<>();
 
         /**
          * Optional: Enables server-side-encryption on all the loaders supplied by this object using the referenced KMS
@@ -245,19 +969,19 @@ public class S3FastLoader<T> implements Loader<T> {
          * @return A copy of the current S3FastLoaderSupplier with this property modified.
          */
         public S3FastLoaderSupplier<T> withSSEKmsArn(String awsKmsArn) {
-            return new S3FastLoaderSupplier<>(awsKmsArn, bufferSizeInBytes, s3Client, s3Bucket, s3KeyGenerator,
-                    stringSerializerSupplier);
+            return toBuilder().awsKmsArn(awsKmsArn).build();
         }
 
         /**
          * Optional: Defines the maximum size of the objects that will be written to S3. If a newly loaded object is going
-         * to exceed this limit, a new part file will be started.
+         * to exceed this limit, a new part file will be started. Unless multipart upload mode or asynchronous uploads are
+         * enabled this is also the size of the memory buffer allocated by each loader; in multipart upload mode there is
+         * no limit by default.
          * @param bufferSizeInBytes Maximum file size in bytes.
          * @return A copy of the current S3FastLoaderSupplier with this property modified.
          */
         public S3FastLoaderSupplier<T> withMaxPartFileSizeInBytes(Integer bufferSizeInBytes) {
-            return new S3FastLoaderSupplier<>(awsKmsArn, bufferSizeInBytes, s3Client, s3Bucket, s3KeyGenerator,
-                    stringSerializerSupplier);
+            return toBuilder().bufferSizeInBytes(bufferSizeInBytes).build();
         }
 
         /**
@@ -267,8 +991,7 @@ public class S3FastLoader<T> implements Loader<T> {
          * @return A copy of the current S3FastLoaderSupplier with this property modified.
          */
         public S3FastLoaderSupplier<T> withClient(AmazonS3 s3Client) {
-            return new S3FastLoaderSupplier<>(awsKmsArn, bufferSizeInBytes, s3Client, s3Bucket, s3KeyGenerator,
-                    stringSerializerSupplier);
+            return toBuilder().s3Client(s3Client).build();
         }
 
         /**
@@ -279,8 +1002,97 @@ public class S3FastLoader<T> implements Loader<T> {
          * @return A copy of the current S3FastLoaderSupplier with this property modified.
          */
         public S3FastLoaderSupplier<T> withS3PartFileKeyGenerator(S3PartFileKeyGenerator s3KeyGenerator) {
-            return new S3FastLoaderSupplier<>(awsKmsArn, bufferSizeInBytes, s3Client, s3Bucket, s3KeyGenerator,
-                    stringSerializerSupplier);
+            return toBuilder().s3KeyGenerator(s3KeyGenerator).build();
+        }
+
+        /**
+         * Optional: Enables multipart upload mode with the default upload part size of 8 MiB. See
+         * withMultipartUpload(int).
+         * @return A copy of the current S3FastLoaderSupplier with this property modified.
+         */
+        public S3FastLoaderSupplier<T> withMultipartUpload() {
+            return withMultipartUpload(DEFAULT_MULTIPART_PART_SIZE_IN_BYTES);
+        }
+
+        /**
+         * Optional: Enables multipart upload mode. Instead of buffering an entire part file in memory, each loader
+         * buffers a single upload part of this size and uploads it to S3 as soon as it fills, completing the multipart
+         * upload when the part file is finished. Part files that never fill a single upload part are written with a
+         * single request as normal. S3 requires every part except the last to be at least 5 MiB, and will not accept
+         * more than 10,000 parts in one upload; a new part file is started before that limit would be reached, so
+         * without a maximum part file size each part file holds at most 10,000 upload parts.
+         * @param partSizeInBytes The size of each upload part, and of the buffer allocated by each loader, in bytes.
+         * @return A copy of the current S3FastLoaderSupplier with this property modified.
+         * @throws IllegalArgumentException If partSizeInBytes is less than 5 MiB.
+         */
+        public S3FastLoaderSupplier<T> withMultipartUpload(int partSizeInBytes) {
+            if (partSizeInBytes < MIN_MULTIPART_PART_SIZE_IN_BYTES) {
+                throw new IllegalArgumentException("partSizeInBytes must be at least " +
+                        MIN_MULTIPART_PART_SIZE_IN_BYTES + " as S3 rejects smaller upload parts");
+            }
+
+            return withMultipartPartSize(partSizeInBytes);
+        }
+
+        // Enables multipart upload mode without enforcing the minimum part size of S3, so that tests can use tiny parts
+        S3FastLoaderSupplier<T> withMultipartPartSize(int partSizeInBytes) {
+            if (partSizeInBytes <= 0) {
+                throw new IllegalArgumentException("partSizeInBytes must be greater than zero");
+            }
+
+            return toBuilder().multipartPartSizeInBytes(partSizeInBytes).build();
+        }
+
+        /**
+         * Optional: In multipart upload mode, hold the upload parts in direct buffers taken from a pool shared by all
+         * the loaders supplied by this object rather than allocating a new heap buffer for every loader. Buffers are
+         * returned to the pool when a loader is closed. Has no effect unless multipart upload mode or asynchronous uploads
+         * are enabled.
+         * @return A copy of the current S3FastLoaderSupplier with this property modified.
+         */
+        public S3FastLoaderSupplier<T> withPooledDirectBuffers() {
+            return toBuilder().isPooledDirectBuffers(true).build();
+        }
+
+        /**
+         * Optional: Makes uploads asynchronous using two buffers per loader. See withAsynchronousUploads(int).
+         * @return A copy of the current S3FastLoaderSupplier with this property modified.
+         */
+        public S3FastLoaderSupplier<T> withAsynchronousUploads() {
+            return withAsynchronousUploads(2);
+        }
+
+        /**
+         * Optional: Makes uploads asynchronous. Each loader allocates this many buffers and uploads every buffer that
+         * fills on a separate upload thread while it carries on loading into the next free one, so at most one fewer
+         * upload than the number of buffers is in progress at once for each loader. Asynchronous uploads always use
+         * multipart upload mode, with the default upload part size of 8 MiB unless withMultipartUpload(int) gives
+         * another, so each buffer is the size of one upload part rather than of a whole part file.
+         * @param numberOfBuffers The number of buffers allocated by each loader.
+         * @return A copy of the current S3FastLoaderSupplier with this property modified.
+         * @throws IllegalArgumentException If numberOfBuffers is less than two.
+         */
+        public S3FastLoaderSupplier<T> withAsynchronousUploads(int numberOfBuffers) {
+            if (numberOfBuffers < 2) {
+                throw new IllegalArgumentException("numberOfBuffers must be at least two");
+            }
+
+            return toBuilder().numberOfUploadBuffers(numberOfBuffers).build();
+        }
+
+        /**
+         * Optional: Compresses every part file with a compression codec as it is written. The maximum part file size
+         * then applies to the compressed size of each part file: a part file is finished once its compressed size has
+         * reached the maximum, so it may go over the maximum by a little. Outside multipart upload mode the buffer is not
+         * grown to hold the extra bytes: a part file that goes over is written as a multipart upload whose first part is
+         * the full buffer, so the maximum part file size should be at least 5 MiB, the smallest part S3 accepts.
+         * Compression is streamed, so it can be combined with multipart upload mode to write large compressed part files
+         * with little memory.
+         * @param compressionCodec The codec to compress part files with, eg: CompressionCodec.GZIP.
+         * @return A copy of the current S3FastLoaderSupplier with this property modified.
+         */
+        public S3FastLoaderSupplier<T> withCompression(CompressionCodec compressionCodec) {
+            return toBuilder().compressionCodec(compressionCodec).build();
         }
 
         /**
@@ -303,9 +1115,32 @@ public class S3FastLoader<T> implements Loader<T> {
             }
 
             AmazonS3 effectiveS3Client = (s3Client == null) ? AmazonS3Client.builder().build() : s3Client;
+            Integer partSizeInBytes = getEffectiveMultipartPartSizeInBytes();
 
             return new S3FastLoader<>(effectiveS3Client, s3Bucket, bufferSizeInBytes, awsKmsArn, keyGeneratorForThread,
-                    stringSerializerSupplier);
+                    stringSerializerSupplier, streamSerializer, partSizeInBytes, getPartBufferPool(partSizeInBytes),
+                    numberOfUploadBuffers, compressionCodec);
+        }
+
+        // Asynchronous uploads always use multipart upload mode, so that no buffer is as large as a whole part file
+        private Integer getEffectiveMultipartPartSizeInBytes() {
+            if (multipartPartSizeInBytes == null && numberOfUploadBuffers != null) {
+                return DEFAULT_MULTIPART_PART_SIZE_IN_BYTES;
+            }
+
+            return multipartPartSizeInBytes;
+        }
+
+        private synchronized S3PartBufferPool getPartBufferPool(Integer partSizeInBytes) {
+            if (partSizeInBytes == null || !isPooledDirectBuffers) {
+                return null;
+            }
+
+            if (partBufferPool.get() == null) {
+                partBufferPool.set(new S3PartBufferPool(partSizeInBytes));
+            }
+
+            return partBufferPool.get();
         }
     }
 }
\ No newline at end of file
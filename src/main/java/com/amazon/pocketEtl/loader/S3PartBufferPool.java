@@ -0,0 +1,58 @@
+/*
+ *   Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package com.amazon.pocketEtl.loader;
+
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * A thread-safe pool of equally sized direct ByteBuffers used by S3FastLoader to hold multipart upload parts. Direct
+ * buffers are expensive to allocate and are only freed when they are garbage collected, so rather than each loader
+ * allocating its own, buffers are handed back to the pool when a loader is closed and reused by the next loader to be
+ * opened. The pool never holds more buffers than the largest number of loaders that have been open at the same time.
+ */
+class S3PartBufferPool {
+    private final int bufferSizeInBytes;
+    private final Queue<ByteBuffer> availableBuffers = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Creates an empty pool.
+     * @param bufferSizeInBytes The capacity of every buffer supplied by this pool.
+     */
+    S3PartBufferPool(int bufferSizeInBytes) {
+        this.bufferSizeInBytes = bufferSizeInBytes;
+    }
+
+    /**
+     * Takes a buffer from the pool, allocating a new one if the pool is empty.
+     * @return A cleared direct buffer.
+     */
+    ByteBuffer acquire() {
+        ByteBuffer buffer = availableBuffers.poll();
+        return buffer == null ? ByteBuffer.allocateDirect(bufferSizeInBytes) : buffer;
+    }
+
+    /**
+     * Returns a buffer to the pool so it can be reused. The buffer must not be used by the caller after it has been
+     * released.
+     * @param buffer A buffer previously supplied by this pool.
+     */
+    void release(ByteBuffer buffer) {
+        buffer.clear();
+        availableBuffers.offer(buffer);
+    }
+}
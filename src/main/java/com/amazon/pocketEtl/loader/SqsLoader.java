@@ -0,0 +1,291 @@
+/*
+ *   Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package com.amazon.pocketEtl.loader;
+
+import com.amazon.pocketEtl.EtlMetrics;
+import com.amazon.pocketEtl.EtlProfilingScope;
+import com.amazon.pocketEtl.Loader;
+import com.amazon.pocketEtl.integration.SqsBatchRetrier;
+import com.amazonaws.services.sqs.AmazonSQS;
+import com.amazonaws.services.sqs.AmazonSQSClient;
+import com.amazonaws.services.sqs.model.SendMessageBatchRequest;
+import com.amazonaws.services.sqs.model.SendMessageBatchRequestEntry;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import org.apache.logging.log4j.Logger;
+
+import javax.annotation.Nullable;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import static org.apache.logging.log4j.LogManager.getLogger;
+
+/**
+ * Loader implementation that publishes each object as a message on an SQS queue. By default objects are serialized
+ * as JSON with the same configuration as JsonStringSerializer, so they can be read back with SqsExtractor and
+ * JSONStringMapper.
+ *
+ * Messages are packed into SendMessageBatch requests, each of which holds up to 10 messages with a total size of no
+ * more than 256 KB. A batch is sent as soon as it is full and when the loader is closed; sending happens on background
+ * threads so that several batches can be in flight at once, and load() only blocks when the maximum number of batches
+ * are already in flight. When SQS reports that some of the messages in a batch failed, only those messages are resent,
+ * with a jittered exponential backoff, unless the failure was the sender's fault. Messages that still cannot be sent,
+ * including any message that is too large to send at all, are logged and counted as failures in the same way as
+ * DynamoDbLoader.
+ *
+ * This loader is thread-safe.
+ *
+ * Usage example:
+ * stream.load(MyDTO.class, SqsLoader.of(myQueueUrl, MyDTO.class).withClient(mySqsClient));
+ *
+ * @param <T> Type of object being loaded.
+ */
+@SuppressWarnings("WeakerAccess")
+@RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+public class SqsLoader<T> implements Loader<T> {
+    private final static Logger logger = getLogger(SqsLoader.class);
+
+    private final static String SUCCESS_METRIC_KEY = "SqsLoader.success";
+    private final static String FAILURE_METRIC_KEY = "SqsLoader.failure";
+
+    // SendMessageBatch accepts at most 10 messages with a combined size of 256 KB in a single request
+    private final static int MAXIMUM_MESSAGES_PER_BATCH = 10;
+    private final static int MAXIMUM_BATCH_SIZE_IN_BYTES = 256 * 1024;
+    private final static int DEFAULT_MAX_BATCHES_IN_FLIGHT = 4;
+
+    private final AmazonSQS sqsClient;
+    private final String queueUrl;
+    private final Function<T, String> messageSerializer;
+    private final int maxBatchesInFlight;
+
+    private EtlMetrics parentMetrics = null;
+    private AmazonSQS effectiveSqsClient = null;
+    private ExecutorService batchSender = null;
+    private Semaphore batchesInFlight = null;
+
+    // Guarded by synchronizing on this
+    private List<String> pendingMessages = new ArrayList<>();
+    private int pendingMessagesSizeInBytes = 0;
+
+    /**
+     * Create a loader that publishes objects to an SQS queue as JSON messages. Out of the box the loader will use the
+     * default Amazon SQS client.
+     *
+     * @param queueUrl     URL of the SQS queue to publish to.
+     * @param classToLoad  Class of object being loaded.
+     * @param <T>          Type of object being loaded.
+     * @return A newly constructed SqsLoader.
+     */
+    public static <T> SqsLoader<T> of(String queueUrl, Class<T> classToLoad) {
+        ObjectWriter writer = JsonStringSerializer.mapper.writerFor(classToLoad);
+
+        return new SqsLoader<>(null, queueUrl, objectToLoad -> {
+            try {
+                return writer.writeValueAsString(objectToLoad);
+            } catch (JsonProcessingException e) {
+                throw new RuntimeException(e);
+            }
+        }, DEFAULT_MAX_BATCHES_IN_FLIGHT);
+    }
+
+    /**
+     * Modify the AWS SQS Client object to be used with the loader.
+     *
+     * @param amazonSQS An initialized AWS SQS Client.
+     * @return A copy of this loader with this property modified.
+     */
+    public SqsLoader<T> withClient(AmazonSQS amazonSQS) {
+        return new SqsLoader<>(amazonSQS, queueUrl, messageSerializer, maxBatchesInFlight);
+    }
+
+    /**
+     * Optional: Serialize objects into message bodies with a different function instead of as JSON.
+     *
+     * @param messageSerializer Function that converts an object into the body of the message to publish.
+     * @return A copy of this loader with this property modified.
+     */
+    public SqsLoader<T> withMessageSerializer(Function<T, String> messageSerializer) {
+        return new SqsLoader<>(sqsClient, queueUrl, messageSerializer, maxBatchesInFlight);
+    }
+
+    /**
+     * Optional: The maximum number of SendMessageBatch requests that can be in flight at the same time. The default
+     * is 4.
+     *
+     * @param maxBatchesInFlight Maximum number of concurrent batch requests.
+     * @return A copy of this loader with this property modified.
+     * @throws IllegalArgumentException If the maximum is not positive.
+     */
+    public SqsLoader<T> withMaxBatchesInFlight(int maxBatchesInFlight) {
+        if (maxBatchesInFlight < 1) {
+            throw new IllegalArgumentException("maxBatchesInFlight must be at least 1");
+        }
+
+        return new SqsLoader<>(sqsClient, queueUrl, messageSerializer, maxBatchesInFlight);
+    }
+
+    /**
+     * Serializes an object into a message and adds it to the batch being built, sending the batch if it is full.
+     *
+     * @param objectToLoad The object to be loaded.
+     */
+    @Override
+    public void load(T objectToLoad) {
+        if (batchSender == null) {
+            throw new IllegalStateException("SqsLoader is not open and cannot receive load requests.");
+        }
+
+        String messageBody;
+        int messageSizeInBytes;
+
+        try (EtlProfilingScope scope = new EtlProfilingScope(parentMetrics, "SqsLoader.prepare")) {
+            try {
+                messageBody = messageSerializer.apply(objectToLoad);
+            } catch (RuntimeException e) {
+                emitSuccessAndFailureMetrics(scope, 0, 1);
+                logger.warn("Failed to serialize message", e);
+                return;
+            }
+
+            messageSizeInBytes = messageBody.getBytes(StandardCharsets.UTF_8).length;
+
+            if (messageSizeInBytes > MAXIMUM_BATCH_SIZE_IN_BYTES) {
+                emitSuccessAndFailureMetrics(scope, 0, 1);
+                logger.warn("Message of {} bytes is larger than the SQS limit of {} bytes", messageSizeInBytes,
+                        MAXIMUM_BATCH_SIZE_IN_BYTES);
+                return;
+            }
+        }
+
+        List<String> fullBatch = null;
+
+        synchronized (this) {
+            if (pendingMessagesSizeInBytes + messageSizeInBytes > MAXIMUM_BATCH_SIZE_IN_BYTES) {
+                fullBatch = takePendingMessages();
+            }
+
+            pendingMessages.add(messageBody);
+            pendingMessagesSizeInBytes += messageSizeInBytes;
+
+            if (fullBatch == null && pendingMessages.size() >= MAXIMUM_MESSAGES_PER_BATCH) {
+                fullBatch = takePendingMessages();
+            }
+        }
+
+        if (fullBatch != null) {
+            submitBatch(fullBatch);
+        }
+    }
+
+    /**
+     * Prepares the loader to start sending batches.
+     *
+     * @param parentMetrics An EtlMetrics object to attach any counters or timers to, will be null if profiling is not
+     *                      required.
+     */
+    @Override
+    public void open(@Nullable EtlMetrics parentMetrics) {
+        this.parentMetrics = parentMetrics;
+        effectiveSqsClient = sqsClient == null ? AmazonSQSClient.builder().build() : sqsClient;
+        batchesInFlight = new Semaphore(maxBatchesInFlight);
+        batchSender = Executors.newFixedThreadPool(maxBatchesInFlight, runnable -> {
+            Thread thread = new Thread(runnable, "SqsLoader-batch-sender");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Sends any messages that have not been sent yet and waits for every batch in flight to complete.
+     *
+     * @throws Exception If something goes wrong.
+     */
+    @Override
+    public void close() throws Exception {
+        try (EtlProfilingScope ignored = new EtlProfilingScope(parentMetrics, "SqsLoader.close")) {
+            if (batchSender == null) {
+                return;
+            }
+
+            List<String> lastBatch;
+
+            synchronized (this) {
+                lastBatch = takePendingMessages();
+            }
+
+            if (!lastBatch.isEmpty()) {
+                submitBatch(lastBatch);
+            }
+
+            batchSender.shutdown();
+            batchSender.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    // Must be called holding the lock on this
+    private List<String> takePendingMessages() {
+        List<String> messages = pendingMessages;
+        pendingMessages = new ArrayList<>();
+        pendingMessagesSizeInBytes = 0;
+        return messages;
+    }
+
+    private void submitBatch(List<String> messages) {
+        batchesInFlight.acquireUninterruptibly();
+
+        try {
+            batchSender.execute(() -> {
+                try {
+                    sendBatch(messages);
+                } finally {
+                    batchesInFlight.release();
+                }
+            });
+        } catch (RuntimeException e) {
+            batchesInFlight.release();
+            throw e;
+        }
+    }
+
+    private void sendBatch(List<String> messages) {
+        try (EtlProfilingScope scope = new EtlProfilingScope(parentMetrics, "SqsLoader.sendBatch")) {
+            int failedMessageCount = sendMessages(messages);
+            emitSuccessAndFailureMetrics(scope, messages.size() - failedMessageCount, failedMessageCount);
+        }
+    }
+
+    // Returns the number of messages that could not be sent
+    private int sendMessages(List<String> messages) {
+        return SqsBatchRetrier.<String, SendMessageBatchRequestEntry>sendWithRetries(messages,
+                SendMessageBatchRequestEntry::new,
+                entries -> effectiveSqsClient.sendMessageBatch(new SendMessageBatchRequest(queueUrl, entries))
+                        .getFailed(),
+                "send");
+    }
+
+    private static void emitSuccessAndFailureMetrics(EtlProfilingScope scope, int successCount, int failureCount) {
+        scope.addCounter(SUCCESS_METRIC_KEY, successCount);
+        scope.addCounter(FAILURE_METRIC_KEY, failureCount);
+    }
+}
@@ -0,0 +1,52 @@
+/*
+ *   Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package com.amazon.pocketEtl.loader;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Interface for a serializer that writes objects of a specific type straight to an OutputStream as bytes, rather than
+ * returning each one as a String that then has to be encoded. Used by loaders that write serialized objects such as
+ * S3FastLoader, which stages each serialized object in a buffer that it reuses for every object it loads.
+ *
+ * Unlike a StringSerializer, a StreamSerializer must not keep any state between objects: anything that needs to appear
+ * once at the start of every file the objects are written to (such as a CSV header row) is written by writeHeader,
+ * which loaders call each time they start a new file. This means an object that has already been serialized can be
+ * moved to a new file without having to be serialized again.
+ *
+ * @param <T> The type of object being serialized.
+ */
+@SuppressWarnings("WeakerAccess")
+@FunctionalInterface
+public interface StreamSerializer<T> {
+    /**
+     * Serialize a single object to an output stream. The stream must not be closed.
+     * @param object The object to serialize.
+     * @param outputStream The stream to write the serialized object to.
+     * @throws IOException If the object could not be serialized or written.
+     */
+    void serialize(T object, OutputStream outputStream) throws IOException;
+
+    /**
+     * Write anything that belongs at the start of every file, before the first serialized object. The default
+     * implementation writes nothing.
+     * @param outputStream The stream to write the header to.
+     * @throws IOException If the header could not be written.
+     */
+    default void writeHeader(OutputStream outputStream) throws IOException {
+    }
+}
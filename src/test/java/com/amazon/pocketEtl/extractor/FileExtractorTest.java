@@ -0,0 +1,228 @@
+/*
+ *   Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package com.amazon.pocketEtl.extractor;
+
+import com.amazon.pocketEtl.EtlTestBase;
+import com.amazon.pocketEtl.exception.UnrecoverableStreamFailureException;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.verify;
+
+public class FileExtractorTest extends EtlTestBase {
+    @Data
+    @AllArgsConstructor
+    @NoArgsConstructor
+    @JsonPropertyOrder({"fileName", "rowNumber"})
+    public static class Row {
+        private String fileName;
+        private int rowNumber;
+    }
+
+    private static final int ROWS_PER_FILE = 500;
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private Path directory;
+
+    @Before
+    public void createFiles() throws Exception {
+        directory = temporaryFolder.getRoot().toPath();
+        writeCsvFile("a.csv");
+        writeCsvFile("b.csv");
+        writeCsvFile("c.csv");
+        Files.write(directory.resolve("ignore.txt"), "not,csv,data\n".getBytes(StandardCharsets.UTF_8));
+        Files.createDirectory(directory.resolve("subdirectory.csv"));
+    }
+
+    @Test
+    public void singleThreadExtractsFilesInOrder() throws Exception {
+        FileExtractor<Row> extractor = FileExtractor.of(directory, CsvInputStreamMapper.of(Row.class)).withGlob("*.csv");
+
+        List<Row> rows = extractAll(extractor);
+
+        assertThat(rows, contains(expectedRows("a.csv", "b.csv", "c.csv").toArray()));
+    }
+
+    @Test
+    public void multipleThreadsExtractAllRowsAcrossSmallMappingWindows() throws Exception {
+        FileExtractor<Row> extractor = FileExtractor.of(directory, CsvInputStreamMapper.of(Row.class))
+                .withGlob("*.csv")
+                .withThreads(3)
+                .withMappingWindowSizeInBytes(100)
+                .withBufferSize(7);
+
+        List<Row> rows = extractAll(extractor);
+
+        assertThat(rows, containsInAnyOrder(expectedRows("a.csv", "b.csv", "c.csv").toArray()));
+    }
+
+    @Test
+    public void globRestrictsFilesRead() throws Exception {
+        FileExtractor<Row> extractor = FileExtractor.of(directory, CsvInputStreamMapper.of(Row.class)).withGlob("b.*");
+
+        assertThat(extractAll(extractor), contains(expectedRows("b.csv").toArray()));
+    }
+
+    @Test
+    public void noMatchingFilesExtractsNothing() throws Exception {
+        FileExtractor<Row> extractor = FileExtractor.of(directory, CsvInputStreamMapper.of(Row.class)).withGlob("*.json");
+
+        assertThat(extractAll(extractor), empty());
+    }
+
+    @Test(expected = UnrecoverableStreamFailureException.class)
+    public void nextThrowsUnrecoverableStreamFailureExceptionIfFileCannotBeMapped() throws Exception {
+        FileExtractor<Row> extractor = FileExtractor.of(directory, CsvInputStreamMapper.of(Row.class)).withGlob("*.txt");
+
+        extractAll(extractor);
+    }
+
+    @Test(expected = UnrecoverableStreamFailureException.class)
+    public void openThrowsUnrecoverableStreamFailureExceptionIfDirectoryDoesNotExist() {
+        FileExtractor.of(directory.resolve("missing"), CsvInputStreamMapper.of(Row.class)).open(null);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void nextThrowsIllegalStateExceptionIfNotOpened() {
+        FileExtractor.of(directory, CsvInputStreamMapper.of(Row.class)).next();
+    }
+
+    @Test
+    public void closeBeforeExhaustionStopsReadingThreads() throws Exception {
+        // Every file maps to an endless stream of rows, so the reading threads only stop if close() stops them
+        AtomicInteger objectsMapped = new AtomicInteger(0);
+        InputStreamMapper<Row> endlessMapper = inputStream -> Stream.generate(() ->
+                new Row("endless", objectsMapped.incrementAndGet())).iterator();
+
+        FileExtractor<Row> extractor = FileExtractor.of(directory, endlessMapper)
+                .withGlob("*.csv")
+                .withThreads(3)
+                .withBufferSize(1);
+
+        extractor.open(null);
+        extractor.next();
+        extractor.close();
+
+        int objectsMappedAtClose = objectsMapped.get();
+        Thread.sleep(200);
+
+        assertThat(objectsMapped.get(), equalTo(objectsMappedAtClose));
+    }
+
+    @Test
+    public void errorThrownByMapperIsThrownByNext() throws Exception {
+        FileExtractor<Row> extractor = FileExtractor.of(directory, (InputStreamMapper<Row>) inputStream -> {
+            throw new NoClassDefFoundError("test");
+        }).withGlob("*.csv");
+
+        extractor.open(null);
+
+        try {
+            extractor.next();
+            fail("UnrecoverableStreamFailureException should have been thrown");
+        } catch (UnrecoverableStreamFailureException e) {
+            assertThat(e.getCause(), instanceOf(NoClassDefFoundError.class));
+        } finally {
+            extractor.close();
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void nextAfterCloseThrowsIllegalStateException() throws Exception {
+        FileExtractor<Row> extractor = FileExtractor.of(directory, CsvInputStreamMapper.of(Row.class));
+
+        extractor.open(null);
+        extractor.close();
+        extractor.next();
+    }
+
+    @Test
+    public void extractFileEmitsTimingMetrics() throws Exception {
+        FileExtractor<Row> extractor = FileExtractor.of(directory, CsvInputStreamMapper.of(Row.class)).withGlob("*.csv");
+
+        extractor.open(mockMetrics);
+        while (extractor.next().isPresent()) {
+            // drain
+        }
+        extractor.close();
+
+        verify(mockMetrics, atLeastOnce()).addTime(eq("FileExtractor.extractFile"), anyDouble());
+        verify(mockMetrics, atLeastOnce()).addCount(eq("FileExtractor.filesExtracted"), eq(1.0));
+    }
+
+    private List<Row> extractAll(FileExtractor<Row> extractor) throws Exception {
+        List<Row> rows = new ArrayList<>();
+
+        try {
+            extractor.open(null);
+            Optional<Row> row;
+
+            while ((row = extractor.next()).isPresent()) {
+                rows.add(row.get());
+            }
+        } finally {
+            extractor.close();
+        }
+
+        return rows;
+    }
+
+    private List<Row> expectedRows(String... fileNames) {
+        List<Row> rows = new ArrayList<>();
+
+        for (String fileName : fileNames) {
+            IntStream.range(0, ROWS_PER_FILE).forEach(i -> rows.add(new Row(fileName, i)));
+        }
+
+        return rows;
+    }
+
+    private void writeCsvFile(String fileName) throws Exception {
+        String contents = IntStream.range(0, ROWS_PER_FILE)
+                .mapToObj(i -> fileName + "," + i)
+                .collect(Collectors.joining("\n"));
+        Files.write(directory.resolve(fileName), contents.getBytes(StandardCharsets.UTF_8));
+    }
+}
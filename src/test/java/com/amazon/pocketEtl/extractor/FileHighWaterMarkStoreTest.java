@@ -0,0 +1,94 @@
+/*
+ *   Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package com.amazon.pocketEtl.extractor;
+
+import static org.hamcrest.Matchers.arrayWithSize;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.amazon.pocketEtl.exception.UnrecoverableStreamFailureException;
+
+public class FileHighWaterMarkStoreTest {
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private Path file;
+    private FileHighWaterMarkStore store;
+
+    @Before
+    public void createStore() {
+        file = temporaryFolder.getRoot().toPath().resolve("test.hwm");
+        store = FileHighWaterMarkStore.of(file);
+    }
+
+    @Test
+    public void loadReturnsEmptyIfFileDoesNotExist() {
+        assertThat(store.load(), equalTo(Optional.empty()));
+    }
+
+    @Test
+    public void loadReturnsEmptyIfFileIsBlank() throws Exception {
+        Files.write(file, " \n".getBytes(StandardCharsets.UTF_8));
+
+        assertThat(store.load(), equalTo(Optional.empty()));
+    }
+
+    @Test
+    public void loadReturnsSavedValue() {
+        store.save("12345");
+
+        assertThat(store.load(), equalTo(Optional.of("12345")));
+    }
+
+    @Test
+    public void saveReplacesPreviousValueAndLeavesNoTemporaryFiles() {
+        store.save("12345");
+        store.save("67890");
+
+        assertThat(FileHighWaterMarkStore.of(file).load(), equalTo(Optional.of("67890")));
+        assertThat(temporaryFolder.getRoot().list(), arrayWithSize(1));
+    }
+
+    @Test
+    public void loadTrimsWhitespace() throws Exception {
+        Files.write(file, "2017-01-02T03:04:05.000Z\n".getBytes(StandardCharsets.UTF_8));
+
+        assertThat(store.load(), equalTo(Optional.of("2017-01-02T03:04:05.000Z")));
+    }
+
+    @Test(expected = UnrecoverableStreamFailureException.class)
+    public void saveThrowsUnrecoverableStreamFailureExceptionIfDirectoryDoesNotExist() {
+        FileHighWaterMarkStore.of(temporaryFolder.getRoot().toPath().resolve("missing").resolve("test.hwm"))
+                .save("12345");
+    }
+
+    @Test(expected = UnrecoverableStreamFailureException.class)
+    public void loadThrowsUnrecoverableStreamFailureExceptionIfFileCannotBeRead() throws Exception {
+        Files.createDirectory(file);
+
+        store.load();
+    }
+}
@@ -15,15 +15,20 @@
 
 package com.amazon.pocketEtl.extractor;
 
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.deser.std.StdScalarDeserializer;
+import com.fasterxml.jackson.databind.module.SimpleModule;
 import com.google.common.collect.ImmutableList;
 import org.joda.time.DateTime;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.junit.MockitoJUnitRunner;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.time.Instant;
 import java.util.Optional;
-import java.util.function.Function;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.is;
@@ -99,7 +104,18 @@ public class JSONStringMapperTest {
             ImmutableList.of("listItemOne", "listItemTwo", "listItemThree"),
             Optional.of("sampleOptionalString"));
 
-    private Function<String, TestDTO> mapper = JSONStringMapper.of(TestDTO.class);
+    private JSONStringMapper<TestDTO> mapper = JSONStringMapper.of(TestDTO.class);
+
+    private static class UpperCaseStringDeserializer extends StdScalarDeserializer<String> {
+        UpperCaseStringDeserializer() {
+            super(String.class);
+        }
+
+        @Override
+        public String deserialize(JsonParser parser, DeserializationContext context) throws IOException {
+            return parser.getValueAsString().toUpperCase();
+        }
+    }
 
     @Test
     public void mapReturnsMappedDTOGivenAJsonStringAndDtoClass() {
@@ -162,4 +178,52 @@ public class JSONStringMapperTest {
 
         assertThat(result.getOptionalString(), is(nullValue()));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void fromBytesReturnsMappedDTOGivenUtf8JsonBytes() {
+        TestDTO result = mapper.fromBytes(SAMPLE_VALID_JSON.getBytes(StandardCharsets.UTF_8));
+
+        assertThat(result, is(SAMPLE_TEST_DTO));
+    }
+
+    @Test
+    public void fromBytesReturnsNullWhenJsonBytesAreNull() {
+        TestDTO result = mapper.fromBytes(null);
+
+        assertThat(result, nullValue());
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void fromBytesThrowsRunTimeExceptionIfJsonIsNotValid() {
+        mapper.fromBytes(SAMPLE_INVALID_JSON.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void fromCharsReturnsMappedDTOGivenJsonChars() {
+        TestDTO result = mapper.fromChars(SAMPLE_VALID_JSON.toCharArray());
+
+        assertThat(result, is(SAMPLE_TEST_DTO));
+    }
+
+    @Test
+    public void fromCharsReturnsNullWhenJsonCharsAreNull() {
+        TestDTO result = mapper.fromChars(null);
+
+        assertThat(result, nullValue());
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void fromCharsThrowsRunTimeExceptionIfJsonHasFieldNotPresentInDto() {
+        mapper.fromChars(SAMPLE_JSON_WITH_A_FIELD_MISSING_FROM_DTO.toCharArray());
+    }
+
+    @Test
+    public void withModuleRegistersModuleOnlyWithTheReturnedMapper() {
+        JSONStringMapper<TestDTO> upperCaseMapper = mapper.withModule(
+                new SimpleModule().addDeserializer(String.class, new UpperCaseStringDeserializer()));
+
+        assertThat(upperCaseMapper.apply(SAMPLE_VALID_JSON).getAString(), is("SAMPLESTRING"));
+        assertThat(mapper.apply(SAMPLE_VALID_JSON).getAString(), is("sampleString"));
+        assertThat(JSONStringMapper.of(TestDTO.class).apply(SAMPLE_VALID_JSON).getAString(), is("sampleString"));
+    }
+}
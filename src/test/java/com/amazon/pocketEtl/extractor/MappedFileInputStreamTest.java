@@ -0,0 +1,116 @@
+/*
+ *   Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package com.amazon.pocketEtl.extractor;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+public class MappedFileInputStreamTest {
+    private static final int FILE_SIZE = 1000;
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private byte[] fileContents;
+    private Path file;
+
+    @Before
+    public void createFile() throws Exception {
+        fileContents = new byte[FILE_SIZE];
+
+        for (int i = 0; i < FILE_SIZE; i++) {
+            fileContents[i] = (byte) i;
+        }
+
+        file = temporaryFolder.newFile().toPath();
+        Files.write(file, fileContents);
+    }
+
+    @Test
+    public void readsEntireFileWithWindowLargerThanFile() throws Exception {
+        try (InputStream inputStream = new MappedFileInputStream(file, FILE_SIZE * 2)) {
+            assertThat(readFully(inputStream, 64), equalTo(fileContents));
+        }
+    }
+
+    @Test
+    public void readsEntireFileAcrossMultipleWindows() throws Exception {
+        try (InputStream inputStream = new MappedFileInputStream(file, 37)) {
+            assertThat(readFully(inputStream, 100), equalTo(fileContents));
+        }
+    }
+
+    @Test
+    public void singleByteReadsReturnUnsignedValuesAcrossWindows() throws Exception {
+        try (InputStream inputStream = new MappedFileInputStream(file, 10)) {
+            for (int i = 0; i < FILE_SIZE; i++) {
+                assertThat(inputStream.read(), equalTo(fileContents[i] & 0xFF));
+            }
+
+            assertThat(inputStream.read(), equalTo(-1));
+        }
+    }
+
+    @Test
+    public void skipMovesPositionAcrossWindows() throws Exception {
+        try (InputStream inputStream = new MappedFileInputStream(file, 10)) {
+            inputStream.read();
+            assertThat(inputStream.skip(5), equalTo(5L));
+            assertThat(inputStream.read(), equalTo(6));
+            assertThat(inputStream.skip(500), equalTo(500L));
+            assertThat(inputStream.read(), equalTo(fileContents[507] & 0xFF));
+            assertThat(inputStream.available(), equalTo(FILE_SIZE - 508));
+            assertThat(inputStream.skip(10000), equalTo((long) FILE_SIZE - 508));
+            assertThat(inputStream.read(), equalTo(-1));
+        }
+    }
+
+    @Test
+    public void emptyFileReturnsEndOfStream() throws Exception {
+        Path emptyFile = temporaryFolder.newFile().toPath();
+
+        try (InputStream inputStream = new MappedFileInputStream(emptyFile, 10)) {
+            assertThat(inputStream.read(new byte[10], 0, 10), equalTo(-1));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void constructorThrowsIllegalArgumentExceptionForWindowLargerThanMaximumMappingSize() throws Exception {
+        new MappedFileInputStream(file, Integer.MAX_VALUE + 1L);
+    }
+
+    private byte[] readFully(InputStream inputStream, int chunkSize) throws Exception {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        byte[] chunk = new byte[chunkSize];
+        int bytesRead;
+
+        while ((bytesRead = inputStream.read(chunk, 0, chunkSize)) != -1) {
+            outputStream.write(chunk, 0, bytesRead);
+        }
+
+        return outputStream.toByteArray();
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ *   Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package com.amazon.pocketEtl.extractor;
+
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableList;
+import org.joda.time.DateTime;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Iterator;
+import java.util.Optional;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class NdJsonInputStreamMapperTest {
+    private static final String SAMPLE_LINE_ONE =
+            "{\"aInt\": 10, \"aString\": \"one\", \"aDouble\": 4.125, \"aBoolean\": true, " +
+            "\"aDateTime\": \"2017-08-14T12:00:00Z\", \"java8DateTime\": \"1970-01-01T00:00:00Z\", " +
+            "\"aList\": [\"a\", \"b\"], \"optionalString\": \"optional\"}";
+    private static final String SAMPLE_LINE_TWO = "{\"aInt\": 20, \"aString\": \"two\"}";
+    private static final String MALFORMED_LINE = "{\"aInt\": 30, \"aString\": ";
+    private static final String UNMAPPABLE_LINE = "{\"aInt\": \"notANumber\"}";
+
+    private static final TestDTO SAMPLE_DTO_ONE = new TestDTO(10, "one", 4.125, true,
+            DateTime.parse("2017-08-14T12:00:00Z"), Instant.ofEpochMilli(0), ImmutableList.of("a", "b"),
+            Optional.of("optional"));
+
+    private static final TestDTO SAMPLE_DTO_TWO = dtoOf(20, "two");
+
+    private final NdJsonInputStreamMapper<TestDTO> mapper = NdJsonInputStreamMapper.of(TestDTO.class);
+    private final NdJsonInputStreamMapper<TestDTO> tolerantMapper = mapper.withErrorTolerance(true);
+
+    @Test
+    public void repeatedCallsToNextReturnsObjectsPopulatedWithDataFromEachLine() {
+        Iterator<TestDTO> iterator = mapper.apply(createInputStreamFromString(SAMPLE_LINE_ONE + "\n" + SAMPLE_LINE_TWO));
+
+        assertThat(iterator.next(), is(equalTo(SAMPLE_DTO_ONE)));
+        assertThat(iterator.next(), is(equalTo(SAMPLE_DTO_TWO)));
+        assertThat(iterator.hasNext(), equalTo(false));
+    }
+
+    @Test
+    public void supportsCRLFAndTrailingNewline() {
+        Iterator<TestDTO> iterator = mapper.apply(createInputStreamFromString(SAMPLE_LINE_ONE + "\r\n" + SAMPLE_LINE_TWO + "\r\n"));
+
+        assertThat(iterator.next(), is(equalTo(SAMPLE_DTO_ONE)));
+        assertThat(iterator.next(), is(equalTo(SAMPLE_DTO_TWO)));
+        assertThat(iterator.hasNext(), equalTo(false));
+    }
+
+    @Test
+    public void hasNextReturnsFalseIfInputStreamIsEmpty() {
+        assertThat(mapper.apply(createInputStreamFromString("")).hasNext(), equalTo(false));
+        assertThat(tolerantMapper.apply(createInputStreamFromString("")).hasNext(), equalTo(false));
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void nextThrowsRuntimeExceptionOnMalformedLine() {
+        Iterator<TestDTO> iterator = mapper.apply(createInputStreamFromString(MALFORMED_LINE + "\n" + SAMPLE_LINE_TWO));
+
+        iterator.next();
+    }
+
+    @Test
+    public void errorTolerantModeSkipsAndCountsMalformedLines() {
+        Iterator<TestDTO> iterator = tolerantMapper.apply(createInputStreamFromString(
+                MALFORMED_LINE + "\n" + SAMPLE_LINE_ONE + "\n" + UNMAPPABLE_LINE + "\n" + SAMPLE_LINE_TWO + "\n" + MALFORMED_LINE));
+
+        assertThat(iterator.next(), is(equalTo(SAMPLE_DTO_ONE)));
+        assertThat(iterator.next(), is(equalTo(SAMPLE_DTO_TWO)));
+        assertThat(iterator.hasNext(), equalTo(false));
+        assertThat(tolerantMapper.getMalformedLineCount(), equalTo(3L));
+    }
+
+    @Test
+    public void errorTolerantModeCountsLinesWithTrailingContentAsMalformed() {
+        Iterator<TestDTO> iterator = tolerantMapper.apply(createInputStreamFromString(
+                SAMPLE_LINE_TWO + " garbage\n" + SAMPLE_LINE_TWO + SAMPLE_LINE_TWO + "\n" + SAMPLE_LINE_ONE + "  \r\n"));
+
+        assertThat(iterator.next(), is(equalTo(SAMPLE_DTO_ONE)));
+        assertThat(iterator.hasNext(), equalTo(false));
+        assertThat(tolerantMapper.getMalformedLineCount(), equalTo(2L));
+    }
+
+    @Test
+    public void errorTolerantModeIgnoresBlankLines() {
+        Iterator<TestDTO> iterator = tolerantMapper.apply(createInputStreamFromString(
+                "\n" + SAMPLE_LINE_ONE + "\r\n  \r\n\n" + SAMPLE_LINE_TWO + "\n\n"));
+
+        assertThat(iterator.next(), is(equalTo(SAMPLE_DTO_ONE)));
+        assertThat(iterator.next(), is(equalTo(SAMPLE_DTO_TWO)));
+        assertThat(iterator.hasNext(), equalTo(false));
+        assertThat(tolerantMapper.getMalformedLineCount(), equalTo(0L));
+    }
+
+    @Test
+    public void errorTolerantModeHandlesLinesLongerThanTheReadBuffer() {
+        String longString = Strings.repeat("x", 200 * 1024);
+        Iterator<TestDTO> iterator = tolerantMapper.apply(createInputStreamFromString(
+                SAMPLE_LINE_TWO + "\n{\"aInt\": 1, \"aString\": \"" + longString + "\"}\n" + SAMPLE_LINE_ONE));
+
+        assertThat(iterator.next(), is(equalTo(SAMPLE_DTO_TWO)));
+        assertThat(iterator.next(), is(equalTo(dtoOf(1, longString))));
+        assertThat(iterator.next(), is(equalTo(SAMPLE_DTO_ONE)));
+        assertThat(iterator.hasNext(), equalTo(false));
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void errorTolerantModeThrowsRuntimeExceptionIfInputStreamThrowsIOException() throws Exception {
+        InputStream mockInputStream = mock(InputStream.class);
+        when(mockInputStream.read(any())).thenThrow(new IOException("Test Exception"));
+
+        tolerantMapper.apply(mockInputStream).hasNext();
+    }
+
+    private static TestDTO dtoOf(int aInt, String aString) {
+        TestDTO testDTO = new TestDTO();
+        testDTO.setAInt(aInt);
+        testDTO.setAString(aString);
+        return testDTO;
+    }
+
+    private InputStream createInputStreamFromString(String inputString) {
+        return new ByteArrayInputStream(inputString.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,194 @@
+/*
+ *   Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package com.amazon.pocketEtl.extractor;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Optional;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import com.amazon.pocketEtl.EtlTestBase;
+import com.amazon.pocketEtl.Extractor;
+import com.amazon.pocketEtl.exception.UnrecoverableStreamFailureException;
+
+@RunWith(MockitoJUnitRunner.class)
+public class PrefetchingExtractorTest extends EtlTestBase {
+    @Mock
+    private Extractor<String> mockExtractor;
+
+    private PrefetchingExtractor<String> prefetchingExtractor;
+
+    @Before
+    public void constructExtractor() {
+        prefetchingExtractor = PrefetchingExtractor.of(mockExtractor).withBufferSize(2);
+    }
+
+    @Test
+    public void nextReturnsObjectsInTheOrderTheyWereExtracted() throws Exception {
+        when(mockExtractor.next()).thenReturn(Optional.of("one"), Optional.of("two"), Optional.of("three"),
+                Optional.empty());
+
+        prefetchingExtractor.open(mockMetrics);
+
+        assertThat(prefetchingExtractor.next(), equalTo(Optional.of("one")));
+        assertThat(prefetchingExtractor.next(), equalTo(Optional.of("two")));
+        assertThat(prefetchingExtractor.next(), equalTo(Optional.of("three")));
+        assertThat(prefetchingExtractor.next(), equalTo(Optional.empty()));
+        assertThat(prefetchingExtractor.next(), equalTo(Optional.empty()));
+
+        prefetchingExtractor.close();
+        verify(mockExtractor, times(4)).next();
+    }
+
+    @Test
+    public void extractorReadsAheadOfNext() {
+        when(mockExtractor.next()).thenReturn(Optional.of("one"), Optional.of("two"), Optional.of("three"),
+                Optional.empty());
+
+        prefetchingExtractor.open(mockMetrics);
+
+        // Buffer holds two objects and a third is waiting to be added
+        verify(mockExtractor, timeout(5000).times(3)).next();
+    }
+
+    @Test
+    public void nonFatalExceptionsAreRethrownInOrderAndExtractionContinues() throws Exception {
+        RuntimeException exception = new RuntimeException("Test exception");
+        when(mockExtractor.next()).thenReturn(Optional.of("one")).thenThrow(exception)
+                .thenReturn(Optional.of("two"), Optional.empty());
+
+        prefetchingExtractor.open(mockMetrics);
+
+        assertThat(prefetchingExtractor.next(), equalTo(Optional.of("one")));
+
+        try {
+            prefetchingExtractor.next();
+            fail("Expected exception to be thrown");
+        } catch (RuntimeException e) {
+            assertThat(e, sameInstance(exception));
+        }
+
+        assertThat(prefetchingExtractor.next(), equalTo(Optional.of("two")));
+        assertThat(prefetchingExtractor.next(), equalTo(Optional.empty()));
+        prefetchingExtractor.close();
+    }
+
+    @Test
+    public void unrecoverableExceptionIsRethrownAndStopsExtraction() throws Exception {
+        UnrecoverableStreamFailureException exception = new UnrecoverableStreamFailureException("Test exception");
+        when(mockExtractor.next()).thenReturn(Optional.of("one")).thenThrow(exception);
+
+        prefetchingExtractor.open(mockMetrics);
+
+        assertThat(prefetchingExtractor.next(), equalTo(Optional.of("one")));
+
+        try {
+            prefetchingExtractor.next();
+            fail("Expected exception to be thrown");
+        } catch (UnrecoverableStreamFailureException e) {
+            assertThat(e, sameInstance(exception));
+        }
+
+        assertThat(prefetchingExtractor.next(), equalTo(Optional.empty()));
+        prefetchingExtractor.close();
+        verify(mockExtractor, times(2)).next();
+    }
+
+    @Test
+    public void errorThrownByWrappedExtractorIsRethrownAsUnrecoverable() throws Exception {
+        NoClassDefFoundError error = new NoClassDefFoundError("Test error");
+        when(mockExtractor.next()).thenReturn(Optional.of("one")).thenThrow(error);
+
+        prefetchingExtractor.open(mockMetrics);
+
+        assertThat(prefetchingExtractor.next(), equalTo(Optional.of("one")));
+
+        try {
+            prefetchingExtractor.next();
+            fail("Expected exception to be thrown");
+        } catch (UnrecoverableStreamFailureException e) {
+            assertThat(e.getCause(), sameInstance(error));
+        }
+
+        assertThat(prefetchingExtractor.next(), equalTo(Optional.empty()));
+        prefetchingExtractor.close();
+    }
+
+    @Test
+    public void openAndCloseArePassedToWrappedExtractor() throws Exception {
+        when(mockExtractor.next()).thenReturn(Optional.empty());
+
+        prefetchingExtractor.open(mockMetrics);
+        verify(mockExtractor, timeout(5000)).next();
+        prefetchingExtractor.close();
+
+        verify(mockExtractor).open(mockMetrics);
+        verify(mockExtractor).close();
+    }
+
+    @Test
+    public void closeStopsReadingAheadBeforeWrappedExtractorIsExhausted() throws Exception {
+        when(mockExtractor.next()).thenReturn(Optional.of("value"));
+
+        prefetchingExtractor.open(mockMetrics);
+        assertThat(prefetchingExtractor.next(), equalTo(Optional.of("value")));
+        prefetchingExtractor.close();
+
+        verify(mockExtractor).close();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void nextThrowsIllegalStateExceptionIfNotOpened() {
+        prefetchingExtractor.next();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void nextThrowsIllegalStateExceptionIfClosed() throws Exception {
+        when(mockExtractor.next()).thenReturn(Optional.empty());
+
+        prefetchingExtractor.open(mockMetrics);
+        verify(mockExtractor, timeout(5000)).next();
+        prefetchingExtractor.close();
+        prefetchingExtractor.next();
+    }
+
+    @Test
+    public void nextRecordsBufferOccupancy() throws Exception {
+        when(mockExtractor.next()).thenReturn(Optional.of("one"), Optional.empty());
+
+        prefetchingExtractor.open(mockMetrics);
+        prefetchingExtractor.next();
+        prefetchingExtractor.close();
+
+        verify(mockMetrics, atLeastOnce()).addCount(eq("PrefetchingExtractor.bufferOccupancy"), anyDouble());
+        verify(mockMetrics, atLeastOnce()).addTime(eq("PrefetchingExtractor.next"), anyDouble());
+    }
+}
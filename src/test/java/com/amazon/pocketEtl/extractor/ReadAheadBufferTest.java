@@ -0,0 +1,113 @@
+/*
+ *   Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package com.amazon.pocketEtl.extractor;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.amazon.pocketEtl.EtlTestBase;
+import com.amazon.pocketEtl.exception.UnrecoverableStreamFailureException;
+
+public class ReadAheadBufferTest extends EtlTestBase {
+    private static final String OCCUPANCY_METRIC = "Test.bufferOccupancy";
+
+    @Test
+    public void elementsAreTakenInTheOrderTheyWereOffered() throws Exception {
+        ReadAheadBuffer<String> buffer = new ReadAheadBuffer<>(3, null, OCCUPANCY_METRIC);
+        buffer.offer(ExtractedElement.of("one"));
+        buffer.offer(ExtractedElement.of("two"));
+        buffer.offer(ExtractedElement.endOfStream());
+
+        assertThat(buffer.take("test"), equalTo(Optional.of("one")));
+        assertThat(buffer.take("test"), equalTo(Optional.of("two")));
+        assertThat(buffer.take("test"), equalTo(Optional.empty()));
+        assertThat(buffer.take("test"), equalTo(Optional.empty()));
+    }
+
+    @Test
+    public void recoverableFailureIsThrownAndTakingContinues() throws Exception {
+        RuntimeException exception = new RuntimeException("Test exception");
+        ReadAheadBuffer<String> buffer = new ReadAheadBuffer<>(2, null, OCCUPANCY_METRIC);
+        buffer.offer(ExtractedElement.failure(exception));
+        buffer.offer(ExtractedElement.of("one"));
+
+        try {
+            buffer.take("test");
+            fail("Expected exception to be thrown");
+        } catch (RuntimeException e) {
+            assertThat(e, sameInstance(exception));
+        }
+
+        assertThat(buffer.take("test"), equalTo(Optional.of("one")));
+    }
+
+    @Test
+    public void unrecoverableFailureExhaustsTheBuffer() throws Exception {
+        ReadAheadBuffer<String> buffer = new ReadAheadBuffer<>(2, null, OCCUPANCY_METRIC);
+        buffer.offer(ExtractedElement.failure(new UnrecoverableStreamFailureException("Test exception")));
+        buffer.offer(ExtractedElement.of("one"));
+
+        try {
+            buffer.take("test");
+            fail("Expected exception to be thrown");
+        } catch (UnrecoverableStreamFailureException ignored) {
+            // expected
+        }
+
+        assertThat(buffer.take("test"), equalTo(Optional.empty()));
+    }
+
+    @Test
+    public void closeReleasesThreadWaitingToOffer() throws Exception {
+        ReadAheadBuffer<String> buffer = new ReadAheadBuffer<>(1, null, OCCUPANCY_METRIC);
+        buffer.offer(ExtractedElement.of("one"));
+
+        CompletableFuture<Void> blockedOffer = CompletableFuture.runAsync(
+                () -> buffer.offerQuietly(ExtractedElement.of("two")));
+        buffer.close();
+
+        blockedOffer.get(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void occupancyIsSampledRatherThanRecordedForEveryElement() throws Exception {
+        ReadAheadBuffer<Integer> buffer = new ReadAheadBuffer<>(200, mockMetrics, OCCUPANCY_METRIC);
+
+        for (int i = 0; i < 200; i++) {
+            buffer.offer(ExtractedElement.of(i));
+        }
+
+        for (int i = 0; i < 200; i++) {
+            buffer.take("test");
+        }
+
+        verify(mockMetrics, times(2)).addCount(eq(OCCUPANCY_METRIC), anyDouble());
+        verify(mockMetrics).addCount(OCCUPANCY_METRIC, 200);
+        verify(mockMetrics).addCount(OCCUPANCY_METRIC, 100);
+    }
+}
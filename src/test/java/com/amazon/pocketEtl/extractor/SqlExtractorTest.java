@@ -26,6 +26,7 @@ import org.joda.time.DateTime;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.InOrder;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
 import org.skife.jdbi.v2.exceptions.UnableToExecuteStatementException;
@@ -48,12 +49,15 @@ import static org.hamcrest.Matchers.sameInstance;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.fail;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
 import static org.mockito.ArgumentMatchers.anyDouble;
 import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.ArgumentMatchers.same;
+import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -481,4 +485,60 @@ public class SqlExtractorTest extends EtlTestBase {
         verify(mockConnection).prepareStatement(eq(EXPECTED_SQL_WITH_WITH));
         verify(mockPreparedStatement).setInt(eq(1), eq((Integer) SQL_PARAMETERS.get("one")));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void fetchSizeIsSetOnStatement() throws Exception {
+        SqlExtractor<BasicDTO> sqlExtractor = SqlExtractor.of(mockDatasource, EXTRACT_SQL, BasicDTO.class)
+                .withSqlParameters(SQL_PARAMETERS)
+                .withFetchSize(250);
+        sqlExtractor.open(mockMetrics);
+
+        verify(mockPreparedStatement).setFetchSize(250);
+        verify(mockConnection, never()).setAutoCommit(anyBoolean());
+    }
+
+    @Test
+    public void streamingCursorDisablesAutoCommitAndUsesDefaultFetchSize() throws Exception {
+        when(mockConnection.getAutoCommit()).thenReturn(true);
+        SqlExtractor<BasicDTO> sqlExtractor = SqlExtractor.of(mockDatasource, EXTRACT_SQL, BasicDTO.class)
+                .withSqlParameters(SQL_PARAMETERS)
+                .withStreamingCursor(true);
+        sqlExtractor.open(mockMetrics);
+
+        InOrder inOrder = inOrder(mockConnection, mockPreparedStatement);
+        inOrder.verify(mockConnection).setReadOnly(true);
+        inOrder.verify(mockConnection).setAutoCommit(false);
+        inOrder.verify(mockPreparedStatement).setFetchSize(1000);
+        inOrder.verify(mockPreparedStatement).setFetchDirection(ResultSet.FETCH_FORWARD);
+    }
+
+    @Test
+    public void streamingCursorUsesExplicitFetchSize() throws Exception {
+        SqlExtractor<BasicDTO> sqlExtractor = SqlExtractor.of(mockDatasource, EXTRACT_SQL, BasicDTO.class)
+                .withSqlParameters(SQL_PARAMETERS)
+                .withStreamingCursor(true)
+                .withFetchSize(50);
+        sqlExtractor.open(mockMetrics);
+
+        verify(mockPreparedStatement).setFetchSize(50);
+    }
+
+    @Test
+    public void closeCommitsAndRestoresConnectionInStreamingCursorMode() throws Exception {
+        when(mockConnection.getAutoCommit()).thenReturn(true);
+        SqlExtractor<BasicDTO> sqlExtractor = SqlExtractor.of(mockDatasource, EXTRACT_SQL, BasicDTO.class)
+                .withSqlParameters(SQL_PARAMETERS)
+                .withStreamingCursor(true);
+        sqlExtractor.open(mockMetrics);
+        when(mockConnection.getAutoCommit()).thenReturn(false);
+
+        sqlExtractor.close();
+
+        InOrder inOrder = inOrder(mockResultSet, mockConnection);
+        inOrder.verify(mockResultSet).close();
+        inOrder.verify(mockConnection).commit();
+        inOrder.verify(mockConnection).setAutoCommit(true);
+        inOrder.verify(mockConnection).setReadOnly(false);
+        inOrder.verify(mockConnection).close();
+    }
+}
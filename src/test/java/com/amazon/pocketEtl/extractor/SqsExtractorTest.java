@@ -21,6 +21,11 @@ import com.amazon.pocketEtl.exception.UnrecoverableStreamFailureException;
 import com.amazonaws.AmazonClientException;
 import com.amazonaws.AmazonServiceException;
 import com.amazonaws.services.sqs.AmazonSQS;
+import com.amazonaws.services.sqs.model.BatchResultErrorEntry;
+import com.amazonaws.services.sqs.model.DeleteMessageBatchRequest;
+import com.amazonaws.services.sqs.model.DeleteMessageBatchRequestEntry;
+import com.amazonaws.services.sqs.model.DeleteMessageBatchResult;
+import com.amazonaws.services.sqs.model.DeleteMessageBatchResultEntry;
 import com.amazonaws.services.sqs.model.Message;
 import com.amazonaws.services.sqs.model.ReceiveMessageRequest;
 import com.amazonaws.services.sqs.model.ReceiveMessageResult;
@@ -36,14 +41,25 @@ import org.mockito.Captor;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
-
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
 import static org.hamcrest.Matchers.equalTo;
 import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyDouble;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -75,6 +91,9 @@ public class SqsExtractorTest extends EtlTestBase {
     @Captor
     private ArgumentCaptor<ReceiveMessageRequest> receiveMessageRequestArgumentCaptor;
 
+    @Captor
+    private ArgumentCaptor<DeleteMessageBatchRequest> deleteMessageBatchRequestArgumentCaptor;
+
     private Message sampleMessageOne, sampleMessageTwo, sampleMessageThree, sampleMessageFour;
     private SqsExtractor<BasicDTO> sqsExtractor;
 
@@ -85,6 +104,14 @@ public class SqsExtractorTest extends EtlTestBase {
         private String testString;
     }
 
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class AcknowledgedDTO {
+        private String testString;
+        private String receiptHandle;
+    }
+
     @Before
     public void initializeMessages() {
         sampleMessageOne = new Message();
@@ -239,11 +266,178 @@ public class SqsExtractorTest extends EtlTestBase {
         when(mockReceiveMessageResult.getMessages())
                 .thenReturn(ImmutableList.of(sampleMessageOne, sampleMessageTwo, sampleMessageThree))
                 .thenReturn(ImmutableList.of());
+        when(mockAmazonSQS.deleteMessageBatch(any(DeleteMessageBatchRequest.class))).thenAnswer(invocation ->
+                successfulDeleteResult(invocation.getArgument(0)));
 
         sqsExtractor.next();
         sqsExtractor.next();
         sqsExtractor.close();
 
-        verify(mockAmazonSQS, times(2)).deleteMessage(anyString(), anyString());
+        verify(mockAmazonSQS).deleteMessageBatch(deleteMessageBatchRequestArgumentCaptor.capture());
+        assertThat(receiptHandlesOf(deleteMessageBatchRequestArgumentCaptor.getValue()),
+                contains(SAMPLE_RECEIPT_HANDLE, SAMPLE_RECEIPT_HANDLE_TWO));
+        verify(mockAmazonSQS, never()).deleteMessage(anyString(), anyString());
+    }
+
+    @Test
+    public void closeDeletesExtractedSqsMessagesInBatchesOfTen() throws Exception {
+        List<Message> messages = IntStream.range(0, 25)
+                .mapToObj(i -> new Message().withBody(SAMPLE_MESSAGE_BODY_ONE).withReceiptHandle("handle" + i))
+                .collect(Collectors.toList());
+        when(mockReceiveMessageResult.getMessages())
+                .thenReturn(messages)
+                .thenReturn(ImmutableList.of());
+        when(mockAmazonSQS.deleteMessageBatch(any(DeleteMessageBatchRequest.class))).thenAnswer(invocation ->
+                successfulDeleteResult(invocation.getArgument(0)));
+
+        while (sqsExtractor.next().isPresent()) {
+            // extract everything
+        }
+
+        sqsExtractor.close();
+
+        verify(mockAmazonSQS, times(3)).deleteMessageBatch(deleteMessageBatchRequestArgumentCaptor.capture());
+        List<Integer> batchSizes = deleteMessageBatchRequestArgumentCaptor.getAllValues().stream()
+                .map(request -> request.getEntries().size())
+                .sorted()
+                .collect(Collectors.toList());
+        assertThat(batchSizes, contains(5, 10, 10));
+    }
+
+    @Test
+    public void closeThrowsIfExtractedSqsMessagesCannotBeDeleted() throws Exception {
+        when(mockReceiveMessageResult.getMessages())
+                .thenReturn(ImmutableList.of(sampleMessageOne))
+                .thenReturn(ImmutableList.of());
+        when(mockAmazonSQS.deleteMessageBatch(any(DeleteMessageBatchRequest.class))).thenAnswer(invocation -> {
+            DeleteMessageBatchRequest request = invocation.getArgument(0);
+            return new DeleteMessageBatchResult().withFailed(new BatchResultErrorEntry()
+                    .withId(request.getEntries().get(0).getId()).withCode("ReceiptHandleIsInvalid")
+                    .withSenderFault(true));
+        });
+
+        sqsExtractor.next();
+
+        try {
+            sqsExtractor.close();
+            fail("UnrecoverableStreamFailureException should have been thrown");
+        } catch (UnrecoverableStreamFailureException ignored) {
+            // expected
+        }
+    }
+
+    @Test
+    public void acknowledgerReceivesReceiptHandlesInsteadOfDeletingOnClose() throws Exception {
+        SqsMessageAcknowledger acknowledger = SqsMessageAcknowledger.of(SAMPLE_QUEUE_URL).withClient(mockAmazonSQS);
+        SqsExtractor<AcknowledgedDTO> acknowledgedExtractor =
+                SqsExtractor.of(SAMPLE_QUEUE_URL, JSONStringMapper.of(AcknowledgedDTO.class))
+                        .withClient(mockAmazonSQS)
+                        .withAcknowledger(acknowledger, AcknowledgedDTO::setReceiptHandle)
+                        .get();
+        when(mockReceiveMessageResult.getMessages())
+                .thenReturn(ImmutableList.of(sampleMessageOne))
+                .thenReturn(ImmutableList.of());
+
+        acknowledgedExtractor.open(mockMetrics);
+        AcknowledgedDTO extractedObject = acknowledgedExtractor.next().orElseThrow(RuntimeException::new);
+        acknowledgedExtractor.close();
+        acknowledger.close();
+
+        assertThat(extractedObject, equalTo(new AcknowledgedDTO(SAMPLE_TEST_STRING_ONE, SAMPLE_RECEIPT_HANDLE)));
+        verify(mockAmazonSQS, never()).deleteMessageBatch(any(DeleteMessageBatchRequest.class));
+    }
+
+    @Test
+    public void continuousReceivingEmitsMessagesFromAllReceiversUntilStopped() throws Exception {
+        AtomicBoolean stopSignal = new AtomicBoolean(false);
+        List<Message> messagesToReceive = ImmutableList.of(sampleMessageOne, sampleMessageTwo, sampleMessageThree);
+        AtomicInteger receiveCount = new AtomicInteger(0);
+        when(mockReceiveMessageResult.getMessages()).thenAnswer(invocation -> {
+            int count = receiveCount.getAndIncrement();
+
+            if (count < messagesToReceive.size()) {
+                return ImmutableList.of(messagesToReceive.get(count));
+            }
+
+            stopSignal.set(true);
+            return ImmutableList.of();
+        });
+        SqsExtractor<BasicDTO> continuousExtractor = continuousExtractor(3, stopSignal::get);
+
+        List<String> extractedStrings = new ArrayList<>();
+        Optional<BasicDTO> extractedObject = continuousExtractor.next();
+
+        while (extractedObject.isPresent()) {
+            extractedStrings.add(extractedObject.get().getTestString());
+            extractedObject = continuousExtractor.next();
+        }
+
+        continuousExtractor.close();
+
+        assertThat(extractedStrings, containsInAnyOrder(SAMPLE_TEST_STRING_ONE, SAMPLE_TEST_STRING_TWO,
+                SAMPLE_TEST_STRING_THREE));
+        verify(mockAmazonSQS, never()).deleteMessageBatch(any(DeleteMessageBatchRequest.class));
+    }
+
+    @Test
+    public void continuousReceivingRequestsTheMaximumNumberOfMessages() throws Exception {
+        when(mockReceiveMessageResult.getMessages()).thenReturn(ImmutableList.of());
+        AtomicBoolean stopSignal = new AtomicBoolean(false);
+        SqsExtractor<BasicDTO> continuousExtractor = continuousExtractor(1, () -> !stopSignal.compareAndSet(false, true));
+
+        assertThat(continuousExtractor.next(), equalTo(Optional.empty()));
+        continuousExtractor.close();
+
+        verify(mockAmazonSQS).receiveMessage(receiveMessageRequestArgumentCaptor.capture());
+        assertThat(receiveMessageRequestArgumentCaptor.getValue().getMaxNumberOfMessages(), equalTo(10));
+    }
+
+    @Test(expected = UnrecoverableStreamFailureException.class)
+    public void continuousReceivingPropagatesReceiverFailure() throws Exception {
+        when(mockAmazonSQS.receiveMessage(any(ReceiveMessageRequest.class)))
+                .thenThrow(new AmazonClientException(SAMPLE_EXCEPTION));
+        SqsExtractor<BasicDTO> continuousExtractor = continuousExtractor(2, () -> false);
+
+        try {
+            continuousExtractor.next();
+        } finally {
+            continuousExtractor.close();
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void continuousReceivingWithoutAcknowledgerThrowsIllegalStateException() {
+        SqsExtractor.of(SAMPLE_QUEUE_URL, JSONStringMapper.of(BasicDTO.class))
+                .withClient(mockAmazonSQS)
+                .withContinuousReceiving(2, () -> false)
+                .get();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void continuousReceivingWithZeroReceiversThrowsIllegalArgumentException() {
+        SqsExtractor.of(SAMPLE_QUEUE_URL, JSONStringMapper.of(BasicDTO.class)).withContinuousReceiving(0, () -> false);
+    }
+
+    private SqsExtractor<BasicDTO> continuousExtractor(int numberOfReceivers, BooleanSupplier stopSignal) {
+        SqsMessageAcknowledger acknowledger = SqsMessageAcknowledger.of(SAMPLE_QUEUE_URL).withClient(mockAmazonSQS);
+        SqsExtractor<BasicDTO> continuousExtractor = SqsExtractor.of(SAMPLE_QUEUE_URL, JSONStringMapper.of(BasicDTO.class))
+                .withClient(mockAmazonSQS)
+                .withAcknowledger(acknowledger, (dto, receiptHandle) -> { })
+                .withContinuousReceiving(numberOfReceivers, stopSignal)
+                .get();
+        continuousExtractor.open(mockMetrics);
+        return continuousExtractor;
+    }
+
+    private static List<String> receiptHandlesOf(DeleteMessageBatchRequest request) {
+        return request.getEntries().stream()
+                .map(DeleteMessageBatchRequestEntry::getReceiptHandle)
+                .collect(Collectors.toList());
+    }
+
+    private static DeleteMessageBatchResult successfulDeleteResult(DeleteMessageBatchRequest request) {
+        return new DeleteMessageBatchResult().withSuccessful(request.getEntries().stream()
+                .map(entry -> new DeleteMessageBatchResultEntry().withId(entry.getId()))
+                .collect(Collectors.toList()));
     }
 }
@@ -0,0 +1,335 @@
+/*
+ *   Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package com.amazon.pocketEtl.extractor;
+
+import com.amazon.pocketEtl.Loader;
+import com.amazon.pocketEtl.exception.UnrecoverableStreamFailureException;
+import com.amazon.pocketEtl.loader.DynamoDbLoader;
+import com.amazon.pocketEtl.loader.SqsLoader;
+import com.amazonaws.services.sqs.AmazonSQS;
+import com.amazonaws.services.sqs.model.BatchResultErrorEntry;
+import com.amazonaws.services.sqs.model.ChangeMessageVisibilityBatchRequest;
+import com.amazonaws.services.sqs.model.ChangeMessageVisibilityBatchRequestEntry;
+import com.amazonaws.services.sqs.model.DeleteMessageBatchRequest;
+import com.amazonaws.services.sqs.model.DeleteMessageBatchRequestEntry;
+import com.amazonaws.services.sqs.model.DeleteMessageBatchResult;
+import com.amazonaws.services.sqs.model.DeleteMessageBatchResultEntry;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class SqsMessageAcknowledgerTest {
+    private static final String QUEUE_URL = "testQueueUrl";
+
+    @Mock
+    private AmazonSQS mockAmazonSQS;
+
+    @Mock
+    private Loader<String> mockLoader;
+
+    @Captor
+    private ArgumentCaptor<ChangeMessageVisibilityBatchRequest> changeVisibilityCaptor;
+
+    private final List<List<String>> deletedBatches = Collections.synchronizedList(new ArrayList<>());
+
+    private SqsMessageAcknowledger acknowledger;
+
+    @Before
+    public void constructAcknowledger() {
+        acknowledger = SqsMessageAcknowledger.of(QUEUE_URL).withClient(mockAmazonSQS);
+    }
+
+    private void deleteSucceeds() {
+        when(mockAmazonSQS.deleteMessageBatch(any(DeleteMessageBatchRequest.class))).thenAnswer(invocation -> {
+            DeleteMessageBatchRequest request = invocation.getArgument(0);
+            deletedBatches.add(receiptHandlesOf(request));
+            return successfulResult(request.getEntries());
+        });
+    }
+
+    private static List<String> receiptHandlesOf(DeleteMessageBatchRequest request) {
+        return request.getEntries().stream()
+                .map(DeleteMessageBatchRequestEntry::getReceiptHandle)
+                .collect(Collectors.toList());
+    }
+
+    private static DeleteMessageBatchResult successfulResult(List<DeleteMessageBatchRequestEntry> entries) {
+        return new DeleteMessageBatchResult().withSuccessful(entries.stream()
+                .map(entry -> new DeleteMessageBatchResultEntry().withId(entry.getId()))
+                .collect(Collectors.toList()));
+    }
+
+    @Test
+    public void acknowledgedMessagesAreDeletedInBatchesOfTen() throws Exception {
+        deleteSucceeds();
+        acknowledger.open(null);
+
+        for (int i = 0; i < 25; i++) {
+            acknowledger.acknowledge("handle" + i);
+        }
+
+        acknowledger.close();
+
+        List<Integer> batchSizes = deletedBatches.stream().map(List::size).sorted().collect(Collectors.toList());
+        assertThat(batchSizes, contains(5, 10, 10));
+    }
+
+    @Test
+    public void partialBatchIsDeletedWithoutWaitingForClose() throws Exception {
+        deleteSucceeds();
+        acknowledger.open(null);
+        acknowledger.acknowledge("handle");
+
+        verify(mockAmazonSQS, timeout(5000)).deleteMessageBatch(any(DeleteMessageBatchRequest.class));
+        assertThat(deletedBatches, contains(contains("handle")));
+        acknowledger.close();
+    }
+
+    @Test
+    public void onlyFailedDeletesAreRetried() throws Exception {
+        AtomicInteger attempts = new AtomicInteger(0);
+        when(mockAmazonSQS.deleteMessageBatch(any(DeleteMessageBatchRequest.class))).thenAnswer(invocation -> {
+            DeleteMessageBatchRequest request = invocation.getArgument(0);
+            deletedBatches.add(receiptHandlesOf(request));
+
+            if (attempts.getAndIncrement() > 0) {
+                return successfulResult(request.getEntries());
+            }
+
+            return successfulResult(request.getEntries().subList(0, 1))
+                    .withFailed(new BatchResultErrorEntry().withId(request.getEntries().get(1).getId())
+                            .withCode("InternalError").withSenderFault(false));
+        });
+
+        acknowledger.open(null);
+        acknowledger.acknowledge("one");
+        acknowledger.acknowledge("two");
+        acknowledger.close();
+
+        assertThat(deletedBatches.get(deletedBatches.size() - 1), contains("two"));
+        verify(mockAmazonSQS, times(2)).deleteMessageBatch(any(DeleteMessageBatchRequest.class));
+    }
+
+    @Test
+    public void acknowledgeAfterAcknowledgesLoadedRecords() throws Exception {
+        deleteSucceeds();
+        Loader<String> acknowledgingLoader = acknowledger.acknowledgeAfter(mockLoader, record -> "handle-" + record);
+
+        acknowledgingLoader.open(null);
+        acknowledgingLoader.load("one");
+        acknowledgingLoader.load("two");
+        acknowledgingLoader.close();
+
+        verify(mockLoader).load("one");
+        verify(mockLoader).close();
+        assertThat(deletedBatches, contains(contains("handle-one", "handle-two")));
+    }
+
+    @Test
+    public void recordsThatFailToLoadAreNotAcknowledged() throws Exception {
+        deleteSucceeds();
+        doThrow(new RuntimeException("test")).when(mockLoader).load("bad");
+        Loader<String> acknowledgingLoader = acknowledger.acknowledgeAfter(mockLoader, record -> "handle-" + record);
+
+        acknowledgingLoader.open(null);
+        acknowledgingLoader.load("good");
+
+        try {
+            acknowledgingLoader.load("bad");
+            fail("RuntimeException should have been thrown");
+        } catch (RuntimeException ignored) {
+            // expected
+        }
+
+        acknowledgingLoader.close();
+
+        assertThat(deletedBatches, contains(contains("handle-good")));
+    }
+
+    @Test
+    public void recordsThatFailToLoadStopHavingTheirVisibilityTimeoutExtended() throws Exception {
+        doThrow(new RuntimeException("test")).when(mockLoader).load("bad");
+        acknowledger = acknowledger.withVisibilityTimeoutExtension(2);
+        Loader<String> acknowledgingLoader = acknowledger.acknowledgeAfter(mockLoader, record -> "handle-" + record);
+
+        acknowledgingLoader.open(null);
+        acknowledger.track("handle-bad");
+        acknowledger.track("handle-waiting");
+
+        try {
+            acknowledgingLoader.load("bad");
+            fail("RuntimeException should have been thrown");
+        } catch (RuntimeException ignored) {
+            // expected
+        }
+
+        verify(mockAmazonSQS, timeout(5000)).changeMessageVisibilityBatch(changeVisibilityCaptor.capture());
+        acknowledgingLoader.close();
+
+        assertThat(changeVisibilityCaptor.getValue().getEntries().stream()
+                .map(ChangeMessageVisibilityBatchRequestEntry::getReceiptHandle)
+                .collect(Collectors.toList()), contains("handle-waiting"));
+    }
+
+    @Test
+    public void acknowledgeAfterCloseAcknowledgesLoadedRecordsOnlyOnceTheLoaderIsClosed() throws Exception {
+        deleteSucceeds();
+        Loader<String> acknowledgingLoader = acknowledger.acknowledgeAfterClose(mockLoader,
+                record -> "handle-" + record);
+
+        acknowledgingLoader.open(null);
+        acknowledgingLoader.load("one");
+        acknowledgingLoader.load("two");
+
+        // Longer than the time a partial batch of deletes lingers for
+        verify(mockAmazonSQS, after(1500).never()).deleteMessageBatch(any(DeleteMessageBatchRequest.class));
+        acknowledgingLoader.close();
+
+        verify(mockLoader).close();
+        assertThat(deletedBatches, contains(contains("handle-one", "handle-two")));
+    }
+
+    @Test
+    public void acknowledgeAfterCloseAcknowledgesNothingIfTheLoaderFailsToClose() throws Exception {
+        doThrow(new RuntimeException("test")).when(mockLoader).close();
+        Loader<String> acknowledgingLoader = acknowledger.acknowledgeAfterClose(mockLoader,
+                record -> "handle-" + record);
+
+        acknowledgingLoader.open(null);
+        acknowledgingLoader.load("one");
+
+        try {
+            acknowledgingLoader.close();
+            fail("RuntimeException should have been thrown");
+        } catch (RuntimeException ignored) {
+            // expected
+        }
+
+        verify(mockAmazonSQS, never()).deleteMessageBatch(any(DeleteMessageBatchRequest.class));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void acknowledgeAfterRejectsLoaderThatBuffersRecords() {
+        acknowledger.acknowledgeAfter(SqsLoader.of("otherQueueUrl", String.class), record -> "handle-" + record);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void acknowledgeAfterRejectsDynamoDbLoaderInBatchMode() {
+        acknowledger.acknowledgeAfter(DynamoDbLoader.<String>of("table", "key", record -> record).withBatchSize(25),
+                record -> "handle-" + record);
+    }
+
+    @Test
+    public void acknowledgeAfterAcceptsDynamoDbLoaderWritingEachRecord() {
+        acknowledger.acknowledgeAfter(DynamoDbLoader.<String>of("table", "key", record -> record),
+                record -> "handle-" + record);
+    }
+
+    @Test
+    public void visibilityTimeoutOfTrackedMessagesIsExtended() throws Exception {
+        acknowledger = acknowledger.withVisibilityTimeoutExtension(2);
+        acknowledger.open(null);
+        acknowledger.track("one");
+        acknowledger.track("two");
+        acknowledger.track("failed");
+        acknowledger.untrack("failed");
+
+        verify(mockAmazonSQS, timeout(5000)).changeMessageVisibilityBatch(changeVisibilityCaptor.capture());
+        acknowledger.close();
+
+        ChangeMessageVisibilityBatchRequest request = changeVisibilityCaptor.getValue();
+        assertThat(request.getEntries().stream()
+                .map(ChangeMessageVisibilityBatchRequestEntry::getReceiptHandle)
+                .collect(Collectors.toList()), containsInAnyOrder("one", "two"));
+        assertThat(request.getEntries().get(0).getVisibilityTimeout(), equalTo(2));
+    }
+
+    @Test
+    public void visibilityTimeoutIsNotExtendedUnlessRequested() throws Exception {
+        acknowledger.open(null);
+        acknowledger.track("one");
+        Thread.sleep(1500);
+        acknowledger.close();
+
+        verify(mockAmazonSQS, never()).changeMessageVisibilityBatch(any(ChangeMessageVisibilityBatchRequest.class));
+    }
+
+    @Test
+    public void closeThrowsIfAcknowledgedMessagesCouldNotBeDeleted() throws Exception {
+        when(mockAmazonSQS.deleteMessageBatch(any(DeleteMessageBatchRequest.class))).thenAnswer(invocation -> {
+            DeleteMessageBatchRequest request = invocation.getArgument(0);
+            return new DeleteMessageBatchResult().withFailed(new BatchResultErrorEntry()
+                    .withId(request.getEntries().get(0).getId()).withCode("ReceiptHandleIsInvalid")
+                    .withSenderFault(true));
+        });
+        acknowledger.open(null);
+        acknowledger.acknowledge("handle");
+
+        try {
+            acknowledger.close();
+            fail("UnrecoverableStreamFailureException should have been thrown");
+        } catch (UnrecoverableStreamFailureException ignored) {
+            // expected
+        }
+
+        verify(mockAmazonSQS, times(1)).deleteMessageBatch(any(DeleteMessageBatchRequest.class));
+    }
+
+    @Test
+    public void closeWithoutOpenDoesNothing() throws Exception {
+        acknowledger.close();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void acknowledgeBeforeOpenThrowsIllegalStateException() {
+        acknowledger.acknowledge("handle");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void visibilityTimeoutTooShortThrowsIllegalArgumentException() {
+        acknowledger.withVisibilityTimeoutExtension(1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void zeroBatchesInFlightThrowsIllegalArgumentException() {
+        acknowledger.withMaxBatchesInFlight(0);
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ *   Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package com.amazon.pocketEtl.integration;
+
+import com.amazonaws.services.dynamodbv2.document.Item;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+public class DynamoDbItemMapperTest {
+    private static final DateTime TEST_DATE_TIME = new DateTime(2017, 1, 2, 3, 4, 5, DateTimeZone.UTC);
+
+    enum TestEnum {
+        ONE, TWO
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    static class NestedDTO {
+        private String name;
+        private int count;
+    }
+
+    @Data
+    static class TestDTO {
+        private String stringValue;
+        private int intValue;
+        private Long longValue;
+        private double doubleValue;
+        private BigDecimal bigDecimalValue;
+        private BigInteger bigIntegerValue;
+        private boolean booleanValue;
+        private Boolean boxedBooleanValue;
+        private TestEnum enumValue;
+        private byte[] bytesValue;
+        private DateTime dateTimeValue;
+        private List<Integer> listValue;
+        private Set<String> setValue;
+        private Map<String, String> mapValue;
+        private NestedDTO nestedValue;
+    }
+
+    @Data
+    @AllArgsConstructor
+    static class NoDefaultConstructorDTO {
+        private String stringValue;
+    }
+
+    @Test
+    public void propertiesAreStoredAsTypedAttributes() {
+        Item item = DynamoDbItemMapper.of(TestDTO.class).toItem(populatedDTO());
+
+        assertThat(item.getString("stringValue"), equalTo("test"));
+        assertThat(item.getNumber("intValue"), equalTo(BigDecimal.valueOf(14)));
+        assertThat(item.getNumber("longValue"), equalTo(BigDecimal.valueOf(15)));
+        assertThat(item.getBoolean("booleanValue"), is(true));
+        assertThat(item.getString("enumValue"), equalTo("TWO"));
+        assertThat(item.getBinary("bytesValue"), equalTo(new byte[] { 1, 2, 3 }));
+        assertThat(item.getString("dateTimeValue"), equalTo("2017-01-02T03:04:05.000Z"));
+        assertThat(item.getMap("nestedValue").get("name"), equalTo("nested"));
+    }
+
+    @Test
+    public void nullPropertiesAreNotStored() {
+        Item item = DynamoDbItemMapper.of(TestDTO.class).toItem(new TestDTO());
+
+        assertThat(item.isPresent("stringValue"), is(false));
+        assertThat(item.isPresent("longValue"), is(false));
+        assertThat(item.isPresent("nestedValue"), is(false));
+        assertThat(item.isPresent("intValue"), is(true));
+    }
+
+    @Test
+    public void objectsRoundTripThroughItem() {
+        DynamoDbItemMapper<TestDTO> mapper = DynamoDbItemMapper.of(TestDTO.class);
+        TestDTO testDTO = populatedDTO();
+
+        assertThat(mapper.fromItem(mapper.toItem(testDTO)), equalTo(testDTO));
+    }
+
+    @Test
+    public void missingAttributesLeavePropertiesUntouched() {
+        TestDTO testDTO = DynamoDbItemMapper.of(TestDTO.class).fromItem(new Item().withString("stringValue", "test"));
+
+        TestDTO expectedDTO = new TestDTO();
+        expectedDTO.setStringValue("test");
+        assertThat(testDTO, equalTo(expectedDTO));
+    }
+
+    @Test
+    public void mapperIsSharedForTheSameClass() {
+        assertThat(DynamoDbItemMapper.of(TestDTO.class), sameInstance(DynamoDbItemMapper.of(TestDTO.class)));
+    }
+
+    @Test
+    public void classWithoutDefaultConstructorCanBeStored() {
+        Item item = DynamoDbItemMapper.of(NoDefaultConstructorDTO.class).toItem(new NoDefaultConstructorDTO("test"));
+
+        assertThat(item.getString("stringValue"), equalTo("test"));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void classWithoutDefaultConstructorCannotBeRead() {
+        DynamoDbItemMapper.of(NoDefaultConstructorDTO.class).fromItem(new Item().withString("stringValue", "test"));
+    }
+
+    @Test(expected = ArithmeticException.class)
+    public void numberThatDoesNotFitPropertyThrowsException() {
+        DynamoDbItemMapper.of(TestDTO.class).fromItem(new Item().withNumber("intValue", 1.5));
+    }
+
+    private static TestDTO populatedDTO() {
+        TestDTO testDTO = new TestDTO();
+        testDTO.setStringValue("test");
+        testDTO.setIntValue(14);
+        testDTO.setLongValue(15L);
+        testDTO.setDoubleValue(1.5);
+        testDTO.setBigDecimalValue(new BigDecimal("1.25"));
+        testDTO.setBigIntegerValue(BigInteger.valueOf(16));
+        testDTO.setBooleanValue(true);
+        testDTO.setBoxedBooleanValue(false);
+        testDTO.setEnumValue(TestEnum.TWO);
+        testDTO.setBytesValue(new byte[] { 1, 2, 3 });
+        testDTO.setDateTimeValue(TEST_DATE_TIME);
+        testDTO.setListValue(ImmutableList.of(1, 2, 3));
+        testDTO.setSetValue(ImmutableSet.of("a", "b"));
+        testDTO.setMapValue(ImmutableMap.of("key", "value"));
+        testDTO.setNestedValue(new NestedDTO("nested", 3));
+        return testDTO;
+    }
+}
@@ -23,6 +23,7 @@ import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InOrder;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
@@ -32,12 +33,20 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.util.List;
+import java.util.stream.Collectors;
 
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.startsWith;
 import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.anyBoolean;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.atLeastOnce;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -53,13 +62,13 @@ public class RedshiftJdbcClientTest extends EtlTestBase {
     private static final long DATE_TIME_FIXED_MILLIS = 1234L;
 
     private static final String COPY_AND_MERGE_SQL_1 =
-            "drop table if exists stage_1234";
+            "drop table if exists stage_1234_abc";
 
     private static final String COPY_AND_MERGE_SQL_2 =
-            "create temp table stage_1234 (like dest_table including defaults)";
+            "create temp table stage_1234_abc (like dest_table including defaults)";
 
     private static final String COPY_AND_MERGE_SQL_3 =
-            "copy stage_1234(filecol1,filecol2,filecol3) " +
+            "copy stage_1234_abc(filecol1,filecol2,filecol3) " +
                     "from 's3://s3bucket/a/prefix/' " +
                     "iam_role 'iamRole' " +
                     "region 's3Region' " +
@@ -67,16 +76,16 @@ public class RedshiftJdbcClientTest extends EtlTestBase {
 
     private static final String COPY_AND_MERGE_SQL_4 =
             "delete from dest_table " +
-                    "using stage_1234 " +
-                    "where dest_table.keycol1 = stage_1234.keycol1 " +
-                    "and dest_table.keycol2 = stage_1234.keycol2 " +
-                    "and dest_table.keycol3 = stage_1234.keycol3";
+                    "using stage_1234_abc " +
+                    "where dest_table.keycol1 = stage_1234_abc.keycol1 " +
+                    "and dest_table.keycol2 = stage_1234_abc.keycol2 " +
+                    "and dest_table.keycol3 = stage_1234_abc.keycol3";
 
     private static final String COPY_AND_MERGE_SQL_5 =
-            "insert into dest_table select * from stage_1234";
+            "insert into dest_table select * from stage_1234_abc";
 
     private static final String COPY_AND_MERGE_SQL_6 =
-            "drop table stage_1234";
+            "drop table stage_1234_abc";
 
     private static final String DELETE_AND_COPY_SQL_1 =
             "delete from dest_table";
@@ -88,6 +97,80 @@ public class RedshiftJdbcClientTest extends EtlTestBase {
                     "region 's3Region' " +
                     "removequotes";
 
+    private static final String COMPRESSED_COPY_SQL =
+            "copy stage_1234_abc(filecol1,filecol2,filecol3) " +
+                    "from 's3://s3bucket/a/prefix/' " +
+                    "iam_role 'iamRole' " +
+                    "region 's3Region' " +
+                    "removequotes GZIP";
+
+    private static final String COMPRESSED_DELETE_AND_COPY_SQL =
+            "copy dest_table(filecol1,filecol2,filecol3) " +
+                    "from 's3://s3bucket/a/prefix/' " +
+                    "iam_role 'iamRole' " +
+                    "region 's3Region' " +
+                    "removequotes GZIP";
+
+    private static final String MANIFEST_COPY_SQL =
+            "copy stage_1234_abc(filecol1,filecol2,filecol3) " +
+                    "from 's3://s3bucket/a/prefix/copy.manifest' " +
+                    "iam_role 'iamRole' " +
+                    "region 's3Region' " +
+                    "removequotes manifest GZIP";
+
+    private static final String MANIFEST_DELETE_AND_COPY_SQL =
+            "copy dest_table(filecol1,filecol2,filecol3) " +
+                    "from 's3://s3bucket/a/prefix/copy.manifest' " +
+                    "iam_role 'iamRole' " +
+                    "region 's3Region' " +
+                    "removequotes manifest";
+
+    private static final String APPEND_SQL_1 =
+            "create table stage_1234_abc (like dest_table including defaults)";
+
+    private static final String APPEND_SQL_2 =
+            "alter table dest_table append from stage_1234_abc";
+
+    private static final String MERGE_COMMAND_SQL =
+            "merge into dest_table " +
+                    "using stage_1234_abc " +
+                    "on dest_table.keycol1 = stage_1234_abc.keycol1 " +
+                    "and dest_table.keycol2 = stage_1234_abc.keycol2 " +
+                    "and dest_table.keycol3 = stage_1234_abc.keycol3 " +
+                    "remove duplicates";
+
+    private static final String DEDUPLICATE_SQL_1 =
+            "create temp table stage_1234_abc_deduplicated (like dest_table including defaults)";
+
+    private static final String DEDUPLICATE_SQL_2 =
+            "insert into stage_1234_abc_deduplicated (filecol1,filecol2,filecol3) " +
+                    "select filecol1,filecol2,filecol3 from (" +
+                    "select filecol1,filecol2,filecol3, " +
+                    "row_number() over (partition by keycol1,keycol2,keycol3 order by filecol3 desc) as pocket_etl_row_number " +
+                    "from stage_1234_abc) as ranked " +
+                    "where pocket_etl_row_number = 1";
+
+    private static final String DEDUPLICATE_WITHOUT_LATEST_ROW_COLUMN_SQL =
+            "insert into stage_1234_abc_deduplicated (filecol1,filecol2,filecol3) " +
+                    "select filecol1,filecol2,filecol3 from (" +
+                    "select filecol1,filecol2,filecol3, " +
+                    "row_number() over (partition by keycol1,keycol2,keycol3) as pocket_etl_row_number " +
+                    "from stage_1234_abc) as ranked " +
+                    "where pocket_etl_row_number = 1";
+
+    private static final String DEDUPLICATE_SQL_3 =
+            "delete from dest_table " +
+                    "using stage_1234_abc_deduplicated " +
+                    "where dest_table.keycol1 = stage_1234_abc_deduplicated.keycol1 " +
+                    "and dest_table.keycol2 = stage_1234_abc_deduplicated.keycol2 " +
+                    "and dest_table.keycol3 = stage_1234_abc_deduplicated.keycol3";
+
+    private static final String DEDUPLICATE_SQL_4 =
+            "insert into dest_table select * from stage_1234_abc_deduplicated";
+
+    private static final String DEDUPLICATE_SQL_5 =
+            "drop table stage_1234_abc_deduplicated";
+
     private static final String TRUNCATE_SQL =
             "truncate dest_table";
 
@@ -104,7 +187,7 @@ public class RedshiftJdbcClientTest extends EtlTestBase {
 
     @Before
     public void initializeRedshiftJdbcClient() {
-        redshiftJdbcClient = new RedshiftJdbcClient(mockRedshiftDataSource);
+        redshiftJdbcClient = new RedshiftJdbcClient(mockRedshiftDataSource, () -> "abc");
     }
 
     @Before
@@ -148,6 +231,28 @@ public class RedshiftJdbcClientTest extends EtlTestBase {
         inOrder.verify(mockRedshiftConnection).close();
     }
 
+    @Test
+    public void copyAndMergeAddsCopyOptionsToCopySql() throws Exception {
+        redshiftJdbcClient.copyAndMerge(FILE_COLUMN_NAMES, KEY_COLUMN_NAMES, DESTINATION_TABLE, S3_BUCKET, S3_PREFIX,
+                S3_REGION, IAM_ROLE, ImmutableList.of("GZIP"), mockMetrics);
+
+        verify(mockRedshiftConnection).prepareStatement(eq(COMPRESSED_COPY_SQL));
+    }
+
+    @Test
+    public void copyAndMergeFromManifestCopiesFromManifest() throws Exception {
+        redshiftJdbcClient.copyAndMergeFromManifest(FILE_COLUMN_NAMES, KEY_COLUMN_NAMES, DESTINATION_TABLE, S3_BUCKET,
+                S3_PREFIX + "/copy.manifest", S3_REGION, IAM_ROLE, ImmutableList.of("GZIP"), mockMetrics);
+
+        InOrder inOrder = inOrder(mockPreparedStatement, mockRedshiftConnection);
+        inOrder.verify(mockRedshiftConnection).prepareStatement(eq(COPY_AND_MERGE_SQL_1));
+        inOrder.verify(mockRedshiftConnection).prepareStatement(eq(COPY_AND_MERGE_SQL_2));
+        inOrder.verify(mockRedshiftConnection).prepareStatement(eq(MANIFEST_COPY_SQL));
+        inOrder.verify(mockRedshiftConnection).prepareStatement(eq(COPY_AND_MERGE_SQL_4));
+        inOrder.verify(mockRedshiftConnection).prepareStatement(eq(COPY_AND_MERGE_SQL_5));
+        inOrder.verify(mockRedshiftConnection).commit();
+    }
+
     @Test
     public void copyAndMergeRollsbackOnSQLException() throws Exception {
         when(mockPreparedStatement.execute()).thenThrow(new SQLException("Redshift hates you"));
@@ -204,6 +309,247 @@ public class RedshiftJdbcClientTest extends EtlTestBase {
                 S3_REGION, IAM_ROLE, mockMetrics);
     }
 
+    @Test
+    public void copyAndAppendFromManifestGeneratesAndExecutesSqlCorrectly() throws Exception {
+        redshiftJdbcClient.copyAndAppendFromManifest(FILE_COLUMN_NAMES, DESTINATION_TABLE, S3_BUCKET,
+                S3_PREFIX + "/copy.manifest", S3_REGION, IAM_ROLE, ImmutableList.of("GZIP"), mockMetrics);
+
+        InOrder inOrder = inOrder(mockPreparedStatement, mockRedshiftConnection);
+        inOrder.verify(mockRedshiftConnection).prepareStatement(eq(COPY_AND_MERGE_SQL_1));
+        inOrder.verify(mockPreparedStatement).execute();
+        inOrder.verify(mockRedshiftConnection).prepareStatement(eq(APPEND_SQL_1));
+        inOrder.verify(mockPreparedStatement).execute();
+        inOrder.verify(mockRedshiftConnection).prepareStatement(eq(MANIFEST_COPY_SQL));
+        inOrder.verify(mockPreparedStatement).execute();
+        inOrder.verify(mockRedshiftConnection).prepareStatement(eq(APPEND_SQL_2));
+        inOrder.verify(mockPreparedStatement).execute();
+        inOrder.verify(mockRedshiftConnection).prepareStatement(eq(COPY_AND_MERGE_SQL_6));
+        inOrder.verify(mockPreparedStatement).execute();
+        inOrder.verify(mockRedshiftConnection).close();
+        verify(mockRedshiftConnection, never()).setAutoCommit(anyBoolean());
+        verify(mockRedshiftConnection, never()).commit();
+    }
+
+    @Test
+    public void copyAndAppendDropsPermanentStageTableOnSQLException() throws Exception {
+        when(mockPreparedStatement.execute()).thenReturn(true).thenReturn(true).thenReturn(true)
+                .thenThrow(new SQLException("Redshift hates you")).thenReturn(true);
+
+        try {
+            redshiftJdbcClient.copyAndAppendFromManifest(FILE_COLUMN_NAMES, DESTINATION_TABLE, S3_BUCKET,
+                    S3_PREFIX + "/copy.manifest", S3_REGION, IAM_ROLE, ImmutableList.of("GZIP"), mockMetrics);
+            fail("Excepted exception to be thrown");
+        } catch (RuntimeException ignored) {
+        }
+
+        InOrder inOrder = inOrder(mockPreparedStatement, mockRedshiftConnection);
+        inOrder.verify(mockRedshiftConnection).prepareStatement(eq(APPEND_SQL_2));
+        inOrder.verify(mockPreparedStatement).execute();
+        inOrder.verify(mockRedshiftConnection).prepareStatement(eq(COPY_AND_MERGE_SQL_1));
+        inOrder.verify(mockPreparedStatement).execute();
+        inOrder.verify(mockRedshiftConnection).close();
+    }
+
+    @Test
+    public void copyAndMergeCommandFromManifestGeneratesAndExecutesSqlCorrectly() throws Exception {
+        redshiftJdbcClient.copyAndMergeCommandFromManifest(FILE_COLUMN_NAMES, KEY_COLUMN_NAMES, DESTINATION_TABLE,
+                S3_BUCKET, S3_PREFIX + "/copy.manifest", S3_REGION, IAM_ROLE, ImmutableList.of("GZIP"), mockMetrics);
+
+        InOrder inOrder = inOrder(mockPreparedStatement, mockRedshiftConnection);
+        inOrder.verify(mockRedshiftConnection).prepareStatement(eq(COPY_AND_MERGE_SQL_1));
+        inOrder.verify(mockPreparedStatement).execute();
+        inOrder.verify(mockRedshiftConnection).prepareStatement(eq(COPY_AND_MERGE_SQL_2));
+        inOrder.verify(mockPreparedStatement).execute();
+        inOrder.verify(mockRedshiftConnection).prepareStatement(eq(MANIFEST_COPY_SQL));
+        inOrder.verify(mockPreparedStatement).execute();
+        inOrder.verify(mockRedshiftConnection).setAutoCommit(eq(false));
+        inOrder.verify(mockRedshiftConnection).prepareStatement(eq(MERGE_COMMAND_SQL));
+        inOrder.verify(mockPreparedStatement).execute();
+        inOrder.verify(mockRedshiftConnection).commit();
+        inOrder.verify(mockRedshiftConnection).setAutoCommit(eq(true));
+        inOrder.verify(mockRedshiftConnection).prepareStatement(eq(COPY_AND_MERGE_SQL_6));
+        inOrder.verify(mockPreparedStatement).execute();
+        inOrder.verify(mockRedshiftConnection).close();
+    }
+
+    @Test
+    public void copyAndMergeCommandRollsbackOnSQLException() throws Exception {
+        when(mockPreparedStatement.execute()).thenThrow(new SQLException("Redshift hates you"));
+
+        try {
+            redshiftJdbcClient.copyAndMergeCommandFromManifest(FILE_COLUMN_NAMES, KEY_COLUMN_NAMES, DESTINATION_TABLE,
+                    S3_BUCKET, S3_PREFIX + "/copy.manifest", S3_REGION, IAM_ROLE, ImmutableList.of(), mockMetrics);
+            fail("Excepted exception to be thrown");
+        } catch (RuntimeException ignored) {
+        }
+
+        verify(mockRedshiftConnection).rollback();
+    }
+
+    @Test
+    public void copyDeduplicateAndMergeFromManifestGeneratesAndExecutesSqlCorrectly() throws Exception {
+        redshiftJdbcClient.copyDeduplicateAndMergeFromManifest(FILE_COLUMN_NAMES, KEY_COLUMN_NAMES, "filecol3",
+                DESTINATION_TABLE, S3_BUCKET, S3_PREFIX + "/copy.manifest", S3_REGION, IAM_ROLE,
+                ImmutableList.of("GZIP"), mockMetrics);
+
+        InOrder inOrder = inOrder(mockPreparedStatement, mockRedshiftConnection);
+        inOrder.verify(mockRedshiftConnection).prepareStatement(eq(COPY_AND_MERGE_SQL_1));
+        inOrder.verify(mockPreparedStatement).execute();
+        inOrder.verify(mockRedshiftConnection).prepareStatement(eq(COPY_AND_MERGE_SQL_2));
+        inOrder.verify(mockPreparedStatement).execute();
+        inOrder.verify(mockRedshiftConnection).prepareStatement(eq(MANIFEST_COPY_SQL));
+        inOrder.verify(mockPreparedStatement).execute();
+        inOrder.verify(mockRedshiftConnection).setAutoCommit(eq(false));
+        inOrder.verify(mockRedshiftConnection).prepareStatement(eq(DEDUPLICATE_SQL_1));
+        inOrder.verify(mockPreparedStatement).execute();
+        inOrder.verify(mockRedshiftConnection).prepareStatement(eq(DEDUPLICATE_SQL_2));
+        inOrder.verify(mockPreparedStatement).execute();
+        inOrder.verify(mockRedshiftConnection).prepareStatement(eq(DEDUPLICATE_SQL_3));
+        inOrder.verify(mockPreparedStatement).execute();
+        inOrder.verify(mockRedshiftConnection).prepareStatement(eq(DEDUPLICATE_SQL_4));
+        inOrder.verify(mockPreparedStatement).execute();
+        inOrder.verify(mockRedshiftConnection).prepareStatement(eq(DEDUPLICATE_SQL_5));
+        inOrder.verify(mockPreparedStatement).execute();
+        inOrder.verify(mockRedshiftConnection).commit();
+        inOrder.verify(mockRedshiftConnection).setAutoCommit(eq(true));
+        inOrder.verify(mockRedshiftConnection).prepareStatement(eq(COPY_AND_MERGE_SQL_6));
+        inOrder.verify(mockPreparedStatement).execute();
+        inOrder.verify(mockRedshiftConnection).close();
+    }
+
+    @Test
+    public void copyDeduplicateAndMergeWithoutLatestRowColumnKeepsAnyRowForEachKey() throws Exception {
+        redshiftJdbcClient.copyDeduplicateAndMergeFromManifest(FILE_COLUMN_NAMES, KEY_COLUMN_NAMES, null,
+                DESTINATION_TABLE, S3_BUCKET, S3_PREFIX + "/copy.manifest", S3_REGION, IAM_ROLE,
+                ImmutableList.of("GZIP"), mockMetrics);
+
+        verify(mockRedshiftConnection).prepareStatement(eq(DEDUPLICATE_WITHOUT_LATEST_ROW_COLUMN_SQL));
+    }
+
+    @Test
+    public void stageTableNamesAreUniqueEvenWhenGeneratedInTheSameMillisecond() throws Exception {
+        RedshiftJdbcClient redshiftJdbcClientWithRandomIds = new RedshiftJdbcClient(mockRedshiftDataSource);
+        ArgumentCaptor<String> sqlCaptor = ArgumentCaptor.forClass(String.class);
+
+        redshiftJdbcClientWithRandomIds.copyAndMerge(FILE_COLUMN_NAMES, KEY_COLUMN_NAMES, DESTINATION_TABLE, S3_BUCKET,
+                S3_PREFIX, S3_REGION, IAM_ROLE, mockMetrics);
+        redshiftJdbcClientWithRandomIds.copyAndMerge(FILE_COLUMN_NAMES, KEY_COLUMN_NAMES, DESTINATION_TABLE, S3_BUCKET,
+                S3_PREFIX, S3_REGION, IAM_ROLE, mockMetrics);
+
+        verify(mockRedshiftConnection, atLeastOnce()).prepareStatement(sqlCaptor.capture());
+        List<String> stageTableNames = sqlCaptor.getAllValues().stream()
+                .filter(sql -> sql.startsWith("drop table if exists "))
+                .map(sql -> sql.substring("drop table if exists ".length()))
+                .distinct()
+                .collect(Collectors.toList());
+
+        assertThat(stageTableNames.size(), equalTo(2));
+        assertThat(stageTableNames.get(0), startsWith("stage_1234_"));
+        assertThat(stageTableNames.get(1), startsWith("stage_1234_"));
+        assertThat(stageTableNames.get(0), not(equalTo(stageTableNames.get(1))));
+    }
+
+    @Test
+    public void copyIntoNewStageTableFromManifestCopiesIntoPermanentStageTableAndLeavesIt() throws Exception {
+        String stageTableName = redshiftJdbcClient.copyIntoNewStageTableFromManifest(FILE_COLUMN_NAMES,
+                DESTINATION_TABLE, S3_BUCKET, S3_PREFIX + "/copy.manifest", S3_REGION, IAM_ROLE,
+                ImmutableList.of("GZIP"), mockMetrics);
+
+        assertThat(stageTableName, equalTo("stage_1234_abc"));
+        InOrder inOrder = inOrder(mockPreparedStatement, mockRedshiftConnection);
+        inOrder.verify(mockRedshiftConnection).prepareStatement(eq(APPEND_SQL_1));
+        inOrder.verify(mockPreparedStatement).execute();
+        inOrder.verify(mockRedshiftConnection).prepareStatement(eq(MANIFEST_COPY_SQL));
+        inOrder.verify(mockPreparedStatement).execute();
+        inOrder.verify(mockRedshiftConnection).close();
+        verify(mockRedshiftConnection, never()).prepareStatement(eq(COPY_AND_MERGE_SQL_1));
+        verify(mockRedshiftConnection, never()).prepareStatement(eq(COPY_AND_MERGE_SQL_6));
+    }
+
+    @Test
+    public void copyIntoNewStageTableDropsStageTableOnSQLException() throws Exception {
+        when(mockPreparedStatement.execute()).thenReturn(true).thenThrow(new SQLException("Redshift hates you"))
+                .thenReturn(true);
+
+        try {
+            redshiftJdbcClient.copyIntoNewStageTableFromManifest(FILE_COLUMN_NAMES, DESTINATION_TABLE, S3_BUCKET,
+                    S3_PREFIX + "/copy.manifest", S3_REGION, IAM_ROLE, ImmutableList.of("GZIP"), mockMetrics);
+            fail("Excepted exception to be thrown");
+        } catch (RuntimeException ignored) {
+        }
+
+        InOrder inOrder = inOrder(mockPreparedStatement, mockRedshiftConnection);
+        inOrder.verify(mockRedshiftConnection).prepareStatement(eq(MANIFEST_COPY_SQL));
+        inOrder.verify(mockPreparedStatement).execute();
+        inOrder.verify(mockRedshiftConnection).prepareStatement(eq(COPY_AND_MERGE_SQL_1));
+        inOrder.verify(mockPreparedStatement).execute();
+        inOrder.verify(mockRedshiftConnection).close();
+    }
+
+    @Test
+    public void publishStageTablesPublishesEveryTableInOneTransactionThenDropsThem() throws Exception {
+        redshiftJdbcClient.publishStageTables(ImmutableList.of(
+                RedshiftJdbcClient.StagedTable.mergeInto(DESTINATION_TABLE, "stage_1234_abc", KEY_COLUMN_NAMES),
+                RedshiftJdbcClient.StagedTable.replace("other_table", "stage_1234_def"),
+                RedshiftJdbcClient.StagedTable.appendTo("log_table", "stage_1234_ghi"),
+                RedshiftJdbcClient.StagedTable.replace("empty_table", null)), mockMetrics);
+
+        InOrder inOrder = inOrder(mockPreparedStatement, mockRedshiftConnection);
+        inOrder.verify(mockRedshiftConnection).setAutoCommit(eq(false));
+        inOrder.verify(mockRedshiftConnection).prepareStatement(eq(COPY_AND_MERGE_SQL_4));
+        inOrder.verify(mockPreparedStatement).execute();
+        inOrder.verify(mockRedshiftConnection).prepareStatement(eq(COPY_AND_MERGE_SQL_5));
+        inOrder.verify(mockPreparedStatement).execute();
+        inOrder.verify(mockRedshiftConnection).prepareStatement(eq("delete from other_table"));
+        inOrder.verify(mockPreparedStatement).execute();
+        inOrder.verify(mockRedshiftConnection).prepareStatement(eq("insert into other_table select * from stage_1234_def"));
+        inOrder.verify(mockPreparedStatement).execute();
+        inOrder.verify(mockRedshiftConnection).prepareStatement(eq("insert into log_table select * from stage_1234_ghi"));
+        inOrder.verify(mockPreparedStatement).execute();
+        inOrder.verify(mockRedshiftConnection).prepareStatement(eq("delete from empty_table"));
+        inOrder.verify(mockPreparedStatement).execute();
+        inOrder.verify(mockRedshiftConnection).commit();
+        inOrder.verify(mockRedshiftConnection).setAutoCommit(eq(true));
+        inOrder.verify(mockRedshiftConnection).prepareStatement(eq("drop table if exists stage_1234_abc"));
+        inOrder.verify(mockRedshiftConnection).prepareStatement(eq("drop table if exists stage_1234_def"));
+        inOrder.verify(mockRedshiftConnection).prepareStatement(eq("drop table if exists stage_1234_ghi"));
+        inOrder.verify(mockRedshiftConnection).close();
+    }
+
+    @Test
+    public void publishStageTablesRollsBackAndKeepsStageTablesOnSQLException() throws Exception {
+        when(mockPreparedStatement.execute()).thenReturn(true).thenThrow(new SQLException("Redshift hates you"))
+                .thenReturn(true);
+
+        try {
+            redshiftJdbcClient.publishStageTables(ImmutableList.of(
+                    RedshiftJdbcClient.StagedTable.mergeInto(DESTINATION_TABLE, "stage_1234_abc", KEY_COLUMN_NAMES),
+                    RedshiftJdbcClient.StagedTable.appendTo("log_table", "stage_1234_ghi")), mockMetrics);
+            fail("Excepted exception to be thrown");
+        } catch (RuntimeException ignored) {
+        }
+
+        InOrder inOrder = inOrder(mockPreparedStatement, mockRedshiftConnection);
+        inOrder.verify(mockRedshiftConnection).rollback();
+        inOrder.verify(mockRedshiftConnection).close();
+        verify(mockRedshiftConnection, never()).commit();
+        verify(mockRedshiftConnection, never()).prepareStatement(eq("drop table if exists stage_1234_abc"));
+        verify(mockRedshiftConnection, never()).prepareStatement(eq("drop table if exists stage_1234_ghi"));
+        verify(mockRedshiftConnection, never()).prepareStatement(eq("insert into log_table select * from stage_1234_ghi"));
+    }
+
+    @Test
+    public void dropStageTablesDropsEveryTable() throws Exception {
+        redshiftJdbcClient.dropStageTables(ImmutableList.of("stage_1234_abc", "stage_1234_def"));
+
+        InOrder inOrder = inOrder(mockPreparedStatement, mockRedshiftConnection);
+        inOrder.verify(mockRedshiftConnection).prepareStatement(eq("drop table if exists stage_1234_abc"));
+        inOrder.verify(mockPreparedStatement).execute();
+        inOrder.verify(mockRedshiftConnection).prepareStatement(eq("drop table if exists stage_1234_def"));
+        inOrder.verify(mockPreparedStatement).execute();
+        inOrder.verify(mockRedshiftConnection).close();
+    }
+
     @Test
     public void deleteAndCopyGeneratesAndExecutesSqlCorrectly() throws Exception {
         redshiftJdbcClient.deleteAndCopy(FILE_COLUMN_NAMES, DESTINATION_TABLE, S3_BUCKET, S3_PREFIX,
@@ -220,6 +566,25 @@ public class RedshiftJdbcClientTest extends EtlTestBase {
         inOrder.verify(mockRedshiftConnection).close();
     }
 
+    @Test
+    public void deleteAndCopyAddsCopyOptionsToCopySql() throws Exception {
+        redshiftJdbcClient.deleteAndCopy(FILE_COLUMN_NAMES, DESTINATION_TABLE, S3_BUCKET, S3_PREFIX,
+                S3_REGION, IAM_ROLE, ImmutableList.of("GZIP"), mockMetrics);
+
+        verify(mockRedshiftConnection).prepareStatement(eq(COMPRESSED_DELETE_AND_COPY_SQL));
+    }
+
+    @Test
+    public void deleteAndCopyFromManifestCopiesFromManifest() throws Exception {
+        redshiftJdbcClient.deleteAndCopyFromManifest(FILE_COLUMN_NAMES, DESTINATION_TABLE, S3_BUCKET,
+                S3_PREFIX + "/copy.manifest", S3_REGION, IAM_ROLE, ImmutableList.of(), mockMetrics);
+
+        InOrder inOrder = inOrder(mockPreparedStatement, mockRedshiftConnection);
+        inOrder.verify(mockRedshiftConnection).prepareStatement(eq(DELETE_AND_COPY_SQL_1));
+        inOrder.verify(mockRedshiftConnection).prepareStatement(eq(MANIFEST_DELETE_AND_COPY_SQL));
+        inOrder.verify(mockRedshiftConnection).commit();
+    }
+
     @Test
     public void deleteAndCopyRollsbackOnSQLException() throws Exception {
         when(mockPreparedStatement.execute()).thenThrow(new SQLException("Redshift hates you"));
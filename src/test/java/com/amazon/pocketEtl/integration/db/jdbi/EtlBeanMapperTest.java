@@ -37,9 +37,14 @@ import java.util.Map;
 
 import static com.amazon.pocketEtl.integration.db.jdbi.EtlBeanMapperTest.TestEnum.TEST_ENUM;
 import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.instanceOf;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
 import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
 import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -306,4 +311,90 @@ public class EtlBeanMapperTest {
 
         assertThat(result.getOtherInformation(), equalTo(ImmutableMap.of()));
     }
+
+    @Test
+    public void bindingPlanIsCompiledOnceForEachResultSet() throws Exception {
+        when(mockMetadata.getColumnCount()).thenReturn(2);
+        when(mockMetadata.getColumnLabel(1)).thenReturn("testInt");
+        when(mockMetadata.getColumnLabel(2)).thenReturn("testString");
+
+        for (int row = 0; row < 3; row++) {
+            TestDTO result = etlBeanMapper.map(row, mockResultSet, null);
+            assertThat(result.getTestInt(), equalTo(TEST_INT));
+            assertThat(result.getTestString(), equalTo(TEST_STRING));
+        }
+
+        verify(mockResultSet, times(1)).getMetaData();
+        verify(mockMetadata, times(1)).getColumnLabel(1);
+        verify(mockResultSet, times(3)).getInt(1);
+        verify(mockResultSet, times(3)).getString(2);
+    }
+
+    @Test
+    public void bindingPlanIsRecompiledForNewResultSet() throws Exception {
+        when(mockMetadata.getColumnCount()).thenReturn(1);
+        when(mockMetadata.getColumnLabel(1)).thenReturn("testInt");
+        ResultSet otherResultSet = mock(ResultSet.class);
+        ResultSetMetaData otherMetadata = mock(ResultSetMetaData.class);
+        when(otherResultSet.getMetaData()).thenReturn(otherMetadata);
+        when(otherResultSet.getLong(anyInt())).thenReturn(TEST_LONG);
+        when(otherMetadata.getColumnCount()).thenReturn(1);
+        when(otherMetadata.getColumnLabel(1)).thenReturn("testLong");
+
+        TestDTO firstResult = etlBeanMapper.map(0, mockResultSet, null);
+        TestDTO secondResult = etlBeanMapper.map(0, otherResultSet, null);
+
+        assertThat(firstResult.getTestInt(), equalTo(TEST_INT));
+        assertThat(firstResult.getTestLong(), equalTo(0L));
+        assertThat(secondResult.getTestInt(), equalTo(0));
+        assertThat(secondResult.getTestLong(), equalTo(TEST_LONG));
+    }
+
+    @Test
+    public void nullValueIsMappedToNullForObjectProperty() throws Exception {
+        when(mockMetadata.getColumnCount()).thenReturn(1);
+        when(mockMetadata.getColumnLabel(1)).thenReturn("testString");
+        when(mockResultSet.wasNull()).thenReturn(true);
+
+        TestDTO result = etlBeanMapper.map(0, mockResultSet, null);
+
+        assertThat(result.getTestString(), is(nullValue()));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void mappingPropertyWithoutSetterThrowsIllegalArgumentException() throws Exception {
+        EtlBeanMapper<ReadOnlyDTO> readOnlyMapper = new EtlBeanMapper<>(ReadOnlyDTO.class, null);
+        when(mockMetadata.getColumnCount()).thenReturn(1);
+        when(mockMetadata.getColumnLabel(1)).thenReturn("readOnly");
+
+        readOnlyMapper.map(0, mockResultSet, null);
+    }
+
+    @Test
+    public void exceptionThrownBySetterIsWrappedInIllegalArgumentException() throws Exception {
+        EtlBeanMapper<ThrowingDTO> throwingMapper = new EtlBeanMapper<>(ThrowingDTO.class, null);
+        when(mockMetadata.getColumnCount()).thenReturn(1);
+        when(mockMetadata.getColumnLabel(1)).thenReturn("value");
+
+        try {
+            throwingMapper.map(0, mockResultSet, null);
+            fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            assertThat(e.getMessage(), equalTo("Invocation target exception trying to invoker setter for the value " +
+                    "property"));
+            assertThat(e.getCause(), instanceOf(UnsupportedOperationException.class));
+        }
+    }
+
+    public static class ThrowingDTO {
+        public void setValue(String value) {
+            throw new UnsupportedOperationException("value cannot be set");
+        }
+    }
+
+    public static class ReadOnlyDTO {
+        public String getReadOnly() {
+            return TEST_STRING;
+        }
+    }
 }
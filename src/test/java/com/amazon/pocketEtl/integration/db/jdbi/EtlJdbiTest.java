@@ -0,0 +1,115 @@
+/*
+ *   Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package com.amazon.pocketEtl.integration.db.jdbi;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.skife.jdbi.v2.CachingStatementBuilderFactory;
+import org.skife.jdbi.v2.DBI;
+
+import javax.sql.DataSource;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+@RunWith(MockitoJUnitRunner.class)
+public class EtlJdbiTest {
+    private static final BiConsumer<Object, Map.Entry<String, String>> SECONDARY_MAPPER = (bean, entry) -> { };
+
+    @Mock
+    private DataSource mockDataSource;
+
+    @Mock
+    private DataSource otherMockDataSource;
+
+    @After
+    public void invalidateSharedDBIs() {
+        EtlJdbi.invalidateSharedDBIs();
+    }
+
+    @Test
+    public void getDBIReturnsSameInstanceForSameDataSourceAndMapper() {
+        DBI dbi = EtlJdbi.getDBI(mockDataSource, SECONDARY_MAPPER);
+
+        assertThat(EtlJdbi.getDBI(mockDataSource, SECONDARY_MAPPER), sameInstance(dbi));
+    }
+
+    @Test
+    public void getDBIReturnsSameInstanceForSameDataSourceAndNullMapper() {
+        DBI dbi = EtlJdbi.getDBI(mockDataSource, null);
+
+        assertThat(EtlJdbi.getDBI(mockDataSource, null), sameInstance(dbi));
+    }
+
+    @Test
+    public void getDBIReturnsDifferentInstanceForDifferentDataSource() {
+        DBI dbi = EtlJdbi.getDBI(mockDataSource, SECONDARY_MAPPER);
+
+        assertThat(EtlJdbi.getDBI(otherMockDataSource, SECONDARY_MAPPER), not(sameInstance(dbi)));
+    }
+
+    @Test
+    public void getDBIReturnsDifferentInstanceForDifferentMapper() {
+        DBI dbi = EtlJdbi.getDBI(mockDataSource, SECONDARY_MAPPER);
+
+        assertThat(EtlJdbi.getDBI(mockDataSource, null), not(sameInstance(dbi)));
+    }
+
+    @Test
+    public void getDBIReturnsDifferentInstanceWithStatementCacheEnabled() {
+        DBI dbi = EtlJdbi.getDBI(mockDataSource, SECONDARY_MAPPER);
+        DBI cachingDbi = EtlJdbi.getDBI(mockDataSource, SECONDARY_MAPPER, true);
+
+        assertThat(cachingDbi, not(sameInstance(dbi)));
+        assertThat(EtlJdbi.getDBI(mockDataSource, SECONDARY_MAPPER, true), sameInstance(cachingDbi));
+    }
+
+    @Test
+    public void getDBIWithStatementCacheEnabledCachesPreparedStatements() {
+        DBI dbi = EtlJdbi.getDBI(mockDataSource, SECONDARY_MAPPER, true);
+
+        assertThat(dbi.getStatementBuilderFactory(), instanceOf(CachingStatementBuilderFactory.class));
+    }
+
+    @Test
+    public void getDBIWithoutStatementCacheDoesNotCachePreparedStatements() {
+        DBI dbi = EtlJdbi.getDBI(mockDataSource, SECONDARY_MAPPER);
+
+        assertThat(dbi.getStatementBuilderFactory(), not(instanceOf(CachingStatementBuilderFactory.class)));
+    }
+
+    @Test
+    public void getDBIReturnsNewInstanceAfterSharedInstancesAreInvalidated() {
+        DBI dbi = EtlJdbi.getDBI(mockDataSource, SECONDARY_MAPPER);
+        EtlJdbi.invalidateSharedDBIs();
+
+        assertThat(EtlJdbi.getDBI(mockDataSource, SECONDARY_MAPPER), not(sameInstance(dbi)));
+    }
+
+    @Test
+    public void newDBIAlwaysReturnsNewInstance() {
+        DBI dbi = EtlJdbi.newDBI(mockDataSource, SECONDARY_MAPPER);
+
+        assertThat(EtlJdbi.newDBI(mockDataSource, SECONDARY_MAPPER), not(sameInstance(dbi)));
+    }
+}
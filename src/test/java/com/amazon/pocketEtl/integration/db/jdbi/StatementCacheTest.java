@@ -0,0 +1,115 @@
+/*
+ *   Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package com.amazon.pocketEtl.integration.db.jdbi;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.skife.jdbi.v2.Handle;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+// Silent as whether JDBI checks the autocommit state of a connection depends on the operation
+@RunWith(MockitoJUnitRunner.Silent.class)
+public class StatementCacheTest {
+    @Mock
+    private DataSource mockDataSource;
+
+    @Mock
+    private Connection mockConnection;
+
+    @Mock
+    private Connection otherMockConnection;
+
+    private StatementCache statementCache;
+
+    @Before
+    public void constructStatementCache() throws Exception {
+        when(mockDataSource.getConnection()).thenReturn(mockConnection, otherMockConnection);
+        when(mockConnection.getAutoCommit()).thenReturn(true);
+        when(otherMockConnection.getAutoCommit()).thenReturn(true);
+        statementCache = StatementCache.of(mockDataSource);
+    }
+
+    @After
+    public void invalidateSharedDBIs() {
+        EtlJdbi.invalidateSharedDBIs();
+    }
+
+    @Test
+    public void returnedHandleIsBorrowedAgain() throws Exception {
+        Handle handle = statementCache.borrowHandle();
+        statementCache.returnHandle(handle);
+
+        assertThat(statementCache.borrowHandle(), sameInstance(handle));
+        verify(mockDataSource, times(1)).getConnection();
+        verify(mockConnection, never()).close();
+    }
+
+    @Test
+    public void handlesBorrowedAtTheSameTimeAreDifferent() throws Exception {
+        Handle handle = statementCache.borrowHandle();
+
+        assertThat(statementCache.borrowHandle(), not(sameInstance(handle)));
+        verify(mockDataSource, times(2)).getConnection();
+    }
+
+    @Test
+    public void handleWithClosedConnectionIsNotBorrowedAgain() throws Exception {
+        Handle handle = statementCache.borrowHandle();
+        when(mockConnection.isClosed()).thenReturn(true);
+        statementCache.returnHandle(handle);
+
+        assertThat(statementCache.borrowHandle(), not(sameInstance(handle)));
+    }
+
+    @Test
+    public void closeClosesIdleHandles() throws Exception {
+        statementCache.returnHandle(statementCache.borrowHandle());
+        statementCache.close();
+
+        verify(mockConnection).close();
+    }
+
+    @Test
+    public void handleReturnedAfterCloseIsClosed() throws Exception {
+        Handle handle = statementCache.borrowHandle();
+        statementCache.close();
+        verify(mockConnection, never()).close();
+
+        statementCache.returnHandle(handle);
+
+        verify(mockConnection).close();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void borrowHandleAfterCloseThrowsIllegalStateException() {
+        statementCache.close();
+        statementCache.borrowHandle();
+    }
+}
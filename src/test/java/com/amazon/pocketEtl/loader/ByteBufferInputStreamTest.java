@@ -0,0 +1,96 @@
+/*
+ *   Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package com.amazon.pocketEtl.loader;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+public class ByteBufferInputStreamTest {
+    private static final byte[] CONTENTS = "0123456789ABCDEF".getBytes();
+
+    @Test
+    public void readsRemainingBytesOfHeapBuffer() throws Exception {
+        ByteBuffer buffer = ByteBuffer.wrap(CONTENTS);
+        buffer.position(4);
+
+        assertThat(readFully(new ByteBufferInputStream(buffer)), equalTo("456789ABCDEF".getBytes()));
+    }
+
+    @Test
+    public void readsRemainingBytesOfDirectBuffer() throws Exception {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(32);
+        buffer.put(CONTENTS);
+        buffer.flip();
+
+        assertThat(readFully(new ByteBufferInputStream(buffer)), equalTo(CONTENTS));
+    }
+
+    @Test
+    public void readingDoesNotChangeThePositionOfTheBuffer() throws Exception {
+        ByteBuffer buffer = ByteBuffer.wrap(CONTENTS);
+
+        readFully(new ByteBufferInputStream(buffer));
+
+        assertThat(buffer.position(), equalTo(0));
+        assertThat(buffer.limit(), equalTo(CONTENTS.length));
+    }
+
+    @Test
+    public void singleByteReadsReturnUnsignedValues() throws Exception {
+        InputStream inputStream = new ByteBufferInputStream(ByteBuffer.wrap(new byte[] { (byte) 0xFF }));
+
+        assertThat(inputStream.read(), equalTo(0xFF));
+        assertThat(inputStream.read(), equalTo(-1));
+    }
+
+    @Test
+    public void resetReplaysStreamFromMark() throws Exception {
+        InputStream inputStream = new ByteBufferInputStream(ByteBuffer.wrap(CONTENTS));
+        inputStream.skip(2);
+        inputStream.mark(CONTENTS.length);
+        inputStream.skip(5);
+        inputStream.reset();
+
+        assertThat(readFully(inputStream), equalTo("23456789ABCDEF".getBytes()));
+    }
+
+    @Test
+    public void resetWithoutMarkReplaysEntireStream() throws Exception {
+        InputStream inputStream = new ByteBufferInputStream(ByteBuffer.wrap(CONTENTS));
+        readFully(inputStream);
+        inputStream.reset();
+
+        assertThat(inputStream.available(), equalTo(CONTENTS.length));
+    }
+
+    private static byte[] readFully(InputStream inputStream) throws Exception {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        byte[] readBuffer = new byte[5];
+        int bytesRead;
+
+        while ((bytesRead = inputStream.read(readBuffer, 0, readBuffer.length)) != -1) {
+            outputStream.write(readBuffer, 0, bytesRead);
+        }
+
+        return outputStream.toByteArray();
+    }
+}
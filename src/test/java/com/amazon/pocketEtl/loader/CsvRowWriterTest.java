@@ -0,0 +1,281 @@
+/*
+ *   Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package com.amazon.pocketEtl.loader;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+import com.fasterxml.jackson.annotation.JsonValue;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.dataformat.csv.CsvMapper;
+import com.fasterxml.jackson.dataformat.csv.CsvSchema;
+import com.fasterxml.jackson.datatype.joda.JodaModule;
+import lombok.Data;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TimeZone;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class CsvRowWriterTest {
+    private static final CsvMapper mapper = new CsvMapper();
+
+    static {
+        mapper.registerModule(new JodaModule());
+        mapper.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+    }
+
+    enum PlainEnum {
+        ONE, TWO
+    }
+
+    enum RenamedEnum {
+        @JsonProperty("first") ONE,
+        @JsonProperty("second") TWO
+    }
+
+    enum ValueEnum {
+        ONE;
+
+        @JsonValue
+        public int toValue() {
+            return 1;
+        }
+    }
+
+    @Data
+    @JsonPropertyOrder({"string", "character", "primitiveBoolean", "boxedBoolean", "primitiveInt", "boxedInt",
+            "primitiveLong", "boxedLong", "primitiveShort", "primitiveByte", "primitiveDouble", "boxedDouble",
+            "primitiveFloat", "bigDecimal", "bigInteger", "plainEnum", "renamedEnum", "dateTime", "stringList",
+            "integerSet", "renamed"})
+    static class SimpleDTO {
+        private String string;
+        private Character character;
+        private boolean primitiveBoolean;
+        private Boolean boxedBoolean;
+        private int primitiveInt;
+        private Integer boxedInt;
+        private long primitiveLong;
+        private Long boxedLong;
+        private short primitiveShort;
+        private byte primitiveByte;
+        private double primitiveDouble;
+        private Double boxedDouble;
+        private float primitiveFloat;
+        private BigDecimal bigDecimal;
+        private BigInteger bigInteger;
+        private PlainEnum plainEnum;
+        private RenamedEnum renamedEnum;
+        private DateTime dateTime;
+        private List<String> stringList;
+        private Set<Integer> integerSet;
+        @JsonProperty("renamed")
+        private String notRenamed;
+    }
+
+    @JsonPropertyOrder({"id", "name"})
+    public static class PublicFieldDTO {
+        public int id;
+        public String name;
+    }
+
+    @Data
+    static class NestedDTO {
+        private String name;
+        private SimpleDTO nested;
+    }
+
+    @Data
+    static class FormattedDTO {
+        @JsonFormat(pattern = "yyyy-MM-dd")
+        private DateTime date;
+    }
+
+    @Data
+    static class ValueEnumDTO {
+        private ValueEnum valueEnum;
+    }
+
+    @Data
+    @JsonPropertyOrder({"plainEnum", "dateTime", "stringList"})
+    static class NullableDTO {
+        private PlainEnum plainEnum;
+        private DateTime dateTime;
+        private List<String> stringList;
+    }
+
+    @Data
+    static class MapDTO {
+        private Map<String, String> map;
+    }
+
+    @Data
+    static class DateTimeListDTO {
+        private List<DateTime> dateTimes;
+    }
+
+    @Test
+    public void writesPopulatedRowExactlyAsJacksonDoes() throws Exception {
+        SimpleDTO dto = new SimpleDTO();
+        dto.setString("a,b|c\"d\neé€😀");
+        dto.setCharacter('x');
+        dto.setPrimitiveBoolean(true);
+        dto.setBoxedBoolean(false);
+        dto.setPrimitiveInt(-7);
+        dto.setBoxedInt(Integer.MAX_VALUE);
+        dto.setPrimitiveLong(Long.MIN_VALUE);
+        dto.setBoxedLong(12L);
+        dto.setPrimitiveShort((short) 3);
+        dto.setPrimitiveByte((byte) -4);
+        dto.setPrimitiveDouble(1.0E20);
+        dto.setBoxedDouble(Double.NaN);
+        dto.setPrimitiveFloat(0.1f);
+        dto.setBigDecimal(new BigDecimal("1E+3"));
+        dto.setBigInteger(new BigInteger("123456789012345678901234567890"));
+        dto.setPlainEnum(PlainEnum.TWO);
+        dto.setRenamedEnum(RenamedEnum.ONE);
+        dto.setDateTime(new DateTime(2017, 9, 29, 1, 2, 3, 4, DateTimeZone.forOffsetHours(5)));
+        dto.setStringList(Arrays.asList("first", null, "third"));
+        dto.setIntegerSet(Collections.singleton(5));
+        dto.setNotRenamed("renamed");
+
+        assertWritesSameRowAsJackson(SimpleDTO.class, dto, ',');
+        assertWritesSameRowAsJackson(SimpleDTO.class, dto, '|');
+    }
+
+    @Test
+    public void writesEmptyRowExactlyAsJacksonDoes() throws Exception {
+        SimpleDTO dto = new SimpleDTO();
+        dto.setStringList(Collections.emptyList());
+
+        assertWritesSameRowAsJackson(SimpleDTO.class, dto, ',');
+    }
+
+    @Test
+    public void writesPublicFieldsExactlyAsJacksonDoes() throws Exception {
+        PublicFieldDTO dto = new PublicFieldDTO();
+        dto.id = 1;
+        dto.name = "name";
+
+        assertWritesSameRowAsJackson(PublicFieldDTO.class, dto, ',');
+    }
+
+    @Test
+    public void writesNullsWithCustomNullValueExactlyAsJacksonDoes() throws Exception {
+        NullableDTO dto = new NullableDTO();
+        dto.setStringList(Arrays.asList(null, "second"));
+        CsvSchema schema = schemaFor(NullableDTO.class, ',').withNullValue("NULL");
+
+        assertWritesSameRowAsJackson(mapper, schema, NullableDTO.class, dto);
+    }
+
+    @Test
+    public void writesDateTimeInMapperTimeZoneExactlyAsJacksonDoes() throws Exception {
+        CsvMapper zonedMapper = new CsvMapper();
+        zonedMapper.registerModule(new JodaModule());
+        zonedMapper.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        zonedMapper.setTimeZone(TimeZone.getTimeZone("America/Los_Angeles"));
+        NullableDTO dto = new NullableDTO();
+        dto.setDateTime(new DateTime(2017, 9, 29, 1, 2, 3, 4, DateTimeZone.UTC));
+
+        assertWritesSameRowAsJackson(zonedMapper, zonedMapper.schemaFor(NullableDTO.class).withoutQuoteChar(),
+                NullableDTO.class, dto);
+    }
+
+    @Test
+    public void writesEnumsUsingToStringExactlyAsJacksonDoes() throws Exception {
+        CsvMapper toStringMapper = new CsvMapper();
+        toStringMapper.registerModule(new JodaModule());
+        toStringMapper.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        toStringMapper.enable(SerializationFeature.WRITE_ENUMS_USING_TO_STRING);
+        NullableDTO dto = new NullableDTO();
+        dto.setPlainEnum(PlainEnum.ONE);
+
+        assertWritesSameRowAsJackson(toStringMapper, toStringMapper.schemaFor(NullableDTO.class).withoutQuoteChar(),
+                NullableDTO.class, dto);
+    }
+
+    @Test
+    public void schemaWithQuoteCharIsNotCompiled() {
+        assertThat(CsvRowWriter.compile(mapper, mapper.schemaFor(SimpleDTO.class), SimpleDTO.class), nullValue());
+    }
+
+    @Test
+    public void classWithMapIsNotCompiled() {
+        assertThat(compile(MapDTO.class, ','), nullValue());
+    }
+
+    @Test
+    public void classWithCollectionOfDateTimesIsNotCompiled() {
+        assertThat(compile(DateTimeListDTO.class, ','), nullValue());
+    }
+
+    @Test
+    public void classWithNestedObjectIsNotCompiled() {
+        assertThat(compile(NestedDTO.class, ','), nullValue());
+    }
+
+    @Test
+    public void classWithFormattedPropertyIsNotCompiled() {
+        assertThat(compile(FormattedDTO.class, ','), nullValue());
+    }
+
+    @Test
+    public void classWithJsonValueEnumIsNotCompiled() {
+        assertThat(compile(ValueEnumDTO.class, ','), nullValue());
+    }
+
+    private static <T> void assertWritesSameRowAsJackson(Class<T> type, T object, char columnSeparator)
+            throws Exception {
+        assertWritesSameRowAsJackson(mapper, schemaFor(type, columnSeparator), type, object);
+    }
+
+    private static <T> void assertWritesSameRowAsJackson(CsvMapper mapper, CsvSchema schema, Class<T> type, T object)
+            throws Exception {
+        ObjectWriter jacksonWriter = mapper.writer(schema);
+        String expectedRow = jacksonWriter.writeValueAsString(object);
+        CsvRowWriter<T> rowWriter = CsvRowWriter.compile(mapper, schema, type);
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        assertThat(rowWriter, notNullValue());
+        rowWriter.writeRow(object, outputStream);
+
+        assertThat(rowWriter.writeRow(object), equalTo(expectedRow));
+        assertThat(outputStream.toByteArray(), equalTo(jacksonWriter.writeValueAsBytes(object)));
+    }
+
+    private static <T> CsvRowWriter<T> compile(Class<T> type, char columnSeparator) {
+        return CsvRowWriter.compile(mapper, schemaFor(type, columnSeparator), type);
+    }
+
+    private static CsvSchema schemaFor(Class<?> type, char columnSeparator) {
+        return mapper.schemaFor(type).withColumnSeparator(columnSeparator).withoutQuoteChar();
+    }
+}
@@ -27,10 +27,13 @@ import org.junit.rules.ExpectedException;
 import org.junit.runner.RunWith;
 import org.mockito.junit.MockitoJUnitRunner;
 
+import java.io.ByteArrayOutputStream;
 import java.util.List;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
 
 @RunWith(MockitoJUnitRunner.class)
 public class CsvStringSerializerTest {
@@ -97,6 +100,14 @@ public class CsvStringSerializerTest {
         assertThat(result, equalTo(expectedResult));
     }
 
+    @Test
+    public void serializersShareRowWriterForSameClassAndColumnSeparator() {
+        assertThat(CsvStringSerializer.rowWriterFor(TestDTO.class, ','),
+                sameInstance(CsvStringSerializer.rowWriterFor(TestDTO.class, ',')));
+        assertThat(CsvStringSerializer.rowWriterFor(TestDTO.class, '|'),
+                not(sameInstance(CsvStringSerializer.rowWriterFor(TestDTO.class, ','))));
+    }
+
     @Test
     public void serializerWritesHeaderRow() throws Exception {
         CsvStringSerializer<TestDTO> serializerForCSV = CsvStringSerializer.of(TestDTO.class)
@@ -130,6 +141,54 @@ public class CsvStringSerializerTest {
         assertThat(result2, equalTo(expectedResult2));
     }
 
+    @Test
+    public void serializeWritesRowToStream() throws Exception {
+        CsvStringSerializer<TestDTO> serializerForPSV = CsvStringSerializer.of(TestDTO.class).withColumnSeparator('|');
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        serializerForPSV.serialize(TEST_DTO, outputStream);
+        serializerForPSV.serialize(TEST_DTO, outputStream);
+
+        String expectedUTCDateTimeString = SAMPLE_DATE_TIME.toDateTime(DateTimeZone.UTC).toString();
+        String expectedRow = "Foo|7|1.5|first;second|" + expectedUTCDateTimeString + "\n";
+        assertThat(outputStream.toString("UTF-8"), equalTo(expectedRow + expectedRow));
+    }
+
+    @Test
+    public void serializeNeverWritesHeaderRow() throws Exception {
+        CsvStringSerializer<TestDTO2> serializerForCSV = CsvStringSerializer.of(TestDTO2.class)
+                .withColumnSeparator('|')
+                .withHeaderRow(true);
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        serializerForCSV.serialize(TEST_DTO2, outputStream);
+
+        assertThat(outputStream.toString("UTF-8"), equalTo("7|Foo\n"));
+    }
+
+    @Test
+    public void writeHeaderWritesHeaderRowWithCustomNames() throws Exception {
+        CsvStringSerializer<TestDTO2> serializerForCSV = CsvStringSerializer.of(TestDTO2.class)
+                .withColumnSeparator('|')
+                .withHeaderRow(true);
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        serializerForCSV.writeHeader(outputStream);
+        serializerForCSV.writeHeader(outputStream);
+
+        assertThat(outputStream.toString("UTF-8"), equalTo("Test two|Test one\nTest two|Test one\n"));
+    }
+
+    @Test
+    public void writeHeaderWritesNothingWithoutHeaderRow() throws Exception {
+        CsvStringSerializer<TestDTO> serializerForCSV = CsvStringSerializer.of(TestDTO.class);
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        serializerForCSV.writeHeader(outputStream);
+
+        assertThat(outputStream.size(), equalTo(0));
+    }
+
     @Test(expected = RuntimeException.class)
     public void applyThrowsRunTimeExceptionForUnsupportedDataTypeInDTO() throws Exception {
         CsvStringSerializer<DTOWithBadDataType> serializerForCSV = CsvStringSerializer.of(DTOWithBadDataType.class)
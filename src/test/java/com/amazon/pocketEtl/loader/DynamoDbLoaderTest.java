@@ -16,12 +16,19 @@
 package com.amazon.pocketEtl.loader;
 
 import com.amazon.pocketEtl.EtlMetrics;
+import com.amazonaws.services.dynamodbv2.document.BatchWriteItemOutcome;
 import com.amazonaws.services.dynamodbv2.document.DynamoDB;
 import com.amazonaws.services.dynamodbv2.document.Item;
 import com.amazonaws.services.dynamodbv2.document.Table;
+import com.amazonaws.services.dynamodbv2.document.TableWriteItems;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.BatchWriteItemResult;
+import com.amazonaws.services.dynamodbv2.model.PutRequest;
+import com.amazonaws.services.dynamodbv2.model.WriteRequest;
 import com.fasterxml.jackson.core.JsonParseException;
 import com.fasterxml.jackson.databind.ObjectWriter;
 import com.google.common.collect.Lists;
+import org.joda.time.DateTime;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -31,17 +38,28 @@ import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
 
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.stream.Collectors;
 
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
 import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.collection.IsMapContaining.hasEntry;
 import static org.hamcrest.collection.IsMapContaining.hasKey;
 import static org.hamcrest.core.IsCollectionContaining.hasItems;
 import static org.junit.Assert.assertThat;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyMap;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -62,6 +80,9 @@ public class DynamoDbLoaderTest {
     @Captor
     private ArgumentCaptor<Item> tablePutItemCaptor;
 
+    @Captor
+    private ArgumentCaptor<TableWriteItems> tableWriteItemsCaptor;
+
     @Before
     public void initializeMetrics() {
         when(metricsMock.createChildMetrics()).thenReturn(metricsMock);
@@ -153,6 +174,289 @@ public class DynamoDbLoaderTest {
         verify(metricsMock).addCount(eq("DynamoDbLoader.failure"), eq(1d));
     }
 
+    @Test
+    public void batchIsWrittenWhenFull() throws Exception {
+        when(ddbMock.batchWriteItem(any(TableWriteItems.class))).thenReturn(successfulOutcome());
+
+        DynamoDbLoader<Thing> loader = DynamoDbLoader.of("itsatableyo", "id", Thing::getId)
+                .withDynamoDb(ddbMock)
+                .withBatchSize(2);
+
+        loader.open(metricsMock);
+        loader.load(new Thing("one", "2001", Lists.newArrayList()));
+        verify(ddbMock, never()).batchWriteItem(any(TableWriteItems.class));
+        loader.load(new Thing("two", "2002", Lists.newArrayList()));
+        verify(ddbMock).batchWriteItem(tableWriteItemsCaptor.capture());
+        loader.close();
+
+        assertThat(tableWriteItemsCaptor.getValue().getTableName(), is("itsatableyo"));
+        assertThat(primaryKeysOf(tableWriteItemsCaptor.getValue()), contains("one", "two"));
+        verify(metricsMock).addCount(eq("DynamoDbLoader.success"), eq(2d));
+        verify(metricsMock).addCount(eq("DynamoDbLoader.failure"), eq(0d));
+    }
+
+    @Test
+    public void partialBatchIsWrittenOnClose() throws Exception {
+        when(ddbMock.batchWriteItem(any(TableWriteItems.class))).thenReturn(successfulOutcome());
+
+        DynamoDbLoader<Thing> loader = DynamoDbLoader.of("itsatableyo", "id", Thing::getId)
+                .withDynamoDb(ddbMock)
+                .withBatchSize(25);
+
+        loader.open(metricsMock);
+        loader.load(new Thing("one", "2001", Lists.newArrayList()));
+        loader.close();
+
+        verify(ddbMock).batchWriteItem(tableWriteItemsCaptor.capture());
+        assertThat(primaryKeysOf(tableWriteItemsCaptor.getValue()), contains("one"));
+        verify(metricsMock).addCount(eq("DynamoDbLoader.success"), eq(1d));
+    }
+
+    @Test
+    public void partialBatchIsWrittenAfterLingerTime() throws Exception {
+        when(ddbMock.batchWriteItem(any(TableWriteItems.class))).thenReturn(successfulOutcome());
+
+        DynamoDbLoader<Thing> loader = DynamoDbLoader.of("itsatableyo", "id", Thing::getId)
+                .withDynamoDb(ddbMock)
+                .withBatchSize(25)
+                .withBatchLingerTimeInMillis(10);
+
+        loader.open(metricsMock);
+        loader.load(new Thing("one", "2001", Lists.newArrayList()));
+
+        verify(ddbMock, timeout(5000)).batchWriteItem(any(TableWriteItems.class));
+        loader.close();
+    }
+
+    @Test
+    public void recordsWithSamePrimaryKeyAreWrittenInSeparateBatches() throws Exception {
+        when(ddbMock.batchWriteItem(any(TableWriteItems.class))).thenReturn(successfulOutcome());
+
+        DynamoDbLoader<Thing> loader = DynamoDbLoader.of("itsatableyo", "id", Thing::getId)
+                .withDynamoDb(ddbMock)
+                .withBatchSize(25);
+
+        loader.open(metricsMock);
+        loader.load(new Thing("one", "2001", Lists.newArrayList()));
+        loader.load(new Thing("one", "2002", Lists.newArrayList()));
+        loader.close();
+
+        verify(ddbMock, times(2)).batchWriteItem(tableWriteItemsCaptor.capture());
+        assertThat(yearsWrittenInEachBatch(), contains(singletonList("2001"), singletonList("2002")));
+        verify(metricsMock, times(2)).addCount(eq("DynamoDbLoader.success"), eq(1d));
+    }
+
+    @Test
+    public void recordsWithEqualBinaryRangeKeysAreWrittenInSeparateBatches() throws Exception {
+        when(ddbMock.batchWriteItem(any(TableWriteItems.class))).thenReturn(successfulOutcome());
+
+        DynamoDbLoader<Thing> loader = DynamoDbLoader.of("itsatableyo", "id", Thing::getId)
+                .withDynamoDb(ddbMock)
+                .withBatchSize(25)
+                .withRangeKey("sort", thing -> "key".getBytes(StandardCharsets.UTF_8));
+
+        loader.open(metricsMock);
+        loader.load(new Thing("one", "2001", Lists.newArrayList()));
+        loader.load(new Thing("one", "2002", Lists.newArrayList()));
+        loader.close();
+
+        verify(ddbMock, times(2)).batchWriteItem(tableWriteItemsCaptor.capture());
+        assertThat(yearsWrittenInEachBatch(), contains(singletonList("2001"), singletonList("2002")));
+        verify(metricsMock, times(2)).addCount(eq("DynamoDbLoader.success"), eq(1d));
+    }
+
+    @Test
+    public void recordsWithNumericallyEqualRangeKeysOfDifferentTypesAreWrittenInSeparateBatches() throws Exception {
+        when(ddbMock.batchWriteItem(any(TableWriteItems.class))).thenReturn(successfulOutcome());
+
+        Map<String, Number> rangeKeys = new HashMap<>();
+        rangeKeys.put("int", 1);
+        rangeKeys.put("long", 1L);
+        rangeKeys.put("decimal", new BigDecimal("1.00"));
+
+        DynamoDbLoader<Thing> loader = DynamoDbLoader.of("itsatableyo", "id", Thing::getId)
+                .withDynamoDb(ddbMock)
+                .withBatchSize(25)
+                .withRangeKey("sort", thing -> rangeKeys.get(thing.year));
+
+        loader.open(metricsMock);
+        loader.load(new Thing("one", "int", Lists.newArrayList()));
+        loader.load(new Thing("one", "long", Lists.newArrayList()));
+        loader.load(new Thing("one", "decimal", Lists.newArrayList()));
+        loader.close();
+
+        verify(ddbMock, times(3)).batchWriteItem(tableWriteItemsCaptor.capture());
+        assertThat(yearsWrittenInEachBatch(),
+                contains(singletonList("int"), singletonList("long"), singletonList("decimal")));
+        verify(metricsMock, times(3)).addCount(eq("DynamoDbLoader.success"), eq(1d));
+    }
+
+    @Test
+    public void recordsWithDifferentKeysAfterADuplicateKeyStartANewBatch() throws Exception {
+        when(ddbMock.batchWriteItem(any(TableWriteItems.class))).thenReturn(successfulOutcome());
+
+        DynamoDbLoader<Thing> loader = DynamoDbLoader.of("itsatableyo", "id", Thing::getId)
+                .withDynamoDb(ddbMock)
+                .withBatchSize(25);
+
+        loader.open(metricsMock);
+        loader.load(new Thing("one", "2001", Lists.newArrayList()));
+        loader.load(new Thing("two", "2002", Lists.newArrayList()));
+        loader.load(new Thing("one", "2003", Lists.newArrayList()));
+        loader.load(new Thing("three", "2004", Lists.newArrayList()));
+        loader.close();
+
+        verify(ddbMock, times(2)).batchWriteItem(tableWriteItemsCaptor.capture());
+        assertThat(yearsWrittenInEachBatch(), contains(asList("2001", "2002"), asList("2003", "2004")));
+        verify(metricsMock, times(2)).addCount(eq("DynamoDbLoader.success"), eq(2d));
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<List<String>> yearsWrittenInEachBatch() {
+        return tableWriteItemsCaptor.getAllValues().stream()
+                .map(tableWriteItems -> tableWriteItems.getItemsToPut().stream()
+                        .map(item -> (String) ((Map<String, Object>) item.get("document")).get("year"))
+                        .collect(Collectors.toList()))
+                .collect(Collectors.toList());
+    }
+
+    @Test
+    public void unprocessedItemsAreRetried() throws Exception {
+        Map<String, AttributeValue> unprocessedItem = Collections.singletonMap("id", new AttributeValue("two"));
+        Map<String, List<WriteRequest>> unprocessedItems = Collections.singletonMap("itsatableyo",
+                Collections.singletonList(new WriteRequest(new PutRequest(unprocessedItem))));
+
+        when(ddbMock.batchWriteItem(any(TableWriteItems.class))).thenReturn(new BatchWriteItemOutcome(
+                new BatchWriteItemResult().withUnprocessedItems(unprocessedItems)));
+        when(ddbMock.batchWriteItemUnprocessed(anyMap())).thenReturn(successfulOutcome());
+
+        DynamoDbLoader<Thing> loader = DynamoDbLoader.of("itsatableyo", "id", Thing::getId)
+                .withDynamoDb(ddbMock)
+                .withBatchSize(2);
+
+        loader.open(metricsMock);
+        loader.load(new Thing("one", "2001", Lists.newArrayList()));
+        loader.load(new Thing("two", "2002", Lists.newArrayList()));
+        loader.close();
+
+        verify(ddbMock).batchWriteItemUnprocessed(eq(unprocessedItems));
+        verify(metricsMock).addCount(eq("DynamoDbLoader.success"), eq(2d));
+        verify(metricsMock).addCount(eq("DynamoDbLoader.failure"), eq(0d));
+    }
+
+    @Test
+    public void closeWaitsForLingeringBatchThatIsRetryingUnprocessedItems() throws Exception {
+        Map<String, AttributeValue> unprocessedItem = Collections.singletonMap("id", new AttributeValue("one"));
+        Map<String, List<WriteRequest>> unprocessedItems = Collections.singletonMap("itsatableyo",
+                Collections.singletonList(new WriteRequest(new PutRequest(unprocessedItem))));
+
+        when(ddbMock.batchWriteItem(any(TableWriteItems.class))).thenReturn(new BatchWriteItemOutcome(
+                new BatchWriteItemResult().withUnprocessedItems(unprocessedItems)));
+        when(ddbMock.batchWriteItemUnprocessed(anyMap())).thenReturn(successfulOutcome());
+
+        DynamoDbLoader<Thing> loader = DynamoDbLoader.of("itsatableyo", "id", Thing::getId)
+                .withDynamoDb(ddbMock)
+                .withBatchSize(25)
+                .withBatchLingerTimeInMillis(10);
+
+        loader.open(metricsMock);
+        loader.load(new Thing("one", "2001", Lists.newArrayList()));
+
+        // Close while the linger flush is backing off before retrying the unprocessed item
+        verify(ddbMock, timeout(5000)).batchWriteItem(any(TableWriteItems.class));
+        loader.close();
+
+        verify(ddbMock).batchWriteItemUnprocessed(eq(unprocessedItems));
+        verify(metricsMock).addCount(eq("DynamoDbLoader.success"), eq(1d));
+        verify(metricsMock, never()).addCount(eq("DynamoDbLoader.failure"), eq(1d));
+    }
+
+    @Test
+    public void failedBatchWriteCountsEveryRecordAsFailure() throws Exception {
+        when(ddbMock.batchWriteItem(any(TableWriteItems.class))).thenThrow(new RuntimeException("failed"));
+
+        DynamoDbLoader<Thing> loader = DynamoDbLoader.of("itsatableyo", "id", Thing::getId)
+                .withDynamoDb(ddbMock)
+                .withBatchSize(2);
+
+        loader.open(metricsMock);
+        loader.load(new Thing("one", "2001", Lists.newArrayList()));
+        loader.load(new Thing("two", "2002", Lists.newArrayList()));
+        loader.close();
+
+        verify(metricsMock).addCount(eq("DynamoDbLoader.success"), eq(0d));
+        verify(metricsMock).addCount(eq("DynamoDbLoader.failure"), eq(2d));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void batchSizeGreaterThanTwentyFiveThrowsIllegalArgumentException() {
+        DynamoDbLoader.of("itsatableyo", "id", Thing::getId).withDynamoDb(ddbMock).withBatchSize(26);
+    }
+
+    @Test
+    public void nativeAttributesStorePropertiesAsAttributes() throws Exception {
+        when(ddbMock.getTable("itsatableyo")).thenReturn(tableMock);
+
+        DynamoDbLoader<Thing> loader = DynamoDbLoader.of("itsatableyo", "pk", Thing::getId)
+                .withDynamoDb(ddbMock)
+                .withNativeAttributes(Thing.class);
+
+        loader.open(metricsMock);
+        loader.load(new Thing("peep", null, Lists.newArrayList(1, 4, 9)));
+        loader.close();
+
+        verify(tableMock).putItem(tablePutItemCaptor.capture());
+        Item item = tablePutItemCaptor.getValue();
+        assertThat(item.getString("pk"), is("peep"));
+        assertThat(item.getString("id"), is("peep"));
+        assertThat(item.isPresent("year"), is(false));
+        assertThat(item.isPresent("document"), is(false));
+        assertThat(item.getList("stuff"), contains(BigDecimal.valueOf(1), BigDecimal.valueOf(4), BigDecimal.valueOf(9)));
+        verify(metricsMock).addCount(eq("DynamoDbLoader.success"), eq(1d));
+    }
+
+    @Test
+    public void rangeKeyAndTimeToLiveAreStored() throws Exception {
+        when(ddbMock.getTable("itsatableyo")).thenReturn(tableMock);
+
+        DynamoDbLoader<Thing> loader = DynamoDbLoader.of("itsatableyo", "id", Thing::getId)
+                .withDynamoDb(ddbMock)
+                .withRangeKey("year", thing -> Integer.parseInt(thing.year))
+                .withTimeToLive("expires", thing -> new DateTime(1500000000000L));
+
+        loader.open(metricsMock);
+        loader.load(new Thing("peep", "2001", Lists.newArrayList()));
+        loader.close();
+
+        verify(tableMock).putItem(tablePutItemCaptor.capture());
+        assertThat(tablePutItemCaptor.getValue().getNumber("year"), is(BigDecimal.valueOf(2001)));
+        assertThat(tablePutItemCaptor.getValue().getLong("expires"), is(1500000000L));
+    }
+
+    @Test
+    public void nullRangeKeyIsAFailure() throws Exception {
+        DynamoDbLoader<Thing> loader = DynamoDbLoader.of("itsatableyo", "id", Thing::getId)
+                .withDynamoDb(ddbMock)
+                .withRangeKey("year", thing -> thing.year);
+
+        loader.open(metricsMock);
+        loader.load(new Thing("peep", null, Lists.newArrayList()));
+        loader.close();
+
+        verify(metricsMock).addCount(eq("DynamoDbLoader.success"), eq(0d));
+        verify(metricsMock).addCount(eq("DynamoDbLoader.failure"), eq(1d));
+    }
+
+    private static BatchWriteItemOutcome successfulOutcome() {
+        return new BatchWriteItemOutcome(new BatchWriteItemResult());
+    }
+
+    private static List<String> primaryKeysOf(TableWriteItems tableWriteItems) {
+        return tableWriteItems.getItemsToPut().stream()
+                .map(item -> item.getString("id"))
+                .collect(Collectors.toList());
+    }
+
     static class Thing {
         public String id;
         public String year;
@@ -0,0 +1,295 @@
+/*
+ *   Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package com.amazon.pocketEtl.loader;
+
+import com.amazon.pocketEtl.exception.UnrecoverableStreamFailureException;
+import com.google.common.collect.ImmutableList;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import org.joda.time.DateTime;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class JdbcBatchLoaderTest {
+    private static final String INSERT_ONE_ROW_SQL = "insert into test_table (id,NAME,updated) values (?,?,?)";
+
+    @Mock
+    private DataSource mockDataSource;
+
+    @Mock
+    private Connection mockConnection;
+
+    @Mock
+    private PreparedStatement mockPreparedStatement;
+
+    @Data
+    @AllArgsConstructor
+    public static class TestRow {
+        private int id;
+        private String name;
+        private DateTime updated;
+    }
+
+    private static class PrivateRow {
+        private final int id;
+
+        PrivateRow(int id) {
+            this.id = id;
+        }
+
+        public int getId() {
+            return id;
+        }
+    }
+
+    private final DateTime now = DateTime.now();
+
+    private JdbcBatchLoader.JdbcBatchLoaderSupplier<TestRow> supplier;
+
+    @Before
+    public void constructSupplier() {
+        supplier = JdbcBatchLoader.supplierOf(mockDataSource, "test_table", ImmutableList.of("id", "NAME", "updated"),
+                TestRow.class);
+    }
+
+    private void stubConnection() throws SQLException {
+        when(mockDataSource.getConnection()).thenReturn(mockConnection);
+        when(mockConnection.prepareStatement(anyString())).thenReturn(mockPreparedStatement);
+    }
+
+    @Test
+    public void openDisablesAutoCommit() throws Exception {
+        when(mockDataSource.getConnection()).thenReturn(mockConnection);
+        JdbcBatchLoader<TestRow> loader = supplier.get();
+        loader.open(null);
+
+        verify(mockConnection).setAutoCommit(false);
+    }
+
+    @Test
+    public void rowsAreBatchedUntilBatchSizeIsReached() throws Exception {
+        stubConnection();
+        JdbcBatchLoader<TestRow> loader = supplier.withBatchSize(2).get();
+        loader.open(null);
+
+        loader.load(new TestRow(1, "one", now));
+        verify(mockPreparedStatement, never()).executeBatch();
+
+        loader.load(new TestRow(2, "two", now));
+        verify(mockConnection).prepareStatement(INSERT_ONE_ROW_SQL);
+        verify(mockPreparedStatement, times(2)).addBatch();
+        verify(mockPreparedStatement).setObject(1, 2);
+        verify(mockPreparedStatement).setObject(2, "two");
+        verify(mockPreparedStatement, times(2)).setObject(3, new Timestamp(now.getMillis()));
+        verify(mockPreparedStatement).executeBatch();
+        verify(mockConnection).commit();
+    }
+
+    @Test
+    public void closeWritesPartialBatchAndCommits() throws Exception {
+        stubConnection();
+        JdbcBatchLoader<TestRow> loader = supplier.get();
+        loader.open(null);
+        loader.load(new TestRow(1, "one", now));
+        loader.close();
+
+        InOrder inOrder = inOrder(mockPreparedStatement, mockConnection);
+        inOrder.verify(mockPreparedStatement).executeBatch();
+        inOrder.verify(mockConnection).commit();
+        inOrder.verify(mockPreparedStatement).close();
+        inOrder.verify(mockConnection).close();
+    }
+
+    @Test
+    public void commitIntervalIsRespected() throws Exception {
+        stubConnection();
+        JdbcBatchLoader<TestRow> loader = supplier.withBatchSize(1).withCommitIntervalInBatches(3).get();
+        loader.open(null);
+
+        loader.load(new TestRow(1, "one", now));
+        loader.load(new TestRow(2, "two", now));
+        verify(mockConnection, never()).commit();
+
+        loader.load(new TestRow(3, "three", now));
+        verify(mockConnection).commit();
+    }
+
+    @Test
+    public void multiRowValuesWritesFullBatchAsOneStatement() throws Exception {
+        stubConnection();
+        JdbcBatchLoader<TestRow> loader = supplier.withBatchSize(2).withMultiRowValues().get();
+        loader.open(null);
+        loader.load(new TestRow(1, "one", now));
+        loader.load(new TestRow(2, "two", now));
+
+        verify(mockConnection).prepareStatement(
+                "insert into test_table (id,NAME,updated) values (?,?,?),(?,?,?)");
+        verify(mockPreparedStatement).setObject(4, 2);
+        verify(mockPreparedStatement).execute();
+        verify(mockPreparedStatement, never()).addBatch();
+    }
+
+    @Test
+    public void multiRowValuesWritesPartialBatchWithSmallerStatement() throws Exception {
+        stubConnection();
+        JdbcBatchLoader<TestRow> loader = supplier.withBatchSize(5).withMultiRowValues().get();
+        loader.open(null);
+        loader.load(new TestRow(1, "one", now));
+        loader.close();
+
+        verify(mockConnection).prepareStatement(INSERT_ONE_ROW_SQL);
+        verify(mockPreparedStatement).execute();
+        verify(mockConnection).commit();
+    }
+
+    @Test
+    public void failedBatchRollsBackAndStopsTheStream() throws Exception {
+        stubConnection();
+        when(mockPreparedStatement.executeBatch()).thenThrow(new SQLException("test"));
+        JdbcBatchLoader<TestRow> loader = supplier.withBatchSize(1).get();
+        loader.open(null);
+
+        try {
+            loader.load(new TestRow(1, "one", now));
+            fail("UnrecoverableStreamFailureException should have been thrown");
+        } catch (UnrecoverableStreamFailureException ignored) {
+            // expected
+        }
+
+        verify(mockConnection).rollback();
+        verify(mockConnection, never()).commit();
+        verify(mockConnection).close();
+    }
+
+    @Test
+    public void failedBatchDuringCloseThrowsUnrecoverableStreamFailureException() throws Exception {
+        stubConnection();
+        when(mockPreparedStatement.executeBatch()).thenThrow(new SQLException("test"));
+        JdbcBatchLoader<TestRow> loader = supplier.get();
+        loader.open(null);
+        loader.load(new TestRow(1, "one", now));
+
+        try {
+            loader.close();
+            fail("UnrecoverableStreamFailureException should have been thrown");
+        } catch (UnrecoverableStreamFailureException ignored) {
+            // expected
+        }
+
+        verify(mockConnection).rollback();
+        verify(mockConnection).close();
+    }
+
+    @Test
+    public void runtimeExceptionWritingBatchRollsBack() throws Exception {
+        stubConnection();
+        when(mockPreparedStatement.executeBatch()).thenThrow(new IllegalStateException("test"));
+        JdbcBatchLoader<TestRow> loader = supplier.withBatchSize(1).get();
+        loader.open(null);
+
+        try {
+            loader.load(new TestRow(1, "one", now));
+            fail("UnrecoverableStreamFailureException should have been thrown");
+        } catch (UnrecoverableStreamFailureException ignored) {
+            // expected
+        }
+
+        verify(mockConnection).rollback();
+        verify(mockConnection).close();
+    }
+
+    @Test
+    public void nonPublicClassIsLoaded() throws Exception {
+        stubConnection();
+        JdbcBatchLoader<PrivateRow> loader = JdbcBatchLoader.supplierOf(mockDataSource, "test_table",
+                ImmutableList.of("id"), PrivateRow.class).get();
+        loader.open(null);
+        loader.load(new PrivateRow(7));
+        loader.close();
+
+        verify(mockPreparedStatement).setObject(1, 7);
+        verify(mockPreparedStatement).executeBatch();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void loadBeforeOpenThrowsIllegalStateException() {
+        supplier.get().load(new TestRow(1, "one", now));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unknownColumnThrowsIllegalArgumentException() {
+        JdbcBatchLoader.supplierOf(mockDataSource, "test_table", ImmutableList.of("id", "missing"), TestRow.class)
+                .get();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void zeroBatchSizeThrowsIllegalArgumentException() {
+        supplier.withBatchSize(0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void upsertKeyThatIsNotLoadedThrowsIllegalArgumentException() {
+        supplier.withUpsert(JdbcUpsertDialect.MERGE, ImmutableList.of("other"));
+    }
+
+    @Test
+    public void onConflictUpsertSql() {
+        String sql = supplier.withUpsert(JdbcUpsertDialect.ON_CONFLICT, ImmutableList.of("id")).buildSql(2);
+
+        assertThat(sql, equalTo("insert into test_table (id,NAME,updated) values (?,?,?),(?,?,?) on conflict (id) " +
+                "do update set NAME = excluded.NAME,updated = excluded.updated"));
+    }
+
+    @Test
+    public void onConflictUpsertWithOnlyKeyColumnsDoesNothing() {
+        String sql = JdbcBatchLoader.supplierOf(mockDataSource, "test_table", ImmutableList.of("id"), TestRow.class)
+                .withUpsert(JdbcUpsertDialect.ON_CONFLICT, ImmutableList.of("id"))
+                .buildSql(1);
+
+        assertThat(sql, equalTo("insert into test_table (id) values (?) on conflict (id) do nothing"));
+    }
+
+    @Test
+    public void mergeUpsertSql() {
+        String sql = supplier.withUpsert(JdbcUpsertDialect.MERGE, ImmutableList.of("id")).buildSql(1);
+
+        assertThat(sql, equalTo("merge into test_table using (values (?,?,?)) as source (id,NAME,updated) " +
+                "on test_table.id = source.id when matched then update set NAME = source.NAME,updated = " +
+                "source.updated when not matched then insert (id,NAME,updated) values (source.id,source.NAME," +
+                "source.updated)"));
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ *   Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package com.amazon.pocketEtl.loader;
+
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+import com.google.common.collect.ImmutableList;
+import lombok.Data;
+import org.joda.time.DateTime;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+public class JsonStringSerializerTest {
+    private static final TestDTO TEST_DTO = new TestDTO("Foo", 7, ImmutableList.of("a", "b"),
+            DateTime.parse("2017-09-29T00:00:00.000Z"));
+    private static final String EXPECTED_JSON =
+            "{\"name\":\"Foo\",\"count\":7,\"list\":[\"a\",\"b\"],\"dateTime\":\"2017-09-29T00:00:00.000Z\"}\n";
+
+    @Data
+    @JsonPropertyOrder({"name", "count", "list", "dateTime"})
+    static class TestDTO {
+        private final String name;
+        private final int count;
+        private final List<String> list;
+        private final DateTime dateTime;
+    }
+
+    @Test
+    public void applyConvertsDTOToLineOfJson() {
+        assertThat(JsonStringSerializer.of(TestDTO.class).apply(TEST_DTO), equalTo(EXPECTED_JSON));
+    }
+
+    @Test
+    public void serializeWritesLinesOfJsonToStream() throws Exception {
+        JsonStringSerializer<TestDTO> serializer = JsonStringSerializer.of(TestDTO.class);
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        serializer.serialize(TEST_DTO, outputStream);
+        serializer.serialize(TEST_DTO, outputStream);
+
+        assertThat(outputStream.toString("UTF-8"), equalTo(EXPECTED_JSON + EXPECTED_JSON));
+    }
+
+    @Test
+    public void serializeDoesNotCloseStream() throws Exception {
+        OutputStream outputStream = mock(OutputStream.class);
+
+        JsonStringSerializer.of(TestDTO.class).serialize(TEST_DTO, outputStream);
+
+        verify(outputStream, never()).close();
+    }
+
+    @Test
+    public void writeHeaderWritesNothing() throws Exception {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        JsonStringSerializer.of(TestDTO.class).writeHeader(outputStream);
+
+        assertThat(outputStream.size(), is(0));
+    }
+}
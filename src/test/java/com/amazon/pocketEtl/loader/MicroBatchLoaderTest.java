@@ -0,0 +1,297 @@
+/*
+ *   Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package com.amazon.pocketEtl.loader;
+
+import com.amazon.pocketEtl.EtlMetrics;
+import com.amazon.pocketEtl.EtlTestBase;
+import com.amazon.pocketEtl.exception.UnrecoverableStreamFailureException;
+import com.google.common.collect.ImmutableList;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.fail;
+
+public class MicroBatchLoaderTest extends EtlTestBase {
+    private static final int BYTES_PER_OBJECT = 10;
+
+    private final List<TestBatch> batches = Collections.synchronizedList(new ArrayList<>());
+    private final List<TestBatch> commitOrder = Collections.synchronizedList(new ArrayList<>());
+
+    private class TestBatch implements MicroBatchLoader.Batch<String> {
+        private final List<String> loadedObjects = Collections.synchronizedList(new ArrayList<>());
+        private final AtomicInteger timesOpened = new AtomicInteger(0);
+        private final AtomicInteger timesClosed = new AtomicInteger(0);
+        private final AtomicInteger timesAborted = new AtomicInteger(0);
+        private final CountDownLatch commitCanFinish;
+        private final Throwable commitFailure;
+
+        TestBatch(CountDownLatch commitCanFinish, Throwable commitFailure) {
+            this.commitCanFinish = commitCanFinish;
+            this.commitFailure = commitFailure;
+        }
+
+        @Override
+        public long getSizeInBytes() {
+            return loadedObjects.size() * BYTES_PER_OBJECT;
+        }
+
+        @Override
+        public void load(String objectToLoad) {
+            loadedObjects.add(objectToLoad);
+        }
+
+        @Override
+        public void open(EtlMetrics parentMetrics) {
+            timesOpened.incrementAndGet();
+        }
+
+        @Override
+        public void close() throws Exception {
+            timesClosed.incrementAndGet();
+            commitOrder.add(this);
+
+            if (commitCanFinish != null) {
+                commitCanFinish.await();
+            }
+
+            if (commitFailure instanceof Error) {
+                throw (Error) commitFailure;
+            }
+
+            if (commitFailure != null) {
+                throw (Exception) commitFailure;
+            }
+        }
+
+        @Override
+        public void abort() {
+            timesAborted.incrementAndGet();
+        }
+    }
+
+    private MicroBatchLoader<String> loaderOfBatches(CountDownLatch commitCanFinish, Throwable commitFailure) {
+        return MicroBatchLoader.of(() -> {
+            TestBatch batch = new TestBatch(commitCanFinish, commitFailure);
+            batches.add(batch);
+            return batch;
+        });
+    }
+
+    private MicroBatchLoader<String> loaderOfBatches() {
+        return loaderOfBatches(null, null);
+    }
+
+    @Test
+    public void batchesAreSealedAndCommittedInOrderOnceTheyReachTheMaxSize() throws Exception {
+        MicroBatchLoader<String> loader = loaderOfBatches().withMaxBatchSizeInBytes(BYTES_PER_OBJECT * 3);
+
+        loader.open(mockMetrics);
+
+        for (int i = 0; i < 7; i++) {
+            loader.load("object" + i);
+        }
+
+        loader.close();
+
+        assertThat(batches.size(), equalTo(3));
+        assertThat(batches.get(0).loadedObjects, equalTo(ImmutableList.of("object0", "object1", "object2")));
+        assertThat(batches.get(1).loadedObjects, equalTo(ImmutableList.of("object3", "object4", "object5")));
+        assertThat(batches.get(2).loadedObjects, equalTo(ImmutableList.of("object6")));
+        assertThat(commitOrder, equalTo(batches));
+
+        for (TestBatch batch : batches) {
+            assertThat(batch.timesOpened.get(), equalTo(1));
+            assertThat(batch.timesClosed.get(), equalTo(1));
+        }
+    }
+
+    @Test
+    public void batchIsSealedAndCommittedOnceItReachesTheMaxAgeWithoutAnyMoreObjectsBeingLoaded() throws Exception {
+        MicroBatchLoader<String> loader = loaderOfBatches().withMaxBatchAgeInMillis(20);
+
+        loader.open(mockMetrics);
+        loader.load("object");
+
+        long giveUpTime = System.currentTimeMillis() + 10000;
+
+        while (commitOrder.isEmpty() && System.currentTimeMillis() < giveUpTime) {
+            Thread.sleep(5);
+        }
+
+        assertThat(commitOrder.size(), equalTo(1));
+
+        loader.load("another object");
+        loader.close();
+
+        assertThat(batches.size(), equalTo(2));
+        assertThat(batches.get(1).loadedObjects, equalTo(ImmutableList.of("another object")));
+        assertThat(commitOrder, equalTo(batches));
+    }
+
+    @Test
+    public void loadingContinuesIntoTheNextBatchWhileABatchIsBeingCommitted() throws Exception {
+        CountDownLatch commitCanFinish = new CountDownLatch(1);
+        MicroBatchLoader<String> loader = loaderOfBatches(commitCanFinish, null).withMaxBatchSizeInBytes(BYTES_PER_OBJECT);
+
+        loader.open(mockMetrics);
+        loader.load("object1");
+        loader.load("object2");
+
+        assertThat(batches.size(), equalTo(2));
+        assertThat(batches.get(1).loadedObjects, equalTo(ImmutableList.of("object2")));
+        assertThat(batches.get(1).timesClosed.get(), equalTo(0));
+
+        commitCanFinish.countDown();
+        loader.close();
+
+        assertThat(commitOrder, equalTo(batches));
+    }
+
+    @Test
+    public void emptyStreamCommitsASingleEmptyBatch() throws Exception {
+        MicroBatchLoader<String> loader = loaderOfBatches().withMaxBatchSizeInBytes(BYTES_PER_OBJECT);
+
+        loader.open(mockMetrics);
+        loader.close();
+
+        assertThat(batches.size(), equalTo(1));
+        assertThat(batches.get(0).loadedObjects.isEmpty(), is(true));
+        assertThat(batches.get(0).timesClosed.get(), equalTo(1));
+    }
+
+    @Test
+    public void failedCommitIsThrownByNextLoadAndNoLaterBatchIsCommitted() throws Exception {
+        MicroBatchLoader<String> loader = loaderOfBatches(null, new RuntimeException("Commit failed"))
+                .withMaxBatchSizeInBytes(BYTES_PER_OBJECT);
+
+        loader.open(mockMetrics);
+        loader.load("object1");
+        loader.load("object2");
+
+        long giveUpTime = System.currentTimeMillis() + 10000;
+
+        try {
+            while (System.currentTimeMillis() < giveUpTime) {
+                loader.load("another object");
+                Thread.sleep(5);
+            }
+
+            fail("Failed commit was never thrown by load");
+        } catch (UnrecoverableStreamFailureException ignored) {
+            // Expected
+        }
+
+        try {
+            loader.close();
+            fail("Failed commit was not thrown by close");
+        } catch (UnrecoverableStreamFailureException ignored) {
+            // Expected
+        }
+
+        assertThat(commitOrder.size(), equalTo(1));
+        assertThat(commitOrder.get(0), equalTo(batches.get(0)));
+
+        for (TestBatch batch : batches.subList(1, batches.size())) {
+            assertThat(batch.timesClosed.get(), equalTo(0));
+            assertThat(batch.timesAborted.get(), equalTo(1));
+        }
+    }
+
+    @Test
+    public void errorThrownCommittingBatchIsThrownByClose() throws Exception {
+        MicroBatchLoader<String> loader = loaderOfBatches(null, new AssertionError("Commit failed"));
+
+        loader.open(mockMetrics);
+        loader.load("object1");
+
+        try {
+            loader.close();
+            fail("Error thrown committing batch was not thrown by close");
+        } catch (UnrecoverableStreamFailureException e) {
+            assertThat(e.getCause(), instanceOf(AssertionError.class));
+        }
+    }
+
+    @Test
+    public void everyObjectLoadedByConcurrentThreadsIsCommittedExactlyOnce() throws Exception {
+        MicroBatchLoader<String> loader = loaderOfBatches().withMaxBatchSizeInBytes(BYTES_PER_OBJECT * 7);
+        ExecutorService executorService = Executors.newFixedThreadPool(8);
+
+        loader.open(mockMetrics);
+
+        for (int thread = 0; thread < 8; thread++) {
+            int threadNumber = thread;
+
+            executorService.submit(() -> {
+                for (int i = 0; i < 500; i++) {
+                    loader.load(threadNumber + "-" + i);
+                }
+            });
+        }
+
+        executorService.shutdown();
+        assertThat(executorService.awaitTermination(30, TimeUnit.SECONDS), is(true));
+        loader.close();
+
+        List<String> committedObjects = new ArrayList<>();
+
+        for (TestBatch batch : batches) {
+            assertThat(batch.timesClosed.get(), equalTo(1));
+            committedObjects.addAll(batch.loadedObjects);
+        }
+
+        assertThat(commitOrder, equalTo(batches));
+        assertThat(committedObjects.size(), equalTo(4000));
+        assertThat(committedObjects.stream().distinct().count(), equalTo(4000L));
+    }
+
+    @Test
+    public void loadAfterCloseThrowsIllegalStateException() throws Exception {
+        MicroBatchLoader<String> loader = loaderOfBatches();
+
+        loader.open(mockMetrics);
+        loader.close();
+
+        try {
+            loader.load("object");
+            fail("Load after close did not throw");
+        } catch (RuntimeException e) {
+            assertThat(e, instanceOf(IllegalStateException.class));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void withMaxBatchSizeInBytesThrowsIllegalArgumentExceptionIfNotPositive() {
+        loaderOfBatches().withMaxBatchSizeInBytes(0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void withMaxBatchAgeInMillisThrowsIllegalArgumentExceptionIfNotPositive() {
+        loaderOfBatches().withMaxBatchAgeInMillis(0);
+    }
+}
@@ -178,6 +178,40 @@ public class ParallelLoaderTest extends EtlTestBase {
         });
     }
 
+    @Test
+    public void fixedNumberOfLoadersDealsObjectsEvenlyToEachLoader() throws Exception {
+        parallelLoaderForMultiThreadedTests = parallelLoaderForMultiThreadedTests.withFixedNumberOfLoaders(3);
+        parallelLoaderForMultiThreadedTests.open(mockMetrics);
+        EtlExecutor multiThreadedExecutor = etlExecutorFactory.newBlockingFixedThreadsEtlExecutor(NUMBER_OF_LOADERS, EXECUTOR_QUEUE_SIZE);
+        for (int i = 0; i < 99; i++) {
+            multiThreadedExecutor.submit(() -> parallelLoaderForMultiThreadedTests.load(TEST_STRING), mockMetrics);
+        }
+        multiThreadedExecutor.shutdown();
+        parallelLoaderForMultiThreadedTests.close();
+
+        assertThat(loaderInteractionsMap.size(), is(3));
+        for (Loader<String> loader : loaderInteractionsMap.keySet()) {
+            assertThat(loaderInteractionsMap.get(loader).size(), is(33));
+            verify(loader, times(1)).open(eq(mockMetrics));
+            verify(loader, times(1)).close();
+        }
+    }
+
+    @Test
+    public void fixedNumberOfLoadersOnlyCreatesLoadersThatAreUsed() throws Exception {
+        parallelLoaderForMultiThreadedTests = parallelLoaderForMultiThreadedTests.withFixedNumberOfLoaders(3);
+        parallelLoaderForMultiThreadedTests.open(mockMetrics);
+        parallelLoaderForMultiThreadedTests.load(TEST_STRING);
+        parallelLoaderForMultiThreadedTests.close();
+
+        verify(mockMultiThreadedLoaderSupplier, times(1)).get();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void withFixedNumberOfLoadersThrowsIllegalArgumentExceptionIfNotPositive() {
+        parallelLoader.withFixedNumberOfLoaders(0);
+    }
+
     @Test
     public void loadAfterCloseThrowsIllegalStateException() throws Exception {
         thrown.expect(IllegalStateException.class);
@@ -18,19 +18,31 @@ package com.amazon.pocketEtl.loader;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.endsWith;
+import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
-
+import static org.mockito.Mockito.when;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.startsWith;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 import javax.sql.DataSource;
 
+import com.google.common.base.Strings;
 import com.google.common.collect.ImmutableList;
 
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.InOrder;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
 
@@ -41,6 +53,9 @@ import com.amazon.pocketEtl.exception.UnrecoverableStreamFailureException;
 import com.amazon.pocketEtl.integration.RedshiftJdbcClient;
 
 import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.PutObjectRequest;
+import com.amazonaws.services.s3.model.PutObjectResult;
+import com.amazonaws.util.IOUtils;
 
 @RunWith(MockitoJUnitRunner.class)
 public class RedshiftBulkLoaderTest extends EtlTestBase {
@@ -63,6 +78,9 @@ public class RedshiftBulkLoaderTest extends EtlTestBase {
     @Mock
     private RedshiftJdbcClient mockRedshiftJdbcClient;
 
+    @Mock
+    private RedshiftJdbcClient mockCoordinatorRedshiftJdbcClient;
+
     @Test
     public void canCreateALoaderWithMinimumProperties() {
         getMinimalLoaderSupplier().get();
@@ -126,16 +144,16 @@ public class RedshiftBulkLoaderTest extends EtlTestBase {
         redshiftLoader.load(OBJECT_TO_WRITE);
         redshiftLoader.close();
 
-        verify(mockRedshiftJdbcClient).copyAndMerge(eq(EXTRACT_COLUMN_NAMES), eq(KEY_COLUMN_NAMES), eq(DESTINATION_TABLE_NAME),
-                eq(S3_BUCKET), anyString(), eq(S3_REGION), eq(IAM_ROLE), eq(mockMetrics));
+        verify(mockRedshiftJdbcClient).copyAndMergeFromManifest(eq(EXTRACT_COLUMN_NAMES), eq(KEY_COLUMN_NAMES), eq(DESTINATION_TABLE_NAME),
+                eq(S3_BUCKET), endsWith("/copy.manifest"), eq(S3_REGION), eq(IAM_ROLE), eq(ImmutableList.of()), eq(mockMetrics));
     }
 
     @Test(expected = UnrecoverableStreamFailureException.class)
     public void loaderThrowsUnrecoverableStreamFailureExceptionOnRedshiftProblem() throws Exception {
         doThrow(new RuntimeException("Something went wrong")).when(mockRedshiftJdbcClient)
-                                                             .copyAndMerge(anyList(), anyList(), anyString(),
+                                                             .copyAndMergeFromManifest(anyList(), anyList(), anyString(),
                                                                            anyString(), anyString(), anyString(),
-                                                                           anyString(), any(EtlMetrics.class));
+                                                                           anyString(), anyList(), any(EtlMetrics.class));
 
         Loader<TestDTO> redshiftLoader = getMinimalLoaderSupplier()
             .withAmazonS3(mockAmazonS3)
@@ -164,8 +182,8 @@ public class RedshiftBulkLoaderTest extends EtlTestBase {
         redshiftLoader.load(OBJECT_TO_WRITE);
         redshiftLoader.close();
 
-        verify(mockRedshiftJdbcClient).copyAndMerge(eq(EXTRACT_COLUMN_NAMES), eq(KEY_COLUMN_NAMES), eq(DESTINATION_TABLE_NAME),
-                eq(S3_BUCKET), anyString(), eq(S3_REGION), eq(IAM_ROLE), eq(mockMetrics));
+        verify(mockRedshiftJdbcClient).copyAndMergeFromManifest(eq(EXTRACT_COLUMN_NAMES), eq(KEY_COLUMN_NAMES), eq(DESTINATION_TABLE_NAME),
+                eq(S3_BUCKET), endsWith("/copy.manifest"), eq(S3_REGION), eq(IAM_ROLE), eq(ImmutableList.of()), eq(mockMetrics));
     }
 
     @Test
@@ -180,8 +198,311 @@ public class RedshiftBulkLoaderTest extends EtlTestBase {
         redshiftLoader.load(OBJECT_TO_WRITE);
         redshiftLoader.close();
 
-        verify(mockRedshiftJdbcClient).deleteAndCopy(eq(EXTRACT_COLUMN_NAMES), eq(DESTINATION_TABLE_NAME),
-                eq(S3_BUCKET), anyString(), eq(S3_REGION), eq(IAM_ROLE), eq(mockMetrics));
+        verify(mockRedshiftJdbcClient).deleteAndCopyFromManifest(eq(EXTRACT_COLUMN_NAMES), eq(DESTINATION_TABLE_NAME),
+                eq(S3_BUCKET), endsWith("/copy.manifest"), eq(S3_REGION), eq(IAM_ROLE), eq(ImmutableList.of()), eq(mockMetrics));
+    }
+
+    @Test
+    public void loaderWithAppendToExistingDataStrategyCallsCopyAndAppendOnClose() throws Exception {
+        Loader<TestDTO> redshiftLoader = getMinimalLoaderSupplier()
+                .withAmazonS3(mockAmazonS3)
+                .withBufferSizeInBytes(1000)
+                .withRedshiftJdbcClient(mockRedshiftJdbcClient)
+                .withLoadStrategy(RedshiftLoadStrategy.APPEND_TO_EXISTING_DATA)
+                .get();
+
+        redshiftLoader.open(etlProfilingScope.getMetrics());
+        redshiftLoader.load(OBJECT_TO_WRITE);
+        redshiftLoader.close();
+
+        verify(mockRedshiftJdbcClient).copyAndAppendFromManifest(eq(EXTRACT_COLUMN_NAMES), eq(DESTINATION_TABLE_NAME),
+                eq(S3_BUCKET), endsWith("/copy.manifest"), eq(S3_REGION), eq(IAM_ROLE), eq(ImmutableList.of()), eq(mockMetrics));
+        verifyNoMoreInteractions(mockRedshiftJdbcClient);
+    }
+
+    @Test
+    public void loaderWithMergeCommandStrategyCallsCopyAndMergeCommandOnClose() throws Exception {
+        Loader<TestDTO> redshiftLoader = getMinimalLoaderSupplier()
+                .withAmazonS3(mockAmazonS3)
+                .withBufferSizeInBytes(1000)
+                .withRedshiftJdbcClient(mockRedshiftJdbcClient)
+                .withLoadStrategy(RedshiftLoadStrategy.MERGE_INTO_EXISTING_DATA_WITH_MERGE_COMMAND)
+                .get();
+
+        redshiftLoader.open(etlProfilingScope.getMetrics());
+        redshiftLoader.load(OBJECT_TO_WRITE);
+        redshiftLoader.close();
+
+        verify(mockRedshiftJdbcClient).copyAndMergeCommandFromManifest(eq(EXTRACT_COLUMN_NAMES), eq(KEY_COLUMN_NAMES),
+                eq(DESTINATION_TABLE_NAME), eq(S3_BUCKET), endsWith("/copy.manifest"), eq(S3_REGION), eq(IAM_ROLE),
+                eq(ImmutableList.of()), eq(mockMetrics));
+        verifyNoMoreInteractions(mockRedshiftJdbcClient);
+    }
+
+    @Test
+    public void loaderWithDeduplicateStrategyCallsCopyDeduplicateAndMergeWithLatestRowColumnOnClose() throws Exception {
+        Loader<TestDTO> redshiftLoader = getMinimalLoaderSupplier()
+                .withAmazonS3(mockAmazonS3)
+                .withBufferSizeInBytes(1000)
+                .withRedshiftJdbcClient(mockRedshiftJdbcClient)
+                .withLoadStrategy(RedshiftLoadStrategy.DEDUPLICATE_AND_MERGE_INTO_EXISTING_DATA)
+                .withRedshiftLatestRowColumnName("updated_at")
+                .get();
+
+        redshiftLoader.open(etlProfilingScope.getMetrics());
+        redshiftLoader.load(OBJECT_TO_WRITE);
+        redshiftLoader.close();
+
+        verify(mockRedshiftJdbcClient).copyDeduplicateAndMergeFromManifest(eq(EXTRACT_COLUMN_NAMES), eq(KEY_COLUMN_NAMES),
+                eq("updated_at"), eq(DESTINATION_TABLE_NAME), eq(S3_BUCKET), endsWith("/copy.manifest"), eq(S3_REGION),
+                eq(IAM_ROLE), eq(ImmutableList.of()), eq(mockMetrics));
+        verifyNoMoreInteractions(mockRedshiftJdbcClient);
+    }
+
+    @Test
+    public void loaderWithAppendToExistingDataStrategyDoesNothingOnCloseIfDataWasNotLoaded() throws Exception {
+        Loader<TestDTO> redshiftLoader = getMinimalLoaderSupplier()
+                .withLoadStrategy(RedshiftLoadStrategy.APPEND_TO_EXISTING_DATA)
+                .withRedshiftJdbcClient(mockRedshiftJdbcClient)
+                .get();
+
+        redshiftLoader.open(etlProfilingScope.getMetrics());
+        redshiftLoader.close();
+
+        verifyNoMoreInteractions(mockRedshiftJdbcClient);
+    }
+
+    @Test
+    public void compressedLoaderWritesCompressedFilesAndAddsCompressionOptionToCopy() throws Exception {
+        Loader<TestDTO> redshiftLoader = getMinimalLoaderSupplier()
+                .withAmazonS3(mockAmazonS3)
+                .withS3Prefix(S3_PREFIX)
+                .withCompression(CompressionCodec.GZIP)
+                .withRedshiftJdbcClient(mockRedshiftJdbcClient)
+                .get();
+
+        redshiftLoader.open(etlProfilingScope.getMetrics());
+        redshiftLoader.load(OBJECT_TO_WRITE);
+        redshiftLoader.close();
+
+        verify(mockAmazonS3).putObject(argThat(request -> request.getKey().endsWith(".csv.gz")));
+        verify(mockRedshiftJdbcClient).copyAndMergeFromManifest(eq(EXTRACT_COLUMN_NAMES), eq(KEY_COLUMN_NAMES), eq(DESTINATION_TABLE_NAME),
+                eq(S3_BUCKET), endsWith("/copy.manifest"), eq(S3_REGION), eq(IAM_ROLE), eq(ImmutableList.of("GZIP")), eq(mockMetrics));
+    }
+
+    @Test
+    public void loaderWritesManifestListingEveryFileWritten() throws Exception {
+        List<PutObjectRequest> putObjectRequests = new ArrayList<>();
+        List<String> putObjectContents = new ArrayList<>();
+        when(mockAmazonS3.putObject(any(PutObjectRequest.class))).thenAnswer(invocation -> {
+            PutObjectRequest request = invocation.getArgument(0);
+            putObjectRequests.add(request);
+            putObjectContents.add(new String(IOUtils.toByteArray(request.getInputStream()), StandardCharsets.UTF_8));
+            return new PutObjectResult();
+        });
+
+        Loader<TestDTO> redshiftLoader = getMinimalLoaderSupplier()
+                .withAmazonS3(mockAmazonS3)
+                .withS3Prefix(S3_PREFIX)
+                .withKmsArn("kms-arn")
+                .withBufferSizeInBytes(20)
+                .withRedshiftJdbcClient(mockRedshiftJdbcClient)
+                .get();
+
+        redshiftLoader.open(etlProfilingScope.getMetrics());
+        redshiftLoader.load(OBJECT_TO_WRITE);
+        redshiftLoader.load(OBJECT_TO_WRITE);
+        redshiftLoader.close();
+
+        assertThat(putObjectRequests.size(), equalTo(3));
+        PutObjectRequest manifestRequest = putObjectRequests.get(2);
+        assertThat(manifestRequest.getKey(), startsWith(S3_PREFIX + "/"));
+        assertThat(manifestRequest.getSSEAwsKeyManagementParams().getAwsKmsKeyId(), equalTo("kms-arn"));
+        assertThat(putObjectContents.get(2), equalTo("{\"entries\":[" +
+                "{\"url\":\"s3://" + S3_BUCKET + "/" + putObjectRequests.get(0).getKey() + "\",\"mandatory\":true}," +
+                "{\"url\":\"s3://" + S3_BUCKET + "/" + putObjectRequests.get(1).getKey() + "\",\"mandatory\":true}]}"));
+        verify(mockRedshiftJdbcClient).copyAndMergeFromManifest(anyList(), anyList(), anyString(), eq(S3_BUCKET),
+                eq(manifestRequest.getKey()), anyString(), anyString(), anyList(), any(EtlMetrics.class));
+    }
+
+    @Test
+    public void loaderWithSliceCountDealsDataEvenlyToThatManyFiles() throws Exception {
+        List<String> putObjectContents = Collections.synchronizedList(new ArrayList<>());
+        when(mockAmazonS3.putObject(any(PutObjectRequest.class))).thenAnswer(invocation -> {
+            PutObjectRequest request = invocation.getArgument(0);
+
+            if (!request.getKey().endsWith("/copy.manifest")) {
+                putObjectContents.add(new String(IOUtils.toByteArray(request.getInputStream()), StandardCharsets.UTF_8));
+            }
+
+            return new PutObjectResult();
+        });
+
+        Loader<TestDTO> redshiftLoader = getMinimalLoaderSupplier()
+                .withAmazonS3(mockAmazonS3)
+                .withSliceCount(4)
+                .withRedshiftJdbcClient(mockRedshiftJdbcClient)
+                .get();
+
+        redshiftLoader.open(etlProfilingScope.getMetrics());
+        for (int i = 0; i < 40; i++) {
+            redshiftLoader.load(OBJECT_TO_WRITE);
+        }
+        redshiftLoader.close();
+
+        String expectedFile = Strings.repeat(OBJECT_TO_WRITE.getValue() + "\n", 10);
+        assertThat(putObjectContents, equalTo(ImmutableList.of(expectedFile, expectedFile, expectedFile, expectedFile)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void withSliceCountThrowsIllegalArgumentExceptionIfNotPositive() {
+        getMinimalLoaderSupplier().withSliceCount(0);
+    }
+
+    @Test
+    public void microBatchedLoaderCopiesEachBatchThroughItsOwnManifestInOrder() throws Exception {
+        Loader<TestDTO> redshiftLoader = getMinimalLoaderSupplier()
+                .withAmazonS3(mockAmazonS3)
+                .withBufferSizeInBytes(1000)
+                .withS3Prefix(S3_PREFIX)
+                .withMicroBatchSizeInBytes(OBJECT_TO_WRITE.getValue().length() + 1)
+                .withRedshiftJdbcClient(mockRedshiftJdbcClient)
+                .get();
+
+        redshiftLoader.open(etlProfilingScope.getMetrics());
+        redshiftLoader.load(OBJECT_TO_WRITE);
+        redshiftLoader.load(OBJECT_TO_WRITE);
+        redshiftLoader.load(OBJECT_TO_WRITE);
+        redshiftLoader.close();
+
+        InOrder inOrder = inOrder(mockRedshiftJdbcClient);
+
+        for (String batchName : ImmutableList.of("batch-00000", "batch-00001", "batch-00002")) {
+            inOrder.verify(mockRedshiftJdbcClient).copyAndMergeFromManifest(eq(EXTRACT_COLUMN_NAMES), eq(KEY_COLUMN_NAMES),
+                    eq(DESTINATION_TABLE_NAME), eq(S3_BUCKET), endsWith("/" + batchName + "/copy.manifest"), eq(S3_REGION),
+                    eq(IAM_ROLE), eq(ImmutableList.of()), eq(mockMetrics));
+        }
+
+        verifyNoMoreInteractions(mockRedshiftJdbcClient);
+    }
+
+    @Test
+    public void microBatchedLoaderWithClobberExistingDataStrategyOnlyClobbersWithTheFirstBatch() throws Exception {
+        Loader<TestDTO> redshiftLoader = getMinimalLoaderSupplier()
+                .withAmazonS3(mockAmazonS3)
+                .withBufferSizeInBytes(1000)
+                .withLoadStrategy(RedshiftLoadStrategy.CLOBBER_EXISTING_DATA)
+                .withMicroBatchSizeInBytes(1)
+                .withMicroBatchAgeInMillis(60000)
+                .withRedshiftJdbcClient(mockRedshiftJdbcClient)
+                .get();
+
+        redshiftLoader.open(etlProfilingScope.getMetrics());
+        redshiftLoader.load(OBJECT_TO_WRITE);
+        redshiftLoader.load(OBJECT_TO_WRITE);
+        redshiftLoader.close();
+
+        InOrder inOrder = inOrder(mockRedshiftJdbcClient);
+        inOrder.verify(mockRedshiftJdbcClient).deleteAndCopyFromManifest(eq(EXTRACT_COLUMN_NAMES), eq(DESTINATION_TABLE_NAME),
+                eq(S3_BUCKET), endsWith("/batch-00000/copy.manifest"), eq(S3_REGION), eq(IAM_ROLE), eq(ImmutableList.of()),
+                eq(mockMetrics));
+        inOrder.verify(mockRedshiftJdbcClient).copyAndMergeFromManifest(eq(EXTRACT_COLUMN_NAMES), eq(KEY_COLUMN_NAMES),
+                eq(DESTINATION_TABLE_NAME), eq(S3_BUCKET), endsWith("/batch-00001/copy.manifest"), eq(S3_REGION),
+                eq(IAM_ROLE), eq(ImmutableList.of()), eq(mockMetrics));
+        verifyNoMoreInteractions(mockRedshiftJdbcClient);
+    }
+
+    @Test
+    public void microBatchedLoaderCallsTruncateOnCloseIfDataWasNotLoadedWithClobberExistingDataStrategy() throws Exception {
+        Loader<TestDTO> redshiftLoader = getMinimalLoaderSupplier()
+                .withAmazonS3(mockAmazonS3)
+                .withBufferSizeInBytes(1000)
+                .withLoadStrategy(RedshiftLoadStrategy.CLOBBER_EXISTING_DATA)
+                .withMicroBatchAgeInMillis(60000)
+                .withRedshiftJdbcClient(mockRedshiftJdbcClient)
+                .get();
+
+        redshiftLoader.open(etlProfilingScope.getMetrics());
+        redshiftLoader.close();
+
+        verify(mockRedshiftJdbcClient).truncate(DESTINATION_TABLE_NAME);
+        verifyNoMoreInteractions(mockRedshiftJdbcClient);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void withMicroBatchSizeInBytesThrowsIllegalArgumentExceptionIfNotPositive() {
+        getMinimalLoaderSupplier().withMicroBatchSizeInBytes(0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void withMicroBatchAgeInMillisThrowsIllegalArgumentExceptionIfNotPositive() {
+        getMinimalLoaderSupplier().withMicroBatchAgeInMillis(0);
+    }
+
+    @Test
+    public void loaderWithNonAtomicCoordinatorCopiesAndMergesOnClose() throws Exception {
+        Loader<TestDTO> redshiftLoader = getMinimalLoaderSupplier()
+                .withAmazonS3(mockAmazonS3)
+                .withBufferSizeInBytes(1000)
+                .withLoadCoordinator(RedshiftLoadCoordinator.of(mockDataSource).withMaxConcurrentCopies(1))
+                .withRedshiftJdbcClient(mockRedshiftJdbcClient)
+                .get();
+
+        redshiftLoader.open(etlProfilingScope.getMetrics());
+        redshiftLoader.load(OBJECT_TO_WRITE);
+        redshiftLoader.close();
+
+        verify(mockRedshiftJdbcClient).copyAndMergeFromManifest(eq(EXTRACT_COLUMN_NAMES), eq(KEY_COLUMN_NAMES),
+                eq(DESTINATION_TABLE_NAME), eq(S3_BUCKET), endsWith("/copy.manifest"), eq(S3_REGION), eq(IAM_ROLE),
+                eq(ImmutableList.of()), eq(mockMetrics));
+        verifyNoMoreInteractions(mockRedshiftJdbcClient);
+    }
+
+    @Test
+    public void loadersWithAtomicCoordinatorOnlyStageTheirDataUntilItIsPublished() throws Exception {
+        when(mockRedshiftJdbcClient.copyIntoNewStageTableFromManifest(anyList(), anyString(), anyString(), anyString(),
+                anyString(), anyString(), anyList(), any())).thenReturn("stage_1");
+        RedshiftLoadCoordinator coordinator = RedshiftLoadCoordinator.of(mockDataSource)
+                .withAtomicPublication()
+                .withRedshiftJdbcClient(mockCoordinatorRedshiftJdbcClient);
+        Loader<TestDTO> mergingLoader = getMinimalLoaderSupplier()
+                .withAmazonS3(mockAmazonS3)
+                .withBufferSizeInBytes(1000)
+                .withLoadCoordinator(coordinator)
+                .withRedshiftJdbcClient(mockRedshiftJdbcClient)
+                .get();
+        Loader<TestDTO> clobberingLoader = getMinimalLoaderSupplier()
+                .withRedshiftTableName("otherTable")
+                .withLoadStrategy(RedshiftLoadStrategy.CLOBBER_EXISTING_DATA)
+                .withLoadCoordinator(coordinator)
+                .withRedshiftJdbcClient(mockRedshiftJdbcClient)
+                .get();
+
+        mergingLoader.open(etlProfilingScope.getMetrics());
+        clobberingLoader.open(etlProfilingScope.getMetrics());
+        mergingLoader.load(OBJECT_TO_WRITE);
+        mergingLoader.close();
+        clobberingLoader.close();
+
+        verify(mockRedshiftJdbcClient).copyIntoNewStageTableFromManifest(eq(EXTRACT_COLUMN_NAMES),
+                eq(DESTINATION_TABLE_NAME), eq(S3_BUCKET), endsWith("/copy.manifest"), eq(S3_REGION), eq(IAM_ROLE),
+                eq(ImmutableList.of()), eq(mockMetrics));
+        verifyNoMoreInteractions(mockRedshiftJdbcClient);
+        verifyNoMoreInteractions(mockCoordinatorRedshiftJdbcClient);
+
+        coordinator.publish(mockMetrics);
+
+        verify(mockCoordinatorRedshiftJdbcClient).publishStageTables(eq(ImmutableList.of(
+                RedshiftJdbcClient.StagedTable.mergeInto(DESTINATION_TABLE_NAME, "stage_1", KEY_COLUMN_NAMES),
+                RedshiftJdbcClient.StagedTable.replace("otherTable", null))), eq(mockMetrics));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void deduplicatingLoaderCannotUseAnAtomicCoordinator() {
+        getMinimalLoaderSupplier()
+                .withLoadStrategy(RedshiftLoadStrategy.DEDUPLICATE_AND_MERGE_INTO_EXISTING_DATA)
+                .withLoadCoordinator(RedshiftLoadCoordinator.of(mockDataSource).withAtomicPublication())
+                .get();
     }
 
     @Test
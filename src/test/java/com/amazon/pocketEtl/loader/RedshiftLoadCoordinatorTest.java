@@ -0,0 +1,189 @@
+/*
+ *   Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package com.amazon.pocketEtl.loader;
+
+import com.amazon.pocketEtl.EtlTestBase;
+import com.amazon.pocketEtl.integration.RedshiftJdbcClient;
+import com.google.common.collect.ImmutableList;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import javax.sql.DataSource;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+
+@RunWith(MockitoJUnitRunner.class)
+public class RedshiftLoadCoordinatorTest extends EtlTestBase {
+    private static final RedshiftJdbcClient.StagedTable STAGED_TABLE_ONE =
+            RedshiftJdbcClient.StagedTable.mergeInto("table_one", "stage_1", ImmutableList.of("key"));
+    private static final RedshiftJdbcClient.StagedTable STAGED_TABLE_TWO =
+            RedshiftJdbcClient.StagedTable.replace("table_two", "stage_2");
+    private static final RedshiftJdbcClient.StagedTable EMPTY_STAGED_TABLE =
+            RedshiftJdbcClient.StagedTable.replace("table_three", null);
+
+    @Mock
+    private DataSource mockDataSource;
+
+    @Mock
+    private RedshiftJdbcClient mockRedshiftJdbcClient;
+
+    private RedshiftLoadCoordinator coordinator;
+
+    @Before
+    public void constructCoordinator() {
+        coordinator = RedshiftLoadCoordinator.of(mockDataSource)
+                .withAtomicPublication()
+                .withRedshiftJdbcClient(mockRedshiftJdbcClient);
+    }
+
+    @Test
+    public void publishPublishesEveryStagedTableInOneCallInTheOrderTheyWereStaged() {
+        coordinator.addStagedTable(STAGED_TABLE_ONE, "stage_1");
+        coordinator.addStagedTable(STAGED_TABLE_TWO, "stage_2");
+        coordinator.addStagedTable(EMPTY_STAGED_TABLE, null);
+
+        coordinator.publish(mockMetrics);
+
+        verify(mockRedshiftJdbcClient).publishStageTables(
+                eq(ImmutableList.of(STAGED_TABLE_ONE, STAGED_TABLE_TWO, EMPTY_STAGED_TABLE)), eq(mockMetrics));
+    }
+
+    @Test
+    public void publishDoesNothingIfNothingWasStaged() {
+        coordinator.publish();
+
+        verifyNoMoreInteractions(mockRedshiftJdbcClient);
+    }
+
+    @Test
+    public void tablesAreOnlyPublishedOnce() {
+        coordinator.addStagedTable(STAGED_TABLE_ONE, "stage_1");
+
+        coordinator.publish(mockMetrics);
+        coordinator.publish(mockMetrics);
+
+        verify(mockRedshiftJdbcClient).publishStageTables(eq(ImmutableList.of(STAGED_TABLE_ONE)), eq(mockMetrics));
+        verifyNoMoreInteractions(mockRedshiftJdbcClient);
+    }
+
+    @Test
+    public void failedPublishKeepsTheStagedTablesSoThatItCanBeRetried() {
+        coordinator.addStagedTable(STAGED_TABLE_ONE, "stage_1");
+        doThrow(new RuntimeException("Test exception")).doNothing().when(mockRedshiftJdbcClient)
+                .publishStageTables(eq(ImmutableList.of(STAGED_TABLE_ONE)), eq(mockMetrics));
+
+        try {
+            coordinator.publish(mockMetrics);
+            fail("Expected exception to be thrown");
+        } catch (RuntimeException ignored) {
+            // expected
+        }
+
+        coordinator.publish(mockMetrics);
+        coordinator.discard();
+
+        verify(mockRedshiftJdbcClient, times(2)).publishStageTables(eq(ImmutableList.of(STAGED_TABLE_ONE)),
+                eq(mockMetrics));
+        verify(mockRedshiftJdbcClient, never()).dropStageTables(anyList());
+    }
+
+    @Test
+    public void failedPublishLeavesTheStagedTablesToBeDiscarded() {
+        coordinator.addStagedTable(STAGED_TABLE_ONE, "stage_1");
+        doThrow(new RuntimeException("Test exception")).when(mockRedshiftJdbcClient)
+                .publishStageTables(eq(ImmutableList.of(STAGED_TABLE_ONE)), eq(mockMetrics));
+
+        try {
+            coordinator.publish(mockMetrics);
+            fail("Expected exception to be thrown");
+        } catch (RuntimeException ignored) {
+            // expected
+        }
+
+        coordinator.discard();
+
+        verify(mockRedshiftJdbcClient).dropStageTables(eq(ImmutableList.of("stage_1")));
+    }
+
+    @Test
+    public void discardDropsEveryStageTableWithoutPublishingIt() {
+        coordinator.addStagedTable(STAGED_TABLE_ONE, "stage_1");
+        coordinator.addStagedTable(EMPTY_STAGED_TABLE, null);
+        coordinator.addStagedTable(STAGED_TABLE_TWO, "stage_2");
+
+        coordinator.discard();
+        coordinator.publish();
+
+        verify(mockRedshiftJdbcClient).dropStageTables(eq(ImmutableList.of("stage_1", "stage_2")));
+        verifyNoMoreInteractions(mockRedshiftJdbcClient);
+    }
+
+    @Test
+    public void noMoreThanTheMaximumNumberOfCopiesRunAtTheSameTime() throws Exception {
+        RedshiftLoadCoordinator limitedCoordinator = RedshiftLoadCoordinator.of(mockDataSource).withMaxConcurrentCopies(2);
+        AtomicInteger runningCopies = new AtomicInteger(0);
+        AtomicInteger maxRunningCopies = new AtomicInteger(0);
+        AtomicInteger completedCopies = new AtomicInteger(0);
+        ExecutorService executorService = Executors.newFixedThreadPool(8);
+
+        for (int i = 0; i < 16; i++) {
+            executorService.submit(() -> limitedCoordinator.runWithCopySlot(() -> {
+                maxRunningCopies.accumulateAndGet(runningCopies.incrementAndGet(), Math::max);
+
+                try {
+                    Thread.sleep(5);
+                } catch (InterruptedException ignored) {
+                }
+
+                runningCopies.decrementAndGet();
+                completedCopies.incrementAndGet();
+            }));
+        }
+
+        executorService.shutdown();
+        assertThat(executorService.awaitTermination(30, TimeUnit.SECONDS), is(true));
+        assertThat(completedCopies.get(), equalTo(16));
+        assertThat(maxRunningCopies.get(), lessThanOrEqualTo(2));
+    }
+
+    @Test
+    public void callWithCopySlotReturnsTheResultOfTheCopy() {
+        assertThat(coordinator.callWithCopySlot(() -> "stage_1"), equalTo("stage_1"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void withMaxConcurrentCopiesThrowsIllegalArgumentExceptionIfNotPositive() {
+        RedshiftLoadCoordinator.of(mockDataSource).withMaxConcurrentCopies(0);
+    }
+}
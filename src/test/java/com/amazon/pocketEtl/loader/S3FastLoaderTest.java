@@ -21,9 +21,17 @@ import com.amazon.pocketEtl.exception.UnrecoverableStreamFailureException;
 
 import com.amazonaws.AmazonClientException;
 import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.AbortMultipartUploadRequest;
+import com.amazonaws.services.s3.model.CompleteMultipartUploadRequest;
+import com.amazonaws.services.s3.model.CompleteMultipartUploadResult;
+import com.amazonaws.services.s3.model.InitiateMultipartUploadRequest;
+import com.amazonaws.services.s3.model.InitiateMultipartUploadResult;
+import com.amazonaws.services.s3.model.PartETag;
 import com.amazonaws.services.s3.model.PutObjectRequest;
 import com.amazonaws.services.s3.model.PutObjectResult;
 import com.amazonaws.services.s3.model.SSEAwsKeyManagementParams;
+import com.amazonaws.services.s3.model.UploadPartRequest;
+import com.amazonaws.services.s3.model.UploadPartResult;
 import com.google.common.collect.ImmutableList;
 import org.junit.Before;
 import org.junit.Test;
@@ -33,20 +41,32 @@ import org.mockito.Captor;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
 
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Supplier;
 import java.util.stream.IntStream;
+import java.util.zip.GZIPInputStream;
 
+import static org.hamcrest.Matchers.arrayContaining;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.is;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.fail;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.reset;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -65,8 +85,12 @@ public class S3FastLoaderTest extends EtlTestBase {
     private static final String S3_WRITE_SUCCESS_METRIC_KEY = "S3FastLoader.success";
     private static final String S3_WRITE_FAIL_METRIC_KEY = "S3FastLoader.failure";
     private static final int BUFFER_SIZE = 10;
+    private static final int PART_SIZE = 4;
+    private static final String UPLOAD_ID = "anUploadId";
+    private static final CompressionCodec UNCOMPRESSED_CODEC = CompressionCodec.of("NONE", "", outputStream -> outputStream);
     private S3FastLoader<Object> s3FastLoader;
     private List<List<Byte>> s3StreamCapture = new ArrayList<>();
+    private List<List<Byte>> uploadPartCapture = Collections.synchronizedList(new ArrayList<>());
 
     @Mock
     private AmazonS3 s3Client;
@@ -83,6 +107,12 @@ public class S3FastLoaderTest extends EtlTestBase {
     @Captor
     private ArgumentCaptor<PutObjectRequest> putObjectRequestArgumentCaptor;
 
+    @Captor
+    private ArgumentCaptor<InitiateMultipartUploadRequest> initiateMultipartUploadRequestArgumentCaptor;
+
+    @Captor
+    private ArgumentCaptor<CompleteMultipartUploadRequest> completeMultipartUploadRequestArgumentCaptor;
+
     @Before
     public void buildS3Writer() {
         s3FastLoader = S3FastLoader.supplierOf(S3_BUCKET, mockStringSerializerProvider)
@@ -284,6 +314,570 @@ public class S3FastLoaderTest extends EtlTestBase {
         verify(mockMetrics).addCount(S3_WRITE_FAIL_METRIC_KEY, 1.0);
     }
 
+    @Test
+    public void multipartUploadUploadsEachPartAsItFills() throws Exception {
+        initializeMultipartUploadCapture();
+        s3FastLoader = multipartSupplier().get();
+
+        loadStrings("12345", "678", "9A");
+        s3FastLoader.close();
+
+        assertThat(uploadPartCapture, equalTo(ImmutableList.of(bytesOf("1234"), bytesOf("5678"), bytesOf("9A"))));
+        verify(s3Client).completeMultipartUpload(completeMultipartUploadRequestArgumentCaptor.capture());
+        CompleteMultipartUploadRequest request = completeMultipartUploadRequestArgumentCaptor.getValue();
+        assertThat(request.getUploadId(), equalTo(UPLOAD_ID));
+        assertThat(request.getKey(), equalTo(S3_PREFIX + "/1" + S3_SUFFIX));
+        assertThat(partNumbersOf(request.getPartETags()), contains(1, 2, 3));
+        verify(s3Client, never()).putObject(any(PutObjectRequest.class));
+    }
+
+    @Test
+    public void multipartUploadUsesKmsSseEncryption() throws Exception {
+        initializeMultipartUploadCapture();
+        s3FastLoader = multipartSupplier().get();
+
+        loadStrings("12345");
+        s3FastLoader.close();
+
+        verify(s3Client).initiateMultipartUpload(initiateMultipartUploadRequestArgumentCaptor.capture());
+        InitiateMultipartUploadRequest request = initiateMultipartUploadRequestArgumentCaptor.getValue();
+        assertThat(request.getBucketName(), equalTo(S3_BUCKET));
+        assertThat(request.getSSEAwsKeyManagementParams().getAwsKmsKeyId(), equalTo(KMS_KEY));
+    }
+
+    @Test
+    public void multipartUploadWritesPartFileSmallerThanOnePartWithSinglePut() throws Exception {
+        s3FastLoader = multipartSupplier().get();
+
+        loadStrings("12");
+        s3FastLoader.close();
+
+        assertThat(s3StreamCapture, equalTo(ImmutableList.of(bytesOf("12"))));
+        verify(s3Client, never()).initiateMultipartUpload(any());
+    }
+
+    @Test
+    public void multipartUploadStartsNewPartFileWhenMaxPartFileSizeWouldBeExceeded() throws Exception {
+        initializeMultipartUploadCapture();
+        s3FastLoader = multipartSupplier().get();
+
+        loadStrings("123456", "ABCDEF");
+        s3FastLoader.close();
+
+        assertThat(uploadPartCapture, equalTo(ImmutableList.of(bytesOf("1234"), bytesOf("56"), bytesOf("ABCD"),
+                bytesOf("EF"))));
+        verify(s3Client, times(2)).completeMultipartUpload(completeMultipartUploadRequestArgumentCaptor.capture());
+        List<CompleteMultipartUploadRequest> requests = completeMultipartUploadRequestArgumentCaptor.getAllValues();
+        assertThat(requests.get(0).getKey(), equalTo(S3_PREFIX + "/1" + S3_SUFFIX));
+        assertThat(requests.get(1).getKey(), equalTo(S3_PREFIX + "/2" + S3_SUFFIX));
+        verify(mockStringSerializerProvider, times(3)).get();
+    }
+
+    @Test
+    public void multipartUploadHasNoMaxPartFileSizeByDefault() throws Exception {
+        initializeMultipartUploadCapture();
+        s3FastLoader = S3FastLoader.supplierOf(S3_BUCKET, mockStringSerializerProvider)
+                .withClient(s3Client)
+                .withMultipartPartSize(PART_SIZE)
+                .get();
+
+        loadStrings("123456", "ABCDEF", "GHIJKL");
+        s3FastLoader.close();
+
+        assertThat(uploadPartCapture.size(), equalTo(5));
+        verify(s3Client, times(1)).completeMultipartUpload(any());
+    }
+
+    @Test
+    public void multipartUploadFailureAbortsUploadAndThrowsUnrecoverableStreamFailureException() {
+        AmazonClientException s3Exception = new AmazonClientException("oh no!");
+        when(s3Client.initiateMultipartUpload(any())).thenReturn(initiateMultipartUploadResult());
+        when(s3Client.uploadPart(any())).thenThrow(s3Exception);
+        s3FastLoader = multipartSupplier().get();
+
+        try {
+            loadStrings("12345");
+            fail("Expected UnrecoverableStreamFailureException");
+        } catch (UnrecoverableStreamFailureException e) {
+            assertThat(e.getCause(), is(s3Exception));
+        }
+
+        verify(s3Client).abortMultipartUpload(any(AbortMultipartUploadRequest.class));
+        verify(mockMetrics).addCount(S3_WRITE_SUCCESS_METRIC_KEY, 0.0);
+        verify(mockMetrics).addCount(S3_WRITE_FAIL_METRIC_KEY, 1.0);
+    }
+
+    @Test
+    public void multipartUploadEmitsMetricsOnCompletion() throws Exception {
+        initializeMultipartUploadCapture();
+        s3FastLoader = multipartSupplier().get();
+
+        loadStrings("12345");
+        s3FastLoader.close();
+
+        verify(mockMetrics).addCount(S3_WRITE_SUCCESS_METRIC_KEY, 1.0);
+        verify(mockMetrics).addCount(S3_WRITE_FAIL_METRIC_KEY, 0.0);
+    }
+
+    @Test
+    public void multipartUploadWithPooledDirectBuffersUploadsEachPartAsItFills() throws Exception {
+        initializeMultipartUploadCapture();
+        S3FastLoader.S3FastLoaderSupplier<Object> supplier = multipartSupplier().withPooledDirectBuffers();
+
+        s3FastLoader = supplier.get();
+        loadStrings("12345");
+        s3FastLoader.close();
+        s3FastLoader = supplier.get();
+        loadStrings("ABCDE");
+        s3FastLoader.close();
+
+        assertThat(uploadPartCapture, equalTo(ImmutableList.of(bytesOf("1234"), bytesOf("5"), bytesOf("ABCD"),
+                bytesOf("E"))));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void withMultipartUploadThrowsIllegalArgumentExceptionIfPartSizeIsNotPositive() {
+        S3FastLoader.supplierOf(S3_BUCKET, mockStringSerializerProvider).withMultipartUpload(0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void withMultipartUploadThrowsIllegalArgumentExceptionIfPartSizeIsSmallerThanS3Allows() {
+        S3FastLoader.supplierOf(S3_BUCKET, mockStringSerializerProvider).withMultipartUpload(1024 * 1024 * 5 - 1);
+    }
+
+    @Test
+    public void withMultipartUploadAcceptsSmallestPartSizeS3Allows() {
+        S3FastLoader.supplierOf(S3_BUCKET, mockStringSerializerProvider).withMultipartUpload(1024 * 1024 * 5);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void withMultipartPartSizeThrowsIllegalArgumentExceptionIfPartSizeIsNotPositive() {
+        S3FastLoader.supplierOf(S3_BUCKET, mockStringSerializerProvider).withMultipartPartSize(0);
+    }
+
+    @Test
+    public void asynchronousUploadsWriteEachPartFile() throws Exception {
+        s3FastLoader = S3FastLoader.supplierOf(S3_BUCKET, mockStringSerializerProvider)
+                .withClient(s3Client)
+                .withMaxPartFileSizeInBytes(BUFFER_SIZE)
+                .withAsynchronousUploads()
+                .get();
+
+        loadStrings("1234567890", "ABCDEFGH", "XY", "Z");
+        s3FastLoader.close();
+
+        assertThat(s3StreamCapture, equalTo(ImmutableList.of(bytesOf("1234567890"), bytesOf("ABCDEFGHXY"),
+                bytesOf("Z"))));
+    }
+
+    @Test(timeout = 10000)
+    public void asynchronousUploadsDoNotBlockLoadingWhileAnotherBufferIsFree() throws Exception {
+        CountDownLatch uploadLatch = new CountDownLatch(1);
+        reset(s3Client);
+        when(s3Client.putObject(any(PutObjectRequest.class))).thenAnswer(invocation -> {
+            uploadLatch.await();
+            return new PutObjectResult();
+        });
+        s3FastLoader = S3FastLoader.supplierOf(S3_BUCKET, mockStringSerializerProvider)
+                .withClient(s3Client)
+                .withMaxPartFileSizeInBytes(BUFFER_SIZE)
+                .withAsynchronousUploads()
+                .get();
+
+        // The first part file is handed to the upload thread, which is blocked, and loading carries on regardless
+        loadStrings("1234567890", "ABCDEFGH");
+        uploadLatch.countDown();
+        s3FastLoader.close();
+
+        verify(s3Client, times(2)).putObject(any(PutObjectRequest.class));
+    }
+
+    @Test
+    public void asynchronousUploadFailureThrowsUnrecoverableStreamFailureExceptionOnClose() throws Exception {
+        AmazonClientException s3Exception = new AmazonClientException("oh no!");
+        reset(s3Client);
+        when(s3Client.putObject(any(PutObjectRequest.class))).thenThrow(s3Exception);
+        s3FastLoader = S3FastLoader.supplierOf(S3_BUCKET, mockStringSerializerProvider)
+                .withClient(s3Client)
+                .withMaxPartFileSizeInBytes(BUFFER_SIZE)
+                .withAsynchronousUploads()
+                .get();
+        loadStrings("1234567890", "A");
+
+        try {
+            s3FastLoader.close();
+            fail("Expected UnrecoverableStreamFailureException");
+        } catch (UnrecoverableStreamFailureException e) {
+            assertThat(e.getCause(), is(s3Exception));
+        }
+    }
+
+    @Test
+    public void asynchronousMultipartUploadUploadsEveryPart() throws Exception {
+        initializeMultipartUploadCapture();
+        s3FastLoader = multipartSupplier().withAsynchronousUploads(3).get();
+
+        loadStrings("12345", "678", "9A");
+        s3FastLoader.close();
+
+        assertThat(uploadPartCapture, containsInAnyOrder(bytesOf("1234"), bytesOf("5678"), bytesOf("9A")));
+        verify(s3Client).completeMultipartUpload(completeMultipartUploadRequestArgumentCaptor.capture());
+        assertThat(partNumbersOf(completeMultipartUploadRequestArgumentCaptor.getValue().getPartETags()),
+                contains(1, 2, 3));
+    }
+
+    @Test(timeout = 10000)
+    public void asynchronousMultipartUploadIsInitiatedWithoutBlockingLoading() throws Exception {
+        initializeMultipartUploadCapture();
+        CountDownLatch initiateLatch = new CountDownLatch(1);
+        when(s3Client.initiateMultipartUpload(any())).thenAnswer(invocation -> {
+            initiateLatch.await();
+            return initiateMultipartUploadResult();
+        });
+        s3FastLoader = multipartSupplier().withAsynchronousUploads(3).get();
+
+        loadStrings("12345678");
+        verify(s3Client, never()).uploadPart(any());
+        initiateLatch.countDown();
+        s3FastLoader.close();
+
+        assertThat(uploadPartCapture, containsInAnyOrder(bytesOf("1234"), bytesOf("5678")));
+        verify(s3Client).completeMultipartUpload(completeMultipartUploadRequestArgumentCaptor.capture());
+        assertThat(completeMultipartUploadRequestArgumentCaptor.getValue().getUploadId(), equalTo(UPLOAD_ID));
+    }
+
+    @Test(timeout = 10000)
+    public void asynchronousMultipartUploadIsCompletedWithoutBlockingLoading() throws Exception {
+        initializeMultipartUploadCapture();
+        CountDownLatch completeLatch = new CountDownLatch(1);
+        AtomicInteger completedUploads = new AtomicInteger(0);
+        when(s3Client.completeMultipartUpload(any())).thenAnswer(invocation -> {
+            completeLatch.await();
+            completedUploads.incrementAndGet();
+            return new CompleteMultipartUploadResult();
+        });
+        s3FastLoader = multipartSupplier().withAsynchronousUploads(3).get();
+
+        // The first part file is finished by the second object, and loading carries on into the next one regardless
+        loadStrings("12345678", "ABCD");
+        assertThat(completedUploads.get(), equalTo(0));
+        completeLatch.countDown();
+        s3FastLoader.close();
+
+        assertThat(uploadPartCapture, containsInAnyOrder(bytesOf("1234"), bytesOf("5678"), bytesOf("ABCD")));
+        assertThat(completedUploads.get(), equalTo(2));
+    }
+
+    @Test
+    public void asynchronousMultipartUploadInitiateFailureThrowsUnrecoverableStreamFailureExceptionOnClose()
+            throws Exception {
+        AmazonClientException s3Exception = new AmazonClientException("oh no!");
+        when(s3Client.initiateMultipartUpload(any())).thenThrow(s3Exception);
+        s3FastLoader = multipartSupplier().withAsynchronousUploads().get();
+        loadStrings("12345");
+
+        try {
+            s3FastLoader.close();
+            fail("Expected UnrecoverableStreamFailureException");
+        } catch (UnrecoverableStreamFailureException e) {
+            assertThat(e.getCause(), is(s3Exception));
+        }
+
+        verify(s3Client, never()).uploadPart(any());
+        verify(s3Client, never()).abortMultipartUpload(any());
+    }
+
+    @Test
+    public void asynchronousMultipartUploadFailureAbortsUpload() throws Exception {
+        AmazonClientException s3Exception = new AmazonClientException("oh no!");
+        when(s3Client.initiateMultipartUpload(any())).thenReturn(initiateMultipartUploadResult());
+        when(s3Client.uploadPart(any())).thenThrow(s3Exception);
+        s3FastLoader = multipartSupplier().withAsynchronousUploads().withPooledDirectBuffers().get();
+        loadStrings("12345");
+
+        try {
+            s3FastLoader.close();
+            fail("Expected UnrecoverableStreamFailureException");
+        } catch (UnrecoverableStreamFailureException e) {
+            assertThat(e.getCause(), is(s3Exception));
+        }
+
+        verify(s3Client).abortMultipartUpload(any(AbortMultipartUploadRequest.class));
+        verify(s3Client, never()).completeMultipartUpload(any());
+    }
+
+    @Test(timeout = 10000)
+    public void asynchronousMultipartUploadFailureWaitsForOtherPartsBeforeAborting() throws Exception {
+        AmazonClientException s3Exception = new AmazonClientException("oh no!");
+        CountDownLatch secondPartStartedLatch = new CountDownLatch(1);
+        CountDownLatch secondPartLatch = new CountDownLatch(1);
+        List<String> events = Collections.synchronizedList(new ArrayList<>());
+        when(s3Client.initiateMultipartUpload(any())).thenReturn(initiateMultipartUploadResult());
+        when(s3Client.uploadPart(any())).thenAnswer(invocation -> {
+            UploadPartRequest uploadPartRequest = (UploadPartRequest) invocation.getArguments()[0];
+
+            // The first part only fails once the second part is being uploaded
+            if (uploadPartRequest.getPartNumber() == 1) {
+                secondPartStartedLatch.await();
+                throw s3Exception;
+            }
+
+            secondPartStartedLatch.countDown();
+            secondPartLatch.await();
+            events.add("uploadPart");
+            return new UploadPartResult();
+        });
+        doAnswer(invocation -> {
+            events.add("abortMultipartUpload");
+            return null;
+        }).when(s3Client).abortMultipartUpload(any());
+        s3FastLoader = multipartSupplier().withAsynchronousUploads(3).get();
+        loadStrings("12345678");
+
+        new Thread(() -> {
+            try {
+                Thread.sleep(200);
+            } catch (InterruptedException ignored) {
+                // Release the second part anyway
+            }
+
+            secondPartLatch.countDown();
+        }).start();
+
+        try {
+            s3FastLoader.close();
+            fail("Expected UnrecoverableStreamFailureException");
+        } catch (UnrecoverableStreamFailureException e) {
+            assertThat(e.getCause(), is(s3Exception));
+        }
+
+        assertThat(events, contains("uploadPart", "abortMultipartUpload"));
+    }
+
+    @Test
+    public void multipartUploadAbortFailureIsAttachedToOriginalFailure() {
+        AmazonClientException s3Exception = new AmazonClientException("oh no!");
+        AmazonClientException abortException = new AmazonClientException("oh no, again!");
+        when(s3Client.initiateMultipartUpload(any())).thenReturn(initiateMultipartUploadResult());
+        when(s3Client.uploadPart(any())).thenThrow(s3Exception);
+        doThrow(abortException).when(s3Client).abortMultipartUpload(any());
+        s3FastLoader = multipartSupplier().get();
+
+        try {
+            loadStrings("12345");
+            fail("Expected UnrecoverableStreamFailureException");
+        } catch (UnrecoverableStreamFailureException e) {
+            assertThat(e.getCause(), is(s3Exception));
+            assertThat(e.getSuppressed(), arrayContaining(abortException));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void withAsynchronousUploadsThrowsIllegalArgumentExceptionIfFewerThanTwoBuffers() {
+        S3FastLoader.supplierOf(S3_BUCKET, mockStringSerializerProvider).withAsynchronousUploads(1);
+    }
+
+    @Test
+    public void streamSerializerWritesHeaderAtStartOfEachPartFileWithoutReserializing() throws Exception {
+        HeaderStreamSerializer streamSerializer = new HeaderStreamSerializer();
+        s3FastLoader = S3FastLoader.supplierOf(S3_BUCKET, streamSerializer)
+                .withClient(s3Client)
+                .withMaxPartFileSizeInBytes(BUFFER_SIZE)
+                .get();
+
+        s3FastLoader.open(mockMetrics);
+        ImmutableList.of("1234", "5678", "9ABC").forEach(s3FastLoader::load);
+        s3FastLoader.close();
+
+        assertThat(s3StreamCapture, equalTo(ImmutableList.of(bytesOf("H|12345678"), bytesOf("H|9ABC"))));
+        assertThat(streamSerializer.serializeCount.get(), equalTo(3));
+    }
+
+    @Test
+    public void streamSerializerWritesOversizedObjectWithHeader() throws Exception {
+        s3FastLoader = S3FastLoader.supplierOf(S3_BUCKET, new HeaderStreamSerializer())
+                .withClient(s3Client)
+                .withMaxPartFileSizeInBytes(BUFFER_SIZE)
+                .get();
+
+        s3FastLoader.open(mockMetrics);
+        s3FastLoader.load("123456789ABC");
+        s3FastLoader.load("1");
+        s3FastLoader.close();
+
+        assertThat(s3StreamCapture, equalTo(ImmutableList.of(bytesOf("H|123456789ABC"), bytesOf("H|1"))));
+    }
+
+    @Test
+    public void streamSerializerWritesHeaderAtStartOfEachMultipartUpload() throws Exception {
+        initializeMultipartUploadCapture();
+        HeaderStreamSerializer streamSerializer = new HeaderStreamSerializer();
+        s3FastLoader = S3FastLoader.supplierOf(S3_BUCKET, streamSerializer)
+                .withClient(s3Client)
+                .withMaxPartFileSizeInBytes(BUFFER_SIZE)
+                .withMultipartPartSize(PART_SIZE)
+                .get();
+
+        s3FastLoader.open(mockMetrics);
+        s3FastLoader.load("12345");
+        s3FastLoader.load("ABCDEF");
+        s3FastLoader.close();
+
+        assertThat(uploadPartCapture, equalTo(ImmutableList.of(bytesOf("H|12"), bytesOf("345"), bytesOf("H|AB"),
+                bytesOf("CDEF"))));
+        verify(s3Client, times(2)).completeMultipartUpload(any());
+        assertThat(streamSerializer.serializeCount.get(), equalTo(2));
+    }
+
+    @Test
+    public void gzipCompressedPartFileDecompressesToLoadedObjects() throws Exception {
+        s3FastLoader = S3FastLoader.supplierOf(S3_BUCKET, new HeaderStreamSerializer())
+                .withClient(s3Client)
+                .withCompression(CompressionCodec.GZIP)
+                .get();
+
+        s3FastLoader.open(mockMetrics);
+        ImmutableList.of("1234", "5678", "9ABC").forEach(s3FastLoader::load);
+        s3FastLoader.close();
+
+        assertThat(s3StreamCapture.size(), equalTo(1));
+        assertThat(gunzip(s3StreamCapture.get(0)), equalTo("H|123456789ABC"));
+    }
+
+    @Test
+    public void compressedPartFileIsFinishedWhenCompressedSizeReachesMaxPartFileSize() throws Exception {
+        initializeMultipartUploadCapture();
+        s3FastLoader = S3FastLoader.supplierOf(S3_BUCKET, new HeaderStreamSerializer())
+                .withClient(s3Client)
+                .withMaxPartFileSizeInBytes(BUFFER_SIZE)
+                .withCompression(UNCOMPRESSED_CODEC)
+                .get();
+
+        s3FastLoader.open(mockMetrics);
+        ImmutableList.of("1234", "5678", "9ABC", "DEFGHIJKLMNO", "P").forEach(s3FastLoader::load);
+        s3FastLoader.close();
+
+        assertThat(s3StreamCapture, equalTo(ImmutableList.of(bytesOf("H|12345678"), bytesOf("H|P"))));
+        assertThat(uploadPartCapture, equalTo(ImmutableList.of(bytesOf("H|9ABCDEFG"), bytesOf("HIJKLMNO"))));
+        verify(s3Client).completeMultipartUpload(any());
+    }
+
+    @Test
+    public void compressedMultipartUploadCountsCompressedBytesTowardsMaxPartFileSize() throws Exception {
+        initializeMultipartUploadCapture();
+        s3FastLoader = S3FastLoader.supplierOf(S3_BUCKET, new HeaderStreamSerializer())
+                .withClient(s3Client)
+                .withMaxPartFileSizeInBytes(BUFFER_SIZE)
+                .withMultipartPartSize(PART_SIZE)
+                .withCompression(UNCOMPRESSED_CODEC)
+                .get();
+
+        s3FastLoader.open(mockMetrics);
+        s3FastLoader.load("12345");
+        s3FastLoader.load("ABCDEF");
+        s3FastLoader.load("G");
+        s3FastLoader.close();
+
+        assertThat(uploadPartCapture, equalTo(ImmutableList.of(bytesOf("H|12"), bytesOf("345A"), bytesOf("BCDE"),
+                bytesOf("F"))));
+        verify(s3Client).completeMultipartUpload(any());
+        assertThat(s3StreamCapture, equalTo(ImmutableList.of(bytesOf("H|G"))));
+    }
+
+    @Test
+    public void asynchronousGzipCompressedPartFilesDecompressToLoadedObjects() throws Exception {
+        s3FastLoader = S3FastLoader.supplierOf(S3_BUCKET, new HeaderStreamSerializer())
+                .withClient(s3Client)
+                .withMaxPartFileSizeInBytes(BUFFER_SIZE)
+                .withCompression(CompressionCodec.GZIP)
+                .withAsynchronousUploads()
+                .get();
+
+        s3FastLoader.open(mockMetrics);
+        ImmutableList.of("1234", "5678", "9ABC").forEach(s3FastLoader::load);
+        s3FastLoader.close();
+
+        List<String> decompressedPartFiles = new ArrayList<>();
+
+        for (List<Byte> partFile : s3StreamCapture) {
+            decompressedPartFiles.add(gunzip(partFile));
+        }
+
+        assertThat(decompressedPartFiles, equalTo(ImmutableList.of("H|1234", "H|5678", "H|9ABC")));
+    }
+
+    private static class HeaderStreamSerializer implements StreamSerializer<Object> {
+        private final AtomicInteger serializeCount = new AtomicInteger(0);
+
+        @Override
+        public void serialize(Object object, OutputStream outputStream) throws IOException {
+            serializeCount.incrementAndGet();
+            outputStream.write(object.toString().getBytes(UTF8_CHARSET));
+        }
+
+        @Override
+        public void writeHeader(OutputStream outputStream) throws IOException {
+            outputStream.write("H|".getBytes(UTF8_CHARSET));
+        }
+    }
+
+    private static String gunzip(List<Byte> compressedBytes) throws IOException {
+        byte[] bytes = new byte[compressedBytes.size()];
+
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = compressedBytes.get(i);
+        }
+
+        return new String(toByteArray(new GZIPInputStream(new ByteArrayInputStream(bytes))), UTF8_CHARSET);
+    }
+
+    private S3FastLoader.S3FastLoaderSupplier<Object> multipartSupplier() {
+        return S3FastLoader.supplierOf(S3_BUCKET, mockStringSerializerProvider)
+                .withClient(s3Client)
+                .withS3PartFileKeyGenerator(($, partNum) -> S3_PREFIX + "/" + partNum + S3_SUFFIX)
+                .withMaxPartFileSizeInBytes(BUFFER_SIZE)
+                .withSSEKmsArn(KMS_KEY)
+                .withMultipartPartSize(PART_SIZE);
+    }
+
+    private void initializeMultipartUploadCapture() {
+        when(s3Client.initiateMultipartUpload(any())).thenReturn(initiateMultipartUploadResult());
+        when(s3Client.uploadPart(any())).thenAnswer(invocation -> {
+            UploadPartRequest uploadPartRequest = (UploadPartRequest) invocation.getArguments()[0];
+            uploadPartCapture.add(byteArrayToList(toByteArray(uploadPartRequest.getInputStream())));
+            UploadPartResult uploadPartResult = new UploadPartResult();
+            uploadPartResult.setPartNumber(uploadPartRequest.getPartNumber());
+            uploadPartResult.setETag("etag" + uploadPartRequest.getPartNumber());
+            return uploadPartResult;
+        });
+        when(s3Client.completeMultipartUpload(any())).thenReturn(new CompleteMultipartUploadResult());
+    }
+
+    private static InitiateMultipartUploadResult initiateMultipartUploadResult() {
+        InitiateMultipartUploadResult result = new InitiateMultipartUploadResult();
+        result.setUploadId(UPLOAD_ID);
+        return result;
+    }
+
+    private static List<Integer> partNumbersOf(List<PartETag> partETags) {
+        List<Integer> partNumbers = new ArrayList<>();
+        partETags.forEach(partETag -> partNumbers.add(partETag.getPartNumber()));
+        return partNumbers;
+    }
+
+    private static List<Byte> bytesOf(String string) {
+        return byteArrayToList(string.getBytes(UTF8_CHARSET));
+    }
+
+    private void loadStrings(String ...strings) {
+        when(mockStringSerializer.apply(any())).thenAnswer(invocation -> invocation.getArguments()[0]);
+        s3FastLoader.open(mockMetrics);
+
+        for (String string : strings) {
+            s3FastLoader.load(string);
+        }
+    }
+
     /**
      * Reads and returns the rest supplierOf the given input stream as a byte array,
      * closing the input stream afterwards.
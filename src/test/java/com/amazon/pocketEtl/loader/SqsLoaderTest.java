@@ -0,0 +1,279 @@
+/*
+ *   Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package com.amazon.pocketEtl.loader;
+
+import com.amazon.pocketEtl.EtlMetrics;
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.services.sqs.AmazonSQS;
+import com.amazonaws.services.sqs.model.BatchResultErrorEntry;
+import com.amazonaws.services.sqs.model.SendMessageBatchRequest;
+import com.amazonaws.services.sqs.model.SendMessageBatchRequestEntry;
+import com.amazonaws.services.sqs.model.SendMessageBatchResult;
+import com.amazonaws.services.sqs.model.SendMessageBatchResultEntry;
+import com.google.common.base.Strings;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasSize;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class SqsLoaderTest {
+    private static final String QUEUE_URL = "testQueueUrl";
+
+    @Mock
+    private AmazonSQS mockAmazonSQS;
+
+    @Mock
+    private EtlMetrics mockMetrics;
+
+    @Data
+    @AllArgsConstructor
+    public static class TestMessage {
+        private String name;
+        private DateTime created;
+    }
+
+    private final List<List<String>> sentBatches = Collections.synchronizedList(new ArrayList<>());
+
+    private SqsLoader<TestMessage> sqsLoader;
+
+    @Before
+    public void constructLoader() {
+        sqsLoader = SqsLoader.of(QUEUE_URL, TestMessage.class).withClient(mockAmazonSQS);
+    }
+
+    private void sendSucceeds() {
+        when(mockAmazonSQS.sendMessageBatch(any(SendMessageBatchRequest.class))).thenAnswer(invocation -> {
+            SendMessageBatchRequest request = invocation.getArgument(0);
+            sentBatches.add(bodiesOf(request));
+            return successfulResult(request.getEntries());
+        });
+    }
+
+    private static List<String> bodiesOf(SendMessageBatchRequest request) {
+        return request.getEntries().stream()
+                .map(SendMessageBatchRequestEntry::getMessageBody)
+                .collect(Collectors.toList());
+    }
+
+    private static SendMessageBatchResult successfulResult(List<SendMessageBatchRequestEntry> entries) {
+        return new SendMessageBatchResult().withSuccessful(entries.stream()
+                .map(entry -> new SendMessageBatchResultEntry().withId(entry.getId()))
+                .collect(Collectors.toList()));
+    }
+
+    @Test
+    public void objectsAreSerializedAsJson() throws Exception {
+        sendSucceeds();
+        sqsLoader.open(null);
+        sqsLoader.load(new TestMessage("one", new DateTime(2017, 8, 15, 12, 0, DateTimeZone.UTC)));
+        sqsLoader.close();
+
+        assertThat(sentBatches, contains(contains("{\"name\":\"one\",\"created\":\"2017-08-15T12:00:00.000Z\"}")));
+    }
+
+    @Test
+    public void messagesArePackedIntoBatchesOfTen() throws Exception {
+        sendSucceeds();
+        sqsLoader.open(null);
+
+        for (int i = 0; i < 25; i++) {
+            sqsLoader.load(new TestMessage("message" + i, null));
+        }
+
+        sqsLoader.close();
+
+        List<Integer> batchSizes = sentBatches.stream().map(List::size).sorted().collect(Collectors.toList());
+        assertThat(batchSizes, contains(5, 10, 10));
+    }
+
+    @Test
+    public void batchesRespectThePayloadSizeLimit() throws Exception {
+        sendSucceeds();
+        sqsLoader.open(null);
+        String largeName = Strings.repeat("x", 100 * 1024);
+
+        for (int i = 0; i < 5; i++) {
+            sqsLoader.load(new TestMessage(largeName, null));
+        }
+
+        sqsLoader.close();
+
+        List<Integer> batchSizes = sentBatches.stream().map(List::size).sorted().collect(Collectors.toList());
+        assertThat(batchSizes, contains(1, 2, 2));
+    }
+
+    @Test
+    public void messageLargerThanTheLimitIsCountedAsAFailure() throws Exception {
+        when(mockMetrics.createChildMetrics()).thenReturn(mockMetrics);
+        sqsLoader.open(mockMetrics);
+        sqsLoader.load(new TestMessage(Strings.repeat("x", 256 * 1024), null));
+        sqsLoader.close();
+
+        verify(mockAmazonSQS, never()).sendMessageBatch(any(SendMessageBatchRequest.class));
+        verify(mockMetrics).addCount(eq("SqsLoader.failure"), eq(1.0));
+    }
+
+    @Test
+    public void onlyFailedEntriesAreRetried() throws Exception {
+        AtomicInteger attempts = new AtomicInteger(0);
+        when(mockAmazonSQS.sendMessageBatch(any(SendMessageBatchRequest.class))).thenAnswer(invocation -> {
+            SendMessageBatchRequest request = invocation.getArgument(0);
+            sentBatches.add(bodiesOf(request));
+
+            if (attempts.getAndIncrement() > 0) {
+                return successfulResult(request.getEntries());
+            }
+
+            return successfulResult(request.getEntries().subList(0, 1))
+                    .withFailed(new BatchResultErrorEntry().withId(request.getEntries().get(1).getId())
+                            .withCode("InternalError").withSenderFault(false));
+        });
+
+        sqsLoader.open(null);
+        sqsLoader.load(new TestMessage("one", null));
+        sqsLoader.load(new TestMessage("two", null));
+        sqsLoader.close();
+
+        assertThat(sentBatches, hasSize(2));
+        assertThat(sentBatches.get(1), contains("{\"name\":\"two\",\"created\":null}"));
+    }
+
+    @Test
+    public void senderFaultEntriesAreNotRetried() throws Exception {
+        when(mockMetrics.createChildMetrics()).thenReturn(mockMetrics);
+        when(mockAmazonSQS.sendMessageBatch(any(SendMessageBatchRequest.class))).thenAnswer(invocation -> {
+            SendMessageBatchRequest request = invocation.getArgument(0);
+            return new SendMessageBatchResult().withFailed(new BatchResultErrorEntry()
+                    .withId(request.getEntries().get(0).getId()).withCode("InvalidMessageContents")
+                    .withSenderFault(true));
+        });
+
+        sqsLoader.open(mockMetrics);
+        sqsLoader.load(new TestMessage("one", null));
+        sqsLoader.close();
+
+        verify(mockAmazonSQS, times(1)).sendMessageBatch(any(SendMessageBatchRequest.class));
+        verify(mockMetrics).addCount(eq("SqsLoader.success"), eq(0.0));
+        verify(mockMetrics).addCount(eq("SqsLoader.failure"), eq(1.0));
+    }
+
+    @Test
+    public void wholeBatchIsRetriedAfterServiceException() throws Exception {
+        AtomicInteger attempts = new AtomicInteger(0);
+        when(mockAmazonSQS.sendMessageBatch(any(SendMessageBatchRequest.class))).thenAnswer(invocation -> {
+            if (attempts.getAndIncrement() == 0) {
+                throw new AmazonServiceException("throttled");
+            }
+
+            SendMessageBatchRequest request = invocation.getArgument(0);
+            sentBatches.add(bodiesOf(request));
+            return successfulResult(request.getEntries());
+        });
+
+        sqsLoader.open(null);
+        sqsLoader.load(new TestMessage("one", null));
+        sqsLoader.load(new TestMessage("two", null));
+        sqsLoader.close();
+
+        assertThat(sentBatches, hasSize(1));
+        assertThat(sentBatches.get(0), hasSize(2));
+    }
+
+    @Test
+    public void entriesThatNeverSucceedAreCountedAsFailures() throws Exception {
+        when(mockMetrics.createChildMetrics()).thenReturn(mockMetrics);
+        when(mockAmazonSQS.sendMessageBatch(any(SendMessageBatchRequest.class)))
+                .thenThrow(new AmazonServiceException("unavailable"));
+
+        sqsLoader.open(mockMetrics);
+        sqsLoader.load(new TestMessage("one", null));
+        sqsLoader.close();
+
+        verify(mockAmazonSQS, times(5)).sendMessageBatch(any(SendMessageBatchRequest.class));
+        verify(mockMetrics).addCount(eq("SqsLoader.failure"), eq(1.0));
+    }
+
+    @Test
+    public void severalBatchesCanBeInFlight() throws Exception {
+        CountDownLatch bothBatchesSending = new CountDownLatch(2);
+        when(mockAmazonSQS.sendMessageBatch(any(SendMessageBatchRequest.class))).thenAnswer(invocation -> {
+            bothBatchesSending.countDown();
+            assertTrue(bothBatchesSending.await(5, TimeUnit.SECONDS));
+            SendMessageBatchRequest request = invocation.getArgument(0);
+            sentBatches.add(bodiesOf(request));
+            return successfulResult(request.getEntries());
+        });
+
+        sqsLoader = sqsLoader.withMaxBatchesInFlight(2);
+        sqsLoader.open(null);
+
+        for (int i = 0; i < 20; i++) {
+            sqsLoader.load(new TestMessage("message" + i, null));
+        }
+
+        sqsLoader.close();
+
+        assertThat(bothBatchesSending.getCount(), equalTo(0L));
+        assertThat(sentBatches, hasSize(2));
+    }
+
+    @Test
+    public void customSerializerIsUsed() throws Exception {
+        sendSucceeds();
+        sqsLoader = sqsLoader.withMessageSerializer(TestMessage::getName);
+        sqsLoader.open(null);
+        sqsLoader.load(new TestMessage("one", null));
+        sqsLoader.close();
+
+        assertThat(sentBatches, contains(contains("one")));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void loadBeforeOpenThrowsIllegalStateException() {
+        sqsLoader.load(new TestMessage("one", null));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void zeroBatchesInFlightThrowsIllegalArgumentException() {
+        sqsLoader.withMaxBatchesInFlight(0);
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ *   Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package functionalTests;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+/**
+ * The measurement loop shared by the *Benchmark classes in this package. A benchmark run is repeated a few times
+ * untimed so that the JIT has compiled it, then timed with System.nanoTime() over a number of further runs, and the
+ * average throughput of the timed runs is printed. Every run returns the number of rows it processed, and a run that
+ * does not process the expected number of rows fails the benchmark, so a fast result can not come from work that was
+ * skipped or optimized away.
+ *
+ * The numbers are wall-clock throughput on a single JVM without forking, so they are only meaningful when comparing
+ * one approach against another in the same run on the same machine.
+ *
+ * The benchmarks do not match the surefire test patterns, so they are not run as part of the normal build. Run one
+ * explicitly with, for example: mvn test -Dtest=SqlExtractorBenchmark
+ */
+class BenchmarkHarness {
+    private static final int WARMUP_RUNS = 3;
+    private static final int MEASURED_RUNS = 5;
+
+    @FunctionalInterface
+    interface BenchmarkRun {
+        /**
+         * Does the work being measured once.
+         * @return The number of rows processed.
+         * @throws Exception If something goes wrong.
+         */
+        int run() throws Exception;
+    }
+
+    @FunctionalInterface
+    interface Setup {
+        /**
+         * Prepares for a run, for instance by recreating a table. Not included in the timing.
+         * @throws Exception If something goes wrong.
+         */
+        void run() throws Exception;
+    }
+
+    private BenchmarkHarness() {
+    }
+
+    /**
+     * Measures and prints the throughput of a benchmark run.
+     * @param description What is being measured, printed with the result.
+     * @param expectedRows The number of rows every run must process.
+     * @param run The work to measure.
+     * @return The throughput in rows per second.
+     * @throws Exception If a run throws an exception.
+     */
+    static double measure(String description, int expectedRows, BenchmarkRun run) throws Exception {
+        return measure(description, expectedRows, () -> { }, run);
+    }
+
+    /**
+     * Measures and prints the throughput of a benchmark run that needs preparing before every run.
+     * @param description What is being measured, printed with the result.
+     * @param expectedRows The number of rows every run must process.
+     * @param setup Untimed preparation done before every run.
+     * @param run The work to measure.
+     * @return The throughput in rows per second.
+     * @throws Exception If the setup or a run throws an exception.
+     */
+    static double measure(String description, int expectedRows, Setup setup, BenchmarkRun run) throws Exception {
+        for (int i = 0; i < WARMUP_RUNS; i++) {
+            setup.run();
+            assertThat(run.run(), equalTo(expectedRows));
+        }
+
+        long totalNanos = 0;
+
+        for (int i = 0; i < MEASURED_RUNS; i++) {
+            setup.run();
+            long start = System.nanoTime();
+            int rows = run.run();
+            totalNanos += System.nanoTime() - start;
+            assertThat(rows, equalTo(expectedRows));
+        }
+
+        double rowsPerSecond = (double) expectedRows * MEASURED_RUNS / (totalNanos / 1_000_000_000.0);
+        System.out.printf("%s: %,.0f rows/second%n", description, rowsPerSecond);
+        return rowsPerSecond;
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ *   Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package functionalTests;
+
+import com.amazon.pocketEtl.loader.CsvStringSerializer;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.dataformat.csv.CsvMapper;
+import com.fasterxml.jackson.datatype.joda.JodaModule;
+import lombok.Data;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Measures how fast CsvStringSerializer can write rows of a wide DTO, both as Strings and streamed as bytes, against
+ * a plain Jackson CSV writer configured the same way. See BenchmarkHarness for how the numbers are produced and how
+ * to run it.
+ */
+public class CsvStringSerializerBenchmark {
+    private static final int NUMBER_OF_ROWS = 200000;
+
+    @Data
+    @JsonPropertyOrder(alphabetic = true)
+    public static class WideDTO {
+        private int id;
+        private String stringOne;
+        private String stringTwo;
+        private String stringThree;
+        private String stringFour;
+        private Long longOne;
+        private Long longTwo;
+        private long longThree;
+        private Integer intOne;
+        private int intTwo;
+        private Double doubleOne;
+        private double doubleTwo;
+        private Boolean booleanOne;
+        private boolean booleanTwo;
+        private DateTime dateTimeOne;
+        private DateTime dateTimeTwo;
+        private String stringFive;
+        private String stringSix;
+        private Long longFour;
+        private Integer intThree;
+    }
+
+    @Test
+    public void benchmarkWideRowSerialization() throws Exception {
+        List<WideDTO> rows = createRows();
+        CsvMapper mapper = new CsvMapper();
+        mapper.registerModule(new JodaModule());
+        mapper.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        ObjectWriter jacksonWriter = mapper.writer(mapper.schemaFor(WideDTO.class).withColumnSeparator('|')
+                .withoutQuoteChar());
+        CsvStringSerializer<WideDTO> serializer = CsvStringSerializer.of(WideDTO.class).withColumnSeparator('|');
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        assertThat(serializer.apply(rows.get(0)), equalTo(jacksonWriter.writeValueAsString(rows.get(0))));
+        serializer.serialize(rows.get(0), outputStream);
+        assertThat(outputStream.toString("UTF-8"), equalTo(serializer.apply(rows.get(0))));
+
+        BenchmarkHarness.measure("Jackson ObjectWriter writing 20 columns", NUMBER_OF_ROWS, () -> {
+            int rowsWritten = 0;
+
+            for (WideDTO row : rows) {
+                if (!jacksonWriter.writeValueAsString(row).isEmpty()) {
+                    rowsWritten++;
+                }
+            }
+
+            return rowsWritten;
+        });
+
+        BenchmarkHarness.measure("CsvStringSerializer.apply writing 20 columns", NUMBER_OF_ROWS, () -> {
+            int rowsWritten = 0;
+
+            for (WideDTO row : rows) {
+                if (!serializer.apply(row).isEmpty()) {
+                    rowsWritten++;
+                }
+            }
+
+            return rowsWritten;
+        });
+
+        BenchmarkHarness.measure("CsvStringSerializer.serialize writing 20 columns", NUMBER_OF_ROWS,
+                outputStream::reset, () -> {
+                    int rowsWritten = 0;
+
+                    for (WideDTO row : rows) {
+                        serializer.serialize(row, outputStream);
+                        rowsWritten++;
+                    }
+
+                    return rowsWritten;
+                });
+    }
+
+    private static List<WideDTO> createRows() {
+        List<WideDTO> rows = new ArrayList<>(NUMBER_OF_ROWS);
+        DateTime dateTime = new DateTime(2017, 1, 2, 3, 4, 5, DateTimeZone.UTC);
+
+        for (int i = 0; i < NUMBER_OF_ROWS; i++) {
+            WideDTO row = new WideDTO();
+            row.setId(i);
+            row.setStringOne("one" + i);
+            row.setStringTwo("two" + i);
+            row.setStringThree("three" + i);
+            row.setStringFour("four" + i);
+            row.setLongOne((long) i);
+            row.setLongTwo(i * 2L);
+            row.setLongThree(i * 3L);
+            row.setIntOne(i);
+            row.setIntTwo(i * 2);
+            row.setDoubleOne(i / 2.0);
+            row.setDoubleTwo(i / 3.0);
+            row.setBooleanOne(i % 2 == 0);
+            row.setBooleanTwo(i % 3 == 0);
+            row.setDateTimeOne(dateTime);
+            row.setDateTimeTwo(i % 5 == 0 ? null : dateTime);
+            row.setStringFive("five" + i);
+            row.setStringSix("six" + i);
+            row.setLongFour(i * 4L);
+            row.setIntThree(i % 7 == 0 ? null : i);
+            rows.add(row);
+        }
+
+        return rows;
+    }
+}
@@ -25,10 +25,12 @@ import com.amazonaws.services.dynamodbv2.model.GetItemRequest;
 import com.amazonaws.services.dynamodbv2.model.GetItemResult;
 import com.amazonaws.services.dynamodbv2.model.KeySchemaElement;
 import com.amazonaws.services.dynamodbv2.model.ProvisionedThroughput;
+import com.amazonaws.services.dynamodbv2.model.ScanRequest;
 import org.junit.Before;
 import org.junit.Test;
 
 import java.util.HashMap;
+import java.util.Map;
 
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.CoreMatchers.nullValue;
@@ -84,6 +86,62 @@ public class DynamoDbFunctionalTest {
         }
     }
 
+    @Test
+    public void testBatchLoading() throws Exception {
+        final DynamoDbLoader<Thing> loader = DynamoDbLoader.of(tableName, "pk", Thing::getSomeUniqueId)
+                .withClient(ddb)
+                .withBatchSize(25);
+
+        loader.open(null);
+
+        for (int i = 0; i < 60; i++) {
+            Thing thing = new Thing();
+            thing.someUniqueId = "thing" + i;
+            thing.year = Integer.toString(2000 + i);
+            loader.load(thing);
+        }
+
+        loader.close();
+
+        assertThat(ddb.scan(new ScanRequest(tableName)).getCount(), is(60));
+        assertThat(getThingFromDdb("thing59").getItem().get("document").getM().get("year").getS(), is("2059"));
+    }
+
+    @Test
+    public void testNativeAttributeLoadingWithRangeKey() throws Exception {
+        ddb.createTable(new CreateTableRequest()
+                .withTableName("etl002")
+                .withProvisionedThroughput(new ProvisionedThroughput(10L, 10L))
+                .withAttributeDefinitions(new AttributeDefinition("pk", "S"), new AttributeDefinition("year", "N"))
+                .withKeySchema(new KeySchemaElement("pk", "HASH"), new KeySchemaElement("year", "RANGE")));
+
+        final DynamoDbLoader<Thing> loader = DynamoDbLoader.of("etl002", "pk", Thing::getSomeUniqueId)
+                .withClient(ddb)
+                .withNativeAttributes(Thing.class)
+                .withRangeKey("year", thing -> Integer.parseInt(thing.year))
+                .withBatchSize(25);
+
+        loader.open(null);
+
+        for (String year : new String[] { "2001", "2010", "2061" }) {
+            Thing thing = new Thing();
+            thing.someUniqueId = "monolith";
+            thing.year = year;
+            loader.load(thing);
+        }
+
+        loader.close();
+
+        final HashMap<String, AttributeValue> key = new HashMap<>();
+        key.put("pk", new AttributeValue("monolith"));
+        key.put("year", new AttributeValue().withN("2010"));
+        Map<String, AttributeValue> item = ddb.getItem(new GetItemRequest("etl002", key)).getItem();
+
+        assertThat(ddb.scan(new ScanRequest("etl002")).getCount(), is(3));
+        assertThat(item.get("someUniqueId").getS(), is("monolith"));
+        assertThat(item.containsKey("document"), is(false));
+    }
+
     private GetItemResult getThingFromDdb(String key) {
         final HashMap<String, AttributeValue> requestItems = new HashMap<>();
         requestItems.put("pk", new AttributeValue(key));
@@ -0,0 +1,236 @@
+/*
+ *   Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package functionalTests;
+
+import com.amazon.pocketEtl.exception.UnrecoverableStreamFailureException;
+import com.amazon.pocketEtl.extractor.DynamoDbScanExtractor;
+import com.amazon.pocketEtl.loader.DynamoDbLoader;
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.local.embedded.DynamoDBEmbedded;
+import com.amazonaws.services.dynamodbv2.model.AttributeDefinition;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.CreateTableRequest;
+import com.amazonaws.services.dynamodbv2.model.KeySchemaElement;
+import com.amazonaws.services.dynamodbv2.model.ProvisionedThroughput;
+import com.amazonaws.services.dynamodbv2.model.PutItemRequest;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.IntStream;
+
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class DynamoDbScanExtractorFunctionalTest {
+    private static final String TABLE_NAME = "scanTest";
+    private static final int NUMBER_OF_ITEMS = 100;
+
+    private AmazonDynamoDB ddb;
+    private DynamoDbScanExtractor<ScanDTO> extractor;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class ScanDTO {
+        private String id;
+        private int number;
+    }
+
+    @Before
+    public void createTable() {
+        ddb = DynamoDBEmbedded.create().amazonDynamoDB();
+
+        ddb.createTable(new CreateTableRequest()
+                .withTableName(TABLE_NAME)
+                .withProvisionedThroughput(new ProvisionedThroughput(10L, 10L))
+                .withAttributeDefinitions(new AttributeDefinition("pk", "S"))
+                .withKeySchema(new KeySchemaElement("pk", "HASH")));
+    }
+
+    @After
+    public void shutdown() throws Exception {
+        if (extractor != null) {
+            extractor.close();
+        }
+
+        ddb.shutdown();
+    }
+
+    @Test
+    public void extractsEveryItemWrittenByDynamoDbLoader() {
+        loadItems(NUMBER_OF_ITEMS);
+        extractor = DynamoDbScanExtractor.of(TABLE_NAME, ScanDTO.class).withClient(ddb);
+
+        assertThat(extractIds(), containsInAnyOrder(expectedIds(NUMBER_OF_ITEMS)));
+    }
+
+    @Test
+    public void extractsEveryItemAcrossManyPagesAndSegments() {
+        loadItems(NUMBER_OF_ITEMS);
+        extractor = DynamoDbScanExtractor.of(TABLE_NAME, ScanDTO.class)
+                .withClient(ddb)
+                .withSegments(3)
+                .withPageSize(7)
+                .withBufferSize(5);
+
+        assertThat(extractIds(), containsInAnyOrder(expectedIds(NUMBER_OF_ITEMS)));
+    }
+
+    @Test
+    public void extractsEveryItemWithOneSegment() {
+        loadItems(NUMBER_OF_ITEMS);
+        extractor = DynamoDbScanExtractor.of(TABLE_NAME, ScanDTO.class)
+                .withClient(ddb)
+                .withSegments(1)
+                .withPageSize(10);
+
+        assertThat(extractIds(), containsInAnyOrder(expectedIds(NUMBER_OF_ITEMS)));
+    }
+
+    @Test
+    public void extractsEveryItemWithReadCapacityLimit() {
+        loadItems(NUMBER_OF_ITEMS);
+        extractor = DynamoDbScanExtractor.of(TABLE_NAME, ScanDTO.class)
+                .withClient(ddb)
+                .withPageSize(10)
+                .withReadCapacityLimit(1000);
+
+        assertThat(extractIds(), containsInAnyOrder(expectedIds(NUMBER_OF_ITEMS)));
+    }
+
+    @Test
+    public void extractsNothingFromEmptyTable() {
+        extractor = DynamoDbScanExtractor.of(TABLE_NAME, ScanDTO.class).withClient(ddb);
+
+        assertThat(extractIds(), is(empty()));
+    }
+
+    @Test
+    public void extractedObjectsArePopulated() {
+        loadItems(1);
+        extractor = DynamoDbScanExtractor.of(TABLE_NAME, ScanDTO.class).withClient(ddb);
+        extractor.open(null);
+
+        assertThat(extractor.next(), equalTo(Optional.of(new ScanDTO("id1", 1))));
+        assertThat(extractor.next(), equalTo(Optional.empty()));
+    }
+
+    @Test
+    public void itemWithoutDocumentThrowsRecoverableExceptionAndExtractionContinues() {
+        loadItems(10);
+        ddb.putItem(new PutItemRequest().withTableName(TABLE_NAME)
+                .withItem(Collections.singletonMap("pk", new AttributeValue("noDocument"))));
+        extractor = DynamoDbScanExtractor.of(TABLE_NAME, ScanDTO.class).withClient(ddb).withSegments(2);
+        extractor.open(null);
+
+        List<String> ids = new ArrayList<>();
+        int failures = 0;
+
+        while (true) {
+            try {
+                Optional<ScanDTO> next = extractor.next();
+
+                if (!next.isPresent()) {
+                    break;
+                }
+
+                ids.add(next.get().getId());
+            } catch (UnrecoverableStreamFailureException e) {
+                fail("Unexpected unrecoverable failure: " + e);
+            } catch (RuntimeException e) {
+                failures++;
+            }
+        }
+
+        assertThat(failures, equalTo(1));
+        assertThat(ids, containsInAnyOrder(expectedIds(10)));
+    }
+
+    @Test
+    public void customDocumentAttributeIsUsed() {
+        DynamoDbLoader.of(TABLE_NAME, "pk", ScanDTO::getId).withClient(ddb).load(new ScanDTO("id1", 1));
+        extractor = DynamoDbScanExtractor.of(TABLE_NAME, ScanDTO.class)
+                .withClient(ddb)
+                .withDocumentAttribute("notTheDocument");
+        extractor.open(null);
+
+        try {
+            extractor.next();
+            fail("Expected a RuntimeException");
+        } catch (UnrecoverableStreamFailureException e) {
+            fail("Unexpected unrecoverable failure: " + e);
+        } catch (RuntimeException ignored) {
+            // expected: the item has no attribute with that name
+        }
+    }
+
+    @Test
+    public void extractsItemsWrittenWithNativeAttributes() {
+        DynamoDbLoader<ScanDTO> loader = DynamoDbLoader.of(TABLE_NAME, "pk", ScanDTO::getId)
+                .withClient(ddb)
+                .withNativeAttributes(ScanDTO.class);
+        IntStream.rangeClosed(1, NUMBER_OF_ITEMS).forEach(i -> loader.load(new ScanDTO("id" + i, i)));
+
+        extractor = DynamoDbScanExtractor.of(TABLE_NAME, ScanDTO.class).withClient(ddb).withNativeAttributes();
+
+        assertThat(extractIds(), containsInAnyOrder(expectedIds(NUMBER_OF_ITEMS)));
+    }
+
+    @Test(expected = UnrecoverableStreamFailureException.class)
+    public void nextThrowsUnrecoverableStreamFailureExceptionIfScanFails() {
+        extractor = DynamoDbScanExtractor.of("notATable", ScanDTO.class).withClient(ddb);
+
+        extractIds();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void withReadCapacityLimitThrowsIllegalArgumentExceptionIfNotPositive() {
+        DynamoDbScanExtractor.of(TABLE_NAME, ScanDTO.class).withClient(ddb).withReadCapacityLimit(0);
+    }
+
+    private List<String> extractIds() {
+        extractor.open(null);
+        List<String> ids = new ArrayList<>();
+        Optional<ScanDTO> next;
+
+        while ((next = extractor.next()).isPresent()) {
+            ids.add(next.get().getId());
+        }
+
+        return ids;
+    }
+
+    private void loadItems(int numberOfItems) {
+        DynamoDbLoader<ScanDTO> loader = DynamoDbLoader.of(TABLE_NAME, "pk", ScanDTO::getId).withClient(ddb);
+        IntStream.rangeClosed(1, numberOfItems).forEach(i -> loader.load(new ScanDTO("id" + i, i)));
+    }
+
+    private static String[] expectedIds(int numberOfItems) {
+        return IntStream.rangeClosed(1, numberOfItems).mapToObj(i -> "id" + i).toArray(String[]::new);
+    }
+}
@@ -0,0 +1,334 @@
+/*
+ *   Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package functionalTests;
+
+import com.amazon.pocketEtl.extractor.HighWaterMarkStore;
+import com.amazon.pocketEtl.extractor.IncrementalSqlExtractor;
+import com.google.common.collect.ImmutableMap;
+import com.mchange.v2.c3p0.ComboPooledDataSource;
+import lombok.Data;
+import org.joda.time.DateTime;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public class IncrementalSqlExtractorFunctionalTest {
+    private static final DateTime START_TIME = new DateTime(2017, 1, 2, 3, 4, 5);
+    private static final String SELECT_SQL = "SELECT * FROM incremental_test_data";
+
+    private static ComboPooledDataSource dataSource;
+    private Connection connection;
+    private Path highWaterMarkFile;
+
+    private final static String DROP_SQL = "DROP TABLE IF EXISTS incremental_test_data";
+
+    private final static String CREATE_SQL =
+            "CREATE TABLE incremental_test_data (" +
+            " id INT NOT NULL," +
+            " aString VARCHAR(20)," +
+            " aNumber BIGINT," +
+            " aDateTime TIMESTAMP," +
+            " aBoolean BOOLEAN," +
+            " PRIMARY KEY (id))";
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @BeforeClass
+    public static void startDatabase() throws Exception {
+        dataSource = new ComboPooledDataSource();
+        dataSource.setDriverClass("org.hsqldb.jdbc.JDBCDriver");
+        dataSource.setJdbcUrl("jdbc:hsqldb:mem:pocketETL");
+    }
+
+    @Before
+    public void initializeDatabase() throws Exception {
+        connection = dataSource.getConnection();
+        connection.createStatement().execute(DROP_SQL);
+        connection.createStatement().execute(CREATE_SQL);
+        highWaterMarkFile = temporaryFolder.getRoot().toPath().resolve("test.hwm");
+    }
+
+    @After
+    public void closeConnection() throws Exception {
+        connection.close();
+    }
+
+    @Test
+    public void firstRunExtractsEveryRowInKeyOrderAndSavesHighWaterMark() throws Exception {
+        insertRows(1, 50, START_TIME);
+
+        assertThat(extractIds(numericKeyExtractor()), contains(ids(1, 50)));
+        assertThat(readHighWaterMarkFile(), equalTo("50"));
+    }
+
+    @Test
+    public void secondRunOnlyExtractsNewRows() throws Exception {
+        insertRows(1, 50, START_TIME);
+        extractIds(numericKeyExtractor());
+        insertRows(51, 60, START_TIME);
+
+        assertThat(extractIds(numericKeyExtractor()), contains(ids(51, 60)));
+        assertThat(readHighWaterMarkFile(), equalTo("60"));
+    }
+
+    @Test
+    public void runWithNothingNewExtractsNothingAndKeepsHighWaterMark() throws Exception {
+        insertRows(1, 10, START_TIME);
+        extractIds(numericKeyExtractor());
+
+        assertThat(extractIds(numericKeyExtractor()), is(empty()));
+        assertThat(readHighWaterMarkFile(), equalTo("10"));
+    }
+
+    @Test
+    public void highWaterMarkIsNotSavedIfExtractionDoesNotComplete() throws Exception {
+        insertRows(1, 50, START_TIME);
+        IncrementalSqlExtractor<TestDTO2> extractor = numericKeyExtractor();
+        extractor.open(null);
+        extractor.next();
+        extractor.close();
+
+        assertThat(Files.exists(highWaterMarkFile), is(false));
+        assertThat(extractIds(numericKeyExtractor()), contains(ids(1, 50)));
+    }
+
+    @Test
+    public void extractsNothingFromEmptyTableAndSavesNoHighWaterMark() throws Exception {
+        assertThat(extractIds(numericKeyExtractor()), is(empty()));
+        assertThat(Files.exists(highWaterMarkFile), is(false));
+    }
+
+    @Test
+    public void timestampKeyExtractsChangedRowsOnNextRun() throws Exception {
+        // Runs of rows share the same timestamp and some runs are longer than a page
+        for (int i = 0; i < 10; i++) {
+            insertRows(i * 10 + 1, i * 10 + (i % 2 == 0 ? 10 : 3), START_TIME.plusMinutes(i));
+        }
+
+        List<Integer> expectedIds = new ArrayList<>();
+
+        for (int i = 0; i < 10; i++) {
+            expectedIds.addAll(Arrays.asList(ids(i * 10 + 1, i * 10 + (i % 2 == 0 ? 10 : 3))));
+        }
+
+        List<Integer> firstRunIds = extractIds(timestampKeyExtractor());
+        assertThat(firstRunIds.stream().sorted().collect(Collectors.toList()), equalTo(expectedIds));
+        assertThat(DateTime.parse(readHighWaterMarkFile()).getMillis(), equalTo(START_TIME.plusMinutes(9).getMillis()));
+
+        connection.createStatement().execute("UPDATE incremental_test_data SET aDateTime = '2017-01-03 00:00:00' " +
+                "WHERE id IN (5, 42)");
+
+        List<Integer> secondRunIds = extractIds(timestampKeyExtractor());
+        assertThat(secondRunIds.stream().sorted().collect(Collectors.toList()), contains(5, 42));
+    }
+
+    @Test
+    public void timestampKeyExtractsRowsSharingOneMicrosecondTimestampAcrossPages() throws Exception {
+        // More rows than fit in a page all share a timestamp that is not a whole number of milliseconds
+        Timestamp sharedTimestamp = new Timestamp(START_TIME.getMillis());
+        sharedTimestamp.setNanos(sharedTimestamp.getNanos() + 123_456_000);
+        insertRows(1, 10, sharedTimestamp);
+        insertRows(11, 12, new Timestamp(START_TIME.plusMinutes(1).getMillis()));
+
+        List<Integer> firstRunIds = extractIds(timestampKeyExtractor());
+        assertThat(firstRunIds.stream().sorted().collect(Collectors.toList()), contains(ids(1, 12)));
+        assertThat(extractIds(timestampKeyExtractor()), is(empty()));
+    }
+
+    @Test
+    public void customHighWaterMarkStoreIsUsed() throws Exception {
+        insertRows(1, 20, START_TIME);
+        InMemoryHighWaterMarkStore store = new InMemoryHighWaterMarkStore();
+        store.save("15");
+
+        IncrementalSqlExtractor<TestDTO2> extractor =
+                IncrementalSqlExtractor.of(dataSource, SELECT_SQL, TestDTO2.class, "id", TestDTO2::getId)
+                        .withHighWaterMarkStore(store)
+                        .withPageSize(2);
+
+        assertThat(extractIds(extractor), contains(ids(16, 20)));
+        assertThat(store.load(), equalTo(Optional.of("20")));
+    }
+
+    @Test
+    public void sqlParametersAreApplied() throws Exception {
+        insertRows(1, 20, START_TIME);
+
+        IncrementalSqlExtractor<TestDTO2> extractor =
+                IncrementalSqlExtractor.of(dataSource, SELECT_SQL + " WHERE aBoolean = #flag", TestDTO2.class, "id",
+                        TestDTO2::getId)
+                        .withHighWaterMarkFile(highWaterMarkFile)
+                        .withPageSize(3)
+                        .withSqlParameters(ImmutableMap.of("flag", true));
+
+        assertThat(extractIds(extractor), contains(IntStream.rangeClosed(1, 20)
+                .filter(i -> i % 2 == 0)
+                .boxed()
+                .toArray(Integer[]::new)));
+    }
+
+    @Test
+    public void rowsWithNullKeyAreSkipped() throws Exception {
+        insertRows(1, 10, START_TIME);
+        connection.createStatement().execute("UPDATE incremental_test_data SET aDateTime = NULL WHERE id IN (1, 6)");
+
+        List<Integer> extractedIds = extractIds(timestampKeyExtractor());
+        assertThat(extractedIds.stream().sorted().collect(Collectors.toList()), contains(2, 3, 4, 5, 7, 8, 9, 10));
+        assertThat(DateTime.parse(readHighWaterMarkFile()).getMillis(), equalTo(START_TIME.getMillis()));
+    }
+
+    @Test
+    public void negativeFractionalKeysRoundDown() throws Exception {
+        connection.createStatement().execute("DROP TABLE IF EXISTS fractional_key_data");
+        connection.createStatement().execute("CREATE TABLE fractional_key_data (id INT NOT NULL, " +
+                "fractionalKey DECIMAL(10, 2), PRIMARY KEY (id))");
+        connection.createStatement().execute("INSERT INTO fractional_key_data VALUES " +
+                "(1, -2.5), (2, -2.25), (3, -1.5), (4, -0.75), (5, -0.5), (6, 0.25), (7, 1.5)");
+
+        IncrementalSqlExtractor<FractionalKeyDTO> extractor =
+                IncrementalSqlExtractor.of(dataSource, "SELECT * FROM fractional_key_data", FractionalKeyDTO.class,
+                        "fractionalKey", FractionalKeyDTO::getFractionalKey)
+                        .withHighWaterMarkFile(highWaterMarkFile)
+                        .withPageSize(2);
+
+        extractor.open(null);
+        List<Integer> ids = new ArrayList<>();
+        Optional<FractionalKeyDTO> next;
+
+        while ((next = extractor.next()).isPresent()) {
+            ids.add(next.get().getId());
+        }
+
+        extractor.close();
+
+        assertThat(ids, contains(ids(1, 7)));
+        assertThat(readHighWaterMarkFile(), equalTo("1"));
+    }
+
+    @Test
+    public void customPagingClauseIsUsed() throws Exception {
+        insertRows(1, 20, START_TIME);
+
+        IncrementalSqlExtractor<TestDTO2> extractor = numericKeyExtractor()
+                .withPagingClause("FETCH FIRST %d ROWS ONLY");
+
+        assertThat(extractIds(extractor), contains(ids(1, 20)));
+        assertThat(readHighWaterMarkFile(), equalTo("20"));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void openThrowsIllegalStateExceptionWithoutHighWaterMarkStore() {
+        IncrementalSqlExtractor.of(dataSource, SELECT_SQL, TestDTO2.class, "id", TestDTO2::getId).open(null);
+    }
+
+    private IncrementalSqlExtractor<TestDTO2> numericKeyExtractor() {
+        return IncrementalSqlExtractor.of(dataSource, SELECT_SQL, TestDTO2.class, "id", TestDTO2::getId)
+                .withHighWaterMarkFile(highWaterMarkFile)
+                .withPageSize(7);
+    }
+
+    private IncrementalSqlExtractor<TestDTO2> timestampKeyExtractor() {
+        return IncrementalSqlExtractor.ofTimestampKey(dataSource, SELECT_SQL, TestDTO2.class, "aDateTime",
+                TestDTO2::getADateTime)
+                .withHighWaterMarkFile(highWaterMarkFile)
+                .withPageSize(4);
+    }
+
+    private List<Integer> extractIds(IncrementalSqlExtractor<TestDTO2> extractor) throws Exception {
+        extractor.open(null);
+        List<Integer> ids = new ArrayList<>();
+        Optional<TestDTO2> next;
+
+        while ((next = extractor.next()).isPresent()) {
+            ids.add(next.get().getId());
+        }
+
+        extractor.close();
+        return ids;
+    }
+
+    private void insertRows(int firstId, int lastId, DateTime dateTime) throws Exception {
+        insertRows(firstId, lastId, new Timestamp(dateTime.getMillis()));
+    }
+
+    private void insertRows(int firstId, int lastId, Timestamp timestamp) throws Exception {
+        try (PreparedStatement statement =
+                     connection.prepareStatement("INSERT INTO incremental_test_data VALUES (?, ?, ?, ?, ?)")) {
+            for (int i = firstId; i <= lastId; i++) {
+                statement.setInt(1, i);
+                statement.setString(2, "test" + i);
+                statement.setLong(3, i);
+                statement.setTimestamp(4, timestamp);
+                statement.setBoolean(5, i % 2 == 0);
+                statement.addBatch();
+            }
+
+            statement.executeBatch();
+        }
+    }
+
+    private String readHighWaterMarkFile() throws Exception {
+        return new String(Files.readAllBytes(highWaterMarkFile), StandardCharsets.UTF_8);
+    }
+
+    private static Integer[] ids(int firstId, int lastId) {
+        return IntStream.rangeClosed(firstId, lastId).boxed().toArray(Integer[]::new);
+    }
+
+    @Data
+    public static class FractionalKeyDTO {
+        private Integer id;
+        private BigDecimal fractionalKey;
+    }
+
+    private static class InMemoryHighWaterMarkStore implements HighWaterMarkStore {
+        private String highWaterMark = null;
+
+        @Override
+        public Optional<String> load() {
+            return Optional.ofNullable(highWaterMark);
+        }
+
+        @Override
+        public void save(String highWaterMark) {
+            this.highWaterMark = highWaterMark;
+        }
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ *   Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package functionalTests;
+
+import com.amazon.pocketEtl.extractor.JSONStringMapper;
+import com.google.common.base.Strings;
+import lombok.Data;
+import org.joda.time.DateTime;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Measures how fast JSONStringMapper can map typical SQS message bodies from Strings, UTF-8 bytes and characters, for
+ * both small messages and messages of a few kilobytes. SQS hands message bodies over as Strings, so fromBytes is
+ * also measured including the cost of encoding each String to bytes, which is what mapping an SQS message through
+ * fromBytes would really cost. See BenchmarkHarness for how the numbers are produced and how to run it.
+ */
+public class JSONStringMapperBenchmark {
+    @Data
+    public static class MessageDTO {
+        private long id;
+        private String name;
+        private String description;
+        private double amount;
+        private boolean active;
+        private DateTime created;
+        private List<String> tags;
+    }
+
+    @Test
+    public void benchmarkSmallMessages() throws Exception {
+        benchmark("small", 16, 100000);
+    }
+
+    @Test
+    public void benchmarkLargeMessages() throws Exception {
+        benchmark("large", 4096, 10000);
+    }
+
+    private static void benchmark(String size, int descriptionLength, int numberOfMessages) throws Exception {
+        List<String> strings = createMessages(descriptionLength, numberOfMessages);
+        List<byte[]> bytes = new ArrayList<>(strings.size());
+        List<char[]> chars = new ArrayList<>(strings.size());
+        strings.forEach(message -> {
+            bytes.add(message.getBytes(StandardCharsets.UTF_8));
+            chars.add(message.toCharArray());
+        });
+        JSONStringMapper<MessageDTO> mapper = JSONStringMapper.of(MessageDTO.class);
+
+        assertThat(mapper.fromBytes(bytes.get(0)), equalTo(mapper.apply(strings.get(0))));
+        assertThat(mapper.fromChars(chars.get(0)), equalTo(mapper.apply(strings.get(0))));
+
+        String messages = String.format("%s (%d char) messages", size, strings.get(0).length());
+        measure("apply(String) mapping " + messages, strings, mapper::apply);
+        measure("fromBytes mapping " + messages, bytes, mapper::fromBytes);
+        measure("getBytes then fromBytes mapping " + messages, strings,
+                message -> mapper.fromBytes(message.getBytes(StandardCharsets.UTF_8)));
+        measure("fromChars mapping " + messages, chars, mapper::fromChars);
+    }
+
+    private static <T> void measure(String description, List<T> messages, Function<T, MessageDTO> map)
+            throws Exception {
+        BenchmarkHarness.measure(description, messages.size(), () -> {
+            int messagesMapped = 0;
+
+            for (T message : messages) {
+                if (map.apply(message) != null) {
+                    messagesMapped++;
+                }
+            }
+
+            return messagesMapped;
+        });
+    }
+
+    private static List<String> createMessages(int descriptionLength, int numberOfMessages) {
+        List<String> messages = new ArrayList<>(numberOfMessages);
+        String description = Strings.repeat("d", descriptionLength);
+
+        for (int i = 0; i < numberOfMessages; i++) {
+            messages.add("{" +
+                    "\"id\": " + i + "," +
+                    "\"name\": \"name" + i + "\"," +
+                    "\"description\": \"" + description + "\"," +
+                    "\"amount\": " + (i / 4.0) + "," +
+                    "\"active\": " + (i % 2 == 0) + "," +
+                    "\"created\": \"2017-08-14T12:00:00Z\"," +
+                    "\"tags\": [\"tagOne\", \"tagTwo\", \"tag" + i + "\"]" +
+                    "}");
+        }
+
+        return messages;
+    }
+}
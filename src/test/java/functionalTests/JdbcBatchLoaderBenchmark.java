@@ -0,0 +1,119 @@
+/*
+ *   Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package functionalTests;
+
+import com.amazon.pocketEtl.Loader;
+import com.amazon.pocketEtl.loader.JdbcBatchLoader;
+import com.google.common.collect.ImmutableList;
+import com.mchange.v2.c3p0.ComboPooledDataSource;
+import org.joda.time.DateTime;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Compares how fast JdbcBatchLoader can insert rows into an in-memory HSQLDB database using JDBC batches and multi-row
+ * VALUES statements against inserting and committing one row at a time. An in-memory database has no network round
+ * trips, so the gap against a real database will be much wider. See BenchmarkHarness for how the numbers are
+ * produced and how to run it.
+ */
+public class JdbcBatchLoaderBenchmark {
+    private static final int NUMBER_OF_ROWS = 50000;
+    private static final List<String> COLUMNS = ImmutableList.of("id", "aString", "aNumber", "aDateTime", "aBoolean");
+
+    private static ComboPooledDataSource dataSource;
+    private static List<TestDTO2> rows;
+
+    @BeforeClass
+    public static void startDatabase() throws Exception {
+        dataSource = new ComboPooledDataSource();
+        dataSource.setDriverClass("org.hsqldb.jdbc.JDBCDriver");
+        dataSource.setJdbcUrl("jdbc:hsqldb:mem:pocketETLLoaderBenchmark");
+
+        DateTime dateTime = new DateTime(2017, 1, 2, 3, 4, 5);
+        rows = IntStream.range(0, NUMBER_OF_ROWS)
+                .mapToObj(i -> new TestDTO2(i, "string" + i, i, dateTime, i % 2 == 0))
+                .collect(Collectors.toList());
+    }
+
+    @AfterClass
+    public static void closeDataSource() {
+        dataSource.close();
+    }
+
+    @Test
+    public void benchmarkInserts() throws Exception {
+        BenchmarkHarness.measure("Single row inserts", NUMBER_OF_ROWS, this::recreateTable,
+                this::insertOneRowAtATime);
+        BenchmarkHarness.measure("JdbcBatchLoader with JDBC batches", NUMBER_OF_ROWS, this::recreateTable,
+                () -> loadAllRows(JdbcBatchLoader.supplierOf(dataSource, "test_data", COLUMNS, TestDTO2.class)));
+        BenchmarkHarness.measure("JdbcBatchLoader with multi-row VALUES", NUMBER_OF_ROWS, this::recreateTable,
+                () -> loadAllRows(JdbcBatchLoader.supplierOf(dataSource, "test_data", COLUMNS, TestDTO2.class)
+                        .withBatchSize(200).withMultiRowValues()));
+    }
+
+    // Both kinds of insert return the number of rows in the table afterwards, so that every run is checked to have
+    // written every row. Counting them is timed as well, but costs little next to the inserts.
+    private int insertOneRowAtATime() throws Exception {
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement("insert into test_data " +
+                     "(id,aString,aNumber,aDateTime,aBoolean) values (?,?,?,?,?)")) {
+            for (TestDTO2 row : rows) {
+                statement.setObject(1, row.getId());
+                statement.setObject(2, row.getAString());
+                statement.setObject(3, row.getANumber());
+                statement.setObject(4, new Timestamp(row.getADateTime().getMillis()));
+                statement.setObject(5, row.getABoolean());
+                statement.executeUpdate();
+            }
+        }
+
+        return countRows();
+    }
+
+    private int loadAllRows(Supplier<? extends Loader<TestDTO2>> loaderSupplier) throws Exception {
+        Loader<TestDTO2> loader = loaderSupplier.get();
+        loader.open(null);
+        rows.forEach(loader::load);
+        loader.close();
+        return countRows();
+    }
+
+    private void recreateTable() throws Exception {
+        try (Connection connection = dataSource.getConnection()) {
+            connection.createStatement().execute("DROP TABLE IF EXISTS test_data");
+            connection.createStatement().execute("CREATE TABLE test_data (id INT NOT NULL, aString VARCHAR(20), " +
+                    "aNumber BIGINT, aDateTime TIMESTAMP, aBoolean BOOLEAN, PRIMARY KEY (id))");
+        }
+    }
+
+    private int countRows() throws Exception {
+        try (Connection connection = dataSource.getConnection();
+             ResultSet resultSet = connection.createStatement().executeQuery("SELECT COUNT(*) FROM test_data")) {
+            resultSet.next();
+            return resultSet.getInt(1);
+        }
+    }
+}
@@ -0,0 +1,161 @@
+/*
+ *   Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package functionalTests;
+
+import com.amazon.pocketEtl.Loader;
+import com.amazon.pocketEtl.extractor.SqlExtractor;
+import com.amazon.pocketEtl.loader.JdbcBatchLoader;
+import com.amazon.pocketEtl.loader.JdbcUpsertDialect;
+import com.amazon.pocketEtl.loader.ParallelLoader;
+import com.google.common.collect.ImmutableList;
+import com.mchange.v2.c3p0.ComboPooledDataSource;
+import org.joda.time.DateTime;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+public class JdbcBatchLoaderFunctionalTest {
+    private static final List<String> COLUMNS = ImmutableList.of("id", "aString", "aNumber", "aDateTime", "aBoolean");
+    private static final DateTime A_DATE_TIME = new DateTime(2017, 1, 2, 3, 4, 5);
+
+    private static ComboPooledDataSource dataSource;
+
+    @BeforeClass
+    public static void startDatabase() throws Exception {
+        dataSource = new ComboPooledDataSource();
+        dataSource.setDriverClass("org.hsqldb.jdbc.JDBCDriver");
+        dataSource.setJdbcUrl("jdbc:hsqldb:mem:pocketETLJdbcBatchLoader");
+    }
+
+    @AfterClass
+    public static void closeDataSource() {
+        dataSource.close();
+    }
+
+    @Before
+    public void initializeDatabase() throws Exception {
+        try (Connection connection = dataSource.getConnection()) {
+            connection.createStatement().execute("DROP TABLE IF EXISTS test_data");
+            connection.createStatement().execute("CREATE TABLE test_data (id INT NOT NULL, aString VARCHAR(20), " +
+                    "aNumber BIGINT, aDateTime TIMESTAMP, aBoolean BOOLEAN, PRIMARY KEY (id))");
+        }
+    }
+
+    @Test
+    public void jdbcBatchesAreLoaded() throws Exception {
+        loadRows(JdbcBatchLoader.supplierOf(dataSource, "test_data", COLUMNS, TestDTO2.class).withBatchSize(3).get(),
+                rows(1, 10, "a"));
+
+        assertThat(readAllRows(), equalTo(rows(1, 10, "a")));
+    }
+
+    @Test
+    public void multiRowValuesAreLoaded() throws Exception {
+        loadRows(JdbcBatchLoader.supplierOf(dataSource, "test_data", COLUMNS, TestDTO2.class)
+                .withBatchSize(3)
+                .withMultiRowValues()
+                .get(), rows(1, 10, "a"));
+
+        assertThat(readAllRows(), equalTo(rows(1, 10, "a")));
+    }
+
+    @Test
+    public void nullValuesAreLoaded() throws Exception {
+        TestDTO2 nullRow = new TestDTO2(1, null, null, null, null);
+        loadRows(JdbcBatchLoader.supplierOf(dataSource, "test_data", COLUMNS, TestDTO2.class).get(),
+                ImmutableList.of(nullRow));
+
+        assertThat(readAllRows(), contains(nullRow));
+    }
+
+    @Test
+    public void mergeUpsertReplacesExistingRows() throws Exception {
+        loadRows(JdbcBatchLoader.supplierOf(dataSource, "test_data", COLUMNS, TestDTO2.class).get(), rows(1, 5, "old"));
+        loadRows(JdbcBatchLoader.supplierOf(dataSource, "test_data", COLUMNS, TestDTO2.class)
+                .withBatchSize(2)
+                .withMultiRowValues()
+                .withUpsert(JdbcUpsertDialect.MERGE, ImmutableList.of("id"))
+                .get(), rows(4, 8, "new"));
+
+        List<TestDTO2> expectedRows = new ArrayList<>(rows(1, 3, "old"));
+        expectedRows.addAll(rows(4, 8, "new"));
+        assertThat(readAllRows(), equalTo(expectedRows));
+    }
+
+    @Test
+    public void parallelLoaderGivesEachThreadItsOwnConnection() throws Exception {
+        Loader<TestDTO2> parallelLoader = ParallelLoader.of(JdbcBatchLoader.supplierOf(dataSource, "test_data",
+                COLUMNS, TestDTO2.class).withBatchSize(7));
+        parallelLoader.open(null);
+        ExecutorService executorService = Executors.newFixedThreadPool(4);
+        List<Future<?>> futures = new ArrayList<>();
+
+        for (TestDTO2 row : rows(1, 100, "a")) {
+            futures.add(executorService.submit(() -> parallelLoader.load(row)));
+        }
+
+        for (Future<?> future : futures) {
+            future.get();
+        }
+
+        executorService.shutdown();
+        parallelLoader.close();
+
+        assertThat(readAllRows(), equalTo(rows(1, 100, "a")));
+    }
+
+    private static List<TestDTO2> rows(int firstId, int lastId, String aString) {
+        return IntStream.rangeClosed(firstId, lastId)
+                .mapToObj(id -> new TestDTO2(id, aString + id, id * 10, A_DATE_TIME, id % 2 == 0))
+                .collect(Collectors.toList());
+    }
+
+    private static void loadRows(Loader<TestDTO2> loader, List<TestDTO2> rows) throws Exception {
+        loader.open(null);
+        rows.forEach(loader::load);
+        loader.close();
+    }
+
+    private static List<TestDTO2> readAllRows() throws Exception {
+        SqlExtractor<TestDTO2> extractor = SqlExtractor.of(dataSource, "SELECT * FROM test_data ORDER BY id",
+                TestDTO2.class);
+        extractor.open(null);
+        List<TestDTO2> rows = new ArrayList<>();
+        Optional<TestDTO2> row;
+
+        while ((row = extractor.next()).isPresent()) {
+            rows.add(row.get());
+        }
+
+        extractor.close();
+        return rows;
+    }
+}
@@ -92,4 +92,22 @@ public class MockedS3FunctionalTest {
 
         assertThat(outputStrings, equalTo(expectedOutput));
     }
+
+    @Test
+    public void testStreamSerializerPartFilesWithHeadersMultiRowsPerFile() throws Exception {
+        List<TestDTO> inputData = ImmutableList.of(new TestDTO("ONE"), new TestDTO("TWO"), new TestDTO("THREE"),
+                new TestDTO("FOUR"));
+        Loader<TestDTO> loader = S3FastLoader.supplierOf("test-bucket", CsvStringSerializer.of(TestDTO.class).withHeaderRow(true))
+                .withMaxPartFileSizeInBytes(17)
+                .withClient(mockAmazonS3)
+                .get();
+
+        EtlStream.extract(IterableExtractor.of(inputData))
+                .load(TestDTO.class, loader)
+                .run();
+
+        List<String> expectedOutput = ImmutableList.of("value\nONE\nTWO\n", "value\nTHREE\nFOUR\n");
+
+        assertThat(outputStrings, equalTo(expectedOutput));
+    }
 }
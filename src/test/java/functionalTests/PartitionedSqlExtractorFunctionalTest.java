@@ -0,0 +1,219 @@
+/*
+ *   Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package functionalTests;
+
+import com.amazon.pocketEtl.exception.UnrecoverableStreamFailureException;
+import com.amazon.pocketEtl.extractor.PartitionedSqlExtractor;
+import com.google.common.collect.ImmutableMap;
+import com.mchange.v2.c3p0.ComboPooledDataSource;
+import org.joda.time.DateTime;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+public class PartitionedSqlExtractorFunctionalTest {
+    private static final int NUMBER_OF_ROWS = 1000;
+    private static final DateTime START_TIME = new DateTime(2017, 1, 2, 3, 4, 5);
+
+    private static ComboPooledDataSource dataSource;
+    private Connection connection;
+    private PartitionedSqlExtractor<TestDTO2> extractor;
+
+    private final static String DROP_SQL = "DROP TABLE IF EXISTS partitioned_test_data";
+
+    private final static String CREATE_SQL =
+            "CREATE TABLE partitioned_test_data (" +
+            " id INT NOT NULL," +
+            " aString VARCHAR(20)," +
+            " aNumber BIGINT," +
+            " aDateTime TIMESTAMP," +
+            " aBoolean BOOLEAN," +
+            " PRIMARY KEY (id))";
+
+    private final static String SELECT_SQL = "SELECT * FROM partitioned_test_data";
+
+    @BeforeClass
+    public static void startDatabase() throws Exception {
+        dataSource = new ComboPooledDataSource();
+        dataSource.setDriverClass("org.hsqldb.jdbc.JDBCDriver");
+        dataSource.setJdbcUrl("jdbc:hsqldb:mem:pocketETL");
+    }
+
+    @Before
+    public void initializeDatabase() throws Exception {
+        connection = dataSource.getConnection();
+        connection.createStatement().execute(DROP_SQL);
+        connection.createStatement().execute(CREATE_SQL);
+    }
+
+    @After
+    public void closeExtractor() throws Exception {
+        if (extractor != null) {
+            extractor.close();
+        }
+
+        connection.close();
+    }
+
+    @Test
+    public void extractsEveryRowOnceWithDiscoveredNumericBounds() throws Exception {
+        insertRows(NUMBER_OF_ROWS);
+        extractor = PartitionedSqlExtractor.of(dataSource, SELECT_SQL, TestDTO2.class, "id").withPartitions(4);
+
+        assertThat(extractIds(), containsInAnyOrder(expectedIds(NUMBER_OF_ROWS)));
+    }
+
+    @Test
+    public void extractsEveryRowOnceWithBoundsNarrowerThanData() throws Exception {
+        insertRows(NUMBER_OF_ROWS);
+        extractor = PartitionedSqlExtractor.of(dataSource, SELECT_SQL, TestDTO2.class, "id")
+                .withPartitions(3)
+                .withBounds(100, 200)
+                .withBufferSize(10);
+
+        assertThat(extractIds(), containsInAnyOrder(expectedIds(NUMBER_OF_ROWS)));
+    }
+
+    @Test
+    public void extractsRowsWhereSplitColumnIsNull() throws Exception {
+        insertRows(NUMBER_OF_ROWS);
+        extractor = PartitionedSqlExtractor.of(dataSource, SELECT_SQL, TestDTO2.class, "aNumber").withPartitions(5);
+
+        assertThat(extractIds(), containsInAnyOrder(expectedIds(NUMBER_OF_ROWS)));
+    }
+
+    @Test
+    public void extractsEveryRowOnceWithDiscoveredTimestampBounds() throws Exception {
+        insertRows(NUMBER_OF_ROWS);
+        extractor = PartitionedSqlExtractor.of(dataSource, SELECT_SQL, TestDTO2.class, "aDateTime").withPartitions(4);
+
+        assertThat(extractIds(), containsInAnyOrder(expectedIds(NUMBER_OF_ROWS)));
+    }
+
+    @Test
+    public void extractsEveryRowOnceWithTimestampBounds() throws Exception {
+        insertRows(NUMBER_OF_ROWS);
+        extractor = PartitionedSqlExtractor.of(dataSource, SELECT_SQL, TestDTO2.class, "aDateTime")
+                .withPartitions(4)
+                .withBounds(START_TIME, START_TIME.plusMinutes(NUMBER_OF_ROWS));
+
+        assertThat(extractIds(), containsInAnyOrder(expectedIds(NUMBER_OF_ROWS)));
+    }
+
+    @Test
+    public void extractsEveryRowOnceWithMorePartitionsThanValues() throws Exception {
+        insertRows(3);
+        extractor = PartitionedSqlExtractor.of(dataSource, SELECT_SQL, TestDTO2.class, "id").withPartitions(10);
+
+        assertThat(extractIds(), containsInAnyOrder(expectedIds(3)));
+    }
+
+    @Test
+    public void extractsNothingFromEmptyTable() throws Exception {
+        extractor = PartitionedSqlExtractor.of(dataSource, SELECT_SQL, TestDTO2.class, "id");
+
+        assertThat(extractIds(), empty());
+    }
+
+    @Test
+    public void sqlParametersAreAppliedToEveryPartition() throws Exception {
+        insertRows(NUMBER_OF_ROWS);
+        extractor = PartitionedSqlExtractor.of(dataSource, SELECT_SQL + " WHERE aBoolean = #flag", TestDTO2.class, "id")
+                .withSqlParameters(ImmutableMap.of("flag", true));
+
+        Integer[] expectedIds = IntStream.rangeClosed(1, NUMBER_OF_ROWS)
+                .filter(i -> i % 2 == 0)
+                .boxed()
+                .toArray(Integer[]::new);
+
+        assertThat(extractIds(), containsInAnyOrder(expectedIds));
+    }
+
+    @Test(expected = UnrecoverableStreamFailureException.class)
+    public void nextThrowsUnrecoverableStreamFailureExceptionIfPartitionQueryFails() throws Exception {
+        insertRows(10);
+        extractor = PartitionedSqlExtractor.of(dataSource, SELECT_SQL, TestDTO2.class, "notAColumn")
+                .withBounds(1, 10);
+
+        extractIds();
+    }
+
+    @Test
+    public void extractedObjectsArePopulated() throws Exception {
+        insertRows(1);
+        extractor = PartitionedSqlExtractor.of(dataSource, SELECT_SQL, TestDTO2.class, "id");
+        extractor.open(null);
+
+        assertThat(extractor.next(), equalTo(Optional.of(new TestDTO2(1, "test1", null, START_TIME.plusMinutes(1),
+                false))));
+        assertThat(extractor.next(), equalTo(Optional.empty()));
+    }
+
+    private List<Integer> extractIds() {
+        extractor.open(null);
+        List<Integer> ids = new ArrayList<>();
+        Optional<TestDTO2> next;
+
+        while ((next = extractor.next()).isPresent()) {
+            ids.add(next.get().getId());
+        }
+
+        return ids;
+    }
+
+    private void insertRows(int numberOfRows) throws Exception {
+        try (PreparedStatement statement =
+                     connection.prepareStatement("INSERT INTO partitioned_test_data VALUES (?, ?, ?, ?, ?)")) {
+            for (int i = 1; i <= numberOfRows; i++) {
+                statement.setInt(1, i);
+                statement.setString(2, "test" + i);
+
+                // Every tenth row has a null number
+                if (i % 10 == 1) {
+                    statement.setNull(3, Types.BIGINT);
+                } else {
+                    statement.setLong(3, i * 7 % 101);
+                }
+
+                statement.setTimestamp(4, new Timestamp(START_TIME.plusMinutes(i).getMillis()));
+                statement.setBoolean(5, i % 2 == 0);
+                statement.addBatch();
+            }
+
+            statement.executeBatch();
+        }
+    }
+
+    private static Integer[] expectedIds(int numberOfRows) {
+        return IntStream.rangeClosed(1, numberOfRows).boxed().collect(Collectors.toList()).toArray(new Integer[0]);
+    }
+}
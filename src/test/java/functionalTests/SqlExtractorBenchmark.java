@@ -0,0 +1,138 @@
+/*
+ *   Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License").
+ *   You may not use this file except in compliance with the License.
+ *   A copy of the License is located at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   or in the "license" file accompanying this file. This file is distributed
+ *   on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *   express or implied. See the License for the specific language governing
+ *   permissions and limitations under the License.
+ */
+
+package functionalTests;
+
+import com.amazon.pocketEtl.extractor.SqlExtractor;
+import com.mchange.v2.c3p0.ComboPooledDataSource;
+import lombok.Data;
+import org.joda.time.DateTime;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+
+/**
+ * Measures how fast SqlExtractor can map rows from a wide table in an in-memory HSQLDB database, which is dominated by
+ * the cost of binding each column to the DTO. See BenchmarkHarness for how the numbers are produced and how to run it.
+ */
+public class SqlExtractorBenchmark {
+    private static final int NUMBER_OF_ROWS = 200000;
+
+    private static ComboPooledDataSource dataSource;
+
+    @Data
+    public static class WideDTO {
+        private int id;
+        private String stringOne;
+        private String stringTwo;
+        private String stringThree;
+        private String stringFour;
+        private Long longOne;
+        private Long longTwo;
+        private long longThree;
+        private Integer intOne;
+        private int intTwo;
+        private Double doubleOne;
+        private double doubleTwo;
+        private Boolean booleanOne;
+        private boolean booleanTwo;
+        private DateTime dateTimeOne;
+        private DateTime dateTimeTwo;
+        private Timestamp timestampOne;
+        private String stringFive;
+        private String stringSix;
+        private Long longFour;
+    }
+
+    @BeforeClass
+    public static void createTable() throws Exception {
+        dataSource = new ComboPooledDataSource();
+        dataSource.setDriverClass("org.hsqldb.jdbc.JDBCDriver");
+        dataSource.setJdbcUrl("jdbc:hsqldb:mem:pocketETLBenchmark");
+
+        try (Connection connection = dataSource.getConnection()) {
+            connection.createStatement().execute("DROP TABLE IF EXISTS wide_data");
+            connection.createStatement().execute("CREATE TABLE wide_data (id INT NOT NULL, stringOne VARCHAR(20), " +
+                    "stringTwo VARCHAR(20), stringThree VARCHAR(20), stringFour VARCHAR(20), longOne BIGINT, " +
+                    "longTwo BIGINT, longThree BIGINT, intOne INT, intTwo INT, doubleOne DOUBLE, doubleTwo DOUBLE, " +
+                    "booleanOne BOOLEAN, booleanTwo BOOLEAN, dateTimeOne TIMESTAMP, dateTimeTwo TIMESTAMP, " +
+                    "timestampOne TIMESTAMP, stringFive VARCHAR(20), stringSix VARCHAR(20), longFour BIGINT, " +
+                    "PRIMARY KEY (id))");
+
+            try (PreparedStatement statement = connection.prepareStatement("INSERT INTO wide_data VALUES " +
+                    "(?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)")) {
+                Timestamp timestamp = new Timestamp(new DateTime(2017, 1, 2, 3, 4, 5).getMillis());
+
+                for (int i = 0; i < NUMBER_OF_ROWS; i++) {
+                    statement.setInt(1, i);
+                    statement.setString(2, "one" + i);
+                    statement.setString(3, "two" + i);
+                    statement.setString(4, "three" + i);
+                    statement.setString(5, "four" + i);
+                    statement.setLong(6, i);
+                    statement.setLong(7, i * 2L);
+                    statement.setLong(8, i * 3L);
+                    statement.setInt(9, i);
+                    statement.setInt(10, i * 2);
+                    statement.setDouble(11, i / 2.0);
+                    statement.setDouble(12, i / 3.0);
+                    statement.setBoolean(13, i % 2 == 0);
+                    statement.setBoolean(14, i % 3 == 0);
+                    statement.setTimestamp(15, timestamp);
+                    statement.setTimestamp(16, timestamp);
+                    statement.setTimestamp(17, timestamp);
+                    statement.setString(18, "five" + i);
+                    statement.setString(19, "six" + i);
+                    statement.setLong(20, i * 4L);
+                    statement.addBatch();
+
+                    if (i % 10000 == 0) {
+                        statement.executeBatch();
+                    }
+                }
+
+                statement.executeBatch();
+            }
+        }
+    }
+
+    @AfterClass
+    public static void closeDataSource() {
+        dataSource.close();
+    }
+
+    @Test
+    public void benchmarkWideTableExtraction() throws Exception {
+        BenchmarkHarness.measure("SqlExtractor mapping a 20 column table", NUMBER_OF_ROWS, this::extractAllRows);
+    }
+
+    private int extractAllRows() throws Exception {
+        SqlExtractor<WideDTO> extractor = SqlExtractor.of(dataSource, "SELECT * FROM wide_data", WideDTO.class)
+                .withFetchSize(1000);
+        extractor.open(null);
+        int count = 0;
+
+        while (extractor.next().isPresent()) {
+            count++;
+        }
+
+        extractor.close();
+        return count;
+    }
+}
@@ -16,6 +16,7 @@
 package functionalTests;
 
 import com.amazon.pocketEtl.extractor.SqlExtractor;
+import com.amazon.pocketEtl.integration.db.jdbi.StatementCache;
 import com.google.common.collect.ImmutableMap;
 import com.mchange.v2.c3p0.ComboPooledDataSource;
 import org.joda.time.DateTime;
@@ -23,9 +24,14 @@ import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
 import java.sql.Connection;
 import java.sql.ResultSet;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.is;
@@ -114,4 +120,79 @@ public class SqlExtractorFunctionalTest {
 
         assertThat(sqlExtractorForInjection.next(), equalTo(Optional.empty()));
     }
+
+    @Test
+    public void canReadRecordsWithStreamingCursor() throws Exception {
+        connection.createStatement().execute("INSERT INTO test_data VALUES (1, 'one', 1, null, TRUE)");
+        connection.createStatement().execute("INSERT INTO test_data VALUES (2, 'two', 2, null, FALSE)");
+        connection.createStatement().execute("INSERT INTO test_data VALUES (3, 'three', 3, null, TRUE)");
+
+        SqlExtractor<TestDTO2> streamingSqlExtractor =
+                SqlExtractor.of(dataSource, "SELECT * FROM test_data ORDER BY id", TestDTO2.class)
+                        .withStreamingCursor(true)
+                        .withFetchSize(2);
+        streamingSqlExtractor.open(null);
+
+        assertThat(streamingSqlExtractor.next(), equalTo(Optional.of(new TestDTO2(1, "one", 1, null, true))));
+        assertThat(streamingSqlExtractor.next(), equalTo(Optional.of(new TestDTO2(2, "two", 2, null, false))));
+        assertThat(streamingSqlExtractor.next(), equalTo(Optional.of(new TestDTO2(3, "three", 3, null, true))));
+        assertThat(streamingSqlExtractor.next(), equalTo(Optional.empty()));
+        streamingSqlExtractor.close();
+
+        try (Connection pooledConnection = dataSource.getConnection()) {
+            assertThat(pooledConnection.getAutoCommit(), is(true));
+            assertThat(pooledConnection.isReadOnly(), is(false));
+        }
+    }
+
+    @Test
+    public void secondExtractorReusesTheStatementPreparedThroughAStatementCache() throws Exception {
+        connection.createStatement().execute("INSERT INTO test_data VALUES (1, 'one', 1, null, TRUE)");
+        connection.createStatement().execute("INSERT INTO test_data VALUES (2, 'two', 2, null, FALSE)");
+        AtomicInteger preparedStatementCount = new AtomicInteger(0);
+        DataSource countingDataSource = countingPreparedStatements(dataSource, preparedStatementCount);
+
+        try (StatementCache statementCache = StatementCache.of(countingDataSource)) {
+            for (int id = 1; id <= 2; id++) {
+                SqlExtractor<TestDTO2> extractor =
+                        SqlExtractor.of(countingDataSource, "SELECT * FROM test_data WHERE id = #id", TestDTO2.class)
+                                .withSqlParameters(ImmutableMap.of("id", id))
+                                .withStatementCache(statementCache);
+                extractor.open(null);
+
+                assertThat(extractor.next().map(TestDTO2::getId), equalTo(Optional.of(id)));
+                extractor.close();
+            }
+        }
+
+        assertThat(preparedStatementCount.get(), equalTo(1));
+    }
+
+    private static DataSource countingPreparedStatements(DataSource dataSource, AtomicInteger preparedStatementCount) {
+        return (DataSource) Proxy.newProxyInstance(DataSource.class.getClassLoader(), new Class<?>[] {DataSource.class},
+                (proxy, method, args) -> {
+                    Object result = invoke(dataSource, method, args);
+
+                    if (!method.getName().equals("getConnection")) {
+                        return result;
+                    }
+
+                    return Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[] {Connection.class},
+                            (connectionProxy, connectionMethod, connectionArgs) -> {
+                                if (connectionMethod.getName().equals("prepareStatement")) {
+                                    preparedStatementCount.incrementAndGet();
+                                }
+
+                                return invoke(result, connectionMethod, connectionArgs);
+                            });
+                });
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
 }